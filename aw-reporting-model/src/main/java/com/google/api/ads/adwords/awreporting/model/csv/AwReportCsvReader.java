@@ -16,12 +16,13 @@ package com.google.api.ads.adwords.awreporting.model.csv;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
-import java.util.List;
-import java.util.ListIterator;
+import java.util.Iterator;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVRecord;
 
@@ -30,14 +31,24 @@ import org.apache.commons.csv.CSVRecord;
  *
  * <p>It handles both API downloaded reports (without header or summary), and user downloaded
  * reports (with header and summary). In order to accomplish the latter behavior,
+ *
+ * <p>Records are read lazily from the underlying source, one at a time, so only the record being
+ * parsed is held in memory. The reader must be closed once it is no longer needed.
+ *
+ * <p>When created from an {@link InputStream} of UTF-8 content, the records are split directly
+ * from the bytes by a {@link CsvByteTokenizer}, instead of decoding all the content to characters
+ * and parsing it with commons-csv. Local files are read through memory-mapped windows.
  */
-public class AwReportCsvReader {
+public class AwReportCsvReader implements Closeable {
   // The 'Total' {@code String} represents the last line of the AW Report CSV file.
   private static final String AW_REPORT_CSV_TOTAL = "total";
 
   private final boolean hasSummary;
   private final String[] columnNames;
-  private final ListIterator<CSVRecord> records;
+  private final Closeable source;
+  private final Iterator<CSVRecord> records;
+  private final CsvByteTokenizer tokenizer;
+  private boolean[] mappedColumns;
 
   /**
    * Constructs AwReportCsvReader with params of whether header / summary lines exist.
@@ -48,16 +59,110 @@ public class AwReportCsvReader {
    */
   public AwReportCsvReader(Reader reader, boolean hasHeader, boolean hasSummary)
       throws IOException {
-    try (BufferedReader br = new BufferedReader(reader)) {
+    BufferedReader bufferedReader = new BufferedReader(reader);
+    source = bufferedReader;
+    tokenizer = null;
+    try {
+      if (hasHeader) {
+        bufferedReader.readLine();
+      }
+
+      Splitter splitter = Splitter.on(',').trimResults();
+      columnNames = Iterables.toArray(splitter.split(bufferedReader.readLine()), String.class);
+      records = CSVFormat.RFC4180.withHeader(columnNames).parse(bufferedReader).iterator();
+    } catch (IOException | RuntimeException e) {
+      bufferedReader.close();
+      throw e;
+    }
+
+    this.hasSummary = hasSummary;
+  }
+
+  /**
+   * Constructs AwReportCsvReader with params of whether header / summary lines exist.
+   *
+   * @param inputStream the UTF-8 encoded CSV source
+   * @param hasHeader whether the report has header line
+   * @param hasSummary whether the report has summary line
+   */
+  public AwReportCsvReader(InputStream inputStream, boolean hasHeader, boolean hasSummary)
+      throws IOException {
+    this(new CsvByteTokenizer(inputStream), hasHeader, hasSummary);
+  }
+
+  /**
+   * Constructs AwReportCsvReader for a local file, with params of whether header / summary lines
+   * exist.
+   *
+   * @param file the UTF-8 encoded CSV file
+   * @param hasHeader whether the report has header line
+   * @param hasSummary whether the report has summary line
+   */
+  public AwReportCsvReader(File file, boolean hasHeader, boolean hasSummary) throws IOException {
+    this(
+        new CsvByteTokenizer(
+            new MappedFileSource(file, 0, file.length(), MappedFileSource.DEFAULT_WINDOW_SIZE)),
+        hasHeader,
+        hasSummary);
+  }
+
+  private AwReportCsvReader(CsvByteTokenizer tokenizer, boolean hasHeader, boolean hasSummary)
+      throws IOException {
+    this.tokenizer = tokenizer;
+    source = tokenizer;
+    records = null;
+    try {
       if (hasHeader) {
-        br.readLine();
+        tokenizer.readLine();
       }
 
       Splitter splitter = Splitter.on(',').trimResults();
-      columnNames = Iterables.toArray(splitter.split(br.readLine()), String.class);
-      records = CSVFormat.RFC4180.withHeader(columnNames).parse(br).getRecords().listIterator();
+      columnNames = Iterables.toArray(splitter.split(tokenizer.readLine()), String.class);
+    } catch (IOException | RuntimeException e) {
+      tokenizer.close();
+      throw e;
     }
-    
+
+    this.hasSummary = hasSummary;
+  }
+
+  /**
+   * Constructs AwReportCsvReader for a range of the records of a report, whose header was read
+   * separately, such as a range found by {@link CsvFileSplitter}.
+   *
+   * @param inputStream the UTF-8 encoded CSV records, starting at a record boundary
+   * @param columnNames the column names of the report
+   * @param hasSummary whether the records may end with the summary line
+   */
+  public AwReportCsvReader(InputStream inputStream, String[] columnNames, boolean hasSummary) {
+    this(new CsvByteTokenizer(inputStream), columnNames, hasSummary);
+  }
+
+  /**
+   * Constructs AwReportCsvReader for a range of the records of a local file, whose header was read
+   * separately, such as a range found by {@link CsvFileSplitter}.
+   *
+   * @param file the UTF-8 encoded CSV file
+   * @param start the offset of the first record of the range
+   * @param end the offset after the last record of the range
+   * @param columnNames the column names of the report
+   * @param hasSummary whether the records may end with the summary line
+   */
+  public AwReportCsvReader(
+      File file, long start, long end, String[] columnNames, boolean hasSummary)
+      throws IOException {
+    this(
+        new CsvByteTokenizer(
+            new MappedFileSource(file, start, end, MappedFileSource.DEFAULT_WINDOW_SIZE)),
+        columnNames,
+        hasSummary);
+  }
+
+  private AwReportCsvReader(CsvByteTokenizer tokenizer, String[] columnNames, boolean hasSummary) {
+    this.tokenizer = tokenizer;
+    source = tokenizer;
+    records = null;
+    this.columnNames = columnNames.clone();
     this.hasSummary = hasSummary;
   }
 
@@ -69,25 +174,78 @@ public class AwReportCsvReader {
    *     was reached
    */
   public String[] readNext() {
-    String[] next = null;
-    if (records.hasNext()) {
-      CSVRecord record = records.next();
-      List<String> values = Lists.newArrayListWithCapacity(record.size());
-      for (int i = 0; i < record.size(); i++) {
-        values.add(record.get(i));
+    if (tokenizer != null) {
+      return readNextFromTokenizer();
+    }
+    if (!records.hasNext()) {
+      return null;
+    }
+
+    CSVRecord record = records.next();
+    if (hasSummary && AW_REPORT_CSV_TOTAL.equalsIgnoreCase(record.get(0))) {
+      return null;
+    }
+
+    String[] values = new String[record.size()];
+    for (int i = 0; i < values.length; i++) {
+      if (isMappedColumn(i)) {
+        values[i] = record.get(i);
       }
+    }
+    return values;
+  }
 
-      if (!hasSummary || !AW_REPORT_CSV_TOTAL.equalsIgnoreCase(Iterables.getFirst(values, null))) {
-        next = values.toArray(new String[0]);
+  private String[] readNextFromTokenizer() {
+    try {
+      if (!tokenizer.nextRecord()) {
+        return null;
       }
+    } catch (IOException e) {
+      // Same as the record iterator of commons-csv.
+      throw new IllegalStateException("IOException reading next record: " + e, e);
     }
-    return next;
+
+    if (hasSummary && AW_REPORT_CSV_TOTAL.equalsIgnoreCase(tokenizer.getField(0))) {
+      return null;
+    }
+
+    String[] values = new String[tokenizer.getFieldCount()];
+    for (int i = 0; i < values.length; i++) {
+      if (isMappedColumn(i)) {
+        values[i] = tokenizer.getField(i);
+      }
+    }
+    return values;
+  }
+
+  private boolean isMappedColumn(int columnNumber) {
+    return mappedColumns == null
+        || (columnNumber < mappedColumns.length && mappedColumns[columnNumber]);
+  }
+
+  /**
+   * Sets which columns are mapped to the report entity. The values of the other columns are
+   * returned as {@code null} by {@link #readNext()}, without being decoded.
+   *
+   * @param mappedColumns whether each column of the header is mapped, or {@code null} to return all
+   *     the values
+   */
+  public void setMappedColumns(boolean[] mappedColumns) {
+    this.mappedColumns = mappedColumns;
   }
-  
+
   /**
    * Get the column names of the CSV file, in the original order.
    */
   public String[] getColumnNames() {
     return columnNames;
   }
+
+  /**
+   * Closes the underlying CSV source.
+   */
+  @Override
+  public void close() throws IOException {
+    source.close();
+  }
 }
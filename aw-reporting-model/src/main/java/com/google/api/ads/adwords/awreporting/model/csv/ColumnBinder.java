@@ -0,0 +1,152 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import com.google.api.ads.adwords.awreporting.model.util.StringsUtil;
+import com.google.common.base.Throwables;
+import java.beans.PropertyDescriptor;
+import java.beans.PropertyEditor;
+import java.beans.PropertyEditorManager;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * Binds the value of one CSV column to the corresponding property of a report entity.
+ *
+ * <p>A binder resolves the property setter and the value conversion once, when the CSV header is
+ * processed. It holds no mutable state, so the same binder can be shared by all the threads that
+ * parse reports of the same type.
+ */
+final class ColumnBinder {
+  private static final MethodType SETTER_TYPE =
+      MethodType.methodType(void.class, Object.class, Object.class);
+
+  /** The conversions applied to the CSV values before calling the setter. */
+  private enum ValueType {
+    STRING,
+    LONG,
+    INTEGER,
+    MONEY,
+    OTHER
+  }
+
+  private final PropertyDescriptor property;
+  private final ValueType valueType;
+  private final MethodHandle setter;
+
+  private ColumnBinder(PropertyDescriptor property, ValueType valueType, MethodHandle setter) {
+    this.property = property;
+    this.valueType = valueType;
+    this.setter = setter;
+  }
+
+  /**
+   * Creates the binder for the given property.
+   *
+   * @param property the descriptor of the report entity property
+   * @param isMoneyField whether the property is annotated with @MoneyField
+   * @return the binder for the property
+   * @throws CsvReportParsingException if the property setter is not accessible
+   */
+  static ColumnBinder compile(PropertyDescriptor property, boolean isMoneyField)
+      throws CsvReportParsingException {
+    Method writeMethod = property.getWriteMethod();
+    if (writeMethod == null) {
+      throw new CsvReportParsingException("No setter found for property " + property.getName());
+    }
+
+    MethodHandle setter;
+    try {
+      setter = MethodHandles.publicLookup().unreflect(writeMethod).asType(SETTER_TYPE);
+    } catch (IllegalAccessException e) {
+      throw new CsvReportParsingException(
+          "Failed to access the setter of property " + property.getName(), e);
+    }
+
+    ValueType valueType = getValueType(property.getPropertyType(), isMoneyField);
+    return new ColumnBinder(property, valueType, setter);
+  }
+
+  private static ValueType getValueType(Class<?> propertyType, boolean isMoneyField) {
+    if (isMoneyField) {
+      return ValueType.MONEY;
+    } else if (String.class.isAssignableFrom(propertyType)) {
+      return ValueType.STRING;
+    } else if (Long.class.equals(propertyType)) {
+      return ValueType.LONG;
+    } else if (Integer.class.equals(propertyType)) {
+      return ValueType.INTEGER;
+    }
+    return ValueType.OTHER;
+  }
+
+  /**
+   * Converts the CSV value and sets it on the bean.
+   *
+   * @param bean the report entity
+   * @param value the CSV value of the column
+   * @param columnNumber the index of the column, used for error reporting
+   * @throws CsvReportParsingException error on converting or setting the value
+   */
+  void bind(Object bean, String value, int columnNumber) throws CsvReportParsingException {
+    try {
+      setter.invokeExact(bean, convert(value));
+    } catch (Throwable t) {
+      Throwables.throwIfInstanceOf(t, Error.class);
+      throw CsvValueParser.newParsingException(columnNumber, value, property.toString(), t);
+    }
+  }
+
+  private Object convert(String value) throws ReflectiveOperationException {
+    switch (valueType) {
+      case STRING:
+        return CsvValueParser.parseString(value);
+      case LONG:
+        return CsvValueParser.parseLong(value);
+      case INTEGER:
+        return CsvValueParser.parseInteger(value);
+      case MONEY:
+        return CsvValueParser.parseMoney(value);
+      default:
+        if (StringsUtil.isEmptyValue(value)) {
+          return convertWithEditor(null);
+        }
+        // Remove dashes inside a number format, as for the other numeric types.
+        return convertWithEditor(
+            Number.class.isAssignableFrom(property.getPropertyType())
+                ? StringsUtil.removeDashes(value)
+                : value);
+    }
+  }
+
+  /**
+   * Converts the value with the JavaBeans property editor of the property type, as the opencsv
+   * {@code CsvToBean} does. Property editors are stateful, so a new one is created for every call.
+   */
+  private Object convertWithEditor(String value) throws ReflectiveOperationException {
+    Class<?> editorClass = property.getPropertyEditorClass();
+    PropertyEditor editor =
+        editorClass != null
+            ? (PropertyEditor) editorClass.getDeclaredConstructor().newInstance()
+            : PropertyEditorManager.findEditor(property.getPropertyType());
+    if (editor == null) {
+      return value;
+    }
+    editor.setAsText(value);
+    return editor.getValue();
+  }
+}
@@ -0,0 +1,344 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits UTF-8 encoded CSV content into records and fields, working on the bytes of the source.
+ *
+ * <p>The fields follow RFC 4180 the same way as {@code CSVFormat.RFC4180} of commons-csv: fields
+ * are separated by commas, records by LF, CR or CRLF, and quoted fields may contain commas, line
+ * breaks and doubled quotes. Empty lines are returned as records with a single empty field.
+ *
+ * <p>The (unquoted) bytes of the fields of the current record are kept in a reusable buffer, along
+ * with the offsets of each field. Unquoted fields are copied in bulk, and a field is only decoded
+ * as UTF-8 if it contains non-ASCII bytes, which is rare in the reports. A tokenizer is not
+ * thread safe.
+ *
+ * <p>The content is read in windows from a {@link ByteWindowSource}, either from a stream through
+ * a reusable heap buffer, or from windows of a memory-mapped file.
+ */
+final class CsvByteTokenizer implements Closeable {
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+  private static final int EOF = -1;
+
+  private static final byte COMMA = ',';
+  private static final byte QUOTE = '"';
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+
+  /** How a field ended. */
+  private enum Terminator {
+    DELIMITER,
+    END_OF_LINE,
+    END_OF_FILE
+  }
+
+  private final ByteWindowSource source;
+  private ByteBuffer buffer = ByteBuffer.allocate(0);
+  private int position;
+  private int limit;
+
+  private byte[] recordBytes = new byte[1024];
+  private int recordLength;
+  private int[] fieldEnds = new int[64];
+  private boolean[] fieldNonAscii = new boolean[64];
+  private int fieldCount;
+  private boolean nonAscii;
+
+  /**
+   * @param inputStream the UTF-8 encoded CSV content
+   */
+  CsvByteTokenizer(InputStream inputStream) {
+    this(inputStream, DEFAULT_BUFFER_SIZE);
+  }
+
+  CsvByteTokenizer(InputStream inputStream, int bufferSize) {
+    this(new InputStreamSource(inputStream, bufferSize));
+  }
+
+  /**
+   * @param source the windows of UTF-8 encoded CSV content
+   */
+  CsvByteTokenizer(ByteWindowSource source) {
+    this.source = source;
+  }
+
+  /**
+   * Reads a whole line, without parsing it as CSV, as {@code BufferedReader.readLine()} does.
+   *
+   * @return the line, or {@code null} if the end of the content was reached
+   */
+  String readLine() throws IOException {
+    recordLength = 0;
+    int c = read();
+    if (c == EOF) {
+      return null;
+    }
+    while (c != EOF && c != LF && c != CR) {
+      append(c);
+      c = read();
+    }
+    if (c == CR && peek() == LF) {
+      position++;
+    }
+    return new String(recordBytes, 0, recordLength, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads the next record.
+   *
+   * @return whether a record was read, or {@code false} if the end of the content was reached
+   * @throws IOException error reading the content, or a malformed quoted field
+   */
+  boolean nextRecord() throws IOException {
+    recordLength = 0;
+    fieldCount = 0;
+
+    int c = read();
+    if (c == EOF) {
+      return false;
+    }
+    while (true) {
+      nonAscii = false;
+      Terminator terminator = c == QUOTE ? readQuotedField() : readSimpleField(c);
+      addField();
+      if (terminator != Terminator.DELIMITER) {
+        return true;
+      }
+      c = read();
+    }
+  }
+
+  /** Gets the number of fields of the current record. */
+  int getFieldCount() {
+    return fieldCount;
+  }
+
+  /** Decodes a field of the current record. */
+  String getField(int index) {
+    int start = index == 0 ? 0 : fieldEnds[index - 1];
+    int length = fieldEnds[index] - start;
+    // ASCII bytes map one to one to ISO-8859-1 characters, which is the cheapest decoding.
+    return new String(recordBytes, start, length,
+        fieldNonAscii[index] ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+  }
+
+  /** Decodes all the fields of the current record. */
+  String[] getFields() {
+    String[] fields = new String[fieldCount];
+    for (int i = 0; i < fieldCount; i++) {
+      fields[i] = getField(i);
+    }
+    return fields;
+  }
+
+  /**
+   * Reads an unquoted field, starting with the given byte. The bytes up to the next separator are
+   * copied in bulk from the read buffer.
+   */
+  private Terminator readSimpleField(int c) throws IOException {
+    Terminator terminator = getTerminator(c);
+    if (terminator != null) {
+      return terminator;
+    }
+    append(c);
+
+    while (true) {
+      if (position == limit && !fill()) {
+        return Terminator.END_OF_FILE;
+      }
+      int start = position;
+      int end = start;
+      byte b = 0;
+      while (end < limit) {
+        b = buffer.get(end);
+        if (b == COMMA || b == LF || b == CR) {
+          break;
+        }
+        nonAscii |= b < 0;
+        end++;
+      }
+      append(buffer, start, end - start);
+      position = end;
+      if (end < limit) {
+        position++;
+        return getTerminator(b);
+      }
+    }
+  }
+
+  /**
+   * Reads a quoted field, after its opening quote. Only whitespace is allowed between the closing
+   * quote and the next separator.
+   */
+  private Terminator readQuotedField() throws IOException {
+    while (true) {
+      int c = read();
+      if (c == QUOTE) {
+        if (peek() == QUOTE) {
+          position++;
+          append(QUOTE);
+          continue;
+        }
+        while (true) {
+          c = read();
+          Terminator terminator = getTerminator(c);
+          if (terminator != null) {
+            return terminator;
+          } else if (c >= 0x80 || !Character.isWhitespace((char) c)) {
+            throw new IOException("Invalid char between encapsulated token and delimiter");
+          }
+        }
+      } else if (c == EOF) {
+        throw new IOException("EOF reached before encapsulated token finished");
+      }
+      nonAscii |= c >= 0x80;
+      append(c);
+    }
+  }
+
+  /**
+   * Gets how a field ends at the given byte, consuming the LF of a CRLF.
+   *
+   * @return the terminator, or {@code null} if the byte is part of the field
+   */
+  private Terminator getTerminator(int c) throws IOException {
+    switch (c) {
+      case COMMA:
+        return Terminator.DELIMITER;
+      case CR:
+        if (peek() == LF) {
+          position++;
+        }
+        return Terminator.END_OF_LINE;
+      case LF:
+        return Terminator.END_OF_LINE;
+      case EOF:
+        return Terminator.END_OF_FILE;
+      default:
+        return null;
+    }
+  }
+
+  private void addField() {
+    if (fieldCount == fieldEnds.length) {
+      fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+      fieldNonAscii = Arrays.copyOf(fieldNonAscii, fieldCount * 2);
+    }
+    fieldEnds[fieldCount] = recordLength;
+    fieldNonAscii[fieldCount] = nonAscii;
+    fieldCount++;
+  }
+
+  private void append(int c) {
+    if (recordLength == recordBytes.length) {
+      recordBytes = Arrays.copyOf(recordBytes, recordLength * 2);
+    }
+    recordBytes[recordLength++] = (byte) c;
+  }
+
+  private void append(ByteBuffer bytes, int offset, int length) {
+    if (recordLength + length > recordBytes.length) {
+      recordBytes = Arrays.copyOf(recordBytes, Math.max(recordLength + length, recordLength * 2));
+    }
+    bytes.position(offset);
+    bytes.get(recordBytes, recordLength, length);
+    recordLength += length;
+  }
+
+  /** Reads the next byte, as an unsigned value, or {@link #EOF}. */
+  private int read() throws IOException {
+    if (position == limit && !fill()) {
+      return EOF;
+    }
+    return buffer.get(position++) & 0xFF;
+  }
+
+  /** Gets the next byte without consuming it. */
+  private int peek() throws IOException {
+    if (position == limit && !fill()) {
+      return EOF;
+    }
+    return buffer.get(position) & 0xFF;
+  }
+
+  /**
+   * Moves to the next window of the content, once all the bytes of the current one were consumed.
+   *
+   * @return whether any bytes were read
+   */
+  private boolean fill() throws IOException {
+    ByteBuffer window;
+    do {
+      window = source.nextWindow();
+    } while (window != null && !window.hasRemaining());
+    position = 0;
+    limit = 0;
+    if (window == null) {
+      return false;
+    }
+    buffer = window;
+    limit = window.limit();
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    source.close();
+  }
+
+  /**
+   * A source of the windows of content read by a tokenizer. Each window starts at position 0, and
+   * is only used until the next one is requested, so sources can reuse their buffers.
+   */
+  interface ByteWindowSource extends Closeable {
+
+    /**
+     * Gets the next window of the content.
+     *
+     * @return the window, or {@code null} if the end of the content was reached
+     */
+    ByteBuffer nextWindow() throws IOException;
+  }
+
+  /** Reads the content from a stream into a reusable heap buffer. */
+  private static final class InputStreamSource implements ByteWindowSource {
+    private final InputStream inputStream;
+    private final byte[] bytes;
+
+    InputStreamSource(InputStream inputStream, int bufferSize) {
+      this.inputStream = inputStream;
+      this.bytes = new byte[bufferSize];
+    }
+
+    @Override
+    public ByteBuffer nextWindow() throws IOException {
+      int count = inputStream.read(bytes, 0, bytes.length);
+      return count < 0 ? null : ByteBuffer.wrap(bytes, 0, count);
+    }
+
+    @Override
+    public void close() throws IOException {
+      inputStream.close();
+    }
+  }
+}
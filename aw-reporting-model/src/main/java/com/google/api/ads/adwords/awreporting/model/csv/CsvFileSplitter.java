@@ -0,0 +1,167 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Longs;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a CSV file into byte ranges that start and end at record boundaries, so that the ranges
+ * can be parsed concurrently.
+ *
+ * <p>Finding the boundaries requires a sequential scan of the file, which tracks whether each byte
+ * is inside a quoted field with the same rules as {@link CsvByteTokenizer}. Line breaks inside
+ * quoted fields are therefore never taken as boundaries. The scan does not decode or copy any
+ * bytes, so it is much cheaper than parsing the file.
+ */
+public final class CsvFileSplitter {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The state of the scan, at the current byte. */
+  private enum State {
+    FIELD_START,
+    SIMPLE_FIELD,
+    QUOTED_FIELD,
+    QUOTE_IN_QUOTED_FIELD
+  }
+
+  private CsvFileSplitter() {}
+
+  /**
+   * Splits the records of the file into byte ranges of similar size.
+   *
+   * @param file the CSV file
+   * @param skippedLines the number of lines before the records, such as the report title and the
+   *     header lines
+   * @param minChunkSize the minimum size of each range, in bytes
+   * @param maxChunks the maximum number of ranges
+   * @return the boundaries of the ranges: range {@code i} starts at offset {@code boundaries[i]} and
+   *     ends before offset {@code boundaries[i + 1]}
+   * @throws IOException error reading the file
+   */
+  public static long[] split(File file, int skippedLines, long minChunkSize, int maxChunks)
+      throws IOException {
+    Preconditions.checkArgument(minChunkSize > 0, "minChunkSize must be > 0");
+    Preconditions.checkArgument(maxChunks > 0, "maxChunks must be > 0");
+
+    long fileSize = file.length();
+    try (InputStream inputStream = new FileInputStream(file)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int limit = 0;
+      int position = 0;
+      long offset = 0;
+
+      // Skips the lines as BufferedReader.readLine() does.
+      for (int line = 0; line < skippedLines; line++) {
+        boolean lineEnded = false;
+        while (!lineEnded) {
+          if (position == limit) {
+            offset += limit;
+            limit = Math.max(inputStream.read(buffer), 0);
+            position = 0;
+            if (limit == 0) {
+              return new long[] {fileSize, fileSize};
+            }
+          }
+          byte b = buffer[position++];
+          if (b == '\n') {
+            lineEnded = true;
+          } else if (b == '\r') {
+            lineEnded = true;
+            if (position == limit) {
+              offset += limit;
+              limit = Math.max(inputStream.read(buffer), 0);
+              position = 0;
+            }
+            if (position < limit && buffer[position] == '\n') {
+              position++;
+            }
+          }
+        }
+      }
+
+      long dataStart = offset + position;
+      long dataSize = fileSize - dataStart;
+      int chunks = (int) Math.max(1, Math.min(maxChunks, dataSize / minChunkSize));
+      List<Long> boundaries = new ArrayList<Long>();
+      boundaries.add(dataStart);
+      if (chunks == 1) {
+        boundaries.add(fileSize);
+        return Longs.toArray(boundaries);
+      }
+
+      long nextTarget = dataStart + dataSize / chunks;
+      State state = State.FIELD_START;
+      while (true) {
+        for (; position < limit; position++) {
+          byte b = buffer[position];
+          switch (state) {
+            case QUOTED_FIELD:
+              if (b == '"') {
+                state = State.QUOTE_IN_QUOTED_FIELD;
+              }
+              continue;
+            case QUOTE_IN_QUOTED_FIELD:
+              if (b == '"') {
+                state = State.QUOTED_FIELD;
+                continue;
+              }
+              break;
+            case FIELD_START:
+              if (b == '"') {
+                state = State.QUOTED_FIELD;
+                continue;
+              }
+              break;
+            default:
+              break;
+          }
+
+          if (b == ',') {
+            state = State.FIELD_START;
+          } else if (b == '\n' || b == '\r') {
+            state = State.FIELD_START;
+            long recordEnd = offset + position + 1;
+            // Only splits after LF, so that the LF of a CRLF is never left at a range start.
+            if (b == '\n' && recordEnd >= nextTarget && recordEnd < fileSize) {
+              boundaries.add(recordEnd);
+              if (boundaries.size() == chunks) {
+                boundaries.add(fileSize);
+                return Longs.toArray(boundaries);
+              }
+              nextTarget = dataStart + dataSize * boundaries.size() / chunks;
+            }
+          } else {
+            state = State.SIMPLE_FIELD;
+          }
+        }
+
+        offset += limit;
+        limit = inputStream.read(buffer);
+        position = 0;
+        if (limit <= 0) {
+          boundaries.add(fileSize);
+          return Longs.toArray(boundaries);
+        }
+      }
+    }
+  }
+}
@@ -44,6 +44,9 @@ import org.springframework.util.SystemPropertyUtils;
  *
  * Note: only one bean per report type is allowed. If a second mapping is found, the first one will
  * be overwritten.
+ *
+ * <p>The mapping can be restricted to the report types of a run (see {@link #setReportTypes}), in
+ * which case the classes of the other reports are not loaded.
  */
 public class CsvReportEntitiesMapping {
   private final String packageToScan;
@@ -62,6 +65,9 @@ public class CsvReportEntitiesMapping {
   // The set of report type names that don't support date range.
   private final Set<ReportDefinitionReportType> nonDateRangeReports = Sets.newHashSet();
 
+  // The names of the report types to map, or empty to map all of them.
+  private final Set<String> reportTypes = Sets.newHashSet();
+
   private static final Logger logger =
       Logger.getLogger(CsvReportEntitiesMapping.class.getCanonicalName());
 
@@ -72,6 +78,17 @@ public class CsvReportEntitiesMapping {
     this.packageToScan = packageToScan;
   }
 
+  /**
+   * Restricts the mapping to the given report types. By default all the reports are mapped.
+   *
+   * @param reportTypes the names of the {@code ReportDefinitionReportType}s, or of the file only
+   *     report types, to map. Empty to map all the reports.
+   */
+  public void setReportTypes(String[] reportTypes) {
+    this.reportTypes.clear();
+    this.reportTypes.addAll(Arrays.asList(reportTypes));
+  }
+
   /**
    * Initializes the report type definition map.
    *
@@ -145,6 +162,18 @@ public class CsvReportEntitiesMapping {
     return experimentalReportsDefinitionMap.get(reportTypeName);
   }
 
+  /**
+   * Retrieves the bean classes of all the reports, including the experimental ones.
+   *
+   * @return the classes of the beans that represent the report data.
+   */
+  public Set<Class<? extends Report>> getReportBeanClasses() {
+    Set<Class<? extends Report>> reportBeanClasses = Sets.newLinkedHashSet();
+    reportBeanClasses.addAll(reportDefinitionMap.values());
+    reportBeanClasses.addAll(experimentalReportsDefinitionMap.values());
+    return reportBeanClasses;
+  }
+
   /**
    * Retrieves the properties that should be selected in the report.
    *
@@ -262,10 +291,12 @@ public class CsvReportEntitiesMapping {
     if (resource.isReadable()) {
       MetadataReader metadataReader = metadataReaderFactory.getMetadataReader(resource);
       
-      if (isAnnotationPresentAndReportSubclass(metadataReader)) {
+      if (isMappedReport(metadataReader)) {
         String reportClassName = metadataReader.getClassMetadata().getClassName();
-        Class<? extends Report> candidate = Class.forName(reportClassName).asSubclass(Report.class);
-        candidates.add(candidate);
+        Class<?> beanClass = Class.forName(reportClassName);
+        if (isSubclass(beanClass, Report.class)) {
+          candidates.add(beanClass.asSubclass(Report.class));
+        }
       }
     }
   }
@@ -282,23 +313,25 @@ public class CsvReportEntitiesMapping {
   }
 
   /**
-   * Checks for the annotation that maps the bean to a CSV file report.
+   * Checks for the annotation that maps the bean to a CSV file report, and whether its report type
+   * is mapped. The annotation is read from the class file, without loading the class.
    *
    * @param metadataReader the meta data reader for the bean class.
-   * @return true if the {@code CsvReport} annotation is present and the bean class is a sub class
-   *         of {@code Report}.
+   * @return true if the {@code CsvReport} annotation is present, and its report type is mapped.
    */
-  private boolean isAnnotationPresentAndReportSubclass(MetadataReader metadataReader) {
-    String className = metadataReader.getClassMetadata().getClassName();
-    try {
-      Class<?> beanClass = Class.forName(className);
-      if (beanClass.getAnnotation(CsvReport.class) != null && isSubclass(beanClass, Report.class)) {
-        return true;
-      }
-    } catch (ClassNotFoundException e) {
-      logger.warning("Class not found in classpath: " + className);
+  private boolean isMappedReport(MetadataReader metadataReader) {
+    Map<String, Object> attributes =
+        metadataReader.getAnnotationMetadata().getAnnotationAttributes(CsvReport.class.getName());
+    if (attributes == null) {
+      return false;
+    } else if (reportTypes.isEmpty()) {
+      return true;
     }
-    return false;
+    String reportType = String.valueOf(attributes.get("value"));
+    if (ReportDefinitionReportType.UNKNOWN.name().equals(reportType)) {
+      reportType = String.valueOf(attributes.get("fileOnlyReportType"));
+    }
+    return reportTypes.contains(reportType);
   }
 
   /**
@@ -0,0 +1,55 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+
+/**
+ * Decodes the CSV rows of a report into report entities without reflection.
+ *
+ * <p>Implementations are generated at build time for each class annotated with
+ * {@link com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvReport}, and are named after
+ * the entity class with the {@value #CLASS_NAME_SUFFIX} suffix. Decoders are stateless and can be
+ * shared by all threads.
+ *
+ * @param <T> type of sub Report.
+ */
+public interface CsvRowDecoder<T extends Report> {
+
+  /** The suffix appended to the name of the entity class to get the name of its decoder. */
+  String CLASS_NAME_SUFFIX = "CsvDecoder";
+
+  /** The column plan entry of a column that is skipped when decoding. */
+  int SKIP_COLUMN = -1;
+
+  /**
+   * Gets the index of the entity property mapped to the given CSV column name.
+   *
+   * @param csvFieldName the name of the column in the CSV file
+   * @return the property index, or -1 if the column is not mapped
+   */
+  int getPropertyIndex(String csvFieldName);
+
+  /**
+   * Creates a single entity from a line from the CSV file.
+   *
+   * @param line array of Strings from the CSV file
+   * @param columnPlan the property index of each column, as returned by
+   *     {@link #getPropertyIndex(String)}, or {@link #SKIP_COLUMN} for the columns to skip
+   * @return the entity containing the values
+   * @throws CsvReportParsingException error on parsing the line
+   */
+  T decode(String[] line, int[] columnPlan) throws CsvReportParsingException;
+}
@@ -0,0 +1,90 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import com.google.api.ads.adwords.awreporting.model.util.BigDecimalUtil;
+import com.google.api.ads.adwords.awreporting.model.util.StringsUtil;
+import java.math.BigDecimal;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+/**
+ * Converts the CSV values of the reports into the types of the report entity properties.
+ *
+ * <p>These conversions are shared by the {@link ColumnBinder}s and the generated
+ * {@link CsvRowDecoder}s, so both paths produce the same entities. Empty values ({@code null}, empty
+ * or "--") are always converted to {@code null}.
+ */
+public final class CsvValueParser {
+  private static final Logger logger = Logger.getLogger(CsvValueParser.class.getCanonicalName());
+
+  private CsvValueParser() {}
+
+  /**
+   * Parses the value of a {@code String} property, removing leading and trailing spaces.
+   */
+  public static String parseString(@Nullable String value) {
+    return StringsUtil.isEmptyValue(value) ? null : value.trim();
+  }
+
+  /**
+   * Parses the value of a {@code Long} property. Dashes inside the number, such as for CID
+   * "xxx-xxx-xxxx", are removed.
+   */
+  public static Long parseLong(@Nullable String value) {
+    return StringsUtil.isEmptyValue(value) ? null : Long.decode(StringsUtil.removeDashes(value));
+  }
+
+  /**
+   * Parses the value of an {@code Integer} property. Dashes inside the number are removed.
+   */
+  public static Integer parseInteger(@Nullable String value) {
+    return StringsUtil.isEmptyValue(value)
+        ? null
+        : Integer.decode(StringsUtil.removeDashes(value));
+  }
+
+  /**
+   * Parses the value of a property annotated with @MoneyField, converting the micros amount to a
+   * regular decimal.
+   */
+  public static BigDecimal parseMoney(@Nullable String value) {
+    if (StringsUtil.isEmptyValue(value)) {
+      return null;
+    }
+    // Money amounts rarely contain dashes, so skip the regular expression when possible.
+    return BigDecimalUtil.parseFromMoneyString(
+        value.indexOf('-') < 0 ? value : StringsUtil.removeDashes(value));
+  }
+
+  /**
+   * Creates (and logs) the exception for a value that could not be converted or set.
+   *
+   * @param columnNumber the index of the column in the CSV file
+   * @param value the CSV value of the column
+   * @param property the description of the target property
+   * @param cause the conversion error
+   * @return the exception to be thrown
+   */
+  public static CsvReportParsingException newParsingException(
+      int columnNumber, @Nullable String value, String property, Throwable cause) {
+    String errorMsg =
+        String.format(
+            "Error parsing column #%d with contents: %s, and property descriptor: %s.",
+            columnNumber, value, property);
+    logger.severe(errorMsg);
+    return new CsvReportParsingException(errorMsg, cause);
+  }
+}
@@ -0,0 +1,71 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a range of a file as successive memory-mapped windows, so that the tokenizer reads the
+ * bytes of the page cache directly, without read calls or copies into a heap buffer.
+ *
+ * <p>A single mapping can not exceed 2 GB, hence the windows. The mappings are released by the
+ * garbage collector once the tokenizer moved to the next window.
+ */
+final class MappedFileSource implements CsvByteTokenizer.ByteWindowSource {
+  static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+  private final RandomAccessFile randomAccessFile;
+  private final FileChannel channel;
+  private final long end;
+  private final int windowSize;
+  private long offset;
+
+  /**
+   * @param file the file to read
+   * @param start the offset of the first byte to read
+   * @param end the offset after the last byte to read
+   * @param windowSize the maximum size of each mapped window
+   */
+  MappedFileSource(File file, long start, long end, int windowSize) throws IOException {
+    Preconditions.checkArgument(start <= end, "start must not be after end");
+    Preconditions.checkArgument(windowSize > 0, "windowSize must be > 0");
+    this.randomAccessFile = new RandomAccessFile(file, "r");
+    this.channel = randomAccessFile.getChannel();
+    this.offset = start;
+    this.end = end;
+    this.windowSize = windowSize;
+  }
+
+  @Override
+  public ByteBuffer nextWindow() throws IOException {
+    if (offset >= end) {
+      return null;
+    }
+    long size = Math.min(windowSize, end - offset);
+    ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+    offset += size;
+    return window;
+  }
+
+  @Override
+  public void close() throws IOException {
+    randomAccessFile.close();
+  }
+}
@@ -16,21 +16,34 @@ package com.google.api.ads.adwords.awreporting.model.csv;
 
 import com.opencsv.bean.CsvToBean;
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
-import com.google.api.ads.adwords.awreporting.model.util.BigDecimalUtil;
-import com.google.api.ads.adwords.awreporting.model.util.StringsUtil;
-import java.beans.PropertyDescriptor;
-import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.util.logging.Logger;
 
 /**
  * Modified CSV to Bean converter to handle the different number formats from the reports.
  *
+ * <p>Lines are decoded by the {@link CsvRowDecoder} generated for the report entity when possible.
+ * Otherwise, each value is converted and set through the {@link ColumnBinder} compiled for its
+ * column by the {@link ReportEntityMappingStrategy}.
+ *
+ * <p>The values of the columns marked as low cardinality are first replaced by their shared
+ * instances in the {@link StringDictionary} of this converter, if any.
+ *
  * @param <T> type of sub Report.
  */
 public class ModifiedCsvToBean<T extends Report> extends CsvToBean<T> {
-  private static final Logger logger =
-      Logger.getLogger(ModifiedCsvToBean.class.getCanonicalName());
+
+  private final StringDictionary dictionary;
+
+  public ModifiedCsvToBean() {
+    this(null);
+  }
+
+  /**
+   * @param dictionary the dictionary shared by the converters of the same run, or {@code null} to
+   *     keep the values as read.
+   */
+  public ModifiedCsvToBean(StringDictionary dictionary) {
+    this.dictionary = dictionary;
+  }
 
   /**
    * Parses the CSV lazily, letting the client class decide when getting new elements.
@@ -43,12 +56,11 @@ public class ModifiedCsvToBean<T extends Report> extends CsvToBean<T> {
   public CsvParserIterator<T> lazyParse(
       ReportEntityMappingStrategy<T> mapper, AwReportCsvReader csvReader)
       throws CsvReportParsingException {
-    try {
-      mapper.processHeader(csvReader.getColumnNames());
-      return new CsvParserIterator<T>(mapper, csvReader, this);
-    } catch (IOException e) {
-      throw new CsvReportParsingException("Error parsing CSV: failed to read the header line.", e);
+    mapper.processHeader(csvReader.getColumnNames());
+    if (mapper.hasSkippedColumns()) {
+      csvReader.setMappedColumns(mapper.getMappedColumns());
     }
+    return new CsvParserIterator<T>(mapper, csvReader, this);
   }
 
   /**
@@ -61,65 +73,31 @@ public class ModifiedCsvToBean<T extends Report> extends CsvToBean<T> {
    */
   protected T processLine(ReportEntityMappingStrategy<T> mapper, String[] line)
       throws CsvReportParsingException {
-    T bean = mapper.createBean();
-
-    for (int col = 0; col < line.length; col++) {
-      PropertyDescriptor prop = mapper.findDescriptor(col); // Return value is not null.
-      String value = line[col];
-
-      if (StringsUtil.isEmptyValue(value)) {
-        value = null;
-      } else {
-        value = trimIfPossible(value, prop);
-
-        // Remove dashes inside a number format (such as for CID "xxx-xxx-xxxx").
-        if (isNumberTypeProperty(prop)) {
-          value = StringsUtil.removeDashes(value);
+    if (dictionary != null) {
+      for (int col : mapper.getLowCardinalityColumns()) {
+        if (col < line.length) {
+          line[col] = dictionary.intern(line[col]);
         }
       }
+    }
 
-      try {
-        Object obj = convertValue(value, prop);
+    if (mapper.hasSkippedColumns()) {
+      mapper.countSkippedValues(line);
+    }
 
-        // Convert Money values to regular Decimals by dividing by a Million
-        if (mapper.isMoneyField(prop.getName())) {
-          obj = BigDecimalUtil.parseFromMoneyString((String) obj);
-        }
+    T bean = mapper.decode(line);
+    if (bean != null) {
+      return bean;
+    }
 
-        prop.getWriteMethod().invoke(bean, obj);
-      } catch (InstantiationException
-          | IllegalAccessException
-          | IllegalArgumentException
-          | InvocationTargetException e) {
-        String errorMsg =
-            String.format(
-                "Error parsing column #%d with contents: %s, and property descriptor: %s.",
-                col, value, prop.toString());
-        logger.severe(errorMsg);
-        throw new CsvReportParsingException(errorMsg, e);
+    bean = mapper.createBean();
+    for (int col = 0; col < line.length; col++) {
+      ColumnBinder binder = mapper.findBinder(col);
+      if (binder != null) {
+        binder.bind(bean, line[col], col);
       }
     }
 
     return bean;
   }
-
-  /**
-   * Trims the property if it is of type String.
-   *
-   * @param stringValue the string value of the property.
-   * @param propertyDescriptor the property descriptor.
-   * @return the property value trimmed.
-   */
-  private static String trimIfPossible(
-      String stringValue, PropertyDescriptor propertyDescriptor) {
-    return isStringTypeProperty(propertyDescriptor) ? stringValue.trim() : stringValue;
-  }
-
-  private static boolean isStringTypeProperty(PropertyDescriptor propertyDescriptor) {
-    return String.class.isAssignableFrom(propertyDescriptor.getPropertyType());
-  }
-
-  private static boolean isNumberTypeProperty(PropertyDescriptor propertyDescriptor) {
-    return Number.class.isAssignableFrom(propertyDescriptor.getPropertyType());
-  }
 }
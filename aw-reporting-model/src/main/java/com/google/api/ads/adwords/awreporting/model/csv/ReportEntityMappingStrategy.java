@@ -18,15 +18,22 @@ import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvField;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.MoneyField;
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
-import java.io.IOException;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * This class describes the mapping strategy to convert CSV files into corresponding report entity
@@ -49,99 +56,266 @@ import java.util.Set;
  * <p>The example uses a {@link AwReportCsvReader} in order to parse the CSV files from the AdWords
  * reporting API.
  *
+ * <p>The annotation scan of each report entity class, and the {@link ColumnBinder}s compiled for
+ * each distinct CSV header of that class, are cached and shared by all the instances of this
+ * class. Each instance only holds the binders of the header it processed, so a single instance
+ * must not be shared by threads parsing different files.
+ *
+ * <p>When the build generated a {@link CsvRowDecoder} for the report entity class, and the decoder
+ * maps all the columns of the header, the rows are decoded by it and no binders are compiled.
+ *
+ * <p>By default, a header column without a {@link CsvField} mapping fails the parsing of the rows.
+ * In lenient mode, these columns are skipped instead, and the number of values skipped for each of
+ * them is counted.
+ *
  * @param <T> type of sub Report.
  */
 public class ReportEntityMappingStrategy<T extends Report> {
+  private static final ConcurrentMap<Class<?>, EntityMapping> entityMappings =
+      new ConcurrentHashMap<Class<?>, EntityMapping>();
+
   private Class<T> reportEntityClass;
-  private final Map<Integer, String> csvIndexToReportNames = new HashMap<Integer, String>();
-  private final Set<String> fieldsWithMoneyValues = new HashSet<String>();
+  private final boolean lenient;
+  private final EntityMapping entityMapping;
+  private final CsvRowDecoder<T> rowDecoder;
+  private Constructor<T> constructor;
+  private ColumnBinder[] columnBinders;
+  private int[] columnPlan;
+  private int[] lowCardinalityColumns;
+  private int[] skippedColumns;
+  private long[] skippedValueCounts;
+  private final Map<String, Long> skippedColumnCounts = new HashMap<String, Long>();
+  private List<String> header;
 
   /**
    * @param reportEntityClass the {@code class} of the report entity POJO. This parameter is
    *        obligatory.
    */
   public ReportEntityMappingStrategy(Class<T> reportEntityClass) {
+    this(reportEntityClass, false);
+  }
+
+  /**
+   * @param reportEntityClass the {@code class} of the report entity POJO. This parameter is
+   *        obligatory.
+   * @param lenient whether to skip the header columns that are not mapped to the report entity,
+   *        instead of failing.
+   */
+  public ReportEntityMappingStrategy(Class<T> reportEntityClass, boolean lenient) {
     this.reportEntityClass =
         Preconditions.checkNotNull(reportEntityClass, "The report entity class must be specified.");
-    this.reportEntityClass = reportEntityClass;
+    this.lenient = lenient;
+    this.entityMapping = getEntityMapping(reportEntityClass);
+
+    @SuppressWarnings("unchecked")
+    CsvRowDecoder<T> rowDecoder = (CsvRowDecoder<T>) entityMapping.rowDecoder;
+    this.rowDecoder = rowDecoder;
+  }
+
+  /**
+   * Gets the cached mapping of the given report entity class, scanning the class on first use.
+   */
+  private static EntityMapping getEntityMapping(Class<?> reportEntityClass) {
+    EntityMapping entityMapping = entityMappings.get(reportEntityClass);
+    if (entityMapping == null) {
+      entityMapping = new EntityMapping(reportEntityClass);
+      EntityMapping previous = entityMappings.putIfAbsent(reportEntityClass, entityMapping);
+      if (previous != null) {
+        entityMapping = previous;
+      }
+    }
+    return entityMapping;
   }
 
   /**
    * Process the header of the CSV file.
    *
-   * This method scans the class of the bean for the proper annotations, and associates the correct
-   * column index to the correct field.
+   * This method associates the correct column index to the correct field. If the generated decoder
+   * of the report entity class can not map all the columns, the {@link ColumnBinder} of each mapped
+   * column is compiled. Headers already seen for the same report entity class reuse the cached
+   * binders.
+   *
+   * <p>In lenient mode, the columns that are not mapped are resolved as skipped.
    *
    * @param header the list of column names
+   * @throws CsvReportParsingException if the binder of a mapped column could not be created
    */
-  public void processHeader(String[] header) throws IOException {
-    Map<String, String> nameMapping = createNameMapping();
-    for (int i = 0; i < header.length; i++) {
-      csvIndexToReportNames.put(i, nameMapping.get(header[i]));
+  public void processHeader(String[] header) throws CsvReportParsingException {
+    flushSkippedValueCounts();
+    this.header = ImmutableList.copyOf(header);
+    columnBinders = null;
+    lowCardinalityColumns = findLowCardinalityColumns(header);
+    skippedColumns = lenient ? findSkippedColumns(header) : new int[0];
+    skippedValueCounts = new long[skippedColumns.length];
+    columnPlan = createColumnPlan(header);
+    if (columnPlan == null) {
+      compileColumnBinders();
     }
   }
 
   /**
-   * Creates the {@code Map} where the key is the name of the property in the CSV file, and the
-   * value is the name of the field in the Java bean.
+   * Creates the decoder property index of each column.
    *
-   * @return the {@code Map} of the properties for the bean class.
+   * @return the column plan, or {@code null} if there is no decoder or a column is not mapped
+   *     (unless in lenient mode, where the column is planned as {@link CsvRowDecoder#SKIP_COLUMN})
    */
-  private Map<String, String> createNameMapping() {
-    Map<String, String> nameMapping = new HashMap<String, String>();
-    Class<?> currentClass = reportEntityClass;
+  private int[] createColumnPlan(String[] header) {
+    if (rowDecoder == null) {
+      return null;
+    }
+
+    int[] plan = new int[header.length];
+    for (int i = 0; i < header.length; i++) {
+      plan[i] = rowDecoder.getPropertyIndex(header[i]);
+      if (plan[i] < 0) {
+        if (!lenient) {
+          return null;
+        }
+        plan[i] = CsvRowDecoder.SKIP_COLUMN;
+      }
+    }
+    return plan;
+  }
 
-    while (currentClass != Object.class) {
-      addNameMappingForDeclaredFields(nameMapping, currentClass);
-      currentClass = currentClass.getSuperclass();
+  private int[] findLowCardinalityColumns(String[] header) {
+    int count = 0;
+    int[] columns = new int[header.length];
+    for (int i = 0; i < header.length; i++) {
+      if (entityMapping.lowCardinalityColumns.contains(header[i])) {
+        columns[count++] = i;
+      }
     }
+    return Arrays.copyOf(columns, count);
+  }
 
-    return nameMapping;
+  private int[] findSkippedColumns(String[] header) {
+    int count = 0;
+    int[] columns = new int[header.length];
+    for (int i = 0; i < header.length; i++) {
+      if (!entityMapping.nameMapping.containsKey(header[i])) {
+        columns[count++] = i;
+      }
+    }
+    return Arrays.copyOf(columns, count);
   }
 
   /**
-   * Scans the current class' fields for the mapped properties, and associate then to the CSV file
-   * columns.
-   *
-   * @param nameMapping the map to be filled.
-   * @param currentClass the class to be scanned.
+   * Gets which columns of the header are mapped to the report entity. In lenient mode, the values
+   * of the other columns are not needed.
+   */
+  boolean[] getMappedColumns() {
+    boolean[] mappedColumns = new boolean[header.size()];
+    Arrays.fill(mappedColumns, true);
+    for (int col : skippedColumns) {
+      mappedColumns[col] = false;
+    }
+    return mappedColumns;
+  }
+
+  /**
+   * Whether the header has columns that are skipped in lenient mode.
    */
-  private void addNameMappingForDeclaredFields(Map<String, String> nameMapping,
-      Class<?> currentClass) {
-    Field[] declaredFields = currentClass.getDeclaredFields();
+  boolean hasSkippedColumns() {
+    return skippedColumns.length > 0;
+  }
 
-    for (Field field : declaredFields) {
-      addNameMappingIfAnnotationPresent(nameMapping, field);
-      addMoneyMappingIfAnnotationPresent(field);
+  /**
+   * Counts the values of a line that are skipped in lenient mode.
+   */
+  void countSkippedValues(String[] line) {
+    for (int i = 0; i < skippedColumns.length; i++) {
+      if (skippedColumns[i] < line.length) {
+        skippedValueCounts[i]++;
+      }
     }
   }
 
   /**
-   * Checks for the annotation, and if the annotation is present, creates the association between
-   * the CSV property and the field.
-   *
-   * @param nameMapping the map that is being filled.
-   * @param field the current field.
+   * Gets the number of values skipped for each column that is not mapped to the report entity, by
+   * column name. Only lenient mode skips columns.
+   */
+  public Map<String, Long> getSkippedColumnCounts() {
+    flushSkippedValueCounts();
+    return ImmutableMap.copyOf(skippedColumnCounts);
+  }
+
+  /**
+   * Adds the skipped values counted by another mapping strategy, such as one that parsed another
+   * part of the same report.
+   */
+  public void addSkippedColumnCounts(ReportEntityMappingStrategy<?> other) {
+    for (Map.Entry<String, Long> entry : other.getSkippedColumnCounts().entrySet()) {
+      Long count = skippedColumnCounts.get(entry.getKey());
+      skippedColumnCounts.put(entry.getKey(), (count == null ? 0L : count) + entry.getValue());
+    }
+  }
+
+  /**
+   * Creates a new mapping strategy for the same report entity class and mode, to parse another
+   * part of the same report in a different thread.
+   */
+  public ReportEntityMappingStrategy<T> newInstance() {
+    return new ReportEntityMappingStrategy<T>(reportEntityClass, lenient);
+  }
+
+  /**
+   * Gets the {@code class} of the report entity POJO.
+   */
+  public Class<T> getReportEntityClass() {
+    return reportEntityClass;
+  }
+
+  private void flushSkippedValueCounts() {
+    if (skippedColumns == null) {
+      return;
+    }
+    for (int i = 0; i < skippedColumns.length; i++) {
+      if (skippedValueCounts[i] > 0) {
+        String column = header.get(skippedColumns[i]);
+        Long count = skippedColumnCounts.get(column);
+        skippedColumnCounts.put(column, (count == null ? 0L : count) + skippedValueCounts[i]);
+        skippedValueCounts[i] = 0;
+      }
+    }
+  }
+
+  /**
+   * Gets the indexes of the columns marked as {@link CsvField#lowCardinality()} in the header.
    */
-  private void addNameMappingIfAnnotationPresent(Map<String, String> nameMapping, Field field) {
-    if (field.isAnnotationPresent(CsvField.class)) {
-      CsvField reportFieldAnnotation = field.getAnnotation(CsvField.class);
-      String csvFieldName = reportFieldAnnotation.value();
-      nameMapping.put(csvFieldName, field.getName());
+  int[] getLowCardinalityColumns() {
+    return lowCardinalityColumns;
+  }
+
+  private void compileColumnBinders() throws CsvReportParsingException {
+    ColumnBinder[] binders = entityMapping.columnBinders.get(header);
+    if (binders == null) {
+      binders = new ColumnBinder[header.size()];
+      for (int i = 0; i < binders.length; i++) {
+        String propertyName = entityMapping.nameMapping.get(header.get(i));
+        if (propertyName != null) {
+          binders[i] =
+              ColumnBinder.compile(createDescriptor(propertyName), isMoneyField(propertyName));
+        }
+      }
+      // Concurrent headers may compile the same binders twice, which is harmless.
+      entityMapping.columnBinders.putIfAbsent(header, binders);
     }
+    columnBinders = binders;
   }
 
   /**
-   * Checks for the @MoneyField annotation, and if the annotation is present, puts a true value at
-   * fieldsWithMoneyValues, this value will be used when parsing CSV to use BigDecimal and divide
-   * by 1M.
+   * Creates a single object from a line from the CSV file with the generated decoder.
    *
-   * @param field the current field.
+   * @param line array of Strings from the CSV file
+   * @return the object containing the values, or {@code null} if the line can not be decoded by a
+   *     generated decoder and must be mapped with the column binders
+   * @throws CsvReportParsingException error on parsing the line
    */
-  private void addMoneyMappingIfAnnotationPresent(Field field) {
-    if (field.isAnnotationPresent(MoneyField.class)) {
-      fieldsWithMoneyValues.add(field.getName());
+  T decode(String[] line) throws CsvReportParsingException {
+    if (columnPlan == null || line.length > columnPlan.length) {
+      return null;
     }
+    return rowDecoder.decode(line, columnPlan);
   }
 
   /**
@@ -152,7 +326,10 @@ public class ReportEntityMappingStrategy<T extends Report> {
    */
   public T createBean() throws CsvReportParsingException {
     try {
-      return reportEntityClass.getConstructor().newInstance();
+      if (constructor == null) {
+        constructor = reportEntityClass.getConstructor();
+      }
+      return constructor.newInstance();
     } catch (NoSuchMethodException
         | SecurityException
         | InstantiationException
@@ -164,18 +341,46 @@ public class ReportEntityMappingStrategy<T extends Report> {
     }
   }
 
+  /**
+   * Find the binder of the given column index.
+   *
+   * <p>The binders were compiled when the CSV header was captured.
+   *
+   * @return the binder, or {@code null} if the column is skipped in lenient mode
+   */
+  ColumnBinder findBinder(int columnNumber) throws CsvReportParsingException {
+    if (columnBinders == null) {
+      compileColumnBinders();
+    }
+
+    ColumnBinder binder =
+        columnNumber < columnBinders.length ? columnBinders[columnNumber] : null;
+    if (binder == null && !lenient) {
+      throw new CsvReportParsingException(
+          "Invalid column number " + columnNumber + " in header " + header);
+    }
+    return binder;
+  }
+
   /**
    * Find the property descriptor that is referenced by the given column index.
    *
    * <p>The mapping between the indexes and the field were created when the CSV header was captured.
    */
   public PropertyDescriptor findDescriptor(int columnNumber) throws CsvReportParsingException {
-    String propertyName = csvIndexToReportNames.get(columnNumber);
+    String propertyName = null;
+    if (columnNumber < header.size()) {
+      propertyName = entityMapping.nameMapping.get(header.get(columnNumber));
+    }
     if (propertyName == null) {
       throw new CsvReportParsingException(
-          "Invalid column number " + columnNumber + " in map " + csvIndexToReportNames);
+          "Invalid column number " + columnNumber + " in header " + header);
     }
+    return createDescriptor(propertyName);
+  }
 
+  private PropertyDescriptor createDescriptor(String propertyName)
+      throws CsvReportParsingException {
     try {
       return new PropertyDescriptor(propertyName, reportEntityClass);
     } catch (IntrospectionException e) {
@@ -189,6 +394,107 @@ public class ReportEntityMappingStrategy<T extends Report> {
    * this value will be used when parsing CSV to use BigDecimal and divide by 1M.
    */
   public boolean isMoneyField(String field) {
-    return fieldsWithMoneyValues.contains(field);
+    return entityMapping.fieldsWithMoneyValues.contains(field);
+  }
+
+  /**
+   * The annotation mapping of a report entity class, its generated decoder, and the binders
+   * compiled for each CSV header of that class.
+   */
+  private static final class EntityMapping {
+    private final Map<String, String> nameMapping;
+    private final Set<String> fieldsWithMoneyValues;
+    private final Set<String> lowCardinalityColumns;
+    private final CsvRowDecoder<?> rowDecoder;
+    private final ConcurrentMap<List<String>, ColumnBinder[]> columnBinders =
+        new ConcurrentHashMap<List<String>, ColumnBinder[]>();
+
+    EntityMapping(Class<?> reportEntityClass) {
+      Map<String, String> nameMapping = new HashMap<String, String>();
+      Set<String> fieldsWithMoneyValues = new HashSet<String>();
+      Set<String> lowCardinalityColumns = new HashSet<String>();
+      Class<?> currentClass = reportEntityClass;
+
+      while (currentClass != Object.class) {
+        addNameMappingForDeclaredFields(
+            nameMapping, fieldsWithMoneyValues, lowCardinalityColumns, currentClass);
+        currentClass = currentClass.getSuperclass();
+      }
+      this.nameMapping = ImmutableMap.copyOf(nameMapping);
+      this.fieldsWithMoneyValues = ImmutableSet.copyOf(fieldsWithMoneyValues);
+      this.lowCardinalityColumns = ImmutableSet.copyOf(lowCardinalityColumns);
+      this.rowDecoder = loadRowDecoder(reportEntityClass);
+    }
+
+    /**
+     * Loads the decoder generated for the report entity class.
+     *
+     * @return the decoder, or {@code null} if none was generated
+     */
+    private static CsvRowDecoder<?> loadRowDecoder(Class<?> reportEntityClass) {
+      String decoderClassName = reportEntityClass.getName() + CsvRowDecoder.CLASS_NAME_SUFFIX;
+      try {
+        Class<?> decoderClass =
+            Class.forName(decoderClassName, true, reportEntityClass.getClassLoader());
+        return (CsvRowDecoder<?>) decoderClass.getConstructor().newInstance();
+      } catch (ReflectiveOperationException | ClassCastException e) {
+        return null;
+      }
+    }
+
+    /**
+     * Scans the current class' fields for the mapped properties, and associate then to the CSV file
+     * columns.
+     *
+     * @param nameMapping the map to be filled.
+     * @param fieldsWithMoneyValues the set of money fields to be filled.
+     * @param lowCardinalityColumns the set of low cardinality CSV columns to be filled.
+     * @param currentClass the class to be scanned.
+     */
+    private static void addNameMappingForDeclaredFields(Map<String, String> nameMapping,
+        Set<String> fieldsWithMoneyValues, Set<String> lowCardinalityColumns,
+        Class<?> currentClass) {
+      Field[] declaredFields = currentClass.getDeclaredFields();
+
+      for (Field field : declaredFields) {
+        addNameMappingIfAnnotationPresent(nameMapping, lowCardinalityColumns, field);
+        addMoneyMappingIfAnnotationPresent(fieldsWithMoneyValues, field);
+      }
+    }
+
+    /**
+     * Checks for the annotation, and if the annotation is present, creates the association between
+     * the CSV property and the field.
+     *
+     * @param nameMapping the map that is being filled.
+     * @param lowCardinalityColumns the set of low cardinality CSV columns that is being filled.
+     * @param field the current field.
+     */
+    private static void addNameMappingIfAnnotationPresent(
+        Map<String, String> nameMapping, Set<String> lowCardinalityColumns, Field field) {
+      if (field.isAnnotationPresent(CsvField.class)) {
+        CsvField reportFieldAnnotation = field.getAnnotation(CsvField.class);
+        String csvFieldName = reportFieldAnnotation.value();
+        nameMapping.put(csvFieldName, field.getName());
+        if (reportFieldAnnotation.lowCardinality()) {
+          lowCardinalityColumns.add(csvFieldName);
+        }
+      }
+    }
+
+    /**
+     * Checks for the @MoneyField annotation, and if the annotation is present, adds the field to
+     * fieldsWithMoneyValues, this value will be used when parsing CSV to use BigDecimal and divide
+     * by 1M.
+     *
+     * @param fieldsWithMoneyValues the set that is being filled.
+     * @param field the current field.
+     */
+    private static void addMoneyMappingIfAnnotationPresent(
+        Set<String> fieldsWithMoneyValues, Field field) {
+      if (field.isAnnotationPresent(MoneyField.class)) {
+        fieldsWithMoneyValues.add(field.getName());
+      }
+    }
   }
 }
@@ -0,0 +1,98 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dictionary of the values of the low cardinality CSV columns, so that equal values parsed from
+ * different rows share a single {@code String} instance.
+ *
+ * <p>A dictionary is meant to live for a single processing run, and can be shared by all the
+ * threads of that run. Once the dictionary is full, new values are returned as they are.
+ */
+public final class StringDictionary {
+
+  /** The default maximum number of distinct values kept by a dictionary. */
+  public static final int DEFAULT_MAX_SIZE = 10000;
+
+  private final ConcurrentMap<String, String> values = new ConcurrentHashMap<String, String>();
+  private final int maxSize;
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder hits = new LongAdder();
+
+  public StringDictionary() {
+    this(DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * @param maxSize the maximum number of distinct values kept by the dictionary.
+   */
+  public StringDictionary(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Gets the shared instance of the given value.
+   *
+   * @param value the value parsed from the CSV file
+   * @return the instance equal to the value that is kept by the dictionary, or the value itself if
+   *     it is the first occurrence, it is {@code null} or the dictionary is full
+   */
+  public String intern(String value) {
+    if (value == null) {
+      return null;
+    }
+
+    lookups.increment();
+    String shared = values.get(value);
+    if (shared != null) {
+      hits.increment();
+      return shared;
+    }
+    if (values.size() >= maxSize) {
+      return value;
+    }
+    shared = values.putIfAbsent(value, value);
+    if (shared != null) {
+      hits.increment();
+      return shared;
+    }
+    return value;
+  }
+
+  /** Gets the number of values looked up in the dictionary. */
+  public long getLookupCount() {
+    return lookups.sum();
+  }
+
+  /** Gets the number of lookups that returned an instance already kept by the dictionary. */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /** Gets the number of distinct values kept by the dictionary. */
+  public int size() {
+    return values.size();
+  }
+
+  @Override
+  public String toString() {
+    return "StringDictionary{size=" + size() + ", lookups=" + getLookupCount()
+        + ", hits=" + getHitCount() + "}";
+  }
+}
@@ -40,4 +40,10 @@ public @interface CsvField {
    */
   String reportField();
 
+  /**
+   * Whether the column only takes a few distinct values, such as enum-like columns. The values of
+   * these columns are shared through a {@code StringDictionary} when parsing the CSV files.
+   */
+  boolean lowCardinality() default false;
+
 }
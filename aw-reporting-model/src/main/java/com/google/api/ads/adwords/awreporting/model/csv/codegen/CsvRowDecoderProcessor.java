@@ -0,0 +1,322 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv.codegen;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Annotation processor that generates a {@code CsvRowDecoder} for each concrete report entity
+ * annotated with {@code @CsvReport}.
+ *
+ * <p>The generated decoder sets each {@code @CsvField} property by calling its setter directly, with
+ * the same conversions as the reflective mapping: {@code String}, {@code Long} and {@code Integer}
+ * properties, and {@code @MoneyField} properties. Entities with properties of any other type are
+ * skipped, and keep being parsed with the reflective mapping.
+ *
+ * <p>This processor only depends on the JDK, since it is compiled before the rest of the model
+ * module. The annotations are referenced by name for the same reason.
+ */
+@SupportedAnnotationTypes(CsvRowDecoderProcessor.CSV_REPORT_ANNOTATION)
+public class CsvRowDecoderProcessor extends AbstractProcessor {
+  private static final String ANNOTATION_PACKAGE =
+      "com.google.api.ads.adwords.awreporting.model.csv.annotation.";
+  static final String CSV_REPORT_ANNOTATION = ANNOTATION_PACKAGE + "CsvReport";
+  private static final String CSV_FIELD_ANNOTATION = ANNOTATION_PACKAGE + "CsvField";
+  private static final String MONEY_FIELD_ANNOTATION = ANNOTATION_PACKAGE + "MoneyField";
+
+  private static final String CSV_PACKAGE = "com.google.api.ads.adwords.awreporting.model.csv.";
+  private static final String DECODER_SUFFIX = "CsvDecoder";
+
+  /** The longest line of the generated code, as in the rest of the sources. */
+  private static final int MAX_LINE_LENGTH = 100;
+
+  /** The parse methods of {@code CsvValueParser}, by setter parameter type. */
+  private static final Map<String, String> PARSE_METHODS = new LinkedHashMap<String, String>();
+
+  static {
+    PARSE_METHODS.put("java.lang.String", "parseString");
+    PARSE_METHODS.put("java.lang.Long", "parseLong");
+    PARSE_METHODS.put("java.lang.Integer", "parseInteger");
+  }
+
+  private static final String MONEY_TYPE = "java.math.BigDecimal";
+  private static final String MONEY_PARSE_METHOD = "parseMoney";
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    TypeElement csvReport = processingEnv.getElementUtils().getTypeElement(CSV_REPORT_ANNOTATION);
+    if (csvReport == null) {
+      return false;
+    }
+
+    for (Element element : roundEnv.getElementsAnnotatedWith(csvReport)) {
+      TypeElement entity = (TypeElement) element;
+      if (entity.getKind() == ElementKind.CLASS
+          && entity.getNestingKind() == NestingKind.TOP_LEVEL
+          && !entity.getModifiers().contains(Modifier.ABSTRACT)) {
+        List<Property> properties = findProperties(entity);
+        if (properties != null) {
+          writeDecoder(entity, properties);
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Finds the mapped properties of the entity, in the same way as the reflective mapping: a CSV
+   * column mapped in both a class and its superclass is assigned to the superclass field.
+   *
+   * @return the properties, or {@code null} if a property can not be decoded
+   */
+  private List<Property> findProperties(TypeElement entity) {
+    Map<String, Property> propertiesByColumn = new LinkedHashMap<String, Property>();
+    for (TypeElement type = entity; type != null; type = getSuperclass(type)) {
+      for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+        AnnotationMirror csvField = getAnnotation(field, CSV_FIELD_ANNOTATION);
+        if (csvField == null) {
+          continue;
+        }
+
+        String csvFieldName = (String) getAnnotationValue(csvField, "value");
+        String name = field.getSimpleName().toString();
+        boolean isMoney = getAnnotation(field, MONEY_FIELD_ANNOTATION) != null;
+        ExecutableElement setter = findSetter(entity, name);
+        String parseMethod = null;
+        if (setter != null) {
+          String parameterType = setter.getParameters().get(0).asType().toString();
+          if (isMoney) {
+            parseMethod = MONEY_TYPE.equals(parameterType) ? MONEY_PARSE_METHOD : null;
+          } else {
+            parseMethod = PARSE_METHODS.get(parameterType);
+          }
+        }
+        if (parseMethod == null) {
+          processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+              "No CSV decoder generated: unsupported property " + name, entity);
+          return null;
+        }
+        propertiesByColumn.put(
+            csvFieldName,
+            new Property(csvFieldName, name, setter.getSimpleName().toString(), parseMethod));
+      }
+    }
+    return new ArrayList<Property>(propertiesByColumn.values());
+  }
+
+  private static TypeElement getSuperclass(TypeElement type) {
+    TypeMirror superclass = type.getSuperclass();
+    if (superclass.getKind() != TypeKind.DECLARED) {
+      return null;
+    }
+    TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+    return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+  }
+
+  /**
+   * Finds the public single argument setter of the property. When the setter is overloaded, the
+   * one taking the type returned by the getter is used, as {@code java.beans} does.
+   */
+  private ExecutableElement findSetter(TypeElement entity, String propertyName) {
+    String capitalized = Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
+    List<ExecutableElement> methods =
+        ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(entity));
+
+    TypeMirror getterType = null;
+    for (ExecutableElement method : methods) {
+      String methodName = method.getSimpleName().toString();
+      if ((methodName.equals("get" + capitalized) || methodName.equals("is" + capitalized))
+          && method.getParameters().isEmpty()) {
+        getterType = method.getReturnType();
+      }
+    }
+
+    ExecutableElement setter = null;
+    for (ExecutableElement method : methods) {
+      if (method.getSimpleName().contentEquals("set" + capitalized)
+          && method.getModifiers().contains(Modifier.PUBLIC)
+          && !method.getModifiers().contains(Modifier.STATIC)
+          && method.getParameters().size() == 1) {
+        TypeMirror parameterType = method.getParameters().get(0).asType();
+        if (getterType == null
+            || processingEnv.getTypeUtils().isSameType(getterType, parameterType)) {
+          setter = method;
+        }
+      }
+    }
+    return setter;
+  }
+
+  private static AnnotationMirror getAnnotation(Element element, String annotationName) {
+    for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+      TypeElement type = (TypeElement) annotation.getAnnotationType().asElement();
+      if (type.getQualifiedName().contentEquals(annotationName)) {
+        return annotation;
+      }
+    }
+    return null;
+  }
+
+  private static Object getAnnotationValue(AnnotationMirror annotation, String name) {
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+        : annotation.getElementValues().entrySet()) {
+      if (entry.getKey().getSimpleName().contentEquals(name)) {
+        return entry.getValue().getValue();
+      }
+    }
+    return null;
+  }
+
+  private void writeDecoder(TypeElement entity, List<Property> properties) {
+    String packageName =
+        processingEnv.getElementUtils().getPackageOf(entity).getQualifiedName().toString();
+    String entityName = entity.getSimpleName().toString();
+    String decoderName = entityName + DECODER_SUFFIX;
+
+    try (PrintWriter out =
+        new PrintWriter(
+            processingEnv
+                .getFiler()
+                .createSourceFile(packageName + "." + decoderName, entity)
+                .openWriter())) {
+      out.println("// Generated by " + CsvRowDecoderProcessor.class.getSimpleName() + ".");
+      out.println("// Do not edit, changes are lost on the next build.");
+      out.println();
+      out.println("package " + packageName + ";");
+      out.println();
+      out.println("import " + CSV_PACKAGE + "CsvReportParsingException;");
+      out.println("import " + CSV_PACKAGE + "CsvRowDecoder;");
+      out.println("import " + CSV_PACKAGE + "CsvValueParser;");
+      out.println();
+      out.println("/**");
+      out.println(" * Decodes the CSV rows of {@link " + entityName + "}.");
+      out.println(" */");
+      out.println("public final class " + decoderName);
+      out.println("    implements CsvRowDecoder<" + entityName + "> {");
+      out.println();
+      out.println("  private static final String[] PROPERTY_NAMES = {");
+      for (Property property : properties) {
+        out.println("    \"" + property.name + "\",");
+      }
+      out.println("  };");
+      out.println();
+      out.println("  @Override");
+      out.println("  public int getPropertyIndex(String csvFieldName) {");
+      out.println("    switch (csvFieldName) {");
+      for (int i = 0; i < properties.size(); i++) {
+        out.println("      case \"" + escape(properties.get(i).csvFieldName) + "\":");
+        out.println("        return " + i + ";");
+      }
+      out.println("      default:");
+      out.println("        return -1;");
+      out.println("    }");
+      out.println("  }");
+      out.println();
+      out.println("  @Override");
+      out.println("  public " + entityName + " decode(String[] line, int[] columnPlan)");
+      out.println("      throws CsvReportParsingException {");
+      String newBean = "    " + entityName + " bean = new " + entityName + "();";
+      if (newBean.length() <= MAX_LINE_LENGTH) {
+        out.println(newBean);
+      } else {
+        out.println("    " + entityName + " bean =");
+        out.println("        new " + entityName + "();");
+      }
+      out.println("    int col = 0;");
+      out.println("    try {");
+      out.println("      for (; col < line.length; col++) {");
+      out.println("        String value = line[col];");
+      out.println("        switch (columnPlan[col]) {");
+      for (int i = 0; i < properties.size(); i++) {
+        Property property = properties.get(i);
+        out.println("          case " + i + ":");
+        String setterCall = "            bean." + property.setterName + "(";
+        String parseCall = "CsvValueParser." + property.parseMethod + "(value));";
+        if (setterCall.length() + parseCall.length() <= MAX_LINE_LENGTH) {
+          out.println(setterCall + parseCall);
+        } else {
+          out.println(setterCall);
+          out.println("                " + parseCall);
+        }
+        out.println("            break;");
+      }
+      out.println("          case SKIP_COLUMN:");
+      out.println("            break;");
+      out.println("          default:");
+      out.println("            throw new IllegalArgumentException(\"Unmapped column\");");
+      out.println("        }");
+      out.println("      }");
+      out.println("    } catch (RuntimeException e) {");
+      out.println("      String property = col < columnPlan.length && columnPlan[col] >= 0");
+      out.println("          ? PROPERTY_NAMES[columnPlan[col]] : \"<unmapped>\";");
+      out.println("      throw CsvValueParser.newParsingException(col, line[col], property, e);");
+      out.println("    }");
+      out.println("    return bean;");
+      out.println("  }");
+      out.println("}");
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+          "Failed to write the CSV decoder: " + e.getMessage(), entity);
+    }
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+
+  /** A mapped property of the entity. */
+  private static final class Property {
+    private final String csvFieldName;
+    private final String name;
+    private final String setterName;
+    private final String parseMethod;
+
+    Property(String csvFieldName, String name, String setterName, String parseMethod) {
+      this.csvFieldName = csvFieldName;
+      this.name = name;
+      this.setterName = setterName;
+      this.parseMethod = parseMethod;
+    }
+  }
+}
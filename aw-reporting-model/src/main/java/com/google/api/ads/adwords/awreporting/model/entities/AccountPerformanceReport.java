@@ -17,6 +17,7 @@ package com.google.api.ads.adwords.awreporting.model.entities;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvField;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvReport;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.MoneyField;
+import com.google.api.ads.adwords.awreporting.model.persistence.sql.MoneyType;
 import com.google.api.ads.adwords.awreporting.model.util.BigDecimalUtil;
 import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinitionReportType;
 
@@ -25,6 +26,7 @@ import java.math.BigDecimal;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Type;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -40,7 +42,7 @@ import javax.persistence.Table;
 public class AccountPerformanceReport extends DateReport {
 
   @Column(name = "AccountCurrencyCode")
-  @CsvField(value = "Currency", reportField = "AccountCurrencyCode")
+  @CsvField(value = "Currency", reportField = "AccountCurrencyCode", lowCardinality = true)
   private String accountCurrencyCode;
 
   @Column(name = "AccountDescriptiveName")
@@ -48,12 +50,13 @@ public class AccountPerformanceReport extends DateReport {
   private String accountDescriptiveName;
 
   @Column(name = "AccountTimeZone")
-  @CsvField(value = "Time zone", reportField = "AccountTimeZone")
+  @CsvField(value = "Time zone", reportField = "AccountTimeZone", lowCardinality = true)
   private String accountTimeZone;
 
   @Column(name = "ActiveViewCpm")
   @CsvField(value = "Active View avg. CPM", reportField = "ActiveViewCpm")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal activeViewCpm;
 
   @Column(name = "ActiveViewCtr")
@@ -71,6 +74,7 @@ public class AccountPerformanceReport extends DateReport {
   @Column(name = "ActiveViewMeasurableCost")
   @CsvField(value = "Active View measurable cost", reportField = "ActiveViewMeasurableCost")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal activeViewMeasurableCost;
 
   @Column(name = "ActiveViewMeasurableImpressions")
@@ -82,11 +86,11 @@ public class AccountPerformanceReport extends DateReport {
   private BigDecimal activeViewViewability;
 
   @Column(name = "AdNetworkType1")
-  @CsvField(value = "Network", reportField = "AdNetworkType1")
+  @CsvField(value = "Network", reportField = "AdNetworkType1", lowCardinality = true)
   private String adNetworkType1;
 
   @Column(name = "AdNetworkType2")
-  @CsvField(value = "Network (with search partners)", reportField = "AdNetworkType2")
+  @CsvField(value = "Network (with search partners)", reportField = "AdNetworkType2", lowCardinality = true)
   private String adNetworkType2;
 
   @Column(name = "AllConversionRate")
@@ -104,11 +108,13 @@ public class AccountPerformanceReport extends DateReport {
   @Column(name = "AverageCost")
   @CsvField(value = "Avg. Cost", reportField = "AverageCost")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal averageCost;
 
   @Column(name = "AverageCpc")
   @CsvField(value = "Avg. CPC", reportField = "AverageCpc")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal averageCpc;
 
   @Column(name = "AverageCpe")
@@ -118,6 +124,7 @@ public class AccountPerformanceReport extends DateReport {
   @Column(name = "AverageCpm")
   @CsvField(value = "Avg. CPM", reportField = "AverageCpm")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal averageCpm;
 
   @Column(name = "AverageCpv")
@@ -137,7 +144,7 @@ public class AccountPerformanceReport extends DateReport {
   private Long clicks;
 
   @Column(name = "ClickType")
-  @CsvField(value = "Click type", reportField = "ClickType")
+  @CsvField(value = "Click type", reportField = "ClickType", lowCardinality = true)
   private String clickType;
 
   @Column(name = "ContentBudgetLostImpressionShare")
@@ -191,16 +198,19 @@ public class AccountPerformanceReport extends DateReport {
   @Column(name = "Cost")
   @CsvField(value = "Cost", reportField = "Cost")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal cost;
 
   @Column(name = "CostPerAllConversion")
   @CsvField(value = "Cost / all conv.", reportField = "CostPerAllConversion")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal costPerAllConversion;
 
   @Column(name = "CostPerConversion")
   @CsvField(value = "Cost / conv.", reportField = "CostPerConversion")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal costPerConversion;
 
   @Column(name = "CrossDeviceConversions")
@@ -216,7 +226,7 @@ public class AccountPerformanceReport extends DateReport {
   private String customerDescriptiveName;
 
   @Column(name = "Device")
-  @CsvField(value = "Device", reportField = "Device")
+  @CsvField(value = "Device", reportField = "Device", lowCardinality = true)
   private String device;
 
   @Column(name = "EngagementRate")
@@ -280,7 +290,7 @@ public class AccountPerformanceReport extends DateReport {
   private BigDecimal searchRankLostImpressionShare;
 
   @Column(name = "Slot")
-  @CsvField(value = "Top vs. Other", reportField = "Slot")
+  @CsvField(value = "Top vs. Other", reportField = "Slot", lowCardinality = true)
   private String slot;
 
   @Column(name = "ValuePerAllConversion")
@@ -936,44 +946,44 @@ public class AccountPerformanceReport extends DateReport {
   @Override
   public void setRowId() {
     // General fields for generating unique id.
-    StringBuilder idBuilder = new StringBuilder(getCustomerId().toString());
-    idBuilder.append("-").append(getDateLabel());
+    RowIdBuilder idBuilder = new RowIdBuilder(getCustomerId());
+    idBuilder.append(getDateLabel());
 
     // Include all segmentation fields (if set).
     if (!StringUtils.isEmpty(adNetworkType1)) {
-      idBuilder.append("-").append(adNetworkType1);
+      idBuilder.append(adNetworkType1);
     }
     if (!StringUtils.isEmpty(adNetworkType2)) {
-      idBuilder.append("-").append(adNetworkType2);
+      idBuilder.append(adNetworkType2);
     }
     if (!StringUtils.isEmpty(clickType)) {
-      idBuilder.append("-").append(clickType);
+      idBuilder.append(clickType);
     }
     if (!StringUtils.isEmpty(conversionAdjustmentLagBucket)) {
-      idBuilder.append("-").append(conversionAdjustmentLagBucket);
+      idBuilder.append(conversionAdjustmentLagBucket);
     }
     if (!StringUtils.isEmpty(conversionCategoryName)) {
-      idBuilder.append("-").append(conversionCategoryName);
+      idBuilder.append(conversionCategoryName);
     }
     if (!StringUtils.isEmpty(conversionLagBucket)) {
-      idBuilder.append("-").append(conversionLagBucket);
+      idBuilder.append(conversionLagBucket);
     }
     if (conversionTrackerId != null) {
-      idBuilder.append("-").append(conversionTrackerId);
+      idBuilder.append(conversionTrackerId);
     }
     if (!StringUtils.isEmpty(conversionTypeName)) {
-      idBuilder.append("-").append(conversionTypeName);
+      idBuilder.append(conversionTypeName);
     }
     if (!StringUtils.isEmpty(device)) {
-      idBuilder.append("-").append(device);
+      idBuilder.append(device);
     }
     if (!StringUtils.isEmpty(externalConversionSource)) {
-      idBuilder.append("-").append(externalConversionSource);
+      idBuilder.append(externalConversionSource);
     }
     if (!StringUtils.isEmpty(slot)) {
-      idBuilder.append("-").append(slot);
+      idBuilder.append(slot);
     }
-    this.rowId = idBuilder.toString();
+    this.rowId = idBuilder.build();
   }
 
   @Override
@@ -17,6 +17,7 @@ package com.google.api.ads.adwords.awreporting.model.entities;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvField;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvReport;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.MoneyField;
+import com.google.api.ads.adwords.awreporting.model.persistence.sql.MoneyType;
 import com.google.api.ads.adwords.awreporting.model.util.BigDecimalUtil;
 import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinitionReportType;
 
@@ -25,6 +26,7 @@ import java.math.BigDecimal;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Type;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -56,11 +58,11 @@ public class AdCustomizersFeedItemReport extends DateReport {
   private Long adId;
 
   @Column(name = "AdNetworkType1")
-  @CsvField(value = "Network", reportField = "AdNetworkType1")
+  @CsvField(value = "Network", reportField = "AdNetworkType1", lowCardinality = true)
   private String adNetworkType1;
 
   @Column(name = "AdNetworkType2")
-  @CsvField(value = "Network (with search partners)", reportField = "AdNetworkType2")
+  @CsvField(value = "Network (with search partners)", reportField = "AdNetworkType2", lowCardinality = true)
   private String adNetworkType2;
 
   @Column(name = "AllConversionRate")
@@ -78,11 +80,13 @@ public class AdCustomizersFeedItemReport extends DateReport {
   @Column(name = "AverageCost")
   @CsvField(value = "Avg. Cost", reportField = "AverageCost")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal averageCost;
 
   @Column(name = "AverageCpc")
   @CsvField(value = "Avg. CPC", reportField = "AverageCpc")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal averageCpc;
 
   @Column(name = "AverageCpe")
@@ -92,6 +96,7 @@ public class AdCustomizersFeedItemReport extends DateReport {
   @Column(name = "AverageCpm")
   @CsvField(value = "Avg. CPM", reportField = "AverageCpm")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal averageCpm;
 
   @Column(name = "AverageCpv")
@@ -141,16 +146,19 @@ public class AdCustomizersFeedItemReport extends DateReport {
   @Column(name = "Cost")
   @CsvField(value = "Cost", reportField = "Cost")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal cost;
 
   @Column(name = "CostPerAllConversion")
   @CsvField(value = "Cost / all conv.", reportField = "CostPerAllConversion")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal costPerAllConversion;
 
   @Column(name = "CostPerConversion")
   @CsvField(value = "Cost / conv.", reportField = "CostPerConversion")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal costPerConversion;
 
   @Column(name = "CrossDeviceConversions")
@@ -162,7 +170,7 @@ public class AdCustomizersFeedItemReport extends DateReport {
   private BigDecimal ctr;
 
   @Column(name = "Device")
-  @CsvField(value = "Device", reportField = "Device")
+  @CsvField(value = "Device", reportField = "Device", lowCardinality = true)
   private String device;
 
   @Column(name = "EngagementRate")
@@ -234,7 +242,7 @@ public class AdCustomizersFeedItemReport extends DateReport {
   private String keywordTargetingText;
 
   @Column(name = "Slot")
-  @CsvField(value = "Top vs. Other", reportField = "Slot")
+  @CsvField(value = "Top vs. Other", reportField = "Slot", lowCardinality = true)
   private String slot;
 
   @Column(name = "TargetingAdGroupId")
@@ -770,50 +778,50 @@ public class AdCustomizersFeedItemReport extends DateReport {
   @Override
   public void setRowId() {
     // General fields for generating unique id.
-    StringBuilder idBuilder = new StringBuilder(getCustomerId().toString());
+    RowIdBuilder idBuilder = new RowIdBuilder(getCustomerId());
     if (campaignId != null) {
-      idBuilder.append("-").append(campaignId);
+      idBuilder.append(campaignId);
     }
     if (adGroupId != null) {
-      idBuilder.append("-").append(adGroupId);
+      idBuilder.append(adGroupId);
     }
     if (adId != null) {
-      idBuilder.append("-").append(adId);
+      idBuilder.append(adId);
     }
     if (feedId != null) {
-      idBuilder.append("-").append(feedId);
+      idBuilder.append(feedId);
     }
     if (feedItemId != null) {
-      idBuilder.append("-").append(feedItemId);
+      idBuilder.append(feedItemId);
     }
-    idBuilder.append("-").append(getDateLabel());
+    idBuilder.append(getDateLabel());
 
     // Include all segmentation fields (if set).
     if (!StringUtils.isEmpty(adNetworkType1)) {
-      idBuilder.append("-").append(adNetworkType1);
+      idBuilder.append(adNetworkType1);
     }
     if (!StringUtils.isEmpty(adNetworkType2)) {
-      idBuilder.append("-").append(adNetworkType2);
+      idBuilder.append(adNetworkType2);
     }
     if (!StringUtils.isEmpty(conversionCategoryName)) {
-      idBuilder.append("-").append(conversionCategoryName);
+      idBuilder.append(conversionCategoryName);
     }
     if (conversionTrackerId != null) {
-      idBuilder.append("-").append(conversionTrackerId);
+      idBuilder.append(conversionTrackerId);
     }
     if (!StringUtils.isEmpty(conversionTypeName)) {
-      idBuilder.append("-").append(conversionTypeName);
+      idBuilder.append(conversionTypeName);
     }
     if (!StringUtils.isEmpty(device)) {
-      idBuilder.append("-").append(device);
+      idBuilder.append(device);
     }
     if (!StringUtils.isEmpty(externalConversionSource)) {
-      idBuilder.append("-").append(externalConversionSource);
+      idBuilder.append(externalConversionSource);
     }
     if (!StringUtils.isEmpty(slot)) {
-      idBuilder.append("-").append(slot);
+      idBuilder.append(slot);
     }
-    this.rowId = idBuilder.toString();
+    this.rowId = idBuilder.build();
   }
 
   @Override
@@ -17,6 +17,7 @@ package com.google.api.ads.adwords.awreporting.model.entities;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvField;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvReport;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.MoneyField;
+import com.google.api.ads.adwords.awreporting.model.persistence.sql.MoneyType;
 import com.google.api.ads.adwords.awreporting.model.util.BigDecimalUtil;
 import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinitionReportType;
 
@@ -25,6 +26,7 @@ import java.math.BigDecimal;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Type;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -41,7 +43,7 @@ import javax.persistence.Table;
 public class AudiencePerformanceReport extends DateReport {
 
   @Column(name = "AccountCurrencyCode")
-  @CsvField(value = "Currency", reportField = "AccountCurrencyCode")
+  @CsvField(value = "Currency", reportField = "AccountCurrencyCode", lowCardinality = true)
   private String accountCurrencyCode;
 
   @Column(name = "AccountDescriptiveName")
@@ -49,12 +51,13 @@ public class AudiencePerformanceReport extends DateReport {
   private String accountDescriptiveName;
 
   @Column(name = "AccountTimeZone")
-  @CsvField(value = "Time zone", reportField = "AccountTimeZone")
+  @CsvField(value = "Time zone", reportField = "AccountTimeZone", lowCardinality = true)
   private String accountTimeZone;
 
   @Column(name = "ActiveViewCpm")
   @CsvField(value = "Active View avg. CPM", reportField = "ActiveViewCpm")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal activeViewCpm;
 
   @Column(name = "ActiveViewCtr")
@@ -72,6 +75,7 @@ public class AudiencePerformanceReport extends DateReport {
   @Column(name = "ActiveViewMeasurableCost")
   @CsvField(value = "Active View measurable cost", reportField = "ActiveViewMeasurableCost")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal activeViewMeasurableCost;
 
   @Column(name = "ActiveViewMeasurableImpressions")
@@ -91,15 +95,15 @@ public class AudiencePerformanceReport extends DateReport {
   private String adGroupName;
 
   @Column(name = "AdGroupStatus")
-  @CsvField(value = "Ad group state", reportField = "AdGroupStatus")
+  @CsvField(value = "Ad group state", reportField = "AdGroupStatus", lowCardinality = true)
   private String adGroupStatus;
 
   @Column(name = "AdNetworkType1")
-  @CsvField(value = "Network", reportField = "AdNetworkType1")
+  @CsvField(value = "Network", reportField = "AdNetworkType1", lowCardinality = true)
   private String adNetworkType1;
 
   @Column(name = "AdNetworkType2")
-  @CsvField(value = "Network (with search partners)", reportField = "AdNetworkType2")
+  @CsvField(value = "Network (with search partners)", reportField = "AdNetworkType2", lowCardinality = true)
   private String adNetworkType2;
 
   @Column(name = "AllConversionRate")
@@ -117,11 +121,13 @@ public class AudiencePerformanceReport extends DateReport {
   @Column(name = "AverageCost")
   @CsvField(value = "Avg. Cost", reportField = "AverageCost")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal averageCost;
 
   @Column(name = "AverageCpc")
   @CsvField(value = "Avg. CPC", reportField = "AverageCpc")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal averageCpc;
 
   @Column(name = "AverageCpe")
@@ -131,6 +137,7 @@ public class AudiencePerformanceReport extends DateReport {
   @Column(name = "AverageCpm")
   @CsvField(value = "Avg. CPM", reportField = "AverageCpm")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal averageCpm;
 
   @Column(name = "AverageCpv")
@@ -174,7 +181,7 @@ public class AudiencePerformanceReport extends DateReport {
   private String campaignName;
 
   @Column(name = "CampaignStatus")
-  @CsvField(value = "Campaign state", reportField = "CampaignStatus")
+  @CsvField(value = "Campaign state", reportField = "CampaignStatus", lowCardinality = true)
   private String campaignStatus;
 
   @Column(name = "Clicks")
@@ -182,7 +189,7 @@ public class AudiencePerformanceReport extends DateReport {
   private Long clicks;
 
   @Column(name = "ClickType")
-  @CsvField(value = "Click type", reportField = "ClickType")
+  @CsvField(value = "Click type", reportField = "ClickType", lowCardinality = true)
   private String clickType;
 
   @Column(name = "ConversionCategoryName")
@@ -212,21 +219,25 @@ public class AudiencePerformanceReport extends DateReport {
   @Column(name = "Cost")
   @CsvField(value = "Cost", reportField = "Cost")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal cost;
 
   @Column(name = "CostPerAllConversion")
   @CsvField(value = "Cost / all conv.", reportField = "CostPerAllConversion")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal costPerAllConversion;
 
   @Column(name = "CostPerConversion")
   @CsvField(value = "Cost / conv.", reportField = "CostPerConversion")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal costPerConversion;
 
   @Column(name = "CpcBid")
   @CsvField(value = "Max. CPC", reportField = "CpcBid")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal cpcBid;
 
   @Column(name = "CpcBidSource")
@@ -236,6 +247,7 @@ public class AudiencePerformanceReport extends DateReport {
   @Column(name = "CpmBid")
   @CsvField(value = "Max. CPM", reportField = "CpmBid")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal cpmBid;
 
   @Column(name = "CpmBidSource")
@@ -268,7 +280,7 @@ public class AudiencePerformanceReport extends DateReport {
   private String customerDescriptiveName;
 
   @Column(name = "Device")
-  @CsvField(value = "Device", reportField = "Device")
+  @CsvField(value = "Device", reportField = "Device", lowCardinality = true)
   private String device;
 
   @Column(name = "EngagementRate")
@@ -335,7 +347,7 @@ public class AudiencePerformanceReport extends DateReport {
   private String isRestrict;
 
   @Column(name = "Slot")
-  @CsvField(value = "Top vs. Other", reportField = "Slot")
+  @CsvField(value = "Top vs. Other", reportField = "Slot", lowCardinality = true)
   private String slot;
 
   @Column(name = "Status")
@@ -1173,53 +1185,53 @@ public class AudiencePerformanceReport extends DateReport {
   @Override
   public void setRowId() {
     // General fields for generating unique id.
-    StringBuilder idBuilder = new StringBuilder(getCustomerId().toString());
+    RowIdBuilder idBuilder = new RowIdBuilder(getCustomerId());
     if (campaignId != null) {
-      idBuilder.append("-").append(campaignId);
+      idBuilder.append(campaignId);
     }
     if (adGroupId != null) {
-      idBuilder.append("-").append(adGroupId);
+      idBuilder.append(adGroupId);
     }
     if (id != null) {
-      idBuilder.append("-").append(id);
+      idBuilder.append(id);
     }
-    idBuilder.append("-").append(getDateLabel());
+    idBuilder.append(getDateLabel());
 
     // Include all segmentation fields (if set).
     if (!StringUtils.isEmpty(adGroupName)) {
-      idBuilder.append("-").append(adGroupName);
+      idBuilder.append(adGroupName);
     }
     if (!StringUtils.isEmpty(adGroupStatus)) {
-      idBuilder.append("-").append(adGroupStatus);
+      idBuilder.append(adGroupStatus);
     }
     if (!StringUtils.isEmpty(adNetworkType1)) {
-      idBuilder.append("-").append(adNetworkType1);
+      idBuilder.append(adNetworkType1);
     }
     if (!StringUtils.isEmpty(adNetworkType2)) {
-      idBuilder.append("-").append(adNetworkType2);
+      idBuilder.append(adNetworkType2);
     }
     if (!StringUtils.isEmpty(clickType)) {
-      idBuilder.append("-").append(clickType);
+      idBuilder.append(clickType);
     }
     if (!StringUtils.isEmpty(conversionCategoryName)) {
-      idBuilder.append("-").append(conversionCategoryName);
+      idBuilder.append(conversionCategoryName);
     }
     if (conversionTrackerId != null) {
-      idBuilder.append("-").append(conversionTrackerId);
+      idBuilder.append(conversionTrackerId);
     }
     if (!StringUtils.isEmpty(conversionTypeName)) {
-      idBuilder.append("-").append(conversionTypeName);
+      idBuilder.append(conversionTypeName);
     }
     if (!StringUtils.isEmpty(device)) {
-      idBuilder.append("-").append(device);
+      idBuilder.append(device);
     }
     if (!StringUtils.isEmpty(externalConversionSource)) {
-      idBuilder.append("-").append(externalConversionSource);
+      idBuilder.append(externalConversionSource);
     }
     if (!StringUtils.isEmpty(slot)) {
-      idBuilder.append("-").append(slot);
+      idBuilder.append(slot);
     }
-    this.rowId = idBuilder.toString();
+    this.rowId = idBuilder.build();
   }
 
   @Override
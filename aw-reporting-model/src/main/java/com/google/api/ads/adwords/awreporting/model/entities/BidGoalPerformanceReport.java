@@ -17,6 +17,7 @@ package com.google.api.ads.adwords.awreporting.model.entities;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvField;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvReport;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.MoneyField;
+import com.google.api.ads.adwords.awreporting.model.persistence.sql.MoneyType;
 import com.google.api.ads.adwords.awreporting.model.util.BigDecimalUtil;
 import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinitionReportType;
 
@@ -25,6 +26,7 @@ import java.math.BigDecimal;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Type;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -74,6 +76,7 @@ public class BidGoalPerformanceReport extends DateReport {
   @Column(name = "TargetCpa")
   @CsvField(value = "Target CPA", reportField = "TargetCpa")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal targetCpa;
 
   @Column(name = "TargetRoas")
@@ -103,11 +106,13 @@ public class BidGoalPerformanceReport extends DateReport {
   @Column(name = "AverageCpc")
   @CsvField(value = "Avg. CPC", reportField = "AverageCpc")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal averageCpc;
 
   @Column(name = "AverageCpm")
   @CsvField(value = "Avg. CPM", reportField = "AverageCpm")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal averageCpm;
 
   @Column(name = "AveragePosition")
@@ -145,16 +150,19 @@ public class BidGoalPerformanceReport extends DateReport {
   @Column(name = "Cost")
   @CsvField(value = "Cost", reportField = "Cost")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal cost;
 
   @Column(name = "CostPerAllConversion")
   @CsvField(value = "Cost / all conv.", reportField = "CostPerAllConversion")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal costPerAllConversion;
 
   @Column(name = "CostPerConversion")
   @CsvField(value = "Cost / conv.", reportField = "CostPerConversion")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal costPerConversion;
 
   @Column(name = "CrossDeviceConversions")
@@ -166,7 +174,7 @@ public class BidGoalPerformanceReport extends DateReport {
   private BigDecimal ctr;
 
   @Column(name = "Device")
-  @CsvField(value = "Device", reportField = "Device")
+  @CsvField(value = "Device", reportField = "Device", lowCardinality = true)
   private String device;
 
   @Column(name = "ExternalConversionSource")
@@ -188,6 +196,7 @@ public class BidGoalPerformanceReport extends DateReport {
   @Column(name = "PageOnePromotedBidCeiling")
   @CsvField(value = "Bid limit (Target search page location)", reportField = "PageOnePromotedBidCeiling")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal pageOnePromotedBidCeiling;
 
   @Column(name = "PageOnePromotedRaiseBidWhenBudgetConstrained")
@@ -205,11 +214,13 @@ public class BidGoalPerformanceReport extends DateReport {
   @Column(name = "TargetCpaMaxCpcBidCeiling")
   @CsvField(value = "Upper Bid limit (Target CPA)", reportField = "TargetCpaMaxCpcBidCeiling")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal targetCpaMaxCpcBidCeiling;
 
   @Column(name = "TargetCpaMaxCpcBidFloor")
   @CsvField(value = "Lower Bid limit (Target CPA)", reportField = "TargetCpaMaxCpcBidFloor")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal targetCpaMaxCpcBidFloor;
 
   @Column(name = "TargetOutrankShare")
@@ -227,6 +238,7 @@ public class BidGoalPerformanceReport extends DateReport {
   @Column(name = "TargetOutrankShareMaxCpcBidCeiling")
   @CsvField(value = "Upper Max Cpc Bid limit (Target Outranking Share)", reportField = "TargetOutrankShareMaxCpcBidCeiling")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal targetOutrankShareMaxCpcBidCeiling;
 
   @Column(name = "TargetOutrankShareRaiseBidWhenLowQualityScore")
@@ -236,21 +248,25 @@ public class BidGoalPerformanceReport extends DateReport {
   @Column(name = "TargetRoasBidCeiling")
   @CsvField(value = "Upper Bid limit (Target ROAS)", reportField = "TargetRoasBidCeiling")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal targetRoasBidCeiling;
 
   @Column(name = "TargetRoasBidFloor")
   @CsvField(value = "Lower Bid limit (Target ROAS)", reportField = "TargetRoasBidFloor")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal targetRoasBidFloor;
 
   @Column(name = "TargetSpendBidCeiling")
   @CsvField(value = "Bid limit (Maximize clicks)", reportField = "TargetSpendBidCeiling")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal targetSpendBidCeiling;
 
   @Column(name = "TargetSpendSpendTarget")
   @CsvField(value = "Target spend (Maximize clicks)", reportField = "TargetSpendSpendTarget")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal targetSpendSpendTarget;
 
   @Column(name = "Type")
@@ -770,29 +786,29 @@ public class BidGoalPerformanceReport extends DateReport {
   @Override
   public void setRowId() {
     // General fields for generating unique id.
-    StringBuilder idBuilder = new StringBuilder(getCustomerId().toString());
+    RowIdBuilder idBuilder = new RowIdBuilder(getCustomerId());
     if (id != null) {
-      idBuilder.append("-").append(id);
+      idBuilder.append(id);
     }
-    idBuilder.append("-").append(getDateLabel());
+    idBuilder.append(getDateLabel());
 
     // Include all segmentation fields (if set).
     if (!StringUtils.isEmpty(conversionCategoryName)) {
-      idBuilder.append("-").append(conversionCategoryName);
+      idBuilder.append(conversionCategoryName);
     }
     if (conversionTrackerId != null) {
-      idBuilder.append("-").append(conversionTrackerId);
+      idBuilder.append(conversionTrackerId);
     }
     if (!StringUtils.isEmpty(conversionTypeName)) {
-      idBuilder.append("-").append(conversionTypeName);
+      idBuilder.append(conversionTypeName);
     }
     if (!StringUtils.isEmpty(device)) {
-      idBuilder.append("-").append(device);
+      idBuilder.append(device);
     }
     if (!StringUtils.isEmpty(externalConversionSource)) {
-      idBuilder.append("-").append(externalConversionSource);
+      idBuilder.append(externalConversionSource);
     }
-    this.rowId = idBuilder.toString();
+    this.rowId = idBuilder.build();
   }
 
   @Override
@@ -17,6 +17,7 @@ package com.google.api.ads.adwords.awreporting.model.entities;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvField;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvReport;
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.MoneyField;
+import com.google.api.ads.adwords.awreporting.model.persistence.sql.MoneyType;
 import com.google.api.ads.adwords.awreporting.model.util.BigDecimalUtil;
 import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinitionReportType;
 
@@ -25,6 +26,7 @@ import java.math.BigDecimal;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Type;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -66,6 +68,7 @@ public class BudgetPerformanceReport extends Report {
   @Column(name = "Amount")
   @CsvField(value = "Budget", reportField = "Amount")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal amount;
 
   @Column(name = "AssociatedCampaignId")
@@ -83,11 +86,13 @@ public class BudgetPerformanceReport extends Report {
   @Column(name = "AverageCost")
   @CsvField(value = "Avg. Cost", reportField = "AverageCost")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal averageCost;
 
   @Column(name = "AverageCpc")
   @CsvField(value = "Avg. CPC", reportField = "AverageCpc")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal averageCpc;
 
   @Column(name = "AverageCpe")
@@ -97,6 +102,7 @@ public class BudgetPerformanceReport extends Report {
   @Column(name = "AverageCpm")
   @CsvField(value = "Avg. CPM", reportField = "AverageCpm")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal averageCpm;
 
   @Column(name = "AverageCpv")
@@ -158,16 +164,19 @@ public class BudgetPerformanceReport extends Report {
   @Column(name = "Cost")
   @CsvField(value = "Cost", reportField = "Cost")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal cost;
 
   @Column(name = "CostPerAllConversion")
   @CsvField(value = "Cost / all conv.", reportField = "CostPerAllConversion")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal costPerAllConversion;
 
   @Column(name = "CostPerConversion")
   @CsvField(value = "Cost / conv.", reportField = "CostPerConversion")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal costPerConversion;
 
   @Column(name = "CrossDeviceConversions")
@@ -217,6 +226,7 @@ public class BudgetPerformanceReport extends Report {
   @Column(name = "RecommendedBudgetAmount")
   @CsvField(value = "Recommended Budget amount", reportField = "RecommendedBudgetAmount")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal recommendedBudgetAmount;
 
   @Column(name = "RecommendedBudgetEstimatedChangeInWeeklyClicks")
@@ -226,6 +236,7 @@ public class BudgetPerformanceReport extends Report {
   @Column(name = "RecommendedBudgetEstimatedChangeInWeeklyCost")
   @CsvField(value = "Estimated change in weekly cost at recommended Budget", reportField = "RecommendedBudgetEstimatedChangeInWeeklyCost")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal recommendedBudgetEstimatedChangeInWeeklyCost;
 
   @Column(name = "RecommendedBudgetEstimatedChangeInWeeklyInteractions")
@@ -239,6 +250,7 @@ public class BudgetPerformanceReport extends Report {
   @Column(name = "TotalAmount")
   @CsvField(value = "Total Budget amount", reportField = "TotalAmount")
   @MoneyField
+  @Type(type = MoneyType.TYPE_NAME)
   private BigDecimal totalAmount;
 
   @Column(name = "ValuePerAllConversion")
@@ -762,37 +774,37 @@ public class BudgetPerformanceReport extends Report {
   @Override
   public void setRowId() {
     // General fields for generating unique id.
-    StringBuilder idBuilder = new StringBuilder(getCustomerId().toString());
+    RowIdBuilder idBuilder = new RowIdBuilder(getCustomerId());
     if (budgetId != null) {
-      idBuilder.append("-").append(budgetId);
+      idBuilder.append(budgetId);
     }
 
     // Include all segmentation fields (if set).
     if (associatedCampaignId != null) {
-      idBuilder.append("-").append(associatedCampaignId);
+      idBuilder.append(associatedCampaignId);
     }
     if (!StringUtils.isEmpty(associatedCampaignName)) {
-      idBuilder.append("-").append(associatedCampaignName);
+      idBuilder.append(associatedCampaignName);
     }
     if (!StringUtils.isEmpty(associatedCampaignStatus)) {
-      idBuilder.append("-").append(associatedCampaignStatus);
+      idBuilder.append(associatedCampaignStatus);
     }
     if (!StringUtils.isEmpty(budgetCampaignAssociationStatus)) {
-      idBuilder.append("-").append(budgetCampaignAssociationStatus);
+      idBuilder.append(budgetCampaignAssociationStatus);
     }
     if (!StringUtils.isEmpty(conversionCategoryName)) {
-      idBuilder.append("-").append(conversionCategoryName);
+      idBuilder.append(conversionCategoryName);
     }
     if (conversionTrackerId != null) {
-      idBuilder.append("-").append(conversionTrackerId);
+      idBuilder.append(conversionTrackerId);
     }
     if (!StringUtils.isEmpty(conversionTypeName)) {
-      idBuilder.append("-").append(conversionTypeName);
+      idBuilder.append(conversionTypeName);
     }
     if (!StringUtils.isEmpty(externalConversionSource)) {
-      idBuilder.append("-").append(externalConversionSource);
+      idBuilder.append(externalConversionSource);
     }
-    this.rowId = idBuilder.toString();
+    this.rowId = idBuilder.build();
   }
 
   @Override
@@ -37,7 +37,7 @@ import javax.persistence.Table;
 public class CampaignNegativeKeywordsPerformanceReport extends Report {
 
   @Column(name = "AccountCurrencyCode")
-  @CsvField(value = "Currency", reportField = "AccountCurrencyCode")
+  @CsvField(value = "Currency", reportField = "AccountCurrencyCode", lowCardinality = true)
   private String accountCurrencyCode;
 
   @Column(name = "AccountDescriptiveName")
@@ -45,7 +45,7 @@ public class CampaignNegativeKeywordsPerformanceReport extends Report {
   private String accountDescriptiveName;
 
   @Column(name = "AccountTimeZone")
-  @CsvField(value = "Time zone", reportField = "AccountTimeZone")
+  @CsvField(value = "Time zone", reportField = "AccountTimeZone", lowCardinality = true)
   private String accountTimeZone;
 
   @Column(name = "BaseCampaignId")
@@ -61,7 +61,7 @@ public class CampaignNegativeKeywordsPerformanceReport extends Report {
   private String campaignName;
 
   @Column(name = "CampaignStatus")
-  @CsvField(value = "Campaign state", reportField = "CampaignStatus")
+  @CsvField(value = "Campaign state", reportField = "CampaignStatus", lowCardinality = true)
   private String campaignStatus;
 
   @Column(name = "Criteria")
@@ -193,19 +193,19 @@ public class CampaignNegativeKeywordsPerformanceReport extends Report {
   @Override
   public void setRowId() {
     // General fields for generating unique id.
-    StringBuilder idBuilder = new StringBuilder(getCustomerId().toString());
+    RowIdBuilder idBuilder = new RowIdBuilder(getCustomerId());
     if (campaignId != null) {
-      idBuilder.append("-").append(campaignId);
+      idBuilder.append(campaignId);
     }
     if (id != null) {
-      idBuilder.append("-").append(id);
+      idBuilder.append(id);
     }
     if (!StringUtils.isEmpty(keywordMatchType)) {
-      idBuilder.append("-").append(keywordMatchType);
+      idBuilder.append(keywordMatchType);
     }
 
     // Include all segmentation fields (if set).
-    this.rowId = idBuilder.toString();
+    this.rowId = idBuilder.build();
   }
 
   @Override
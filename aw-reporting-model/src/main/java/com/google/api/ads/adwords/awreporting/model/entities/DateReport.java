@@ -24,7 +24,6 @@ import javax.persistence.Column;
 import javax.persistence.MappedSuperclass;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
-import org.joda.time.LocalDate;
 
 /**
  * The base abstract class for all Reports segmented by date. For a full list of reports
@@ -45,7 +44,7 @@ public abstract class DateReport extends Report {
   protected String date;
 
   @Column(name = "DayOfWeek", length = 10)
-  @CsvField(value = "Day of week", reportField = "DayOfWeek")
+  @CsvField(value = "Day of week", reportField = "DayOfWeek", lowCardinality = true)
   protected String dayOfWeek;
 
   @Column(name = "HourOfDay")
@@ -61,7 +60,7 @@ public abstract class DateReport extends Report {
   protected String month;
 
   @Column(name = "MonthOfYear", length = 10)
-  @CsvField(value = "Month of Year", reportField = "MonthOfYear")
+  @CsvField(value = "Month of Year", reportField = "MonthOfYear", lowCardinality = true)
   protected String monthOfYear;
 
   @Column(name = "Quarter", length = 10)
@@ -129,9 +128,9 @@ public abstract class DateReport extends Report {
   }
 
   public void setDate(String date) {
-    LocalDate parsedLocalDate = DateUtil.parseLocalDate(date);
-    if (parsedLocalDate != null) {
-      this.date = DateUtil.formatYearMonthDay(parsedLocalDate);
+    String normalizedDate = DateUtil.normalizeYearMonthDay(date);
+    if (normalizedDate != null) {
+      this.date = normalizedDate;
     }
   }
 
@@ -164,9 +163,9 @@ public abstract class DateReport extends Report {
   }
 
   public void setMonth(String month) {
-    LocalDate parseDateTime = DateUtil.parseLocalDate(month);
-    if (parseDateTime != null) {
-      this.month = DateUtil.formatYearMonthDay(parseDateTime);
+    String normalizedMonth = DateUtil.normalizeYearMonthDay(month);
+    if (normalizedMonth != null) {
+      this.month = normalizedMonth;
     }
   }
 
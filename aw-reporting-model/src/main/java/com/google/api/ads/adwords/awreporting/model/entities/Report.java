@@ -16,13 +16,14 @@ package com.google.api.ads.adwords.awreporting.model.entities;
 
 import com.google.api.ads.adwords.awreporting.model.csv.annotation.CsvField;
 import com.google.api.ads.adwords.awreporting.model.persistence.mongodb.MongoEntity;
+import com.google.api.ads.adwords.awreporting.model.persistence.sql.RowIdType;
 import java.util.Date;
 import javax.persistence.Column;
 import javax.persistence.Id;
 import javax.persistence.MappedSuperclass;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
-import org.joda.time.DateTime;
+import org.hibernate.annotations.Type;
 
 /**
  * The base abstract class for all Reports. For a full list of reports and their fields see
@@ -32,6 +33,7 @@ import org.joda.time.DateTime;
 public abstract class Report implements MongoEntity {
   @Id
   @Column(name = "ROW_ID")
+  @Type(type = RowIdType.TYPE_NAME)
   protected String rowId;
 
   @Column(name = "TOP_CUSTOMER_ID")
@@ -54,11 +56,10 @@ public abstract class Report implements MongoEntity {
   protected Long customerId;
 
   /**
-   * Constructor to satisfy Hibernate.
+   * Constructor to satisfy Hibernate. The timestamp is left to the code completing the parsed
+   * rows, which stamps all the rows of a report with the same instance.
    */
-  public Report() {
-    timestamp = new DateTime().toDate();
-  }
+  public Report() {}
 
   /**
    * Constructor for Report base class.
@@ -69,7 +70,6 @@ public abstract class Report implements MongoEntity {
   public Report(Long topCustomerId, Long customerId) {
     this.topCustomerId = topCustomerId;
     this.customerId = customerId;
-    timestamp = new DateTime().toDate();
   }
 
   /**
@@ -0,0 +1,100 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.entities;
+
+import com.google.api.ads.adwords.awreporting.model.persistence.RowIdStorage;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hasher;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds the row id of a report entity from its key fields, which are joined with dashes.
+ *
+ * <p>When {@link RowIdStorage#isBinary()} is enabled, the bytes of the fields and separators are
+ * fed to the digest directly, so the dash-joined string is never built. The digest is the same as
+ * {@link RowIdStorage#hashRowId(String)} of that string.
+ */
+final class RowIdBuilder {
+  private static final char SEPARATOR = '-';
+
+  private final StringBuilder stringBuilder;
+  private final Hasher hasher;
+  private byte[] digits;
+
+  /**
+   * @param customerId the first field of all the row ids
+   */
+  RowIdBuilder(Long customerId) {
+    Preconditions.checkNotNull(customerId, "customerId cannot be null");
+    if (RowIdStorage.isBinary()) {
+      stringBuilder = null;
+      hasher = RowIdStorage.newHasher();
+      digits = new byte[20];
+      putDecimal(customerId.longValue());
+    } else {
+      stringBuilder = new StringBuilder(customerId.toString());
+      hasher = null;
+    }
+  }
+
+  /** Appends a separator and a whole number field. */
+  RowIdBuilder append(Long value) {
+    if (hasher == null) {
+      stringBuilder.append(SEPARATOR).append(value);
+    } else if (value == null) {
+      return append((Object) null);
+    } else {
+      hasher.putByte((byte) SEPARATOR);
+      putDecimal(value.longValue());
+    }
+    return this;
+  }
+
+  /** Appends a separator and a field, converted as {@link StringBuilder#append(Object)} does. */
+  RowIdBuilder append(Object value) {
+    if (hasher == null) {
+      stringBuilder.append(SEPARATOR).append(value);
+    } else {
+      hasher.putByte((byte) SEPARATOR);
+      hasher.putString(String.valueOf(value), StandardCharsets.UTF_8);
+    }
+    return this;
+  }
+
+  /**
+   * Gets the row id: the dash-joined fields, or the hexadecimal digest in binary storage.
+   */
+  String build() {
+    return hasher == null ? stringBuilder.toString() : hasher.hash().toString();
+  }
+
+  /** Feeds the ASCII digits of a number, without converting it to a string. */
+  private void putDecimal(long value) {
+    if (value == Long.MIN_VALUE) {
+      hasher.putString(Long.toString(value), StandardCharsets.UTF_8);
+      return;
+    }
+    int position = digits.length;
+    long remaining = Math.abs(value);
+    do {
+      digits[--position] = (byte) ('0' + remaining % 10);
+      remaining /= 10;
+    } while (remaining != 0);
+    if (value < 0) {
+      digits[--position] = '-';
+    }
+    hasher.putBytes(digits, position, digits.length - position);
+  }
+}
@@ -108,16 +108,16 @@ public class SharedSetCriteriaReport extends Report {
   @Override
   public void setRowId() {
     // General fields for generating unique id.
-    StringBuilder idBuilder = new StringBuilder(getCustomerId().toString());
+    RowIdBuilder idBuilder = new RowIdBuilder(getCustomerId());
     if (id != null) {
-      idBuilder.append("-").append(id);
+      idBuilder.append(id);
     }
     if (sharedSetId != null) {
-      idBuilder.append("-").append(sharedSetId);
+      idBuilder.append(sharedSetId);
     }
 
     // Include all segmentation fields (if set).
-    this.rowId = idBuilder.toString();
+    this.rowId = idBuilder.build();
   }
 
   @Override
@@ -14,7 +14,10 @@
 
 package com.google.api.ads.adwords.awreporting.model.persistence;
 
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -28,13 +31,94 @@ import java.util.List;
  */
 public interface EntityPersister {
 
+  /** The number of rows of the batches of {@link #persistReportStream(Class, Iterator)}. */
+  int REPORT_STREAM_BATCH_SIZE = 1000;
+
   /**
    * Persists the report entities so they can be retrieved later.
    *
    * @param reportEntities the entities that were retrieved from the AW report API.
    */
   void persistReportEntities(List<? extends Report> reportEntities);
-  
+
+  /**
+   * Persists a columnar batch of report rows so they can be retrieved later.
+   *
+   * <p>The default implementation recreates the entities of the batch and persists them with
+   * {@link #persistReportEntities(List)}. Persisters that write the values themselves should
+   * override it to read the columns of the batch directly.
+   *
+   * @param batch the rows that were retrieved from the AW report API.
+   */
+  default void persistReportBatch(ReportBatch<? extends Report> batch) {
+    if (batch != null && !batch.isEmpty()) {
+      persistReportEntities(batch.toReports());
+    }
+  }
+
+  /**
+   * Whether {@link #persistReportBatch(ReportBatch)} reads the columns of the batches directly,
+   * instead of recreating their entities. The default implementation returns {@code false}.
+   */
+  default boolean isReportBatchSupported() {
+    return false;
+  }
+
+  /**
+   * Whether {@link #persistReportStream(Class, Iterator)} persists the rows of a report as they
+   * are read, with a single write, rather than in sets. The default implementation returns
+   * {@code false}.
+   */
+  default boolean isReportStreamSupported() {
+    return false;
+  }
+
+  /**
+   * Persists all the rows of a report, reading them from the iterator while they are persisted, so
+   * that they are never all held in memory.
+   *
+   * <p>The default implementation persists the rows in batches with
+   * {@link #persistReportBatch(ReportBatch)}.
+   *
+   * @param reportClass the report entity class.
+   * @param reports the rows that were retrieved from the AW report API.
+   */
+  default <R extends Report> void persistReportStream(
+      Class<R> reportClass, Iterator<? extends R> reports) {
+    ReportBatch<R> batch = new ReportBatch<R>(reportClass);
+    while (reports.hasNext()) {
+      batch.add(reports.next());
+      if (!reports.hasNext() || batch.size() == REPORT_STREAM_BATCH_SIZE) {
+        persistReportBatch(batch);
+        batch.clear();
+      }
+    }
+  }
+
+  /**
+   * Called once before the rows of a report are persisted for the given accounts and date range,
+   * so persisters can prepare the load, such as clearing the rows of a previous load of the same
+   * range. The default implementation does nothing.
+   *
+   * @param reportClass the report entity class.
+   * @param customerIds the ids of the accounts whose rows are about to be persisted.
+   * @param dateRangeAndType the date range and type of the rows.
+   */
+  default void startReportLoad(
+      Class<? extends Report> reportClass,
+      Collection<Long> customerIds,
+      DateRangeAndType dateRangeAndType) {}
+
+  /**
+   * Called once after the rows of a report that was started with
+   * {@link #startReportLoad(Class, Collection, DateRangeAndType)} were persisted, or failed to be.
+   * The default implementation does nothing.
+   *
+   * @param reportClass the report entity class.
+   * @param completed whether all the rows of the report were processed.
+   */
+  default void finishReportLoad(Class<? extends Report> reportClass, boolean completed) {}
+
   /**
    * Saves and returns the specified non-report entity.
    */
@@ -0,0 +1,79 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence;
+
+import com.google.api.ads.adwords.awreporting.model.csv.annotation.MoneyField;
+import com.google.common.collect.ImmutableList;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds how the persisters store the {@link MoneyField} amounts of the report entities.
+ *
+ * <p>By default the amounts are stored as decimals. When micros storage is enabled, they are stored
+ * as whole numbers of micros (BIGINT columns in SQL, long values in MongoDB), which keeps the full
+ * precision reported by the API. The entities always expose the amounts as {@code BigDecimal}.
+ *
+ * <p>The storage must be selected before the persistence layer is initialized, and an existing
+ * database must not be reused after switching it, as the schema update does not convert columns.
+ */
+public final class MoneyStorage {
+  private static volatile boolean micros;
+
+  private static final ConcurrentMap<Class<?>, List<Field>> moneyFields =
+      new ConcurrentHashMap<Class<?>, List<Field>>();
+
+  private MoneyStorage() {}
+
+  /**
+   * @return true if the money amounts are stored as micros.
+   */
+  public static boolean isMicros() {
+    return micros;
+  }
+
+  /**
+   * @param micros true to store the money amounts as micros, false to store them as decimals.
+   */
+  public static void setMicros(boolean micros) {
+    MoneyStorage.micros = micros;
+  }
+
+  /**
+   * Gets the fields annotated with {@link MoneyField} in the given class and its superclasses.
+   *
+   * @param entityClass the entity class
+   * @return the accessible money fields
+   */
+  public static List<Field> getMoneyFields(Class<?> entityClass) {
+    List<Field> fields = moneyFields.get(entityClass);
+    if (fields == null) {
+      ImmutableList.Builder<Field> builder = ImmutableList.builder();
+      for (Class<?> c = entityClass; c != null && c != Object.class; c = c.getSuperclass()) {
+        for (Field field : c.getDeclaredFields()) {
+          if (field.isAnnotationPresent(MoneyField.class)) {
+            field.setAccessible(true);
+            builder.add(field);
+          }
+        }
+      }
+      fields = builder.build();
+      moneyFields.putIfAbsent(entityClass, fields);
+    }
+    return fields;
+  }
+}
@@ -0,0 +1,599 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence;
+
+import com.google.api.ads.adwords.awreporting.model.csv.annotation.MoneyField;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.persistence.Column;
+
+/**
+ * A batch of report rows of a single report type, stored by column.
+ *
+ * <p>Each persisted property ({@code @Column} field) of the report entity becomes a column backed by
+ * a primitive array: whole numbers and dates as {@code long}s, decimals as an unscaled {@code long}
+ * with a {@code byte} scale, and strings as {@code int} codes into a dictionary shared by all the
+ * columns of the batch. Null values are tracked by a bitmap per column. A batch of N rows therefore
+ * holds a few arrays per column instead of N entities with boxed values, and its size in bytes can
+ * be estimated with {@link #getEstimatedSizeInBytes()} to bound the batches by memory.
+ *
+ * <p>The arrays of a column are only allocated when the column gets its first value. The reports
+ * usually select a small part of the fields of their entities, so the columns of the fields that
+ * were not selected, which are always null, take no storage.
+ *
+ * <p>Sinks that do not need entities, such as bulk JDBC writers, read the values straight from the
+ * {@link ReportColumn}s. The entities can still be recreated with {@link #getReport(int)} or
+ * {@link #toReports()}. A batch is not thread safe.
+ *
+ * @param <R> type of sub Report.
+ */
+public final class ReportBatch<R extends Report> {
+  private static final int DEFAULT_CAPACITY = 256;
+
+  /** The persisted fields of each report class, in the order Gson serializes them. */
+  private static final ConcurrentMap<Class<?>, List<Field>> persistedFields =
+      new ConcurrentHashMap<Class<?>, List<Field>>();
+
+  /** How the values of a column are stored. */
+  public enum ColumnType {
+    /** {@code Long} and {@code Integer} values, stored as {@code long}s. */
+    LONG,
+    /** {@code BigDecimal} values, stored as an unscaled {@code long} and a {@code byte} scale. */
+    DECIMAL,
+    /** {@code Date} values, stored as milliseconds since the epoch. */
+    TIMESTAMP,
+    /** {@code String} values, stored as codes into the dictionary of the batch. */
+    STRING
+  }
+
+  private final Class<R> reportClass;
+  private final Constructor<R> constructor;
+  private final ImmutableList<ReportColumn> columns;
+  private final List<String> dictionary = new ArrayList<String>();
+  private final Map<String, Integer> dictionaryCodes = new HashMap<String, Integer>();
+  private long dictionaryBytes;
+  private int size;
+  private int capacity;
+
+  /**
+   * @param reportClass the class of the report entities
+   */
+  public ReportBatch(Class<R> reportClass) {
+    this(reportClass, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param reportClass the class of the report entities
+   * @param initialCapacity the number of rows the batch can hold before growing
+   */
+  public ReportBatch(Class<R> reportClass, int initialCapacity) {
+    Preconditions.checkArgument(initialCapacity > 0, "initialCapacity must be > 0");
+    this.reportClass = reportClass;
+    try {
+      constructor = reportClass.getDeclaredConstructor();
+      constructor.setAccessible(true);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalArgumentException(reportClass + " has no default constructor", e);
+    }
+
+    capacity = initialCapacity;
+    ImmutableList.Builder<ReportColumn> builder = ImmutableList.builder();
+    for (Field field : getPersistedFields(reportClass)) {
+      builder.add(new ReportColumn(field));
+    }
+    columns = builder.build();
+  }
+
+  public Class<R> getReportClass() {
+    return reportClass;
+  }
+
+  /** Gets the columns of the batch, one per persisted property of the report entity. */
+  public List<ReportColumn> getColumns() {
+    return columns;
+  }
+
+  /** Gets the number of rows of the batch. */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Appends the values of the report as a new row.
+   *
+   * @param report the report entity, which is not referenced by the batch afterwards
+   */
+  public void add(R report) {
+    Preconditions.checkArgument(
+        report.getClass() == reportClass,
+        "Expected a %s but got a %s", reportClass.getName(), report.getClass().getName());
+    ensureCapacity(size + 1);
+    for (ReportColumn column : columns) {
+      column.setValue(size, column.readField(report));
+    }
+    size++;
+  }
+
+  /** Appends all the reports, in order. */
+  public void addAll(Iterable<? extends R> reports) {
+    for (R report : reports) {
+      add(report);
+    }
+  }
+
+  /**
+   * Appends a range of rows of another batch of the same report class, copying the values column
+   * by column, without recreating the entities.
+   *
+   * @param batch the batch to copy the rows from
+   * @param fromRow the first row to copy
+   * @param toRow the row after the last row to copy
+   */
+  public void addRows(ReportBatch<? extends R> batch, int fromRow, int toRow) {
+    Preconditions.checkArgument(
+        batch.reportClass == reportClass,
+        "Expected a batch of %s but got one of %s",
+        reportClass.getName(),
+        batch.reportClass.getName());
+    Preconditions.checkPositionIndexes(fromRow, toRow, batch.size);
+    ensureCapacity(size + toRow - fromRow);
+    for (int i = 0; i < columns.size(); i++) {
+      ReportColumn column = columns.get(i);
+      ReportBatch<?>.ReportColumn sourceColumn = batch.columns.get(i);
+      if (!sourceColumn.isAllocated()) {
+        column.setNulls(size, size + toRow - fromRow);
+        continue;
+      }
+      for (int row = fromRow; row < toRow; row++) {
+        column.copyValue(size + row - fromRow, sourceColumn, row);
+      }
+    }
+    size += toRow - fromRow;
+  }
+
+  /**
+   * Estimates the memory held by the rows of the batch: the array slots of the rows in the
+   * allocated columns and the distinct strings of the dictionary.
+   */
+  public long getEstimatedSizeInBytes() {
+    long rowBytes = 0;
+    for (ReportColumn column : columns) {
+      rowBytes += column.getBytesPerValue();
+    }
+    return rowBytes * size + dictionaryBytes;
+  }
+
+  /** Removes all the rows, keeping the allocated arrays for the next rows. */
+  public void clear() {
+    for (ReportColumn column : columns) {
+      column.clear();
+    }
+    dictionary.clear();
+    dictionaryCodes.clear();
+    dictionaryBytes = 0;
+    size = 0;
+  }
+
+  /** Gets the number of distinct strings of the batch. */
+  public int getDictionarySize() {
+    return dictionary.size();
+  }
+
+  /**
+   * Gets the string of a dictionary code.
+   *
+   * @param code the code, as returned by {@link ReportColumn#getStringCode(int)}
+   */
+  public String getDictionaryString(int code) {
+    return dictionary.get(code);
+  }
+
+  /**
+   * Recreates the report entity of a row.
+   *
+   * @param row the index of the row
+   * @return a new entity with the values of the row
+   */
+  public R getReport(int row) {
+    Preconditions.checkElementIndex(row, size);
+    R report;
+    try {
+      report = constructor.newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Failed to instantiate " + reportClass.getName(), e);
+    }
+    for (ReportColumn column : columns) {
+      if (column.isAllocated()) {
+        column.writeField(report, column.getValue(row));
+      }
+    }
+    return report;
+  }
+
+  /** Recreates the report entities of all the rows, in order. */
+  public List<R> toReports() {
+    List<R> reports = Lists.newArrayListWithCapacity(size);
+    for (int row = 0; row < size; row++) {
+      reports.add(getReport(row));
+    }
+    return reports;
+  }
+
+  private void ensureCapacity(int minCapacity) {
+    if (minCapacity <= capacity) {
+      return;
+    }
+    capacity = Math.max(capacity * 2, minCapacity);
+    for (ReportColumn column : columns) {
+      column.grow(capacity);
+    }
+  }
+
+  private int encode(String value) {
+    Integer code = dictionaryCodes.get(value);
+    if (code == null) {
+      code = dictionary.size();
+      dictionary.add(value);
+      dictionaryCodes.put(value, code);
+      // The string, its characters and the entries of the dictionary list and map.
+      dictionaryBytes += 40 + 2L * value.length() + 40;
+    }
+    return code;
+  }
+
+  /**
+   * Finds the persisted fields of a report class: the {@code @Column} fields of the class and its
+   * super classes, starting with the fields of the class itself.
+   */
+  private static List<Field> getPersistedFields(Class<?> reportClass) {
+    List<Field> fields = persistedFields.get(reportClass);
+    if (fields == null) {
+      ImmutableList.Builder<Field> builder = ImmutableList.builder();
+      for (Class<?> c = reportClass; c != null && c != Object.class; c = c.getSuperclass()) {
+        for (Field field : c.getDeclaredFields()) {
+          if (!Modifier.isStatic(field.getModifiers()) && field.isAnnotationPresent(Column.class)) {
+            field.setAccessible(true);
+            builder.add(field);
+          }
+        }
+      }
+      fields = builder.build();
+      persistedFields.putIfAbsent(reportClass, fields);
+    }
+    return fields;
+  }
+
+  private static ColumnType getColumnType(Field field) {
+    Class<?> type = field.getType();
+    if (type == Long.class || type == Integer.class) {
+      return ColumnType.LONG;
+    } else if (type == BigDecimal.class) {
+      return ColumnType.DECIMAL;
+    } else if (type == Date.class) {
+      return ColumnType.TIMESTAMP;
+    } else if (type == String.class) {
+      return ColumnType.STRING;
+    }
+    throw new IllegalArgumentException(
+        "Unsupported type " + type.getName() + " of field " + field.getName());
+  }
+
+  /**
+   * The values of one property of the rows of a {@link ReportBatch}.
+   */
+  public final class ReportColumn {
+    private final Field field;
+    private final String columnName;
+    private final ColumnType type;
+    private final boolean money;
+
+    private long[] nulls;
+    private long[] longs;
+    private byte[] scales;
+    private int[] codes;
+    /** The decimals that do not fit into a long and a byte scale, which are very rare. */
+    private Map<Integer, BigDecimal> largeDecimals;
+
+    private ReportColumn(Field field) {
+      this.field = field;
+      this.columnName = field.getAnnotation(Column.class).name();
+      this.type = getColumnType(field);
+      this.money = field.isAnnotationPresent(MoneyField.class);
+    }
+
+    /** Gets the name of the entity property. */
+    public String getName() {
+      return field.getName();
+    }
+
+    /** Gets the name of the database column of the property. */
+    public String getColumnName() {
+      return columnName;
+    }
+
+    public ColumnType getType() {
+      return type;
+    }
+
+    /** Gets the type of the entity property. */
+    public Class<?> getJavaType() {
+      return field.getType();
+    }
+
+    /** Whether the property is a money amount, annotated with {@code @MoneyField}. */
+    public boolean isMoney() {
+      return money;
+    }
+
+    /**
+     * Whether the arrays of the column were allocated, that is whether any row added since the
+     * batch was created had a value in the column. All the values of the other columns are null.
+     */
+    public boolean isAllocated() {
+      return nulls != null;
+    }
+
+    public boolean isNull(int row) {
+      return nulls == null || (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Gets the value of a {@link ColumnType#LONG} or {@link ColumnType#TIMESTAMP} column, which
+     * must not be null.
+     */
+    public long getLong(int row) {
+      Preconditions.checkState(type == ColumnType.LONG || type == ColumnType.TIMESTAMP);
+      return longs[row];
+    }
+
+    /** Gets the value of a {@link ColumnType#DECIMAL} column, or {@code null}. */
+    public BigDecimal getDecimal(int row) {
+      Preconditions.checkState(type == ColumnType.DECIMAL);
+      if (isNull(row)) {
+        return null;
+      }
+      if (largeDecimals != null) {
+        BigDecimal value = largeDecimals.get(row);
+        if (value != null) {
+          return value;
+        }
+      }
+      return BigDecimal.valueOf(longs[row], scales[row]);
+    }
+
+    /**
+     * Gets the dictionary code of a {@link ColumnType#STRING} column, which must not be null.
+     *
+     * @see ReportBatch#getDictionaryString(int)
+     */
+    public int getStringCode(int row) {
+      Preconditions.checkState(type == ColumnType.STRING);
+      return codes[row];
+    }
+
+    /** Gets the value of a {@link ColumnType#STRING} column, or {@code null}. */
+    public String getString(int row) {
+      Preconditions.checkState(type == ColumnType.STRING);
+      return isNull(row) ? null : dictionary.get(codes[row]);
+    }
+
+    /**
+     * Gets the value of a row as the type of the entity property.
+     *
+     * @return the value, or {@code null}
+     */
+    public Object getValue(int row) {
+      if (isNull(row)) {
+        return null;
+      }
+      switch (type) {
+        case LONG:
+          if (field.getType() == Integer.class) {
+            return Integer.valueOf((int) longs[row]);
+          }
+          return Long.valueOf(longs[row]);
+        case DECIMAL:
+          return getDecimal(row);
+        case TIMESTAMP:
+          return new Date(longs[row]);
+        case STRING:
+          return dictionary.get(codes[row]);
+        default:
+          throw new AssertionError(type);
+      }
+    }
+
+    private void setValue(int row, Object value) {
+      if (value == null) {
+        if (nulls != null) {
+          nulls[row >>> 6] |= 1L << row;
+        }
+        return;
+      }
+      if (nulls == null) {
+        allocate(row);
+      }
+      switch (type) {
+        case LONG:
+          longs[row] = ((Number) value).longValue();
+          break;
+        case DECIMAL:
+          setDecimal(row, (BigDecimal) value);
+          break;
+        case TIMESTAMP:
+          longs[row] = ((Date) value).getTime();
+          break;
+        case STRING:
+          codes[row] = encode((String) value);
+          break;
+        default:
+          throw new AssertionError(type);
+      }
+    }
+
+    /** Marks the rows of the range as null. */
+    private void setNulls(int fromRow, int toRow) {
+      if (nulls != null) {
+        for (int row = fromRow; row < toRow; row++) {
+          nulls[row >>> 6] |= 1L << row;
+        }
+      }
+    }
+
+    /**
+     * Copies the value of a row of the same column of another batch, re-encoding the strings into
+     * the dictionary of this batch.
+     */
+    private void copyValue(int row, ReportBatch<?>.ReportColumn source, int sourceRow) {
+      if (source.isNull(sourceRow)) {
+        setValue(row, null);
+        return;
+      }
+      if (nulls == null) {
+        allocate(row);
+      }
+      switch (type) {
+        case LONG:
+        case TIMESTAMP:
+          longs[row] = source.longs[sourceRow];
+          break;
+        case DECIMAL:
+          BigDecimal largeDecimal =
+              source.largeDecimals == null ? null : source.largeDecimals.get(sourceRow);
+          if (largeDecimal != null) {
+            setDecimal(row, largeDecimal);
+          } else {
+            longs[row] = source.longs[sourceRow];
+            scales[row] = source.scales[sourceRow];
+          }
+          break;
+        case STRING:
+          codes[row] = encode(source.getString(sourceRow));
+          break;
+        default:
+          throw new AssertionError(type);
+      }
+    }
+
+    private void setDecimal(int row, BigDecimal value) {
+      BigInteger unscaled = value.unscaledValue();
+      int scale = value.scale();
+      if (unscaled.bitLength() < 64 && scale >= Byte.MIN_VALUE && scale <= Byte.MAX_VALUE) {
+        longs[row] = unscaled.longValue();
+        scales[row] = (byte) scale;
+      } else {
+        if (largeDecimals == null) {
+          largeDecimals = new HashMap<Integer, BigDecimal>();
+        }
+        largeDecimals.put(row, value);
+      }
+    }
+
+    private Object readField(Report report) {
+      try {
+        return field.get(report);
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException("Failed to read field " + field.getName(), e);
+      }
+    }
+
+    private void writeField(Report report, Object value) {
+      try {
+        field.set(report, value);
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException("Failed to write field " + field.getName(), e);
+      }
+    }
+
+    /**
+     * Allocates the arrays of the column, for its first value at the given row. The previous rows
+     * are marked as null.
+     */
+    private void allocate(int row) {
+      nulls = new long[bitmapLength(capacity)];
+      for (int i = 0; i < row; i++) {
+        nulls[i >>> 6] |= 1L << i;
+      }
+      if (type == ColumnType.STRING) {
+        codes = new int[capacity];
+      } else {
+        longs = new long[capacity];
+      }
+      if (type == ColumnType.DECIMAL) {
+        scales = new byte[capacity];
+      }
+    }
+
+    private int getBytesPerValue() {
+      if (nulls == null) {
+        return 0;
+      }
+      switch (type) {
+        case DECIMAL:
+          return 9;
+        case STRING:
+          return 4;
+        default:
+          return 8;
+      }
+    }
+
+    private void grow(int newCapacity) {
+      if (nulls == null) {
+        return;
+      }
+      nulls = Arrays.copyOf(nulls, bitmapLength(newCapacity));
+      if (codes != null) {
+        codes = Arrays.copyOf(codes, newCapacity);
+      }
+      if (longs != null) {
+        longs = Arrays.copyOf(longs, newCapacity);
+      }
+      if (scales != null) {
+        scales = Arrays.copyOf(scales, newCapacity);
+      }
+    }
+
+    private void clear() {
+      if (nulls != null) {
+        Arrays.fill(nulls, 0L);
+      }
+      largeDecimals = null;
+    }
+  }
+
+  private static int bitmapLength(int capacity) {
+    return (capacity + 63) >>> 6;
+  }
+}
@@ -0,0 +1,91 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Holds how the persisters store the row ids, the primary keys of the report entities.
+ *
+ * <p>By default the row id is the dash-joined string of the key fields of the row, such as
+ * {@code customer-campaign-adgroup-date-device}, stored in a VARCHAR column. When binary storage is
+ * enabled, the row id is the 128-bit Murmur3 digest of the UTF-8 bytes of that string. The entities
+ * expose the digest as 32 hexadecimal characters, and the persisters store its 16 bytes (binary
+ * columns in SQL, binary {@code _id}s in MongoDB), which keeps the primary key indexes small.
+ *
+ * <p>The storage must be selected before the persistence layer is initialized. The existing tables
+ * must be converted with {@code RowIdMigration} after switching to binary storage, as the digest of
+ * a row can be computed from its string row id.
+ */
+public final class RowIdStorage {
+
+  /** The number of bytes of the binary row ids. */
+  public static final int BINARY_LENGTH = 16;
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  private static volatile boolean binary;
+
+  private RowIdStorage() {}
+
+  /**
+   * @return true if the row ids are stored as binary digests.
+   */
+  public static boolean isBinary() {
+    return binary;
+  }
+
+  /**
+   * @param binary true to store the row ids as binary digests, false to store them as strings.
+   */
+  public static void setBinary(boolean binary) {
+    RowIdStorage.binary = binary;
+  }
+
+  /**
+   * Creates the hasher that computes a binary row id from the bytes of its string form.
+   */
+  public static Hasher newHasher() {
+    return HASH_FUNCTION.newHasher();
+  }
+
+  /**
+   * Computes the binary row id of a string row id, as hexadecimal characters.
+   *
+   * @param rowId the dash-joined string row id
+   * @return the same value as the entities build in binary storage
+   */
+  public static String hashRowId(String rowId) {
+    return HASH_FUNCTION.hashString(rowId, StandardCharsets.UTF_8).toString();
+  }
+
+  /**
+   * Converts a binary row id from hexadecimal characters to its bytes.
+   */
+  public static byte[] toBytes(String rowId) {
+    return HashCode.fromString(rowId).asBytes();
+  }
+
+  /**
+   * Converts the bytes of a binary row id to hexadecimal characters.
+   */
+  public static String fromBytes(byte[] bytes) {
+    return HashCode.fromBytes(bytes).toString();
+  }
+}
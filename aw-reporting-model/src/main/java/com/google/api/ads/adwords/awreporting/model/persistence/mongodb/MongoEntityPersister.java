@@ -16,6 +16,10 @@ package com.google.api.ads.adwords.awreporting.model.persistence.mongodb;
 
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
 import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.api.ads.adwords.awreporting.model.persistence.MoneyStorage;
+import com.google.api.ads.adwords.awreporting.model.persistence.ReportBatch;
+import com.google.api.ads.adwords.awreporting.model.persistence.RowIdStorage;
+import com.google.api.ads.adwords.awreporting.model.util.BigDecimalUtil;
 import com.google.api.ads.adwords.awreporting.model.util.GsonUtil;
 import com.google.gson.Gson;
 import com.mongodb.BasicDBObject;
@@ -27,6 +31,8 @@ import com.mongodb.MongoClient;
 import com.mongodb.MongoClientURI;
 import com.mongodb.MongoException;
 import com.mongodb.WriteConcern;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
@@ -36,6 +42,10 @@ import java.util.List;
  */
 public class MongoEntityPersister implements EntityPersister {
 
+  /** The BSON types of the string and binary {@code _id}s, for {@code $type} queries. */
+  private static final int BSON_STRING = 2;
+  private static final int BSON_BINARY = 5;
+
   private MongoClient mongoClient;
   private DB db;
   private Gson gson = GsonUtil.createGson();
@@ -45,11 +55,43 @@ public class MongoEntityPersister implements EntityPersister {
    *
    * @param mongoConnectionUrl the Mongo connection url
    * @param mongoDataBaseName the Mongo database name
+   * @throws IllegalStateException if a report collection stores its row ids as strings while they
+   *     are stored as binary digests, or the other way around.
    */
   public MongoEntityPersister(String mongoConnectionUrl, String mongoDataBaseName)
       throws UnknownHostException, MongoException {
     mongoClient = new MongoClient(new MongoClientURI(mongoConnectionUrl));
     db = mongoClient.getDB(mongoDataBaseName);
+    checkRowIdStorage();
+  }
+
+  /**
+   * Checks that the documents of the report collections have the {@code _id}s of the selected
+   * {@link RowIdStorage}, as the rows saved with the other kind would be duplicated instead of
+   * replaced. The collections are not migrated, unlike the SQL tables.
+   */
+  private void checkRowIdStorage() {
+    boolean binary = RowIdStorage.isBinary();
+    DBObject otherStorageQuery =
+        new BasicDBObject("_id", new BasicDBObject("$type", binary ? BSON_STRING : BSON_BINARY));
+    for (String collectionName : db.getCollectionNames()) {
+      if (isReportCollection(collectionName)
+          && db.getCollection(collectionName).findOne(otherStorageQuery) != null) {
+        throw new IllegalStateException(
+            "The collection " + collectionName + " stores the row ids as "
+                + (binary ? "strings" : "binary digests")
+                + ", set aw.report.model.rowid.binary=" + !binary
+                + " or load the reports into a new database.");
+      }
+    }
+  }
+
+  private static boolean isReportCollection(String collectionName) {
+    try {
+      return Report.class.isAssignableFrom(Class.forName(collectionName));
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
   }
   
   @Override
@@ -60,13 +102,44 @@ public class MongoEntityPersister implements EntityPersister {
         DBObject dbObject = (DBObject) com.mongodb.util.JSON.parse(jsonObject.toString());
 
         // Set the proper _id from the MongoEntity RowID
-        dbObject.put("_id", ((MongoEntity) report).getRowId());
+        dbObject.put("_id", toDocumentId(report.getRowId()));
+        if (MoneyStorage.isMicros()) {
+          putMoneyAsMicros(report, dbObject);
+        }
 
         getCollection(report.getClass()).save(dbObject);
       }
     }
   }
 
+  /**
+   * Builds the documents straight from the columns of the batch, with the same values as the
+   * documents built from the entities by {@link #persistReportEntities(List)}.
+   */
+  @Override
+  public void persistReportBatch(ReportBatch<? extends Report> batch) {
+    if (batch == null || batch.isEmpty()) {
+      return;
+    }
+    DBCollection collection = getCollection(batch.getReportClass());
+    boolean micros = MoneyStorage.isMicros();
+    for (int row = 0; row < batch.size(); row++) {
+      BasicDBObject dbObject = new BasicDBObject();
+      for (ReportBatch<?>.ReportColumn column : batch.getColumns()) {
+        if (!column.isNull(row)) {
+          dbObject.put(column.getName(), toDocumentValue(column, row, micros));
+        }
+      }
+      dbObject.put("_id", toDocumentId((String) dbObject.get("rowId")));
+      collection.save(dbObject);
+    }
+  }
+
+  @Override
+  public boolean isReportBatchSupported() {
+    return true;
+  }
+
   @Override
   public <T> T save(T t) {
     T newT = null;
@@ -96,12 +169,80 @@ public class MongoEntityPersister implements EntityPersister {
     List<T> list = new ArrayList<T>();
     while (cur.hasNext()) {
       DBObject dbObject = cur.next();
+      if (MoneyStorage.isMicros()) {
+        putMoneyFromMicros(classT, dbObject);
+      }
       list.add(gson.fromJson(com.mongodb.util.JSON.serialize(dbObject), classT));
     }
     
     return list;
   }
   
+  /**
+   * Converts a value of a batch column to the value Gson and the JSON parser put in a document for
+   * the entity property: numbers as Integer, Long or Double, and dates as formatted strings.
+   */
+  private Object toDocumentValue(ReportBatch<?>.ReportColumn column, int row, boolean micros) {
+    switch (column.getType()) {
+      case LONG:
+        return toJsonNumber(column.getLong(row));
+      case DECIMAL:
+        BigDecimal amount = column.getDecimal(row);
+        if (micros && column.isMoney()) {
+          return BigDecimalUtil.toMicros(amount);
+        }
+        String number = amount.toString();
+        return number.indexOf('.') >= 0 || number.indexOf('E') >= 0
+            ? Double.valueOf(number)
+            : toJsonNumber(Long.parseLong(number));
+      case TIMESTAMP:
+        return gson.toJsonTree(column.getValue(row)).getAsString();
+      default:
+        return column.getString(row);
+    }
+  }
+
+  /**
+   * Gets the {@code _id} of the document of a report: the row id, or its bytes when the row ids are
+   * stored as binary digests.
+   */
+  private static Object toDocumentId(String rowId) {
+    return RowIdStorage.isBinary() ? RowIdStorage.toBytes(rowId) : rowId;
+  }
+
+  private static Object toJsonNumber(long value) {
+    return value == (int) value ? Integer.valueOf((int) value) : Long.valueOf(value);
+  }
+
+  /**
+   * Replaces the money amounts of the report, which Gson serializes as decimals, with the amounts
+   * in micros.
+   */
+  private static void putMoneyAsMicros(Report report, DBObject dbObject) {
+    for (Field field : MoneyStorage.getMoneyFields(report.getClass())) {
+      try {
+        BigDecimal amount = (BigDecimal) field.get(report);
+        if (amount != null) {
+          dbObject.put(field.getName(), BigDecimalUtil.toMicros(amount));
+        }
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException("Failed to read money field " + field.getName(), e);
+      }
+    }
+  }
+
+  /**
+   * Replaces the money amounts stored in micros with the decimal amounts expected by the entities.
+   */
+  private static void putMoneyFromMicros(Class<?> classT, DBObject dbObject) {
+    for (Field field : MoneyStorage.getMoneyFields(classT)) {
+      Object micros = dbObject.get(field.getName());
+      if (micros instanceof Number) {
+        dbObject.put(field.getName(), BigDecimalUtil.fromMicros(((Number) micros).longValue()));
+      }
+    }
+  }
+
   private <T> DBCollection getCollection(Class<T> classT) {
     if (db.collectionExists(classT.getCanonicalName())) {
       return  db.getCollection(classT.getCanonicalName());
@@ -0,0 +1,115 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.api.ads.adwords.awreporting.model.persistence.MoneyStorage;
+import com.google.api.ads.adwords.awreporting.model.util.BigDecimalUtil;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Objects;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.usertype.UserType;
+
+/**
+ * Hibernate type of the {@code BigDecimal} money amounts of the report entities.
+ *
+ * <p>The amounts are mapped to NUMERIC columns, as the default {@code BigDecimal} mapping, unless
+ * {@link MoneyStorage#isMicros()} is enabled, in which case they are mapped to BIGINT columns
+ * holding the amounts in micros.
+ */
+public class MoneyType implements UserType {
+
+  /** The name to reference this type from the {@code @Type} annotations. */
+  public static final String TYPE_NAME =
+      "com.google.api.ads.adwords.awreporting.model.persistence.sql.MoneyType";
+
+  private static int getSqlType() {
+    return MoneyStorage.isMicros() ? Types.BIGINT : Types.NUMERIC;
+  }
+
+  @Override
+  public int[] sqlTypes() {
+    return new int[] {getSqlType()};
+  }
+
+  @Override
+  public Class<?> returnedClass() {
+    return BigDecimal.class;
+  }
+
+  @Override
+  public boolean equals(Object x, Object y) {
+    return Objects.equals(x, y);
+  }
+
+  @Override
+  public int hashCode(Object x) {
+    return Objects.hashCode(x);
+  }
+
+  @Override
+  public Object nullSafeGet(
+      ResultSet rs, String[] names, SharedSessionContractImplementor session, Object owner)
+      throws SQLException {
+    if (MoneyStorage.isMicros()) {
+      long micros = rs.getLong(names[0]);
+      return rs.wasNull() ? null : BigDecimalUtil.fromMicros(micros);
+    }
+    return rs.getBigDecimal(names[0]);
+  }
+
+  @Override
+  public void nullSafeSet(
+      PreparedStatement st, Object value, int index, SharedSessionContractImplementor session)
+      throws SQLException {
+    if (value == null) {
+      st.setNull(index, getSqlType());
+    } else if (MoneyStorage.isMicros()) {
+      st.setLong(index, BigDecimalUtil.toMicros((BigDecimal) value));
+    } else {
+      st.setBigDecimal(index, (BigDecimal) value);
+    }
+  }
+
+  @Override
+  public Object deepCopy(Object value) {
+    // BigDecimal is immutable.
+    return value;
+  }
+
+  @Override
+  public boolean isMutable() {
+    return false;
+  }
+
+  @Override
+  public Serializable disassemble(Object value) {
+    return (Serializable) value;
+  }
+
+  @Override
+  public Object assemble(Serializable cached, Object owner) {
+    return cached;
+  }
+
+  @Override
+  public Object replace(Object original, Object target, Object owner) {
+    return original;
+  }
+}
@@ -0,0 +1,253 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.RowIdStorage;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import javax.persistence.Table;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts the string row ids of existing report tables to binary row ids, for switching to
+ * {@link RowIdStorage#isBinary() binary storage}.
+ *
+ * <p>Each table gets a BINARY(16) column that is filled with the digests of the string row ids, in
+ * committed pages, so an interrupted migration resumes where it stopped. The string column is then
+ * replaced by the binary one as the primary key. Tables that do not exist, or whose row ids are
+ * already binary, are skipped.
+ */
+public class RowIdMigration {
+  private static final Logger logger = LoggerFactory.getLogger(RowIdMigration.class);
+
+  private static final String ROW_ID = "ROW_ID";
+  private static final String BINARY_ROW_ID = "ROW_ID_BINARY";
+  private static final String BINARY_TYPE = "BINARY(" + RowIdStorage.BINARY_LENGTH + ")";
+  private static final int DEFAULT_PAGE_SIZE = 10000;
+
+  /** The SQL dialects the migration statements are written for. */
+  public enum Dialect {
+    MYSQL,
+    MSSQL
+  }
+
+  private final DataSource dataSource;
+  private final Dialect dialect;
+  private final int pageSize;
+
+  /**
+   * @param dataSource the data source of the report tables.
+   * @param dialect the SQL dialect of the database.
+   */
+  public RowIdMigration(DataSource dataSource, Dialect dialect) {
+    this(dataSource, dialect, DEFAULT_PAGE_SIZE);
+  }
+
+  /**
+   * @param dataSource the data source of the report tables.
+   * @param dialect the SQL dialect of the database.
+   * @param pageSize the number of rows updated in each transaction.
+   */
+  public RowIdMigration(DataSource dataSource, Dialect dialect, int pageSize) {
+    Preconditions.checkArgument(pageSize > 0, "pageSize must be > 0");
+    this.dataSource = Preconditions.checkNotNull(dataSource, "dataSource cannot be null");
+    this.dialect = Preconditions.checkNotNull(dialect, "dialect cannot be null");
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * Migrates the tables of the given report entities.
+   *
+   * @param reportClasses the report entity classes.
+   * @return the number of rows that were migrated.
+   * @throws SQLException error accessing the database.
+   */
+  public long migrate(Iterable<Class<? extends Report>> reportClasses) throws SQLException {
+    long rows = 0;
+    for (Class<? extends Report> reportClass : reportClasses) {
+      Table table = reportClass.getAnnotation(Table.class);
+      if (table != null) {
+        rows += migrateTable(table.name());
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Migrates a report table.
+   *
+   * @param tableName the name of the table.
+   * @return the number of rows that were migrated.
+   * @throws SQLException error accessing the database.
+   */
+  public long migrateTable(String tableName) throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      Integer rowIdType = getColumnType(connection, tableName, ROW_ID);
+      if (rowIdType == null) {
+        logger.debug("Skipping {}, which has no row ids.", tableName);
+        return 0;
+      }
+      if (rowIdType == Types.BINARY || rowIdType == Types.VARBINARY) {
+        logger.info("Skipping {}, whose row ids are already binary.", tableName);
+        return 0;
+      }
+
+      logger.info("Migrating the row ids of {}...", tableName);
+      if (getColumnType(connection, tableName, BINARY_ROW_ID) == null) {
+        execute(
+            connection, "ALTER TABLE " + tableName + " ADD " + BINARY_ROW_ID + " " + BINARY_TYPE);
+      }
+      long rows = fillBinaryRowIds(connection, tableName);
+      replaceRowIdColumn(connection, tableName);
+      logger.info("Migrated {} row ids of {}.", rows, tableName);
+      return rows;
+    }
+  }
+
+  /**
+   * Computes the binary row ids of the rows that do not have one yet, one page at a time. The pages
+   * are read in row id order from the primary key, each one starting after the last row id of the
+   * previous page, so every row is read once.
+   */
+  long fillBinaryRowIds(Connection connection, String tableName) throws SQLException {
+    boolean autoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
+    long rows = 0;
+    String selectSql =
+        "SELECT " + ROW_ID + " FROM " + tableName
+            + " WHERE " + ROW_ID + " > ? AND " + BINARY_ROW_ID + " IS NULL"
+            + " ORDER BY " + ROW_ID;
+    String updateSql =
+        "UPDATE " + tableName + " SET " + BINARY_ROW_ID + " = ? WHERE " + ROW_ID + " = ?";
+    try (PreparedStatement select = connection.prepareStatement(selectSql);
+        PreparedStatement update = connection.prepareStatement(updateSql)) {
+      select.setMaxRows(pageSize);
+      String lastRowId = "";
+      while (true) {
+        List<String> rowIds = Lists.newArrayListWithCapacity(pageSize);
+        select.setString(1, lastRowId);
+        try (ResultSet resultSet = select.executeQuery()) {
+          while (resultSet.next()) {
+            rowIds.add(resultSet.getString(1));
+          }
+        }
+        if (rowIds.isEmpty()) {
+          break;
+        }
+        for (String rowId : rowIds) {
+          update.setBytes(1, RowIdStorage.toBytes(RowIdStorage.hashRowId(rowId)));
+          update.setString(2, rowId);
+          update.addBatch();
+        }
+        update.executeBatch();
+        connection.commit();
+        rows += rowIds.size();
+        lastRowId = rowIds.get(rowIds.size() - 1);
+        logger.debug("Migrated {} row ids of {}.", rows, tableName);
+      }
+    } catch (SQLException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.setAutoCommit(autoCommit);
+    }
+    return rows;
+  }
+
+  /**
+   * Replaces the string row id column by the binary one, as the primary key of the table.
+   */
+  private void replaceRowIdColumn(Connection connection, String tableName) throws SQLException {
+    switch (dialect) {
+      case MYSQL:
+        execute(
+            connection,
+            "ALTER TABLE " + tableName
+                + " DROP PRIMARY KEY,"
+                + " DROP COLUMN " + ROW_ID + ","
+                + " CHANGE COLUMN " + BINARY_ROW_ID + " " + ROW_ID + " " + BINARY_TYPE
+                + " NOT NULL,"
+                + " ADD PRIMARY KEY (" + ROW_ID + ")");
+        break;
+      case MSSQL:
+        String primaryKey = getMssqlPrimaryKeyName(connection, tableName);
+        if (primaryKey != null) {
+          execute(connection, "ALTER TABLE " + tableName + " DROP CONSTRAINT " + primaryKey);
+        }
+        execute(connection, "ALTER TABLE " + tableName + " DROP COLUMN " + ROW_ID);
+        execute(
+            connection,
+            "EXEC sp_rename '" + tableName + "." + BINARY_ROW_ID + "', '" + ROW_ID + "', 'COLUMN'");
+        execute(
+            connection,
+            "ALTER TABLE " + tableName + " ALTER COLUMN " + ROW_ID + " " + BINARY_TYPE
+                + " NOT NULL");
+        execute(connection, "ALTER TABLE " + tableName + " ADD PRIMARY KEY (" + ROW_ID + ")");
+        break;
+      default:
+        throw new IllegalStateException("Unknown dialect: " + dialect);
+    }
+  }
+
+  private static String getMssqlPrimaryKeyName(Connection connection, String tableName)
+      throws SQLException {
+    try (PreparedStatement statement =
+        connection.prepareStatement(
+            "SELECT name FROM sys.key_constraints"
+                + " WHERE type = 'PK' AND parent_object_id = OBJECT_ID(?)")) {
+      statement.setString(1, tableName);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next() ? resultSet.getString(1) : null;
+      }
+    }
+  }
+
+  /**
+   * Gets the JDBC type of a column, or {@code null} if the table or the column does not exist. Only
+   * the catalog of the connection is searched, as MySQL databases are catalogs which may have
+   * tables of the same name.
+   */
+  private static Integer getColumnType(Connection connection, String tableName, String columnName)
+      throws SQLException {
+    DatabaseMetaData metaData = connection.getMetaData();
+    try (ResultSet columns =
+        metaData.getColumns(connection.getCatalog(), null, tableName, null)) {
+      while (columns.next()) {
+        if (columnName.equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+          return columns.getInt("DATA_TYPE");
+        }
+      }
+    }
+    return null;
+  }
+
+  private static void execute(Connection connection, String sql) throws SQLException {
+    logger.debug(sql);
+    try (Statement statement = connection.createStatement()) {
+      statement.execute(sql);
+    }
+  }
+}
@@ -0,0 +1,146 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.api.ads.adwords.awreporting.model.persistence.RowIdStorage;
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Iterator;
+import java.util.Objects;
+import org.hibernate.boot.Metadata;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.mapping.Column;
+import org.hibernate.mapping.KeyValue;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.mapping.Selectable;
+import org.hibernate.mapping.SimpleValue;
+import org.hibernate.usertype.UserType;
+
+/**
+ * Hibernate type of the {@code String} row ids of the report entities.
+ *
+ * <p>The row ids are mapped to VARCHAR columns, as the default {@code String} mapping, unless
+ * {@link RowIdStorage#isBinary()} is enabled, in which case they are bound as the 16 bytes of the
+ * digests. The columns are then created as BINARY(16) once {@link #applyBinaryColumns(Metadata)}
+ * adjusted the metadata, and as VARBINARY otherwise.
+ */
+public class RowIdType implements UserType {
+
+  /** The name to reference this type from the {@code @Type} annotations. */
+  public static final String TYPE_NAME =
+      "com.google.api.ads.adwords.awreporting.model.persistence.sql.RowIdType";
+
+  private static int getSqlType() {
+    return RowIdStorage.isBinary() ? Types.VARBINARY : Types.VARCHAR;
+  }
+
+  /**
+   * Sets the row id columns of the entities of the metadata to the fixed length binary type of the
+   * dialect, as the binary row ids all have {@value RowIdStorage#BINARY_LENGTH} bytes.
+   */
+  static void applyBinaryColumns(Metadata metadata) {
+    Dialect dialect = metadata.getDatabase().getDialect();
+    String binaryType = dialect.getTypeName(Types.BINARY, RowIdStorage.BINARY_LENGTH, 0, 0);
+    for (PersistentClass entity : metadata.getEntityBindings()) {
+      KeyValue identifier = entity.getIdentifier();
+      if (!(identifier instanceof SimpleValue)
+          || !TYPE_NAME.equals(((SimpleValue) identifier).getTypeName())) {
+        continue;
+      }
+      for (Iterator<Selectable> columns = identifier.getColumnIterator(); columns.hasNext();) {
+        Selectable selectable = columns.next();
+        if (selectable instanceof Column) {
+          Column column = (Column) selectable;
+          column.setLength(RowIdStorage.BINARY_LENGTH);
+          column.setSqlType(binaryType);
+        }
+      }
+    }
+  }
+
+  @Override
+  public int[] sqlTypes() {
+    return new int[] {getSqlType()};
+  }
+
+  @Override
+  public Class<?> returnedClass() {
+    return String.class;
+  }
+
+  @Override
+  public boolean equals(Object x, Object y) {
+    return Objects.equals(x, y);
+  }
+
+  @Override
+  public int hashCode(Object x) {
+    return Objects.hashCode(x);
+  }
+
+  @Override
+  public Object nullSafeGet(
+      ResultSet rs, String[] names, SharedSessionContractImplementor session, Object owner)
+      throws SQLException {
+    if (RowIdStorage.isBinary()) {
+      byte[] bytes = rs.getBytes(names[0]);
+      return bytes == null ? null : RowIdStorage.fromBytes(bytes);
+    }
+    return rs.getString(names[0]);
+  }
+
+  @Override
+  public void nullSafeSet(
+      PreparedStatement st, Object value, int index, SharedSessionContractImplementor session)
+      throws SQLException {
+    if (value == null) {
+      st.setNull(index, getSqlType());
+    } else if (RowIdStorage.isBinary()) {
+      st.setBytes(index, RowIdStorage.toBytes((String) value));
+    } else {
+      st.setString(index, (String) value);
+    }
+  }
+
+  @Override
+  public Object deepCopy(Object value) {
+    // String is immutable.
+    return value;
+  }
+
+  @Override
+  public boolean isMutable() {
+    return false;
+  }
+
+  @Override
+  public Serializable disassemble(Object value) {
+    return (Serializable) value;
+  }
+
+  @Override
+  public Object assemble(Serializable cached, Object owner) {
+    return cached;
+  }
+
+  @Override
+  public Object replace(Object original, Object target, Object owner) {
+    return original;
+  }
+}
@@ -15,6 +15,7 @@
 package com.google.api.ads.adwords.awreporting.model.persistence.sql;
 
 import com.google.api.ads.adwords.awreporting.model.persistence.sql.SqlReportEntitiesPersister.Config;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.retry.annotation.EnableRetry;
@@ -32,7 +33,16 @@ import org.springframework.retry.annotation.EnableRetry;
 public class SpringSqlConfiguration {
 
   @Bean
-  public Config sqlReportEntityConfig() {
-    return new SqlReportEntitiesPersister.Config();
+  public Config sqlReportEntityConfig(
+      @Value("${aw.report.model.db.sql.writer:HIBERNATE}") Config.Writer writer,
+      @Value("${aw.report.model.db.sql.upsert.rows:1000}") int upsertRowsPerStatement,
+      @Value("${aw.report.model.db.sql.reload:false}") boolean reload,
+      @Value("${aw.report.model.db.sql.staging:false}") boolean staging) {
+    Config config = new SqlReportEntitiesPersister.Config();
+    config.setWriter(writer);
+    config.setUpsertRowsPerStatement(upsertRowsPerStatement);
+    config.setReload(reload);
+    config.setStaging(staging);
+    return config;
   }
 }
@@ -0,0 +1,54 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.ReportBatch;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Writes the rows of report batches straight to their tables over JDBC, bypassing the Hibernate
+ * session.
+ */
+interface SqlBatchWriter {
+
+  /**
+   * Writes the rows of the batch to the table of its report entity, replacing the existing rows
+   * with the same row ids.
+   *
+   * @param connection the connection, in the transaction of the caller.
+   * @param batch the rows to write.
+   * @return the number of rows that were written.
+   * @throws SQLException error writing the rows.
+   */
+  default int write(Connection connection, ReportBatch<? extends Report> batch)
+      throws SQLException {
+    return write(connection, SqlUpsertWriter.getTableName(batch.getReportClass()), batch);
+  }
+
+  /**
+   * Writes the rows of the batch to the given table, which has the columns of the table of the
+   * report entity, replacing the existing rows with the same row ids.
+   *
+   * @param connection the connection, in the transaction of the caller.
+   * @param tableName the name of the table.
+   * @param batch the rows to write.
+   * @return the number of rows that were written.
+   * @throws SQLException error writing the rows.
+   */
+  int write(Connection connection, String tableName, ReportBatch<? extends Report> batch)
+      throws SQLException;
+}
@@ -0,0 +1,245 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.Properties;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Creates the SQL data source: a pool of connections, or a new connection for each transaction
+ * when pooling is disabled.
+ *
+ * <p>The pool keeps the connections open between the transactions of the report processors, so they
+ * only pay for the TCP, TLS and authentication handshakes once. Pooling is disabled by default.
+ * Unless it is set, the size of the pool follows the number of threads that may write at the same
+ * time: the processor threads, the threads parsing the chunks of large files, the writer threads
+ * and the thread flushing the coalesced rows, with a couple of extra connections for the other
+ * users of the database (such as the authentication tokens). Only the connections of the processor
+ * threads and the extra ones are kept open when idle, so the connections of the other threads are
+ * only opened when they write, such as when a file is large enough to be split. The pool validates
+ * the connections before handing them out, with {@code Connection.isValid()} or with the configured
+ * test query for drivers that do not support it, such as jTDS.
+ */
+public class SqlDataSourceFactoryBean implements FactoryBean<DataSource>, DisposableBean {
+
+  private static final Logger logger = LoggerFactory.getLogger(SqlDataSourceFactoryBean.class);
+
+  static final String POOL_NAME = "aw-reporting";
+  static final int EXTRA_CONNECTIONS = 2;
+
+  private String driverClassName;
+  private String url;
+  private String username;
+  private String password;
+  private boolean pooled;
+  private int maximumPoolSize;
+  private int processorThreads = 1;
+  private int chunkThreads;
+  private int writerThreads;
+  private boolean coalescedRows;
+  private String connectionTestQuery;
+  private Properties dataSourceProperties = new Properties();
+
+  private final SqlPoolMetrics poolMetrics = new SqlPoolMetrics();
+  private DataSource dataSource;
+
+  @Override
+  public synchronized DataSource getObject() {
+    if (dataSource == null) {
+      dataSource = pooled ? createPooledDataSource() : createDriverManagerDataSource();
+    }
+    return dataSource;
+  }
+
+  @Override
+  public Class<?> getObjectType() {
+    return DataSource.class;
+  }
+
+  @Override
+  public boolean isSingleton() {
+    return true;
+  }
+
+  /**
+   * Closes the pool, logging its metrics.
+   */
+  @Override
+  public synchronized void destroy() {
+    if (dataSource instanceof HikariDataSource) {
+      logger.info("Closing the connection pool: {}.", poolMetrics);
+      ((HikariDataSource) dataSource).close();
+    }
+  }
+
+  private DataSource createDriverManagerDataSource() {
+    DriverManagerDataSource driverManagerDataSource = new DriverManagerDataSource();
+    driverManagerDataSource.setDriverClassName(driverClassName);
+    driverManagerDataSource.setUrl(url);
+    driverManagerDataSource.setUsername(username);
+    driverManagerDataSource.setPassword(password);
+    driverManagerDataSource.setConnectionProperties(dataSourceProperties);
+    return driverManagerDataSource;
+  }
+
+  private DataSource createPooledDataSource() {
+    HikariConfig config = new HikariConfig();
+    config.setPoolName(POOL_NAME);
+    config.setDriverClassName(driverClassName);
+    config.setJdbcUrl(url);
+    config.setUsername(username);
+    config.setPassword(password);
+    config.setDataSourceProperties(dataSourceProperties);
+    config.setMaximumPoolSize(getPoolSize());
+    config.setMinimumIdle(getMinimumIdle());
+    if (!Strings.isNullOrEmpty(connectionTestQuery)) {
+      config.setConnectionTestQuery(connectionTestQuery);
+    }
+    config.setRegisterMbeans(true);
+    config.setMetricsTrackerFactory(poolMetrics);
+    logger.info(
+        "Using a pool of {} connections ({} kept open when idle).",
+        config.getMaximumPoolSize(),
+        config.getMinimumIdle());
+    return new HikariDataSource(config);
+  }
+
+  /**
+   * Gets the size of the pool: the configured size, or else the number of threads that may write
+   * at the same time plus {@value #EXTRA_CONNECTIONS}.
+   */
+  int getPoolSize() {
+    int requiredPoolSize = getRequiredPoolSize();
+    if (maximumPoolSize == 0) {
+      return requiredPoolSize;
+    }
+    if (maximumPoolSize < requiredPoolSize) {
+      logger.warn(
+          "The pool of {} connections is smaller than the {} threads that may write at the same "
+              + "time (plus {} connections), so they may wait for a connection.",
+          maximumPoolSize, requiredPoolSize - EXTRA_CONNECTIONS, EXTRA_CONNECTIONS);
+    }
+    return maximumPoolSize;
+  }
+
+  /**
+   * Gets the number of connections kept open when idle: those of the processor threads plus
+   * {@value #EXTRA_CONNECTIONS}, at most the size of the pool.
+   */
+  int getMinimumIdle() {
+    return Math.min(processorThreads + EXTRA_CONNECTIONS, getPoolSize());
+  }
+
+  private int getRequiredPoolSize() {
+    return processorThreads + chunkThreads + writerThreads + (coalescedRows ? 1 : 0)
+        + EXTRA_CONNECTIONS;
+  }
+
+  /**
+   * Gets the metrics of the pool, which stay empty when pooling is disabled.
+   */
+  public SqlPoolMetrics getPoolMetrics() {
+    return poolMetrics;
+  }
+
+  public void setDriverClassName(String driverClassName) {
+    this.driverClassName = driverClassName;
+  }
+
+  public void setUrl(String url) {
+    this.url = url;
+  }
+
+  public void setUsername(String username) {
+    this.username = username;
+  }
+
+  public void setPassword(String password) {
+    this.password = password;
+  }
+
+  /**
+   * @param pooled whether the connections are pooled. The default is {@code false}.
+   */
+  public void setPooled(boolean pooled) {
+    this.pooled = pooled;
+  }
+
+  /**
+   * @param maximumPoolSize the size of the pool, or 0 to follow the number of threads that may
+   *     write at the same time.
+   */
+  public void setMaximumPoolSize(int maximumPoolSize) {
+    Preconditions.checkArgument(maximumPoolSize >= 0, "maximumPoolSize must be >= 0");
+    this.maximumPoolSize = maximumPoolSize;
+  }
+
+  /**
+   * @param processorThreads the number of threads of the report processors.
+   */
+  public void setProcessorThreads(int processorThreads) {
+    Preconditions.checkArgument(processorThreads > 0, "processorThreads must be > 0");
+    this.processorThreads = processorThreads;
+  }
+
+  /**
+   * @param chunkThreads the number of threads parsing the chunks of large files, if any.
+   */
+  public void setChunkThreads(int chunkThreads) {
+    Preconditions.checkArgument(chunkThreads >= 0, "chunkThreads must be >= 0");
+    this.chunkThreads = chunkThreads;
+  }
+
+  /**
+   * @param writerThreads the number of threads persisting the parsed rows in the background, if
+   *     any.
+   */
+  public void setWriterThreads(int writerThreads) {
+    Preconditions.checkArgument(writerThreads >= 0, "writerThreads must be >= 0");
+    this.writerThreads = writerThreads;
+  }
+
+  /**
+   * @param coalescedRows whether the last rows of the accounts are coalesced, and flushed by a
+   *     thread of their own.
+   */
+  public void setCoalescedRows(boolean coalescedRows) {
+    this.coalescedRows = coalescedRows;
+  }
+
+  /**
+   * @param connectionTestQuery the query that validates the connections, for the drivers that do
+   *     not support {@code Connection.isValid()}.
+   */
+  public void setConnectionTestQuery(String connectionTestQuery) {
+    this.connectionTestQuery = connectionTestQuery;
+  }
+
+  /**
+   * @param dataSourceProperties the properties of the driver, such as the statement cache settings.
+   */
+  public void setDataSourceProperties(Properties dataSourceProperties) {
+    this.dataSourceProperties = dataSourceProperties;
+  }
+}
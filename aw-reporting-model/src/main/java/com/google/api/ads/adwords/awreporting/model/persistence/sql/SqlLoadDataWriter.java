@@ -0,0 +1,333 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.MoneyStorage;
+import com.google.api.ads.adwords.awreporting.model.persistence.ReportBatch;
+import com.google.api.ads.adwords.awreporting.model.persistence.RowIdStorage;
+import com.google.api.ads.adwords.awreporting.model.persistence.sql.SqlUpsertWriter.Dialect;
+import com.google.api.ads.adwords.awreporting.model.util.BigDecimalUtil;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterators;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Writes the rows of report batches to MySQL with {@code LOAD DATA LOCAL INFILE}, which is the
+ * fastest way to load large amounts of rows into MySQL.
+ *
+ * <p>The rows are encoded as tab separated values in the column order of the batch, while MySQL
+ * reads them, through the local infile stream of the statement, so the file is never written to
+ * disk nor held in memory. A single statement can load the rows of consecutive batches, such as
+ * all the rows of a report file, which are then read from the batches as MySQL asks for them.
+ * Existing rows with the same row ids are replaced. Binary row ids are sent as hex and converted
+ * with {@code UNHEX}, and timestamps are sent as milliseconds since the epoch and converted with
+ * {@code FROM_UNIXTIME}, in the time zone of the session as the timestamp parameters are.
+ *
+ * <p>The connection URL must allow local infiles, with {@code allowLoadLocalInfile=true}, and so
+ * must the server, with {@code local_infile=ON}. The stream is set on the statement of MySQL
+ * Connector/J by reflection, so the driver is only needed at runtime.
+ */
+public class SqlLoadDataWriter implements SqlBatchWriter {
+
+  private static final String NULL_VALUE = "\\N";
+
+  /** The statement interface of MySQL Connector/J, which takes the local infile stream. */
+  private static final String MYSQL_STATEMENT_CLASS = "com.mysql.cj.jdbc.JdbcStatement";
+
+  @Override
+  public int write(Connection connection, String tableName, ReportBatch<? extends Report> batch)
+      throws SQLException {
+    if (batch.isEmpty()) {
+      return 0;
+    }
+    return write(connection, tableName, batch.getColumns(), Iterators.singletonIterator(batch));
+  }
+
+  /**
+   * Loads the rows of consecutive batches of the same report with a single statement. The batches
+   * are read while MySQL reads the rows, so the same batch can be refilled by the iterator once its
+   * rows were read.
+   *
+   * <p>If the iterator fails, the rows read so far are loaded, and its error is rethrown once the
+   * statement is done, so that the connection is left usable and the transaction can be rolled
+   * back.
+   *
+   * @param connection the connection, in the transaction of the caller.
+   * @param tableName the name of the table.
+   * @param columns the columns of the batches.
+   * @param batches the batches of rows.
+   * @return the number of rows that were written.
+   * @throws SQLException error writing the rows.
+   */
+  public int write(
+      Connection connection,
+      String tableName,
+      List<? extends ReportBatch<?>.ReportColumn> columns,
+      Iterator<? extends ReportBatch<? extends Report>> batches)
+      throws SQLException {
+    String productName = connection.getMetaData().getDatabaseProductName();
+    if (Dialect.forDatabase(productName) != Dialect.MYSQL) {
+      throw new IllegalStateException("LOAD DATA is not supported on " + productName);
+    }
+
+    String sql = buildLoadData(tableName, columns, RowIdStorage.isBinary());
+    BatchInputStream rows =
+        new BatchInputStream(batches, MoneyStorage.isMicros(), RowIdStorage.isBinary());
+    try (Statement statement = connection.createStatement()) {
+      setLocalInfileInputStream(statement, rows);
+      statement.executeUpdate(sql);
+    }
+    if (rows.getFailure() != null) {
+      throw rows.getFailure();
+    }
+    return rows.getRows();
+  }
+
+  /**
+   * Sets the stream MySQL reads the rows of the next {@code LOAD DATA LOCAL INFILE} from.
+   */
+  private static void setLocalInfileInputStream(Statement statement, InputStream stream)
+      throws SQLException {
+    try {
+      Class<?> mysqlStatementClass =
+          Class.forName(MYSQL_STATEMENT_CLASS, true, statement.getClass().getClassLoader());
+      mysqlStatementClass
+          .getMethod("setLocalInfileInputStream", InputStream.class)
+          .invoke(statement.unwrap(mysqlStatementClass), stream);
+    } catch (InvocationTargetException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), SQLException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException("Cannot set the LOAD DATA stream.", e.getCause());
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("LOAD DATA requires the MySQL Connector/J driver.", e);
+    }
+  }
+
+  /**
+   * Builds the statement that loads the rows into the table, with the default field and line
+   * terminators: tabs and line feeds, with backslash escapes.
+   */
+  static String buildLoadData(
+      String tableName, List<? extends ReportBatch<?>.ReportColumn> columns, boolean binaryRowId) {
+    StringBuilder sql = new StringBuilder("LOAD DATA LOCAL INFILE 'rows.tsv' REPLACE INTO TABLE ")
+        .append(tableName).append(" CHARACTER SET utf8mb4 (");
+    StringBuilder conversions = new StringBuilder();
+    boolean first = true;
+    for (ReportBatch<?>.ReportColumn column : columns) {
+      sql.append(first ? "" : ", ");
+      String columnName = column.getColumnName();
+      String conversion = null;
+      if (binaryRowId && isRowIdColumn(column)) {
+        conversion = "UNHEX(@" + columnName + ")";
+      } else if (column.getType() == ReportBatch.ColumnType.TIMESTAMP) {
+        conversion = "FROM_UNIXTIME(@" + columnName + " / 1000)";
+      }
+      if (conversion != null) {
+        sql.append('@');
+        conversions.append(conversions.length() == 0 ? " SET " : ", ")
+            .append(columnName).append(" = ").append(conversion);
+      }
+      sql.append(columnName);
+      first = false;
+    }
+    return sql.append(')').append(conversions).toString();
+  }
+
+  private static boolean isRowIdColumn(ReportBatch<?>.ReportColumn column) {
+    return SqlUpsertWriter.ROW_ID_COLUMN.equals(column.getColumnName());
+  }
+
+  /**
+   * Encodes the rows of consecutive batches as tab separated values, one row at a time as they are
+   * read. The next batch is only taken once all the rows of the current one were read.
+   */
+  static final class BatchInputStream extends InputStream {
+    private final Iterator<? extends ReportBatch<? extends Report>> batches;
+    private final boolean micros;
+    private final boolean binaryRowId;
+    private final StringBuilder line = new StringBuilder();
+
+    private ReportBatch<? extends Report> batch;
+    private List<? extends ReportBatch<?>.ReportColumn> columns;
+    private int nextRow;
+    private int rows;
+    private RuntimeException failure;
+    private byte[] bytes = new byte[0];
+    private int position;
+
+    BatchInputStream(ReportBatch<? extends Report> batch, boolean micros, boolean binaryRowId) {
+      this(Iterators.singletonIterator(batch), micros, binaryRowId);
+    }
+
+    BatchInputStream(
+        Iterator<? extends ReportBatch<? extends Report>> batches,
+        boolean micros,
+        boolean binaryRowId) {
+      this.batches = batches;
+      this.micros = micros;
+      this.binaryRowId = binaryRowId;
+    }
+
+    /** Gets the number of rows that were encoded. */
+    int getRows() {
+      return rows;
+    }
+
+    /** Gets the error of the iterator of the batches, which ended the stream, if any. */
+    RuntimeException getFailure() {
+      return failure;
+    }
+
+    @Override
+    public int read() {
+      if (!fill()) {
+        return -1;
+      }
+      return bytes[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      int count = 0;
+      while (count < length && fill()) {
+        int chunk = Math.min(length - count, bytes.length - position);
+        System.arraycopy(bytes, position, buffer, offset + count, chunk);
+        position += chunk;
+        count += chunk;
+      }
+      return count == 0 ? -1 : count;
+    }
+
+    /**
+     * Encodes the next row once the bytes of the current one were read.
+     *
+     * @return whether there are bytes left to read
+     */
+    private boolean fill() {
+      if (position < bytes.length) {
+        return true;
+      }
+      if (!nextBatch()) {
+        return false;
+      }
+      line.setLength(0);
+      for (int i = 0; i < columns.size(); i++) {
+        if (i > 0) {
+          line.append('\t');
+        }
+        appendValue(columns.get(i), nextRow);
+      }
+      line.append('\n');
+      nextRow++;
+      rows++;
+      bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+      position = 0;
+      return true;
+    }
+
+    /**
+     * Moves to the next batch once all the rows of the current one were encoded.
+     *
+     * @return whether there is a row left to encode
+     */
+    private boolean nextBatch() {
+      while (batch == null || nextRow == batch.size()) {
+        if (failure != null) {
+          return false;
+        }
+        try {
+          if (!batches.hasNext()) {
+            return false;
+          }
+          batch = batches.next();
+        } catch (RuntimeException e) {
+          // Throwing would leave the statement half sent, so the stream ends here instead.
+          failure = e;
+          return false;
+        }
+        columns = batch.getColumns();
+        nextRow = 0;
+      }
+      return true;
+    }
+
+    private void appendValue(ReportBatch<?>.ReportColumn column, int row) {
+      if (column.isNull(row)) {
+        line.append(NULL_VALUE);
+        return;
+      }
+      switch (column.getType()) {
+        case LONG:
+          line.append(column.getLong(row));
+          break;
+        case DECIMAL:
+          if (micros && column.isMoney()) {
+            line.append(BigDecimalUtil.toMicros(column.getDecimal(row)));
+          } else {
+            line.append(column.getDecimal(row).toPlainString());
+          }
+          break;
+        case TIMESTAMP:
+          line.append(column.getLong(row));
+          break;
+        case STRING:
+          if (binaryRowId && isRowIdColumn(column)) {
+            line.append(column.getString(row));
+          } else {
+            appendEscaped(column.getString(row));
+          }
+          break;
+        default:
+          throw new IllegalStateException("Unknown column type: " + column.getType());
+      }
+    }
+
+    private void appendEscaped(String value) {
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        switch (c) {
+          case '\\':
+            line.append("\\\\");
+            break;
+          case '\t':
+            line.append("\\t");
+            break;
+          case '\n':
+            line.append("\\n");
+            break;
+          case '\r':
+            line.append("\\r");
+            break;
+          case '\0':
+            line.append("\\0");
+            break;
+          default:
+            line.append(c);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,120 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Collects the metrics of the connection pool of the SQL data source: how long the threads waited
+ * for a connection, how many timed out, and the current connection counts of the pool.
+ *
+ * <p>The connection counts are refreshed by the pool at most once per second. The pool also
+ * exposes its counts through JMX, under {@code com.zaxxer.hikari:type=Pool (<pool name>)}.
+ */
+public class SqlPoolMetrics implements MetricsTrackerFactory {
+
+  private final AtomicLong acquisitions = new AtomicLong();
+  private final AtomicLong totalWaitNanos = new AtomicLong();
+  private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0L);
+  private final AtomicLong timeouts = new AtomicLong();
+  private final AtomicLong totalUsageMillis = new AtomicLong();
+  private volatile PoolStats poolStats;
+
+  @Override
+  public IMetricsTracker create(String poolName, PoolStats poolStats) {
+    this.poolStats = poolStats;
+    return new IMetricsTracker() {
+      @Override
+      public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquisitions.incrementAndGet();
+        totalWaitNanos.addAndGet(elapsedAcquiredNanos);
+        maxWaitNanos.accumulate(elapsedAcquiredNanos);
+      }
+
+      @Override
+      public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        totalUsageMillis.addAndGet(elapsedBorrowedMillis);
+      }
+
+      @Override
+      public void recordConnectionTimeout() {
+        timeouts.incrementAndGet();
+      }
+    };
+  }
+
+  /** Gets the number of connections handed out by the pool. */
+  public long getAcquisitions() {
+    return acquisitions.get();
+  }
+
+  /** Gets the total time the threads waited for a connection, in milliseconds. */
+  public long getTotalWaitMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+  }
+
+  /** Gets the longest time a thread waited for a connection, in milliseconds. */
+  public long getMaxWaitMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+  }
+
+  /** Gets the average time the threads waited for a connection, in milliseconds. */
+  public double getAverageWaitMillis() {
+    long count = acquisitions.get();
+    return count == 0 ? 0 : totalWaitNanos.get() / 1e6 / count;
+  }
+
+  /** Gets the number of requests for a connection that timed out. */
+  public long getTimeouts() {
+    return timeouts.get();
+  }
+
+  /** Gets the total time the connections were in use, in milliseconds. */
+  public long getTotalUsageMillis() {
+    return totalUsageMillis.get();
+  }
+
+  /** Gets the number of connections in use, or 0 before the pool started. */
+  public int getActiveConnections() {
+    PoolStats stats = poolStats;
+    return stats == null ? 0 : stats.getActiveConnections();
+  }
+
+  /** Gets the number of idle connections, or 0 before the pool started. */
+  public int getIdleConnections() {
+    PoolStats stats = poolStats;
+    return stats == null ? 0 : stats.getIdleConnections();
+  }
+
+  /** Gets the number of threads waiting for a connection, or 0 before the pool started. */
+  public int getPendingThreads() {
+    PoolStats stats = poolStats;
+    return stats == null ? 0 : stats.getPendingThreads();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%d connections acquired, waited %d ms in total (%.2f ms on average, %d ms at most), "
+            + "%d timeouts, %d active, %d idle, %d pending",
+        getAcquisitions(), getTotalWaitMillis(), getAverageWaitMillis(), getMaxWaitMillis(),
+        getTimeouts(), getActiveConnections(), getIdleConnections(), getPendingThreads());
+  }
+}
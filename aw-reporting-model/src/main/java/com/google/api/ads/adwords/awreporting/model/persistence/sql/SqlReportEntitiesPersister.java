@@ -13,17 +13,42 @@
 // limitations under the License.
 package com.google.api.ads.adwords.awreporting.model.persistence.sql;
 
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.awreporting.model.entities.DateReport;
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
 import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.api.ads.adwords.awreporting.model.persistence.ReportBatch;
+import com.google.api.ads.adwords.awreporting.model.persistence.sql.SqlUpsertWriter.Dialect;
+import com.google.api.ads.adwords.awreporting.model.util.DateUtil;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import org.hibernate.Criteria;
 import org.hibernate.FlushMode;
 import org.hibernate.NonUniqueObjectException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.exception.LockAcquisitionException;
+import org.hibernate.jdbc.ReturningWork;
+import org.hibernate.jdbc.Work;
+import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,6 +61,15 @@ import org.springframework.transaction.annotation.Transactional;
 /**
  * This is the basic implementation of the persistence layer to communicate with a SQL database. The
  * communication is done using a generic {@link SessionFactory}.
+ *
+ * <p>In reload mode (see {@link Config#isReload()}), the rows of the accounts and date range of a
+ * report are replaced by the rows of the report: the report is loaded through a staging table, and
+ * the old rows are deleted in the transaction that inserts the new ones.
+ *
+ * <p>In staging mode (see {@link Config#isStaging()}), the rows of a report are written to a
+ * staging table of the run, without secondary indexes, and published to the report table in a
+ * single transaction once the report was processed without errors, or else discarded. The staging
+ * tables are named from the id of the run, and those left by crashed runs are dropped once stale.
  */
 @Component
 @Qualifier("sqlEntitiesPersister")
@@ -43,8 +77,37 @@ public class SqlReportEntitiesPersister implements EntityPersister {
 
   private static final Logger logger = LoggerFactory.getLogger(SqlReportEntitiesPersister.class);
 
+  /** The maximum number of customer ids of each reload delete, within the MSSQL limit of 2100. */
+  static final int RELOAD_DELETE_CHUNK_SIZE = 1000;
+
+  /**
+   * The age after which the staging tables of other runs are dropped, as the runs that created
+   * them must have crashed.
+   */
+  static final int STALE_STAGING_TABLE_HOURS = 24;
+
+  private static final String STAGING_TABLE_INFIX = "_stage_";
+
+  /** The number of characters of the start time of a run id, enough until the year 4000. */
+  private static final int RUN_ID_TIME_CHARS = 7;
+
+  /** The number of random characters of a run id. */
+  private static final int RUN_ID_RANDOM_CHARS = 3;
+
+  private static final String DUPLICATE_ROW_MESSAGE =
+      "Duplicate row detected. This is most likely because your report definition does not "
+          + "include the primary key fields defined in {}.setRowId(). "
+          + "Please add the missing fields and try again.";
+
   private final SessionFactory sessionFactory;
   private final Config config;
+  private final SqlBatchWriter batchWriter;
+
+  /** The id of this run, which names its staging tables. */
+  private final String runId;
+
+  /** The staged loads in progress, by report class. */
+  private final Map<Class<?>, StagedLoad> stagedLoads = Maps.newConcurrentMap();
 
   /**
    * Constructor.
@@ -56,6 +119,8 @@ public class SqlReportEntitiesPersister implements EntityPersister {
     this.sessionFactory =
         Preconditions.checkNotNull(sessionFactory, "SessionFactory can not be null");
     this.config = Preconditions.checkNotNull(config, "Config can not be null");
+    this.batchWriter = createBatchWriter(config);
+    this.runId = newRunId(System.currentTimeMillis(), ThreadLocalRandom.current());
   }
 
   /**
@@ -73,6 +138,18 @@ public class SqlReportEntitiesPersister implements EntityPersister {
               maxDelayExpression = "#{ @systemProperties['retryMaxDelay'] ?: 50000 }",
               multiplierExpression = "#{ @systemProperties['retryMultiplier'] ?: 1.5}"))
   public void persistReportEntities(List<? extends Report> reportEntities) {
+    if (batchWriter != null) {
+      Map<Class<?>, ReportBatch<?>> batches = Maps.newLinkedHashMap();
+      for (Report report : reportEntities) {
+        report.setRowId();
+        addToBatch(batches, report);
+      }
+      for (ReportBatch<?> batch : batches.values()) {
+        writeBatch(batch);
+      }
+      return;
+    }
+
     int batchFlush = 0;
     Session session = sessionFactory.getCurrentSession();
     FlushMode previousFlushMode = session.getHibernateFlushMode();
@@ -114,17 +191,482 @@ public class SqlReportEntitiesPersister implements EntityPersister {
       // Instead, we just log a (hopefully) useful error message.
       // Also note that the error message assumes that reportEntities was not empty, because
       // otherwise the exception would not have been thrown.
-      logger.error(
-          "Duplicate row detected. This is most likely because your report definition does not "
-              + "include the primary key fields defined in {}.setRowId(). "
-              + "Please add the missing fields and try again.",
-          reportEntities.get(0).getClass().getName());
+      logger.error(DUPLICATE_ROW_MESSAGE, reportEntities.get(0).getClass().getName());
       throw ex;
     } finally {
       session.setHibernateFlushMode(previousFlushMode);
     }
   }
 
+  /**
+   * Persists the rows of the batch. With a JDBC writer configured, the columns of the batch are
+   * written as they are, without creating the entities.
+   */
+  @Override
+  @Transactional
+  @Retryable(
+      value = {LockAcquisitionException.class},
+      maxAttemptsExpression = "#{ @systemProperties['retryBackoff'] ?: 20}",
+      backoff =
+          @Backoff(
+              delayExpression = "#{ @systemProperties['retryDelay'] ?: 100}",
+              maxDelayExpression = "#{ @systemProperties['retryMaxDelay'] ?: 50000 }",
+              multiplierExpression = "#{ @systemProperties['retryMultiplier'] ?: 1.5}"))
+  public void persistReportBatch(ReportBatch<? extends Report> batch) {
+    if (batchWriter != null) {
+      writeBatch(batch);
+    } else {
+      persistReportEntities(batch.toReports());
+    }
+  }
+
+  /**
+   * The batches are written by the batch writer, if any, and otherwise with Hibernate.
+   */
+  @Override
+  public boolean isReportBatchSupported() {
+    return batchWriter != null;
+  }
+
+  /**
+   * Only the LOAD DATA writer loads a stream of rows, with a single statement per report.
+   */
+  @Override
+  public boolean isReportStreamSupported() {
+    return batchWriter instanceof SqlLoadDataWriter;
+  }
+
+  /**
+   * Loads all the rows of a report with a single {@code LOAD DATA} statement, which reads them from
+   * the iterator in batches of {@link #REPORT_STREAM_BATCH_SIZE} rows. The statement is not retried,
+   * as the rows of the iterator cannot be read again.
+   */
+  @Override
+  @Transactional
+  public <R extends Report> void persistReportStream(
+      Class<R> reportClass, final Iterator<? extends R> reports) {
+    if (!isReportStreamSupported()) {
+      EntityPersister.super.persistReportStream(reportClass, reports);
+      return;
+    }
+    if (!reports.hasNext()) {
+      return;
+    }
+    final ReportBatch<R> batch = new ReportBatch<R>(reportClass, REPORT_STREAM_BATCH_SIZE);
+    final Iterator<ReportBatch<R>> batches = new AbstractIterator<ReportBatch<R>>() {
+      @Override
+      protected ReportBatch<R> computeNext() {
+        // The rows of the previous batch were all read by then.
+        batch.clear();
+        while (batch.size() < REPORT_STREAM_BATCH_SIZE && reports.hasNext()) {
+          R report = reports.next();
+          report.setRowId();
+          batch.add(report);
+        }
+        return batch.isEmpty() ? endOfData() : batch;
+      }
+    };
+    final String tableName = getWriteTableName(reportClass);
+    sessionFactory.getCurrentSession().doWork(new Work() {
+      @Override
+      public void execute(Connection connection) throws SQLException {
+        int rows = ((SqlLoadDataWriter) batchWriter)
+            .write(connection, tableName, batch.getColumns(), batches);
+        logger.debug("Loaded {} rows of {}.", rows, batch.getReportClass().getSimpleName());
+      }
+    });
+  }
+
+  /**
+   * In staging and reload modes, creates the staging table that the rows of the report are written
+   * to until the load is finished. In reload mode, the rows of the given accounts and date range are
+   * only deleted once the load is completed, see {@link #finishReportLoad(Class, boolean)}.
+   */
+  @Override
+  @Transactional
+  @Retryable(
+      value = {LockAcquisitionException.class},
+      maxAttemptsExpression = "#{ @systemProperties['retryBackoff'] ?: 20}",
+      backoff =
+          @Backoff(
+              delayExpression = "#{ @systemProperties['retryDelay'] ?: 100}",
+              maxDelayExpression = "#{ @systemProperties['retryMaxDelay'] ?: 50000 }",
+              multiplierExpression = "#{ @systemProperties['retryMultiplier'] ?: 1.5}"))
+  public void startReportLoad(
+      Class<? extends Report> reportClass,
+      Collection<Long> customerIds,
+      DateRangeAndType dateRangeAndType) {
+    if (config.isStagedLoad()) {
+      startStagedLoad(reportClass, customerIds, dateRangeAndType);
+    }
+  }
+
+  /**
+   * Deletes the rows of a report for the given accounts and date range, in chunks of
+   * {@link #RELOAD_DELETE_CHUNK_SIZE} accounts.
+   *
+   * @return the number of deleted rows.
+   */
+  private static int deleteReportRows(
+      Session session,
+      Class<? extends Report> reportClass,
+      Collection<Long> customerIds,
+      DateRangeAndType dateRangeAndType) {
+    String delete = buildReloadDelete(reportClass);
+    boolean dateReport = DateReport.class.isAssignableFrom(reportClass);
+    int deleted = 0;
+    for (List<Long> chunk : Iterables.partition(customerIds, RELOAD_DELETE_CHUNK_SIZE)) {
+      Query<?> query =
+          session
+              .createQuery(delete)
+              .setParameterList("customerIds", chunk)
+              .setParameter("startDate", dateRangeAndType.getStartDateStr())
+              .setParameter("endDate", dateRangeAndType.getEndDateStr())
+              .setParameter("dateRangeType", dateRangeAndType.getTypeStr());
+      if (dateReport) {
+        query
+            .setParameter(
+                "firstDay", DateUtil.normalizeYearMonthDay(dateRangeAndType.getStartDateStr()))
+            .setParameter(
+                "lastDay", DateUtil.normalizeYearMonthDay(dateRangeAndType.getEndDateStr()));
+      }
+      deleted += query.executeUpdate();
+    }
+    return deleted;
+  }
+
+  /**
+   * Creates the staging table of a report, which the rows of the report are written to until the
+   * load is finished.
+   */
+  private void startStagedLoad(
+      final Class<? extends Report> reportClass,
+      Collection<Long> customerIds,
+      DateRangeAndType dateRangeAndType) {
+    Preconditions.checkState(
+        !stagedLoads.containsKey(reportClass),
+        "The load of %s was already started",
+        reportClass.getName());
+    final String tableName = SqlUpsertWriter.getTableName(reportClass);
+    final String stagingTableName = getStagingTableName(tableName, runId);
+    Dialect dialect =
+        sessionFactory
+            .getCurrentSession()
+            .doReturningWork(
+                new ReturningWork<Dialect>() {
+                  @Override
+                  public Dialect execute(Connection connection) throws SQLException {
+                    String productName = connection.getMetaData().getDatabaseProductName();
+                    Dialect dialect = Dialect.forDatabase(productName);
+                    if (dialect == null) {
+                      throw new IllegalStateException(
+                          "Staged loads are not supported on " + productName);
+                    }
+                    dropStaleStagingTables(connection, tableName);
+                    try (Statement statement = connection.createStatement()) {
+                      statement.execute(dialect.buildCreateEmptyCopy(tableName, stagingTableName));
+                      for (String sql : dialect.buildAddRowIdPrimaryKey(stagingTableName)) {
+                        statement.execute(sql);
+                      }
+                    }
+                    return dialect;
+                  }
+                });
+    stagedLoads.put(
+        reportClass,
+        new StagedLoad(
+            dialect,
+            tableName,
+            stagingTableName,
+            getColumnNames(reportClass),
+            customerIds,
+            dateRangeAndType));
+    logger.info("Staging the rows of {} in {}.", reportClass.getSimpleName(), stagingTableName);
+  }
+
+  /**
+   * Drops the staging tables of a report that were left by the runs that crashed, which are those
+   * created more than {@link #STALE_STAGING_TABLE_HOURS} hours ago. The staging tables of the runs
+   * still in progress are kept.
+   */
+  private static void dropStaleStagingTables(Connection connection, String tableName)
+      throws SQLException {
+    DatabaseMetaData metaData = connection.getMetaData();
+    String pattern = tableName + STAGING_TABLE_INFIX;
+    String escape = metaData.getSearchStringEscape();
+    if (!Strings.isNullOrEmpty(escape)) {
+      pattern = pattern.replace("_", escape + "_");
+    }
+    pattern += "%";
+    if (metaData.storesUpperCaseIdentifiers()) {
+      pattern = pattern.toUpperCase();
+    } else if (metaData.storesLowerCaseIdentifiers()) {
+      pattern = pattern.toLowerCase();
+    }
+
+    long staleMillis =
+        System.currentTimeMillis() - TimeUnit.HOURS.toMillis(STALE_STAGING_TABLE_HOURS);
+    List<String> staleTableNames = Lists.newArrayList();
+    try (ResultSet tables =
+        metaData.getTables(connection.getCatalog(), null, pattern, new String[] {"TABLE"})) {
+      while (tables.next()) {
+        String stagingTableName = tables.getString("TABLE_NAME");
+        long startMillis = getStagingStartMillis(tableName, stagingTableName);
+        if (startMillis >= 0 && startMillis < staleMillis) {
+          staleTableNames.add(stagingTableName);
+        }
+      }
+    }
+    try (Statement statement = connection.createStatement()) {
+      for (String staleTableName : staleTableNames) {
+        logger.warn("Dropping the staging table {}, left by a run that crashed.", staleTableName);
+        statement.execute("DROP TABLE " + staleTableName);
+      }
+    }
+  }
+
+  /**
+   * In staging mode, publishes the staged rows of the report to its table if the load was
+   * completed, and drops the staging table. In reload mode, the rows of the accounts and date
+   * range are deleted in the same transaction, so readers of the table never see the range
+   * partially loaded.
+   *
+   * <p>A staging table that fails to be dropped is left for a later run to drop, so the error is
+   * only logged, and never hides the error of the publish.
+   */
+  @Override
+  public void finishReportLoad(Class<? extends Report> reportClass, boolean completed) {
+    StagedLoad stagedLoad = stagedLoads.remove(reportClass);
+    if (stagedLoad == null) {
+      return;
+    }
+    Session session = sessionFactory.openSession();
+    RuntimeException publishFailure = null;
+    try {
+      if (completed) {
+        publishStagedLoad(session, reportClass, stagedLoad);
+      } else {
+        logger.warn(
+            "Discarding the staged rows of {}, the report was not completely processed.",
+            reportClass.getSimpleName());
+      }
+    } catch (RuntimeException e) {
+      publishFailure = e;
+      throw e;
+    } finally {
+      try {
+        dropStagingTable(session, stagedLoad.stagingTableName, publishFailure);
+      } finally {
+        session.close();
+      }
+    }
+  }
+
+  /**
+   * Drops the staging table of a load. An error is logged, and added to the error of the publish
+   * if there is one, instead of being thrown.
+   */
+  private static void dropStagingTable(
+      Session session, final String stagingTableName, RuntimeException publishFailure) {
+    try {
+      session.doWork(new Work() {
+        @Override
+        public void execute(Connection connection) throws SQLException {
+          try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE " + stagingTableName);
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      logger.warn(
+          "Failed to drop the staging table {}, it is dropped by a run after {} hours.",
+          stagingTableName,
+          STALE_STAGING_TABLE_HOURS,
+          e);
+      if (publishFailure != null) {
+        publishFailure.addSuppressed(e);
+      }
+    }
+  }
+
+  private void publishStagedLoad(
+      Session session, Class<? extends Report> reportClass, final StagedLoad stagedLoad) {
+    Transaction transaction = session.beginTransaction();
+    try {
+      int deleted = 0;
+      if (config.isReload() && !stagedLoad.customerIds.isEmpty()) {
+        deleted =
+            deleteReportRows(
+                session, reportClass, stagedLoad.customerIds, stagedLoad.dateRangeAndType);
+      }
+      // The staged rows were already upserted by row id into the staging table, and in reload
+      // mode the rows they replace were just deleted, so they are only inserted.
+      final String publish =
+          config.isReload()
+              ? stagedLoad.dialect.buildInsertFrom(
+                  stagedLoad.tableName, stagedLoad.columnNames, stagedLoad.stagingTableName)
+              : stagedLoad.dialect.buildUpsertFrom(
+                  stagedLoad.tableName, stagedLoad.columnNames, stagedLoad.stagingTableName);
+      int published =
+          session.doReturningWork(
+              new ReturningWork<Integer>() {
+                @Override
+                public Integer execute(Connection connection) throws SQLException {
+                  try (Statement statement = connection.createStatement()) {
+                    return statement.executeUpdate(publish);
+                  }
+                }
+              });
+      transaction.commit();
+      logger.info(
+          "Published the staged rows of {} ({} rows deleted, {} rows affected).",
+          reportClass.getSimpleName(),
+          deleted,
+          published);
+    } catch (RuntimeException e) {
+      transaction.rollback();
+      throw e;
+    }
+  }
+
+  /**
+   * Creates the id of a run: its start time in seconds, padded to {@value #RUN_ID_TIME_CHARS}
+   * characters, followed by {@value #RUN_ID_RANDOM_CHARS} random characters that tell apart the
+   * runs started in the same second, all in base 36, such as {@code 0tkq3h2a7x}.
+   */
+  static String newRunId(long startMillis, Random random) {
+    StringBuilder runId =
+        new StringBuilder(
+            Strings.padStart(
+                Long.toString(TimeUnit.MILLISECONDS.toSeconds(startMillis), Character.MAX_RADIX),
+                RUN_ID_TIME_CHARS,
+                '0'));
+    for (int i = 0; i < RUN_ID_RANDOM_CHARS; i++) {
+      runId.append(Character.forDigit(random.nextInt(Character.MAX_RADIX), Character.MAX_RADIX));
+    }
+    return runId.toString();
+  }
+
+  /**
+   * Gets the name of the staging table of a run, such as
+   * {@code AW_KeywordsPerformanceReport_stage_0tkq3h2a7x}. The names of the longest report tables
+   * stay within the 64 characters of MySQL.
+   */
+  static String getStagingTableName(String tableName, String runId) {
+    return tableName + STAGING_TABLE_INFIX + runId;
+  }
+
+  /**
+   * Gets the start time of the run that created a staging table, from the run id in its name.
+   *
+   * @param tableName the name of the report table.
+   * @param stagingTableName the name of the staging table, in any case.
+   * @return the start time in milliseconds, or -1 if the name is not one of a staging table of
+   *     the report.
+   */
+  static long getStagingStartMillis(String tableName, String stagingTableName) {
+    String prefix = tableName + STAGING_TABLE_INFIX;
+    if (stagingTableName.length() != prefix.length() + RUN_ID_TIME_CHARS + RUN_ID_RANDOM_CHARS
+        || !stagingTableName.regionMatches(true, 0, prefix, 0, prefix.length())) {
+      return -1;
+    }
+    try {
+      long startSeconds =
+          Long.parseLong(
+              stagingTableName.substring(prefix.length(), prefix.length() + RUN_ID_TIME_CHARS),
+              Character.MAX_RADIX);
+      return TimeUnit.SECONDS.toMillis(startSeconds);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static <R extends Report> List<String> getColumnNames(Class<R> reportClass) {
+    return SqlUpsertWriter.getColumnNames(new ReportBatch<R>(reportClass).getColumns());
+  }
+
+  /**
+   * Builds the HQL delete of the rows of a report for a set of accounts and a date range. The row
+   * ids of the daily rows of the date reports do not include the date range, so the rows of the
+   * days of the range are deleted too, whatever range they were loaded with (such as the
+   * overlapping {@code LAST_7_DAYS} of a daily run).
+   */
+  static String buildReloadDelete(Class<? extends Report> reportClass) {
+    String delete =
+        "delete from "
+            + reportClass.getName()
+            + " where customerId in (:customerIds)"
+            + " and ((startDate = :startDate"
+            + " and endDate = :endDate"
+            + " and dateRangeType = :dateRangeType)";
+    if (DateReport.class.isAssignableFrom(reportClass)) {
+      delete += " or date between :firstDay and :lastDay";
+    }
+    return delete + ")";
+  }
+
+  /**
+   * Writes the rows of the batch with the JDBC writer, on the connection of the current session.
+   */
+  private void writeBatch(final ReportBatch<? extends Report> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    final String tableName = getWriteTableName(batch.getReportClass());
+    try {
+      sessionFactory.getCurrentSession().doWork(new Work() {
+        @Override
+        public void execute(Connection connection) throws SQLException {
+          int rows = batchWriter.write(connection, tableName, batch);
+          logger.debug("Wrote {} rows of {}.", rows, batch.getReportClass().getSimpleName());
+        }
+      });
+    } catch (NonUniqueObjectException ex) {
+      // Same misconfiguration as in persistReportEntities, detected by the writer.
+      logger.error(DUPLICATE_ROW_MESSAGE, batch.getReportClass().getName());
+      throw ex;
+    }
+  }
+
+  /**
+   * Gets the table the JDBC writer writes the rows of a report to: the staging table of its load,
+   * if one is in progress, or else the table of the report.
+   */
+  private String getWriteTableName(Class<? extends Report> reportClass) {
+    StagedLoad stagedLoad = stagedLoads.get(reportClass);
+    return stagedLoad != null
+        ? stagedLoad.stagingTableName
+        : SqlUpsertWriter.getTableName(reportClass);
+  }
+
+  private static SqlBatchWriter createBatchWriter(Config config) {
+    switch (config.getWriter()) {
+      case UPSERT:
+        return new SqlUpsertWriter(config.getUpsertRowsPerStatement());
+      case LOAD_DATA:
+        return new SqlLoadDataWriter();
+      case STAGED_MERGE:
+        return new SqlStagedMergeWriter(config.getUpsertRowsPerStatement());
+      default:
+        // The staged rows are written with JDBC, as the entities are mapped to the report tables.
+        return config.isStagedLoad()
+            ? new SqlUpsertWriter(config.getUpsertRowsPerStatement())
+            : null;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <R extends Report> void addToBatch(
+      Map<Class<?>, ReportBatch<?>> batches, R report) {
+    Class<R> reportClass = (Class<R>) report.getClass();
+    ReportBatch<R> batch = (ReportBatch<R>) batches.get(reportClass);
+    if (batch == null) {
+      batch = new ReportBatch<R>(reportClass);
+      batches.put(reportClass, batch);
+    }
+    batch.add(report);
+  }
+
   @Override
   @Transactional
   public <T> T save(T t) {
@@ -147,11 +689,53 @@ public class SqlReportEntitiesPersister implements EntityPersister {
     return criteria.list();
   }
 
+  /** A report being loaded through a staging table. */
+  private static final class StagedLoad {
+    private final Dialect dialect;
+    private final String tableName;
+    private final String stagingTableName;
+    private final List<String> columnNames;
+    private final Collection<Long> customerIds;
+    private final DateRangeAndType dateRangeAndType;
+
+    private StagedLoad(
+        Dialect dialect,
+        String tableName,
+        String stagingTableName,
+        List<String> columnNames,
+        Collection<Long> customerIds,
+        DateRangeAndType dateRangeAndType) {
+      this.dialect = dialect;
+      this.tableName = tableName;
+      this.stagingTableName = stagingTableName;
+      this.columnNames = columnNames;
+      this.customerIds = customerIds;
+      this.dateRangeAndType = dateRangeAndType;
+    }
+  }
+
   /** This class is used to specify parameters to the {@link SqlReportEntitiesPersister}. */
   public static class Config {
     private static final int DEFAULT_BATCH_SIZE = 50;
+    private static final int DEFAULT_UPSERT_ROWS_PER_STATEMENT = 1000;
+
+    /** How the report rows are written. */
+    public enum Writer {
+      /** A Hibernate {@code saveOrUpdate} of each entity. */
+      HIBERNATE,
+      /** Multi-row upsert statements over JDBC, on MySQL and MS SQL Server. */
+      UPSERT,
+      /** {@code LOAD DATA LOCAL INFILE} streams, on MySQL. */
+      LOAD_DATA,
+      /** Batched inserts into a staging table, merged into the table, on MS SQL Server. */
+      STAGED_MERGE
+    }
 
     private int batchSize;
+    private Writer writer = Writer.HIBERNATE;
+    private int upsertRowsPerStatement = DEFAULT_UPSERT_ROWS_PER_STATEMENT;
+    private boolean reload;
+    private boolean staging;
 
     public Config() {
       this(DEFAULT_BATCH_SIZE);
@@ -180,5 +764,72 @@ public class SqlReportEntitiesPersister implements EntityPersister {
     public void setBatchSize(int requestedBatchSize) {
       this.batchSize = requestedBatchSize;
     }
+
+    /**
+     * Retrieve how the report rows are written. The default is {@link Writer#HIBERNATE}.
+     *
+     * @return the configured writer.
+     */
+    public Writer getWriter() {
+      return writer;
+    }
+
+    public void setWriter(Writer writer) {
+      this.writer = Preconditions.checkNotNull(writer, "Writer can not be null");
+    }
+
+    /**
+     * Retrieve the maximum number of rows written by each upsert statement. Statements write fewer
+     * rows when the parameter limit of the database would be exceeded.
+     *
+     * @return the maximum number of rows per upsert statement.
+     */
+    public int getUpsertRowsPerStatement() {
+      return upsertRowsPerStatement;
+    }
+
+    public void setUpsertRowsPerStatement(int upsertRowsPerStatement) {
+      this.upsertRowsPerStatement = upsertRowsPerStatement;
+    }
+
+    /**
+     * Retrieve whether the rows of a report, for its accounts and date range, are replaced by the
+     * rows loaded. The report is loaded through a staging table as in staging mode, and the old rows
+     * are deleted when the new ones are published, only if the report was processed without errors.
+     * The rows of the date reports whose day is in the date range are deleted too, so that
+     * overlapping date ranges can be reloaded. The default is {@code false}.
+     *
+     * @return whether the rows are reloaded.
+     */
+    public boolean isReload() {
+      return reload;
+    }
+
+    public void setReload(boolean reload) {
+      this.reload = reload;
+    }
+
+    /**
+     * Retrieve whether the rows of each downloaded report are written to a staging table of the
+     * run, and published to the report table in a single transaction once all of them were
+     * written. Staged rows are written with the configured JDBC writer, or with upserts if the
+     * writer is {@link Writer#HIBERNATE}. The default is {@code false}.
+     *
+     * @return whether the reports are loaded through staging tables.
+     */
+    public boolean isStaging() {
+      return staging;
+    }
+
+    public void setStaging(boolean staging) {
+      this.staging = staging;
+    }
+
+    /**
+     * Whether the reports are loaded through staging tables, in staging or reload mode.
+     */
+    boolean isStagedLoad() {
+      return staging || reload;
+    }
   }
 }
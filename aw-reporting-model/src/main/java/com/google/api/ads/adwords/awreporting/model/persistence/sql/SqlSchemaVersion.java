@@ -0,0 +1,188 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.hibernate.boot.Metadata;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.mapping.Column;
+import org.hibernate.mapping.Index;
+import org.hibernate.mapping.Table;
+import org.hibernate.mapping.UniqueKey;
+
+/**
+ * The version of the database schema: a fingerprint of each table mapped by the entities, stored
+ * in a row of the {@value #TABLE_NAME} table, keyed by the name of the table, once the schema was
+ * updated to match it.
+ *
+ * <p>The fingerprint of a table covers its name, and the names, SQL types and nullability of its
+ * columns, as well as its primary key, unique keys and indexes. It changes with any mapping change
+ * that a schema update would apply, including the money and row id storage settings, which change
+ * the SQL types of their columns.
+ *
+ * <p>As the runs can map different subsets of the report entities, each run only compares the
+ * fingerprints of the tables it maps, and leaves the ones of the other tables as they are.
+ */
+final class SqlSchemaVersion {
+
+  static final String TABLE_NAME = "AW_SchemaVersion";
+  private static final String MAPPED_TABLE_COLUMN = "MAPPED_TABLE";
+  private static final String FINGERPRINT_COLUMN = "FINGERPRINT";
+
+  private SqlSchemaVersion() {}
+
+  /**
+   * Computes the fingerprints of the tables of the metadata.
+   *
+   * @return the SHA-256 digest of each table, in hexadecimal, by table name.
+   */
+  static Map<String, String> computeFingerprints(Metadata metadata) {
+    Dialect dialect = metadata.getDatabase().getDialect();
+    Map<String, String> fingerprints = Maps.newTreeMap();
+    for (Table table : metadata.collectTableMappings()) {
+      StringBuilder description = new StringBuilder(table.getName()).append('(');
+      Iterator<?> columns = table.getColumnIterator();
+      while (columns.hasNext()) {
+        Column column = (Column) columns.next();
+        description.append(column.getName()).append(' ')
+            .append(column.getSqlType(dialect, metadata))
+            .append(column.isNullable() ? "" : " not null")
+            .append(column.isUnique() ? " unique" : "")
+            .append(columns.hasNext() ? ", " : "");
+      }
+      description.append(')');
+      if (table.hasPrimaryKey()) {
+        description.append(" primary key ").append(getColumnNames(table.getPrimaryKey()
+            .getColumnIterator()));
+      }
+      List<String> keys = Lists.newArrayList();
+      for (Iterator<UniqueKey> uniqueKeys = table.getUniqueKeyIterator(); uniqueKeys.hasNext();) {
+        keys.add("unique " + getColumnNames(uniqueKeys.next().getColumnIterator()));
+      }
+      for (Iterator<Index> indexes = table.getIndexIterator(); indexes.hasNext();) {
+        Index index = indexes.next();
+        keys.add("index " + index.getName() + " " + getColumnNames(index.getColumnIterator()));
+      }
+      Collections.sort(keys);
+      Joiner.on(", ").appendTo(description.append(' '), keys);
+      fingerprints.put(
+          table.getName(),
+          Hashing.sha256().hashString(description.toString(), StandardCharsets.UTF_8).toString());
+    }
+    return fingerprints;
+  }
+
+  private static List<String> getColumnNames(Iterator<?> columns) {
+    List<String> names = Lists.newArrayList();
+    while (columns.hasNext()) {
+      names.add(((Column) columns.next()).getName());
+    }
+    return names;
+  }
+
+  /**
+   * Reads the fingerprints of the tables stored in the database.
+   *
+   * @return the fingerprints by table name, empty if none was stored yet.
+   * @throws SQLException error reading the fingerprints, other than the version table not existing
+   *     yet.
+   */
+  static Map<String, String> read(DataSource dataSource) throws SQLException {
+    Map<String, String> fingerprints = Maps.newTreeMap();
+    try (Connection connection = dataSource.getConnection()) {
+      if (!tableExists(connection)) {
+        return fingerprints;
+      }
+      try (Statement statement = connection.createStatement();
+          ResultSet resultSet = statement.executeQuery("SELECT " + MAPPED_TABLE_COLUMN + ", "
+              + FINGERPRINT_COLUMN + " FROM " + TABLE_NAME)) {
+        while (resultSet.next()) {
+          fingerprints.put(resultSet.getString(1), resultSet.getString(2));
+        }
+      }
+    }
+    return fingerprints;
+  }
+
+  /**
+   * Stores the fingerprints of the given tables, creating the version table if needed. The
+   * fingerprints of the other tables are kept.
+   *
+   * @param fingerprints the fingerprints by table name.
+   * @throws SQLException error writing the fingerprints.
+   */
+  static void write(DataSource dataSource, Map<String, String> fingerprints) throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      if (!tableExists(connection)) {
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("CREATE TABLE " + TABLE_NAME
+              + " (" + MAPPED_TABLE_COLUMN + " VARCHAR(255) NOT NULL PRIMARY KEY, "
+              + FINGERPRINT_COLUMN + " VARCHAR(64) NOT NULL)");
+        }
+      }
+      try (PreparedStatement update = connection.prepareStatement("UPDATE " + TABLE_NAME
+              + " SET " + FINGERPRINT_COLUMN + " = ? WHERE " + MAPPED_TABLE_COLUMN + " = ?");
+          PreparedStatement insert = connection.prepareStatement("INSERT INTO " + TABLE_NAME
+              + " (" + MAPPED_TABLE_COLUMN + ", " + FINGERPRINT_COLUMN + ") VALUES (?, ?)")) {
+        for (Map.Entry<String, String> fingerprint : fingerprints.entrySet()) {
+          update.setString(1, fingerprint.getValue());
+          update.setString(2, fingerprint.getKey());
+          if (update.executeUpdate() == 0) {
+            insert.setString(1, fingerprint.getKey());
+            insert.setString(2, fingerprint.getValue());
+            insert.executeUpdate();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Whether the version table exists, looking up its name in the case the database stores it in.
+   */
+  private static boolean tableExists(Connection connection) throws SQLException {
+    DatabaseMetaData metaData = connection.getMetaData();
+    String tableName = TABLE_NAME;
+    if (metaData.storesUpperCaseIdentifiers()) {
+      tableName = tableName.toUpperCase();
+    } else if (metaData.storesLowerCaseIdentifiers()) {
+      tableName = tableName.toLowerCase();
+    }
+    String escape = metaData.getSearchStringEscape();
+    if (!Strings.isNullOrEmpty(escape)) {
+      tableName = tableName.replace("_", escape + "_");
+    }
+    try (ResultSet tables =
+        metaData.getTables(connection.getCatalog(), null, tableName, new String[] {"TABLE"})) {
+      return tables.next();
+    }
+  }
+}
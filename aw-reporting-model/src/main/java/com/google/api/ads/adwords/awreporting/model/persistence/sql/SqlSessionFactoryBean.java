@@ -0,0 +1,228 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.api.ads.adwords.awreporting.model.csv.CsvReportEntitiesMapping;
+import com.google.api.ads.adwords.awreporting.model.entities.AuthToken;
+import com.google.api.ads.adwords.awreporting.model.persistence.RowIdStorage;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.hibernate.HibernateException;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.BootstrapServiceRegistryBuilder;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaUpdate;
+import org.hibernate.tool.schema.TargetType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.orm.hibernate5.LocalSessionFactoryBean;
+import org.springframework.orm.hibernate5.LocalSessionFactoryBuilder;
+
+/**
+ * Creates the Hibernate session factory, only updating the database schema when the mapping of
+ * the entities changed.
+ *
+ * <p>With {@code hibernate.hbm2ddl.auto=update}, Hibernate reads the metadata of every mapped
+ * table on each start, which can take minutes on a remote database. Instead, this factory
+ * compares the fingerprint of each mapped table with the one stored by the last update of that
+ * table (see {@link SqlSchemaVersion}), and only runs the update when any of them differs. The
+ * statements of each update can also be appended to a script file, so they can be reviewed or
+ * applied to other databases.
+ *
+ * <p>Other {@code hibernate.hbm2ddl.auto} values are left to Hibernate.
+ *
+ * <p>When a report entities mapping is set, only the entities of its reports (and the
+ * authentication tokens) are mapped, instead of the entities of the configured packages.
+ *
+ * <p>When the row ids are stored as binary digests, their columns are mapped to BINARY(16) for the
+ * updates of this factory as well as the schema tools of Hibernate. The existing columns are not
+ * altered, the VARCHAR ones are converted by {@link RowIdMigration}.
+ */
+public class SqlSessionFactoryBean extends LocalSessionFactoryBean {
+
+  private static final Logger logger = LoggerFactory.getLogger(SqlSessionFactoryBean.class);
+
+  private static final String UPDATE = "update";
+
+  private boolean schemaFingerprint = true;
+  private String schemaScript;
+  private CsvReportEntitiesMapping reportEntitiesMapping;
+
+  @Override
+  public void afterPropertiesSet() throws IOException {
+    if (reportEntitiesMapping != null) {
+      List<Class<?>> entityClasses =
+          Lists.<Class<?>>newArrayList(reportEntitiesMapping.getReportBeanClasses());
+      entityClasses.add(AuthToken.class);
+      setAnnotatedClasses(entityClasses.toArray(new Class<?>[entityClasses.size()]));
+      logger.info("Mapping {} entities.", entityClasses.size());
+    }
+    if (RowIdStorage.isBinary()) {
+      // The schema tools of Hibernate run once the integrators adjusted the metadata.
+      BootstrapServiceRegistryBuilder bootstrapRegistry =
+          new BootstrapServiceRegistryBuilder()
+              .applyClassLoader(getResourceLoader().getClassLoader())
+              .applyIntegrator(new BinaryRowIdIntegrator());
+      setMetadataSources(new MetadataSources(bootstrapRegistry.build()));
+    }
+    super.afterPropertiesSet();
+  }
+
+  @Override
+  protected SessionFactory buildSessionFactory(LocalSessionFactoryBuilder sfb) {
+    if (schemaFingerprint && UPDATE.equals(sfb.getProperty(AvailableSettings.HBM2DDL_AUTO))) {
+      updateSchemaIfChanged(sfb);
+      sfb.setProperty(AvailableSettings.HBM2DDL_AUTO, "none");
+    }
+    return super.buildSessionFactory(sfb);
+  }
+
+  /**
+   * Updates the schema if the fingerprint of any mapped table differs from the stored one, and
+   * stores the new ones.
+   */
+  private void updateSchemaIfChanged(LocalSessionFactoryBuilder sfb) {
+    DataSource dataSource = (DataSource) sfb.getProperties().get(AvailableSettings.DATASOURCE);
+    StandardServiceRegistry serviceRegistry =
+        new StandardServiceRegistryBuilder().applySettings(sfb.getProperties()).build();
+    try {
+      Metadata metadata = buildMetadata(serviceRegistry);
+      if (RowIdStorage.isBinary()) {
+        RowIdType.applyBinaryColumns(metadata);
+      }
+      Map<String, String> fingerprints = SqlSchemaVersion.computeFingerprints(metadata);
+      Map<String, String> storedFingerprints;
+      try {
+        storedFingerprints = SqlSchemaVersion.read(dataSource);
+      } catch (SQLException e) {
+        throw new HibernateException("Could not read the fingerprint of the database schema.", e);
+      }
+      // The tables that are not mapped by this run are left out of the comparison.
+      List<String> changedTables = Lists.newArrayList();
+      for (Map.Entry<String, String> fingerprint : fingerprints.entrySet()) {
+        if (!fingerprint.getValue().equals(storedFingerprints.get(fingerprint.getKey()))) {
+          changedTables.add(fingerprint.getKey());
+        }
+      }
+      if (changedTables.isEmpty()) {
+        logger.info("The database schema of the {} mapped tables is up to date.",
+            fingerprints.size());
+        return;
+      }
+
+      logger.info("The mapping of the tables {} changed.", changedTables);
+      logger.warn("Updating database schema, this could take a few minutes ...");
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      SchemaUpdate schemaUpdate = new SchemaUpdate().setDelimiter(";").setFormat(true);
+      EnumSet<TargetType> targetTypes = EnumSet.of(TargetType.DATABASE);
+      if (!Strings.isNullOrEmpty(schemaScript)) {
+        schemaUpdate.setOutputFile(schemaScript);
+        targetTypes.add(TargetType.SCRIPT);
+      }
+      schemaUpdate.execute(targetTypes, metadata);
+      if (!schemaUpdate.getExceptions().isEmpty()) {
+        // As with hbm2ddl, the errors were logged. The update is retried on the next start.
+        logger.warn("The database schema update failed, its fingerprint was not stored.");
+        return;
+      }
+
+      SqlSchemaVersion.write(dataSource, fingerprints);
+      logger.warn(
+          "Updated database schema ({} tables changed) in {} seconds.",
+          changedTables.size(),
+          stopwatch.elapsed(TimeUnit.SECONDS));
+    } catch (SQLException e) {
+      logger.warn("Could not store the fingerprint of the database schema.", e);
+    } finally {
+      StandardServiceRegistryBuilder.destroy(serviceRegistry);
+    }
+  }
+
+  /**
+   * Builds the metadata of the configured entities with the given service registry. The entities
+   * are only mapped with annotations, so their classes and packages are all the sources needed.
+   */
+  private Metadata buildMetadata(StandardServiceRegistry serviceRegistry) {
+    MetadataSources configuredSources = getMetadataSources();
+    MetadataSources metadataSources = new MetadataSources(serviceRegistry);
+    for (Class<?> annotatedClass : configuredSources.getAnnotatedClasses()) {
+      metadataSources.addAnnotatedClass(annotatedClass);
+    }
+    for (String annotatedClassName : configuredSources.getAnnotatedClassNames()) {
+      metadataSources.addAnnotatedClassName(annotatedClassName);
+    }
+    for (String annotatedPackage : configuredSources.getAnnotatedPackages()) {
+      metadataSources.addPackage(annotatedPackage);
+    }
+    return metadataSources.getMetadataBuilder().build();
+  }
+
+  /**
+   * Maps the row id columns to BINARY(16) before the schema tools of Hibernate run.
+   */
+  private static class BinaryRowIdIntegrator implements Integrator {
+
+    @Override
+    public void integrate(
+        Metadata metadata,
+        SessionFactoryImplementor sessionFactory,
+        SessionFactoryServiceRegistry serviceRegistry) {
+      RowIdType.applyBinaryColumns(metadata);
+    }
+
+    @Override
+    public void disintegrate(
+        SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {}
+  }
+
+  /**
+   * @param schemaFingerprint whether the schema is only updated when its fingerprint changed. The
+   *     default is {@code true}.
+   */
+  public void setSchemaFingerprint(boolean schemaFingerprint) {
+    this.schemaFingerprint = schemaFingerprint;
+  }
+
+  /**
+   * @param schemaScript the file the statements of the schema updates are appended to, or empty to
+   *     only apply them to the database.
+   */
+  public void setSchemaScript(String schemaScript) {
+    this.schemaScript = schemaScript;
+  }
+
+  /**
+   * @param reportEntitiesMapping the mapping of the reports whose entities are mapped, instead of
+   *     the entities of the packages to scan.
+   */
+  public void setReportEntitiesMapping(CsvReportEntitiesMapping reportEntitiesMapping) {
+    this.reportEntitiesMapping = reportEntitiesMapping;
+  }
+}
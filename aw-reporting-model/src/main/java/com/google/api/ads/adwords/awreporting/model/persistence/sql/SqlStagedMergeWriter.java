@@ -0,0 +1,127 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.ReportBatch;
+import com.google.api.ads.adwords.awreporting.model.persistence.sql.SqlUpsertWriter.Dialect;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Writes the rows of report batches to MS SQL Server through a staging table: the rows are bulk
+ * inserted into a temporary table with the columns of the target table, and then merged into the
+ * target table with a single {@code MERGE} on the row ids.
+ *
+ * <p>Unlike a {@code MERGE} of the rows in the statement, which can only take about 2000
+ * parameters, the inserts into the staging table are sent together in a single JDBC batch, and the
+ * merge runs once for the whole batch of rows. The jTDS driver supports neither the TDS bulk copy
+ * nor table valued parameters, which is why the rows are staged with plain inserts.
+ *
+ * <p>The staging table is a local temporary table, so it is only visible to the connection of the
+ * transaction, and is dropped once the rows were merged.
+ */
+public class SqlStagedMergeWriter implements SqlBatchWriter {
+
+  private final int maxRowsPerStatement;
+
+  /**
+   * @param maxRowsPerStatement the maximum number of rows inserted by each statement.
+   */
+  public SqlStagedMergeWriter(int maxRowsPerStatement) {
+    Preconditions.checkArgument(maxRowsPerStatement > 0, "maxRowsPerStatement must be > 0");
+    this.maxRowsPerStatement = maxRowsPerStatement;
+  }
+
+  /**
+   * Merges the rows of the batch.
+   *
+   * @return the number of distinct rows that were written.
+   */
+  @Override
+  public int write(Connection connection, String tableName, ReportBatch<? extends Report> batch)
+      throws SQLException {
+    if (batch.isEmpty()) {
+      return 0;
+    }
+    String productName = connection.getMetaData().getDatabaseProductName();
+    if (Dialect.forDatabase(productName) != Dialect.MSSQL) {
+      throw new IllegalStateException("Staged merges are not supported on " + productName);
+    }
+
+    List<? extends ReportBatch<?>.ReportColumn> columns = batch.getColumns();
+    List<String> columnNames = SqlUpsertWriter.getColumnNames(columns);
+    String stagingTableName = getStagingTableName(tableName);
+    int[] rows = SqlUpsertWriter.getDistinctRows(batch);
+    int rowsPerInsert =
+        SqlUpsertWriter.getRowsPerStatement(Dialect.MSSQL, columns.size(), maxRowsPerStatement);
+
+    try (Statement statement = connection.createStatement()) {
+      statement.execute(buildCreateStagingTable(tableName, stagingTableName));
+
+      int fullInserts = rows.length / rowsPerInsert;
+      if (fullInserts > 0) {
+        try (PreparedStatement insert = connection.prepareStatement(
+            buildInsert(stagingTableName, columnNames, rowsPerInsert))) {
+          for (int i = 0; i < fullInserts; i++) {
+            SqlUpsertWriter.bindRows(insert, columns, rows, i * rowsPerInsert, rowsPerInsert);
+            insert.addBatch();
+          }
+          insert.executeBatch();
+        }
+      }
+      int remainingRows = rows.length - fullInserts * rowsPerInsert;
+      if (remainingRows > 0) {
+        try (PreparedStatement insert = connection.prepareStatement(
+            buildInsert(stagingTableName, columnNames, remainingRows))) {
+          SqlUpsertWriter.bindRows(
+              insert, columns, rows, fullInserts * rowsPerInsert, remainingRows);
+          insert.executeUpdate();
+        }
+      }
+
+      statement.executeUpdate(
+          SqlUpsertWriter.buildMerge(tableName, columnNames, stagingTableName + " AS source"));
+      statement.execute("DROP TABLE " + stagingTableName);
+    }
+    return rows.length;
+  }
+
+  static String getStagingTableName(String tableName) {
+    Preconditions.checkArgument(!tableName.isEmpty(), "Empty table name");
+    return "#" + tableName + "_Staging";
+  }
+
+  /**
+   * Builds the statement that creates an empty staging table with the columns of the table. A
+   * staging table left by a failed transaction on the same connection is dropped first.
+   */
+  static String buildCreateStagingTable(String tableName, String stagingTableName) {
+    return "IF OBJECT_ID('tempdb.." + stagingTableName + "') IS NOT NULL DROP TABLE "
+        + stagingTableName + "; SELECT TOP 0 * INTO " + stagingTableName + " FROM " + tableName;
+  }
+
+  static String buildInsert(String tableName, List<String> columnNames, int rows) {
+    StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+    Joiner.on(", ").appendTo(sql, columnNames).append(") VALUES ");
+    SqlUpsertWriter.appendRowPlaceholders(sql, columnNames.size(), rows);
+    return sql.toString();
+  }
+}
@@ -0,0 +1,462 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.MoneyStorage;
+import com.google.api.ads.adwords.awreporting.model.persistence.ReportBatch;
+import com.google.api.ads.adwords.awreporting.model.persistence.RowIdStorage;
+import com.google.api.ads.adwords.awreporting.model.util.BigDecimalUtil;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.persistence.Table;
+import org.hibernate.NonUniqueObjectException;
+
+/**
+ * Writes the rows of report batches with multi-row upsert statements over JDBC, instead of
+ * persisting the entities one by one with Hibernate.
+ *
+ * <p>The statements are generated from the JPA metadata of the entities: the {@code @Table} name
+ * and the {@code @Column} names, which are the columns of the {@link ReportBatch}. A single
+ * statement inserts the new rows and updates the existing ones (by {@code ROW_ID}), so no query is
+ * needed to tell them apart, and each statement writes as many rows as the parameter limit of the
+ * database allows, up to the configured maximum.
+ *
+ * <p>All the columns of the entity are written, as Hibernate does. Rows of the batch with the same
+ * row id and values are written once, and rows with the same row id but different values fail the
+ * batch, as Hibernate does. The values are converted the same way as {@link MoneyType} and
+ * {@link RowIdType} do.
+ */
+public class SqlUpsertWriter implements SqlBatchWriter {
+
+  static final String ROW_ID_COLUMN = "ROW_ID";
+
+  /** The column of the time each entity was created, which differs between repeated rows. */
+  private static final String TIMESTAMP_COLUMN = "TIMESTAMP";
+
+  /** The databases the upsert statements are written for. */
+  public enum Dialect {
+    /** {@code INSERT ... ON DUPLICATE KEY UPDATE}, with up to 65535 parameters per statement. */
+    MYSQL(65535) {
+      @Override
+      String buildUpsert(String tableName, List<String> columnNames, int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+        Joiner.on(", ").appendTo(sql, columnNames).append(") VALUES ");
+        appendRowPlaceholders(sql, columnNames.size(), rows);
+        return appendOnDuplicateKeyUpdate(sql, columnNames).toString();
+      }
+
+      @Override
+      String buildCreateEmptyCopy(String tableName, String copyName) {
+        return "CREATE TABLE " + copyName + " AS SELECT * FROM " + tableName + " WHERE 1 = 0";
+      }
+
+      @Override
+      String buildUpsertFrom(String tableName, List<String> columnNames, String sourceName) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+        Joiner.on(", ").appendTo(sql, columnNames).append(") SELECT ");
+        Joiner.on(", ").appendTo(sql, columnNames).append(" FROM ").append(sourceName);
+        return appendOnDuplicateKeyUpdate(sql, columnNames).toString();
+      }
+
+      private StringBuilder appendOnDuplicateKeyUpdate(
+          StringBuilder sql, List<String> columnNames) {
+        sql.append(" ON DUPLICATE KEY UPDATE ");
+        boolean first = true;
+        for (String columnName : columnNames) {
+          if (!ROW_ID_COLUMN.equals(columnName)) {
+            sql.append(first ? "" : ", ")
+                .append(columnName).append(" = VALUES(").append(columnName).append(')');
+            first = false;
+          }
+        }
+        return sql;
+      }
+    },
+
+    /** {@code MERGE}, with up to 2100 parameters per statement. */
+    MSSQL(2000) {
+      @Override
+      String buildUpsert(String tableName, List<String> columnNames, int rows) {
+        StringBuilder source = new StringBuilder("(VALUES ");
+        appendRowPlaceholders(source, columnNames.size(), rows);
+        source.append(") AS source (");
+        Joiner.on(", ").appendTo(source, columnNames).append(')');
+        return buildMerge(tableName, columnNames, source.toString());
+      }
+
+      @Override
+      String buildCreateEmptyCopy(String tableName, String copyName) {
+        return "SELECT TOP 0 * INTO " + copyName + " FROM " + tableName;
+      }
+
+      @Override
+      String buildUpsertFrom(String tableName, List<String> columnNames, String sourceName) {
+        return buildMerge(tableName, columnNames, sourceName + " AS source");
+      }
+    },
+
+    /** {@code MERGE ... KEY}, as used by the tests, with up to 65535 parameters per statement. */
+    H2(65535) {
+      @Override
+      String buildUpsert(String tableName, List<String> columnNames, int rows) {
+        StringBuilder sql = appendMergeInto(tableName, columnNames).append(" VALUES ");
+        appendRowPlaceholders(sql, columnNames.size(), rows);
+        return sql.toString();
+      }
+
+      @Override
+      String buildCreateEmptyCopy(String tableName, String copyName) {
+        return MYSQL.buildCreateEmptyCopy(tableName, copyName);
+      }
+
+      @Override
+      String buildUpsertFrom(String tableName, List<String> columnNames, String sourceName) {
+        StringBuilder sql = appendMergeInto(tableName, columnNames).append(" SELECT ");
+        return Joiner.on(", ").appendTo(sql, columnNames).append(" FROM ").append(sourceName)
+            .toString();
+      }
+
+      /**
+       * The columns of a table created from a query are all nullable on H2, so the row id column
+       * is made {@code NOT NULL} before it becomes the primary key.
+       */
+      @Override
+      List<String> buildAddRowIdPrimaryKey(String tableName) {
+        return Lists.newArrayList(
+            "ALTER TABLE " + tableName + " ALTER COLUMN " + ROW_ID_COLUMN + " SET NOT NULL",
+            super.buildAddRowIdPrimaryKey(tableName).get(0));
+      }
+
+      private StringBuilder appendMergeInto(String tableName, List<String> columnNames) {
+        StringBuilder sql = new StringBuilder("MERGE INTO ").append(tableName).append(" (");
+        return Joiner.on(", ").appendTo(sql, columnNames)
+            .append(") KEY (").append(ROW_ID_COLUMN).append(')');
+      }
+    };
+
+    final int maxParameters;
+
+    private Dialect(int maxParameters) {
+      this.maxParameters = maxParameters;
+    }
+
+    /**
+     * Builds the statement that upserts the given number of rows.
+     */
+    abstract String buildUpsert(String tableName, List<String> columnNames, int rows);
+
+    /**
+     * Builds the statement that creates an empty table with the columns of another table, without
+     * any of its keys or indexes.
+     */
+    abstract String buildCreateEmptyCopy(String tableName, String copyName);
+
+    /**
+     * Builds the statement that upserts all the rows of another table with the same columns.
+     */
+    abstract String buildUpsertFrom(String tableName, List<String> columnNames, String sourceName);
+
+    /**
+     * Builds the statement that inserts all the rows of another table with the same columns, for
+     * a table that holds none of their row ids.
+     */
+    String buildInsertFrom(String tableName, List<String> columnNames, String sourceName) {
+      StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+      Joiner.on(", ").appendTo(sql, columnNames).append(") SELECT ");
+      return Joiner.on(", ").appendTo(sql, columnNames).append(" FROM ").append(sourceName)
+          .toString();
+    }
+
+    /**
+     * Builds the statements that add the row id primary key of a table created with
+     * {@link #buildCreateEmptyCopy(String, String)}, so its rows are upserted by row id as in the
+     * table it copies.
+     */
+    List<String> buildAddRowIdPrimaryKey(String tableName) {
+      return Lists.newArrayList(
+          "ALTER TABLE " + tableName + " ADD PRIMARY KEY (" + ROW_ID_COLUMN + ")");
+    }
+
+    /**
+     * Gets the dialect of a database.
+     *
+     * @param databaseProductName the product name reported by the JDBC driver
+     * @return the dialect, or {@code null} if the database is not supported
+     */
+    public static Dialect forDatabase(String databaseProductName) {
+      String name = databaseProductName.toLowerCase();
+      if (name.contains("mysql") || name.contains("mariadb")) {
+        return MYSQL;
+      } else if (name.contains("sql server")) {
+        return MSSQL;
+      } else if (name.equals("h2")) {
+        return H2;
+      }
+      return null;
+    }
+  }
+
+  private final int maxRowsPerStatement;
+
+  /**
+   * @param maxRowsPerStatement the maximum number of rows written by each statement.
+   */
+  public SqlUpsertWriter(int maxRowsPerStatement) {
+    Preconditions.checkArgument(maxRowsPerStatement > 0, "maxRowsPerStatement must be > 0");
+    this.maxRowsPerStatement = maxRowsPerStatement;
+  }
+
+  /**
+   * Upserts the rows of the batch.
+   *
+   * @return the number of distinct rows that were written.
+   */
+  @Override
+  public int write(Connection connection, String tableName, ReportBatch<? extends Report> batch)
+      throws SQLException {
+    if (batch.isEmpty()) {
+      return 0;
+    }
+    String productName = connection.getMetaData().getDatabaseProductName();
+    Dialect dialect = Dialect.forDatabase(productName);
+    if (dialect == null) {
+      throw new IllegalStateException("Upserts are not supported on " + productName);
+    }
+
+    List<? extends ReportBatch<?>.ReportColumn> columns = batch.getColumns();
+    List<String> columnNames = getColumnNames(columns);
+    int[] rows = getDistinctRows(batch);
+    int rowsPerStatement = getRowsPerStatement(dialect, columns.size(), maxRowsPerStatement);
+
+    PreparedStatement fullStatement = null;
+    try {
+      for (int start = 0; start < rows.length; start += rowsPerStatement) {
+        int count = Math.min(rowsPerStatement, rows.length - start);
+        if (count == rowsPerStatement) {
+          if (fullStatement == null) {
+            fullStatement =
+                connection.prepareStatement(dialect.buildUpsert(tableName, columnNames, count));
+          }
+          bindRows(fullStatement, columns, rows, start, count);
+          fullStatement.executeUpdate();
+        } else {
+          try (PreparedStatement statement =
+              connection.prepareStatement(dialect.buildUpsert(tableName, columnNames, count))) {
+            bindRows(statement, columns, rows, start, count);
+            statement.executeUpdate();
+          }
+        }
+      }
+    } finally {
+      if (fullStatement != null) {
+        fullStatement.close();
+      }
+    }
+    return rows.length;
+  }
+
+  /**
+   * Gets the number of rows written by each statement, within the parameter limit of the dialect.
+   */
+  static int getRowsPerStatement(Dialect dialect, int columns, int maxRowsPerStatement) {
+    return Math.max(1, Math.min(maxRowsPerStatement, dialect.maxParameters / columns));
+  }
+
+  /**
+   * Gets the name of the table of a report entity.
+   */
+  static String getTableName(Class<?> reportClass) {
+    Table table = reportClass.getAnnotation(Table.class);
+    Preconditions.checkArgument(
+        table != null && !table.name().isEmpty(), "%s has no @Table name", reportClass.getName());
+    return table.name();
+  }
+
+  static List<String> getColumnNames(List<? extends ReportBatch<?>.ReportColumn> columns) {
+    List<String> columnNames = Lists.newArrayListWithCapacity(columns.size());
+    for (ReportBatch<?>.ReportColumn column : columns) {
+      columnNames.add(column.getColumnName());
+    }
+    return columnNames;
+  }
+
+  /**
+   * Builds a MSSQL {@code MERGE} of the rows of the source into the table, on their row ids.
+   *
+   * @param source the source of the rows, aliased as {@code source}.
+   */
+  static String buildMerge(String tableName, List<String> columnNames, String source) {
+    StringBuilder sql = new StringBuilder("MERGE INTO ").append(tableName)
+        .append(" WITH (HOLDLOCK) AS target USING ").append(source)
+        .append(" ON target.").append(ROW_ID_COLUMN)
+        .append(" = source.").append(ROW_ID_COLUMN)
+        .append(" WHEN MATCHED THEN UPDATE SET ");
+    boolean first = true;
+    for (String columnName : columnNames) {
+      if (!ROW_ID_COLUMN.equals(columnName)) {
+        sql.append(first ? "" : ", ")
+            .append(columnName).append(" = source.").append(columnName);
+        first = false;
+      }
+    }
+    sql.append(" WHEN NOT MATCHED THEN INSERT (");
+    Joiner.on(", ").appendTo(sql, columnNames).append(") VALUES (");
+    for (int i = 0; i < columnNames.size(); i++) {
+      sql.append(i == 0 ? "" : ", ").append("source.").append(columnNames.get(i));
+    }
+    return sql.append(");").toString();
+  }
+
+  /**
+   * Appends the placeholders of the given number of rows, as in {@code (?, ?), (?, ?)}.
+   */
+  static void appendRowPlaceholders(StringBuilder sql, int columns, int rows) {
+    for (int row = 0; row < rows; row++) {
+      sql.append(row == 0 ? "(" : ", (");
+      for (int column = 0; column < columns; column++) {
+        sql.append(column == 0 ? "?" : ", ?");
+      }
+      sql.append(')');
+    }
+  }
+
+  /**
+   * Gets the rows to write: the last row of each row id, in the order of the first one. Rows with
+   * the same row id must also have the same values.
+   *
+   * @throws NonUniqueObjectException if rows with the same row id have different values, which
+   *     happens when the report definition does not include all the fields of the row id.
+   */
+  static int[] getDistinctRows(ReportBatch<?> batch) {
+    ReportBatch<?>.ReportColumn rowIdColumn = null;
+    for (ReportBatch<?>.ReportColumn column : batch.getColumns()) {
+      if (ROW_ID_COLUMN.equals(column.getColumnName())) {
+        rowIdColumn = column;
+      }
+    }
+    Preconditions.checkState(rowIdColumn != null, "No %s column", ROW_ID_COLUMN);
+    Map<String, Integer> lastRows = Maps.newLinkedHashMap();
+    for (int row = 0; row < batch.size(); row++) {
+      String rowId = rowIdColumn.getString(row);
+      Integer previousRow = lastRows.put(rowId, row);
+      if (previousRow != null && !haveSameValues(batch.getColumns(), previousRow, row)) {
+        throw new NonUniqueObjectException(rowId, batch.getReportClass().getName());
+      }
+    }
+    return Ints.toArray(lastRows.values());
+  }
+
+  /**
+   * Tells whether two rows have the same values in all the columns but the timestamp.
+   */
+  private static boolean haveSameValues(
+      List<? extends ReportBatch<?>.ReportColumn> columns, int row, int otherRow) {
+    for (ReportBatch<?>.ReportColumn column : columns) {
+      if (TIMESTAMP_COLUMN.equals(column.getColumnName())) {
+        continue;
+      }
+      Object value = column.getValue(row);
+      Object otherValue = column.getValue(otherRow);
+      if (value instanceof BigDecimal && otherValue instanceof BigDecimal) {
+        if (((BigDecimal) value).compareTo((BigDecimal) otherValue) != 0) {
+          return false;
+        }
+      } else if (!Objects.equals(value, otherValue)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Binds the values of the given rows, from the first parameter of the statement.
+   */
+  static void bindRows(
+      PreparedStatement statement, List<? extends ReportBatch<?>.ReportColumn> columns,
+      int[] rows, int start, int count)
+      throws SQLException {
+    int index = 1;
+    for (int i = start; i < start + count; i++) {
+      for (ReportBatch<?>.ReportColumn column : columns) {
+        bindValue(statement, index++, column, rows[i]);
+      }
+    }
+  }
+
+  /**
+   * Binds a value of a column, converted as the Hibernate types of the entity properties do.
+   */
+  static void bindValue(
+      PreparedStatement statement, int index, ReportBatch<?>.ReportColumn column, int row)
+      throws SQLException {
+    boolean micros = column.isMoney() && MoneyStorage.isMicros();
+    boolean binaryRowId = RowIdStorage.isBinary() && ROW_ID_COLUMN.equals(column.getColumnName());
+    if (column.isNull(row)) {
+      statement.setNull(index, getSqlType(column, micros, binaryRowId));
+      return;
+    }
+    switch (column.getType()) {
+      case LONG:
+        statement.setLong(index, column.getLong(row));
+        break;
+      case DECIMAL:
+        if (micros) {
+          statement.setLong(index, BigDecimalUtil.toMicros(column.getDecimal(row)));
+        } else {
+          statement.setBigDecimal(index, column.getDecimal(row));
+        }
+        break;
+      case TIMESTAMP:
+        statement.setTimestamp(index, new Timestamp(column.getLong(row)));
+        break;
+      case STRING:
+        if (binaryRowId) {
+          statement.setBytes(index, RowIdStorage.toBytes(column.getString(row)));
+        } else {
+          statement.setString(index, column.getString(row));
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unknown column type: " + column.getType());
+    }
+  }
+
+  private static int getSqlType(
+      ReportBatch<?>.ReportColumn column, boolean micros, boolean binaryRowId) {
+    switch (column.getType()) {
+      case LONG:
+        return Types.BIGINT;
+      case DECIMAL:
+        return micros ? Types.BIGINT : Types.NUMERIC;
+      case TIMESTAMP:
+        return Types.TIMESTAMP;
+      default:
+        return binaryRowId ? Types.VARBINARY : Types.VARCHAR;
+    }
+  }
+}
@@ -17,6 +17,7 @@ package com.google.api.ads.adwords.awreporting.model.util;
 import com.google.common.base.Strings;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
@@ -30,6 +31,10 @@ import javax.annotation.Nullable;
  */
 public class BigDecimalUtil {
   private static final BigDecimal MICRO = new BigDecimal(1000000);
+  private static final int MICROS_SCALE = 6;
+
+  // Any number of decimal digits up to this count fits in a long.
+  private static final int MAX_LONG_DIGITS = 18;
 
   private static final ThreadLocal<DecimalFormat> humanReadableFormat =
       new ThreadLocal<DecimalFormat>() {
@@ -56,34 +61,108 @@ public class BigDecimalUtil {
    *         {@code null} or empty, then {@code null} is returned.
    */
   public static BigDecimal parseFromNumberString(@Nullable String numberString) {
-    BigDecimal result = null;
+    if (numberString == null) {
+      return null;
+    }
 
-    if (numberString != null) {
-      String nonSpacedString = numberString.replaceAll("[ \\t\\n\\x0B\\f\\r%]", "");
+    int indexOfComma = numberString.indexOf(',');
+    int indexOfDot = numberString.indexOf('.');
+    char decimalSeparator = indexOfComma < indexOfDot ? '.' : ',';
 
-      if (!Strings.isNullOrEmpty(nonSpacedString)){
-        int indexOfComma = nonSpacedString.indexOf(',');
-        int indexOfDot = nonSpacedString.indexOf('.');
-  
-        DecimalFormat decimalFormat = (DecimalFormat) NumberFormat.getInstance();
-        DecimalFormatSymbols otherSymbols = new DecimalFormatSymbols();
-  
-        if (indexOfComma < indexOfDot) {
-          otherSymbols.setDecimalSeparator('.');
-          otherSymbols.setGroupingSeparator(',');
+    // Single pass over plain numbers: an optional minus sign, digits with grouping separators and
+    // an optional fraction. Any other input is left to DecimalFormat.
+    long unscaled = 0;
+    int digitCount = 0;
+    int decimalAt = 0;
+    boolean sawDigit = false;
+    boolean sawDecimal = false;
+    boolean negative = false;
+    boolean empty = true;
+    for (int i = 0; i < numberString.length(); i++) {
+      char c = numberString.charAt(i);
+      if (isIgnoredNumberChar(c)) {
+        continue;
+      }
+
+      if (c >= '0' && c <= '9') {
+        sawDigit = true;
+        if (c == '0' && digitCount == 0) {
+          // Leading zeros are not significant, but count for the position of the decimal point.
+          if (sawDecimal) {
+            decimalAt--;
+          }
+        } else if (digitCount == MAX_LONG_DIGITS) {
+          return parseWithDecimalFormat(numberString);
         } else {
-          otherSymbols.setDecimalSeparator(',');
-          otherSymbols.setGroupingSeparator('.');
+          unscaled = unscaled * 10 + (c - '0');
+          digitCount++;
         }
-  
-        decimalFormat.setParseBigDecimal(true);
-        decimalFormat.setDecimalFormatSymbols(otherSymbols);
-  
-        try {
-          result = (BigDecimal) decimalFormat.parse(nonSpacedString);
-        } catch (ParseException e) {
-          throw new RuntimeException("Error parsing '" + nonSpacedString + "' as BigDecimal", e);
+      } else if (c == decimalSeparator && !sawDecimal) {
+        sawDecimal = true;
+        decimalAt = digitCount;
+      } else if (c == ',' || c == '.') {
+        // A grouping separator, only valid before the decimal separator.
+        if (sawDecimal) {
+          return parseWithDecimalFormat(numberString);
         }
+      } else if (c == '-' && empty) {
+        negative = true;
+      } else {
+        return parseWithDecimalFormat(numberString);
+      }
+      empty = false;
+    }
+
+    if (empty) {
+      return null;
+    }
+    if (!sawDigit) {
+      return parseWithDecimalFormat(numberString);
+    }
+    if (!sawDecimal) {
+      decimalAt = digitCount;
+    }
+    if (digitCount == 0) {
+      return decimalAt == 0 ? BigDecimal.ZERO : BigDecimal.valueOf(0, -decimalAt);
+    }
+    return BigDecimal.valueOf(negative ? -unscaled : unscaled, digitCount - decimalAt);
+  }
+
+  private static boolean isIgnoredNumberChar(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r'
+        || c == '%';
+  }
+
+  /**
+   * Parses the number with a {@code DecimalFormat}, for the inputs that the single pass parser does
+   * not handle, such as exponents or trailing text.
+   */
+  private static BigDecimal parseWithDecimalFormat(String numberString) {
+    BigDecimal result = null;
+    String nonSpacedString = numberString.replaceAll("[ \\t\\n\\x0B\\f\\r%]", "");
+
+    if (!Strings.isNullOrEmpty(nonSpacedString)){
+      int indexOfComma = nonSpacedString.indexOf(',');
+      int indexOfDot = nonSpacedString.indexOf('.');
+
+      DecimalFormat decimalFormat = (DecimalFormat) NumberFormat.getInstance();
+      DecimalFormatSymbols otherSymbols = new DecimalFormatSymbols();
+
+      if (indexOfComma < indexOfDot) {
+        otherSymbols.setDecimalSeparator('.');
+        otherSymbols.setGroupingSeparator(',');
+      } else {
+        otherSymbols.setDecimalSeparator(',');
+        otherSymbols.setGroupingSeparator('.');
+      }
+
+      decimalFormat.setParseBigDecimal(true);
+      decimalFormat.setDecimalFormatSymbols(otherSymbols);
+
+      try {
+        result = (BigDecimal) decimalFormat.parse(nonSpacedString);
+      } catch (ParseException e) {
+        throw new RuntimeException("Error parsing '" + nonSpacedString + "' as BigDecimal", e);
       }
     }
     return result;
@@ -99,8 +178,60 @@ public class BigDecimalUtil {
    *         {@code null} or empty, then {@code null} is returned.
    */
   public static BigDecimal parseFromNumberStringPercentage(@Nullable String numberString) {
-    return StringsUtil.isEmptyValue(numberString) ? null
-        : new BigDecimal(numberString.replaceAll("\\s|%|>|<", ""));
+    if (StringsUtil.isEmptyValue(numberString)) {
+      return null;
+    }
+
+    // Single pass over plain decimals: an optional sign, digits and an optional fraction. Any
+    // other input, such as exponents, is left to the BigDecimal constructor.
+    long unscaled = 0;
+    int digitCount = 0;
+    int scale = 0;
+    boolean sawDigit = false;
+    boolean sawDecimal = false;
+    boolean negative = false;
+    boolean empty = true;
+    for (int i = 0; i < numberString.length(); i++) {
+      char c = numberString.charAt(i);
+      if (isIgnoredPercentageChar(c)) {
+        continue;
+      }
+
+      if (c >= '0' && c <= '9') {
+        sawDigit = true;
+        if (sawDecimal) {
+          scale++;
+        }
+        if (c != '0' || digitCount > 0) {
+          if (digitCount == MAX_LONG_DIGITS) {
+            return parseWithBigDecimal(numberString);
+          }
+          unscaled = unscaled * 10 + (c - '0');
+          digitCount++;
+        }
+      } else if (c == '.' && !sawDecimal) {
+        sawDecimal = true;
+      } else if ((c == '-' || c == '+') && empty) {
+        negative = c == '-';
+      } else {
+        return parseWithBigDecimal(numberString);
+      }
+      empty = false;
+    }
+
+    if (!sawDigit) {
+      return parseWithBigDecimal(numberString);
+    }
+    return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+  }
+
+  private static boolean isIgnoredPercentageChar(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r'
+        || c == '%' || c == '>' || c == '<';
+  }
+
+  private static BigDecimal parseWithBigDecimal(String numberString) {
+    return new BigDecimal(numberString.replaceAll("\\s|%|>|<", ""));
   }
 
   /**
@@ -122,7 +253,63 @@ public class BigDecimalUtil {
    *         micros. If the numberString is {@code null} or empty, then {@code null} is returned.
    */
   public static BigDecimal parseFromMoneyString(@Nullable String numberString){
-    return StringsUtil.isEmptyValue(numberString) ? null
-        : (new BigDecimal(numberString.replaceAll("[^\\d.]", ""))).divide(MICRO);
+    if (StringsUtil.isEmptyValue(numberString)) {
+      return null;
+    }
+
+    long micros = parseMicros(numberString);
+    if (micros >= 0) {
+      return fromMicros(micros);
+    }
+    return (new BigDecimal(numberString.replaceAll("[^\\d.]", ""))).divide(MICRO);
+  }
+
+  /**
+   * Reads the digits of a micros amount into a {@code long}, ignoring any other character, as
+   * {@link #parseFromMoneyString(String)} does.
+   *
+   * @param numberString the micros amount in {@code String} format
+   * @return the micros amount, or -1 if the string has no digits, has a decimal point or does not
+   *         fit in a {@code long}
+   */
+  private static long parseMicros(String numberString) {
+    long micros = 0;
+    boolean hasDigits = false;
+    for (int i = 0; i < numberString.length(); i++) {
+      char c = numberString.charAt(i);
+      if (c >= '0' && c <= '9') {
+        int digit = c - '0';
+        if (micros > (Long.MAX_VALUE - digit) / 10) {
+          return -1;
+        }
+        micros = micros * 10 + digit;
+        hasDigits = true;
+      } else if (c == '.') {
+        return -1;
+      }
+    }
+    return hasDigits ? micros : -1;
+  }
+
+  /**
+   * Converts a micros amount to a regular decimal.
+   *
+   * @param micros the amount in micros
+   * @return the amount divided by a million, without trailing zeros in the fraction digits
+   */
+  public static BigDecimal fromMicros(long micros) {
+    BigDecimal amount = BigDecimal.valueOf(micros, MICROS_SCALE).stripTrailingZeros();
+    return amount.scale() < 0 ? amount.setScale(0) : amount;
+  }
+
+  /**
+   * Converts a regular decimal amount to micros, rounding half up any fraction of a micro.
+   *
+   * @param amount the amount
+   * @return the amount multiplied by a million
+   * @throws ArithmeticException if the amount in micros does not fit in a {@code long}
+   */
+  public static long toMicros(BigDecimal amount) {
+    return amount.movePointRight(MICROS_SCALE).setScale(0, RoundingMode.HALF_UP).longValueExact();
   }
 }
@@ -14,6 +14,10 @@
 
 package com.google.api.ads.adwords.awreporting.model.util;
 
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -52,6 +56,27 @@ public final class DateUtil {
     formatters.add(DATE_FORMATTER_YEAR_MONTH_NO_DASH);
   }
 
+  /**
+   * The maximum number of distinct date strings kept by {@link #normalizeYearMonthDay(String)}.
+   * Reports rarely span more than a few hundred distinct dates, so this bounds the memory without
+   * evicting the dates of a single download.
+   */
+  private static final int NORMALIZED_DATES_CACHE_SIZE = 4096;
+
+  private static final LoadingCache<String, Optional<String>> normalizedDates =
+      CacheBuilder.newBuilder()
+          .maximumSize(NORMALIZED_DATES_CACHE_SIZE)
+          .build(
+              new CacheLoader<String, Optional<String>>() {
+                @Override
+                public Optional<String> load(String timestamp) {
+                  LocalDate localDate = parseLocalDate(timestamp);
+                  return localDate == null
+                      ? Optional.<String>absent()
+                      : Optional.of(formatYearMonthDay(localDate));
+                }
+              });
+
   /**
    * Private constructor.
    */
@@ -141,25 +166,114 @@ public final class DateUtil {
    * Attempts to parse the given {@code String} to a {@code LocalDate} using one of the known
    * formatters.
    *
-   * The attempt falls back to all the formatters, and if the format is unknown, {@code null} is
-   * returned.
+   * The format is chosen from the length and shape of the string, so the common formats are parsed
+   * without trying (and failing with) the other formatters. Only unusual strings, such as dates
+   * with single digit months, fall back to all the formatters, and if the format is unknown,
+   * {@code null} is returned.
    *
    * @param timestamp the time stamp in {@code String} format.
    * @return the parsed {@code LocalDate}, or {@code null} in case that the format is unknown.
    */
   public static LocalDate parseLocalDate(String timestamp) {
-    if (timestamp != null) {
-      for (DateTimeFormatter formatter : DateUtil.formatters) {
-        try {
-          return formatter.parseLocalDate(timestamp);
-        } catch (IllegalArgumentException e) {
-          // Silently skips to the next formatter.
-        }
+    if (timestamp == null) {
+      return null;
+    }
+
+    int length = timestamp.length();
+    if (length == DATE_FORMAT_SHORT.length()
+        && isDigits(timestamp, 0, 4) && timestamp.charAt(4) == '-'
+        && isDigits(timestamp, 5, 7) && timestamp.charAt(7) == '-'
+        && isDigits(timestamp, 8, 10)) {
+      return newLocalDate(
+          parseDigits(timestamp, 0, 4), parseDigits(timestamp, 5, 7), parseDigits(timestamp, 8, 10));
+    }
+    if (length == DATE_FORMAT_SHORT_WITHOUTDAY.length()
+        && isDigits(timestamp, 0, 4) && timestamp.charAt(4) == '-'
+        && isDigits(timestamp, 5, 7)) {
+      return newLocalDate(parseDigits(timestamp, 0, 4), parseDigits(timestamp, 5, 7), 1);
+    }
+    if (length == DATE_FORMAT_REPORT.length() && isDigits(timestamp, 0, length)) {
+      return newLocalDate(
+          parseDigits(timestamp, 0, 4), parseDigits(timestamp, 4, 6), parseDigits(timestamp, 6, 8));
+    }
+    if (length == DATE_FORMAT_SHORT_WITHOUTDAY_NODASH.length()
+        && isDigits(timestamp, 0, length)) {
+      return newLocalDate(parseDigits(timestamp, 0, 4), parseDigits(timestamp, 4, 6), 1);
+    }
+    if (!isDigits(timestamp, 0, 1)) {
+      // Not a date, such as the "--" of empty report values.
+      return null;
+    }
+
+    for (DateTimeFormatter formatter : DateUtil.formatters) {
+      try {
+        return formatter.parseLocalDate(timestamp);
+      } catch (IllegalArgumentException e) {
+        // Silently skips to the next formatter.
       }
     }
     return null;
   }
 
+  /**
+   * Parses the given {@code String} with {@link #parseLocalDate(String)} and formats it to the ISO
+   * format: yyyy-MM-dd
+   *
+   * The results are cached, since the reports repeat the same few dates on every row.
+   *
+   * @param timestamp the time stamp in {@code String} format.
+   * @return the date in ISO format, or {@code null} in case that the format is unknown.
+   */
+  public static String normalizeYearMonthDay(String timestamp) {
+    return timestamp == null ? null : normalizedDates.getUnchecked(timestamp).orNull();
+  }
+
+  private static boolean isDigits(String value, int start, int end) {
+    if (end > value.length()) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int parseDigits(String value, int start, int end) {
+    int result = 0;
+    for (int i = start; i < end; i++) {
+      result = result * 10 + (value.charAt(i) - '0');
+    }
+    return result;
+  }
+
+  /**
+   * Creates the {@code LocalDate}, or returns {@code null} if the month or day is out of range.
+   */
+  private static LocalDate newLocalDate(int year, int month, int day) {
+    if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+      return null;
+    }
+    return new LocalDate(year, month, day);
+  }
+
+  private static int daysInMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        boolean isLeapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        return isLeapYear ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
   /**
    * Create a {@code LocalDate} that represents the last month, and formats it to the yyyy-MM 
    * format.
@@ -0,0 +1,94 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test for the {@link AwReportCsvReader} class.
+ */
+@RunWith(JUnit4.class)
+public class AwReportCsvReaderTest {
+
+  /**
+   * Tests reading an API downloaded report, without report title or summary lines.
+   */
+  @Test
+  public void testReadWithoutHeaderAndSummary() throws IOException {
+    String csv = "Day, Clicks\n2018-01-01,10\n2018-01-02,20\n";
+    try (AwReportCsvReader reader = new AwReportCsvReader(new StringReader(csv), false, false)) {
+      assertArrayEquals(new String[] {"Day", "Clicks"}, reader.getColumnNames());
+      assertArrayEquals(new String[] {"2018-01-01", "10"}, reader.readNext());
+      assertArrayEquals(new String[] {"2018-01-02", "20"}, reader.readNext());
+      assertNull(reader.readNext());
+      assertNull(reader.readNext());
+    }
+  }
+
+  /**
+   * Tests that the report title line is skipped and the summary line ends the records.
+   */
+  @Test
+  public void testReadWithHeaderAndSummary() throws IOException {
+    String csv = "\"CAMPAIGN_PERFORMANCE_REPORT (Jan 1, 2018)\"\n"
+        + "Day,Clicks\n"
+        + "2018-01-01,10\n"
+        + "Total,10\n";
+    try (AwReportCsvReader reader = new AwReportCsvReader(new StringReader(csv), true, true)) {
+      assertArrayEquals(new String[] {"Day", "Clicks"}, reader.getColumnNames());
+      assertArrayEquals(new String[] {"2018-01-01", "10"}, reader.readNext());
+      assertNull(reader.readNext());
+    }
+  }
+
+  /**
+   * Tests that quoted values with embedded separators, quotes and line breaks are kept intact.
+   */
+  @Test
+  public void testReadQuotedValues() throws IOException {
+    String csv = "Campaign,Clicks\n\"a, \"\"b\"\"\nc\",5\n";
+    try (AwReportCsvReader reader = new AwReportCsvReader(new StringReader(csv), false, false)) {
+      assertArrayEquals(new String[] {"a, \"b\"\nc", "5"}, reader.readNext());
+      assertNull(reader.readNext());
+    }
+  }
+
+  /**
+   * Tests reading the report bytes, with report title and summary lines.
+   */
+  @Test
+  public void testReadInputStream() throws IOException {
+    String csv = "\"CAMPAIGN_PERFORMANCE_REPORT (Jan 1, 2018)\"\n"
+        + "Day, Campaign\n"
+        + "2018-01-01,\"Été, 2018\"\n"
+        + "Total,--\n";
+    try (AwReportCsvReader reader =
+        new AwReportCsvReader(
+            new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), true, true)) {
+      assertArrayEquals(new String[] {"Day", "Campaign"}, reader.getColumnNames());
+      assertArrayEquals(new String[] {"2018-01-01", "Été, 2018"}, reader.readNext());
+      assertNull(reader.readNext());
+    }
+  }
+}
@@ -0,0 +1,148 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.Files;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test for the {@link CsvByteTokenizer} class.
+ */
+@RunWith(JUnit4.class)
+public class CsvByteTokenizerTest {
+
+  private static final int[] BUFFER_SIZES = {1, 2, 7, 64 * 1024};
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests that the records match the ones parsed by commons-csv, for any read buffer size.
+   */
+  @Test
+  public void testMatchesCommonsCsv() throws IOException {
+    String[] contents = {
+      "a,b\nc,d\n",
+      "a,b\r\nc,d",
+      "a,b\rc,d\r",
+      "a,,b,\n,\n",
+      "a\n\nb\n",
+      "\"a, \"\"b\"\"\r\nc\",5\n\"\",\"x\"  \n",
+      "Campañas,日本語,\"Zürich, CH\"\n",
+      "a\"b,c\"\n",
+      " \"a\",b\n",
+      ""
+    };
+    for (String content : contents) {
+      List<List<String>> expected = new ArrayList<List<String>>();
+      for (CSVRecord record : CSVFormat.RFC4180.parse(new StringReader(content))) {
+        List<String> values = new ArrayList<String>();
+        for (String value : record) {
+          values.add(value);
+        }
+        expected.add(values);
+      }
+
+      for (int bufferSize : BUFFER_SIZES) {
+        CsvByteTokenizer tokenizer = newTokenizer(content, bufferSize);
+        for (List<String> record : expected) {
+          tokenizer.nextRecord();
+          assertArrayEquals(
+              "Wrong record for " + content, record.toArray(), tokenizer.getFields());
+        }
+        assertFalse("Extra record for " + content, tokenizer.nextRecord());
+      }
+    }
+  }
+
+  /**
+   * Tests reading a range of a file through memory-mapped windows of any size.
+   */
+  @Test
+  public void testReadMappedFile() throws IOException {
+    File file = folder.newFile("report.csv");
+    Files.write("Day,Campaign\n2018-01-01,\"Été,\n2018\"\n2018-01-02,x\n", file,
+        StandardCharsets.UTF_8);
+    for (int windowSize : BUFFER_SIZES) {
+      CsvByteTokenizer tokenizer =
+          new CsvByteTokenizer(new MappedFileSource(file, 0, file.length(), windowSize));
+      assertEquals("Day,Campaign", tokenizer.readLine());
+      assertTrue(tokenizer.nextRecord());
+      assertArrayEquals(new String[] {"2018-01-01", "Été,\n2018"}, tokenizer.getFields());
+      assertTrue(tokenizer.nextRecord());
+      assertArrayEquals(new String[] {"2018-01-02", "x"}, tokenizer.getFields());
+      assertFalse(tokenizer.nextRecord());
+      tokenizer.close();
+    }
+
+    CsvByteTokenizer tokenizer = new CsvByteTokenizer(new MappedFileSource(file, 13, 38, 3));
+    assertTrue(tokenizer.nextRecord());
+    assertArrayEquals(new String[] {"2018-01-01", "Été,\n2018"}, tokenizer.getFields());
+    assertFalse(tokenizer.nextRecord());
+    tokenizer.close();
+  }
+
+  /**
+   * Tests reading whole lines, as the header lines are read.
+   */
+  @Test
+  public void testReadLine() throws IOException {
+    CsvByteTokenizer tokenizer = newTokenizer("\"Title, 1\"\r\nDay,Clicks\n1,2", 2);
+    assertEquals("\"Title, 1\"", tokenizer.readLine());
+    assertEquals("Day,Clicks", tokenizer.readLine());
+    assertEquals("1,2", tokenizer.readLine());
+    assertNull(tokenizer.readLine());
+  }
+
+  /**
+   * Tests that malformed quoted fields fail.
+   */
+  @Test
+  public void testMalformedQuotedFields() {
+    for (String content : new String[] {"\"a\"b,c\n", "a,\"b\n"}) {
+      try {
+        newTokenizer(content, 4).nextRecord();
+        fail("Expected a failure for " + content);
+      } catch (IOException e) {
+        // Expected.
+      }
+    }
+  }
+
+  private static CsvByteTokenizer newTokenizer(String content, int bufferSize) {
+    return new CsvByteTokenizer(
+        new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), bufferSize);
+  }
+}
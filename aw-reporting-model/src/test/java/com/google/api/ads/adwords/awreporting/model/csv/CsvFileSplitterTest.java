@@ -0,0 +1,91 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test for the {@link CsvFileSplitter} class.
+ */
+@RunWith(JUnit4.class)
+public class CsvFileSplitterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Tests that the ranges hold all the records, without splitting quoted line breaks.
+   */
+  @Test
+  public void testSplitAtRecordBoundaries() throws IOException {
+    StringBuilder csv = new StringBuilder("\"REPORT (Jan 1, 2018)\"\r\nDay,Campaign\r\n");
+    List<String> expected = new ArrayList<String>();
+    for (int i = 0; i < 200; i++) {
+      String campaign = i % 3 == 0 ? "multi\nline \"\"" + i + "\"\"" : "a\"b" + i;
+      csv.append("2018-01-01,").append(i % 3 == 0 ? "\"" + campaign + "\"" : campaign);
+      csv.append("\r\n");
+      expected.add(campaign.replace("\"\"", "\""));
+    }
+    File file = folder.newFile("report.csv");
+    Files.write(csv.toString(), file, StandardCharsets.UTF_8);
+
+    long[] boundaries = CsvFileSplitter.split(file, 2, 100, 8);
+    assertEquals(9, boundaries.length);
+    assertEquals(file.length(), boundaries[8]);
+
+    List<String> campaigns = new ArrayList<String>();
+    for (int i = 0; i + 1 < boundaries.length; i++) {
+      try (InputStream inputStream = new FileInputStream(file)) {
+        ByteStreams.skipFully(inputStream, boundaries[i]);
+        AwReportCsvReader reader =
+            new AwReportCsvReader(
+                ByteStreams.limit(inputStream, boundaries[i + 1] - boundaries[i]),
+                new String[] {"Day", "Campaign"},
+                true);
+        for (String[] record = reader.readNext(); record != null; record = reader.readNext()) {
+          assertEquals("2018-01-01", record[0]);
+          campaigns.add(record[1]);
+        }
+      }
+    }
+    assertEquals(expected, campaigns);
+  }
+
+  /**
+   * Tests that small files are not split.
+   */
+  @Test
+  public void testSplitSmallFile() throws IOException {
+    File file = folder.newFile("small.csv");
+    Files.write("Day,Clicks\n2018-01-01,1\n", file, StandardCharsets.UTF_8);
+    assertArrayEquals(new long[] {11, 24}, CsvFileSplitter.split(file, 1, 100, 8));
+  }
+}
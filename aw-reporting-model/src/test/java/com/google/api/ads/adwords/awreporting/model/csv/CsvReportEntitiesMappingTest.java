@@ -0,0 +1,74 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.CampaignPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinitionReportType;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test for the {@link CsvReportEntitiesMapping} class.
+ */
+@RunWith(JUnit4.class)
+public class CsvReportEntitiesMappingTest {
+
+  private static final String ENTITIES_PACKAGE =
+      "com.google.api.ads.adwords.awreporting.model.entities";
+
+  /**
+   * Tests that all the reports are mapped by default.
+   */
+  @Test
+  public void testAllReports() {
+    CsvReportEntitiesMapping mapping = new CsvReportEntitiesMapping(ENTITIES_PACKAGE);
+    mapping.initializeReportMap();
+
+    assertTrue(mapping.getDefinedReports().size() > 2);
+    assertEquals(AccountPerformanceReport.class,
+        mapping.getReportBeanClass(ReportDefinitionReportType.ACCOUNT_PERFORMANCE_REPORT));
+    assertFalse(mapping.getReportBeanClasses().contains(Report.class));
+  }
+
+  /**
+   * Tests that only the configured report types are mapped.
+   */
+  @Test
+  public void testReportTypes() {
+    CsvReportEntitiesMapping mapping = new CsvReportEntitiesMapping(ENTITIES_PACKAGE);
+    mapping.setReportTypes(
+        new String[] {"ACCOUNT_PERFORMANCE_REPORT", "CAMPAIGN_PERFORMANCE_REPORT"});
+    mapping.initializeReportMap();
+
+    assertEquals(
+        ImmutableSet.of(
+            ReportDefinitionReportType.ACCOUNT_PERFORMANCE_REPORT,
+            ReportDefinitionReportType.CAMPAIGN_PERFORMANCE_REPORT),
+        mapping.getDefinedReports());
+    assertEquals(
+        ImmutableSet.of(AccountPerformanceReport.class, CampaignPerformanceReport.class),
+        mapping.getReportBeanClasses());
+    assertNull(mapping.getReportBeanClass(ReportDefinitionReportType.AD_PERFORMANCE_REPORT));
+  }
+}
@@ -0,0 +1,218 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.BudgetPerformanceReport;
+import com.google.common.collect.ImmutableMap;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test for the {@link ModifiedCsvToBean} and {@link ReportEntityMappingStrategy} classes.
+ */
+@RunWith(JUnit4.class)
+public class ModifiedCsvToBeanTest {
+
+  private static final String HEADER =
+      "Customer ID,Budget ID,# Campaigns,Budget Name,Budget,Avg. position\n";
+
+  /**
+   * Tests the conversion of each kind of column.
+   */
+  @Test
+  public void testParseRow() throws IOException, CsvReportParsingException {
+    CsvParserIterator<BudgetPerformanceReport> rows =
+        parse(HEADER + "123-456-7890,42,3, My budget ,12500000,\"1,234.5\"\n");
+
+    BudgetPerformanceReport report = rows.next();
+    assertEquals(Long.valueOf(1234567890L), report.getCustomerId());
+    assertEquals(Long.valueOf(42L), report.getBudgetId());
+    assertEquals(Integer.valueOf(3), report.getBudgetReferenceCount());
+    assertEquals("My budget", report.getBudgetName());
+    assertEquals(new BigDecimal("12.5"), report.getAmount());
+    assertEquals(new BigDecimal("1234.5"), report.getAveragePositionBigDecimal());
+    assertFalse(rows.hasNext());
+  }
+
+  /**
+   * Tests that empty and "--" values are mapped to null.
+   */
+  @Test
+  public void testParseEmptyValues() throws IOException, CsvReportParsingException {
+    CsvParserIterator<BudgetPerformanceReport> rows =
+        parse(HEADER + "1234567890,--,,--, -- ,\n");
+
+    BudgetPerformanceReport report = rows.next();
+    assertNull(report.getBudgetId());
+    assertNull(report.getBudgetReferenceCount());
+    assertNull(report.getBudgetName());
+    assertNull(report.getAmount());
+    assertNull(report.getAveragePosition());
+  }
+
+  /**
+   * Tests that an unmapped column fails when a row is parsed.
+   */
+  @Test
+  public void testParseUnknownColumn() throws IOException, CsvReportParsingException {
+    CsvParserIterator<BudgetPerformanceReport> rows = parse("Customer ID,Unknown\n1,2\n");
+    try {
+      rows.next();
+      fail("Expected the unknown column to fail.");
+    } catch (RuntimeException e) {
+      assertEquals(CsvReportParsingException.class, e.getCause().getClass());
+    }
+  }
+
+  /**
+   * Tests that the binders compiled for a header are shared by mapping strategies of the same
+   * report entity class.
+   */
+  @Test
+  public void testBindersAreShared() throws CsvReportParsingException {
+    String[] header = {"Customer ID", "Budget ID"};
+    ReportEntityMappingStrategy<BudgetPerformanceReport> first =
+        new ReportEntityMappingStrategy<BudgetPerformanceReport>(BudgetPerformanceReport.class);
+    ReportEntityMappingStrategy<BudgetPerformanceReport> second =
+        new ReportEntityMappingStrategy<BudgetPerformanceReport>(BudgetPerformanceReport.class);
+    first.processHeader(header);
+    second.processHeader(header.clone());
+
+    assertSame(first.findBinder(0), second.findBinder(0));
+    assertSame(first.findBinder(1), second.findBinder(1));
+    assertEquals("budgetId", second.findDescriptor(1).getName());
+  }
+
+  /**
+   * Tests that the generated decoder and the column binders create the same entities.
+   */
+  @Test
+  public void testGeneratedDecoderMatchesBinders() throws CsvReportParsingException {
+    String[] header = HEADER.trim().split(",");
+    String[] line = {"123-456-7890", "42", "3", " My budget ", "12500000", "--"};
+    ReportEntityMappingStrategy<BudgetPerformanceReport> mapper =
+        new ReportEntityMappingStrategy<BudgetPerformanceReport>(BudgetPerformanceReport.class);
+    mapper.processHeader(header);
+
+    BudgetPerformanceReport decoded = mapper.decode(line);
+    assertNotNull(decoded);
+
+    BudgetPerformanceReport bound = mapper.createBean();
+    for (int col = 0; col < line.length; col++) {
+      mapper.findBinder(col).bind(bound, line[col], col);
+    }
+    assertEquals(bound.getCustomerId(), decoded.getCustomerId());
+    assertEquals(bound.getBudgetId(), decoded.getBudgetId());
+    assertEquals(bound.getBudgetReferenceCount(), decoded.getBudgetReferenceCount());
+    assertEquals(bound.getBudgetName(), decoded.getBudgetName());
+    assertEquals(bound.getAmount(), decoded.getAmount());
+    assertEquals(bound.getAveragePosition(), decoded.getAveragePosition());
+  }
+
+  /**
+   * Tests that a header with unmapped columns is not handled by the generated decoder.
+   */
+  @Test
+  public void testGeneratedDecoderSkipsUnmappedHeader() throws CsvReportParsingException {
+    ReportEntityMappingStrategy<BudgetPerformanceReport> mapper =
+        new ReportEntityMappingStrategy<BudgetPerformanceReport>(BudgetPerformanceReport.class);
+    mapper.processHeader(new String[] {"Customer ID", "Unknown"});
+
+    assertNull(mapper.decode(new String[] {"1", "2"}));
+  }
+
+  /**
+   * Tests that the unmapped columns are skipped and counted in lenient mode, with and without the
+   * generated decoder.
+   */
+  @Test
+  public void testLenientParseUnknownColumn() throws IOException, CsvReportParsingException {
+    String csv = "Customer ID,Unknown,Budget ID\n1,x,2\n3,y,4\n";
+    for (boolean useStream : new boolean[] {false, true}) {
+      AwReportCsvReader csvReader =
+          useStream
+              ? new AwReportCsvReader(
+                  new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), false, false)
+              : new AwReportCsvReader(new StringReader(csv), false, false);
+      ReportEntityMappingStrategy<BudgetPerformanceReport> mapper =
+          new ReportEntityMappingStrategy<BudgetPerformanceReport>(
+              BudgetPerformanceReport.class, true);
+      CsvParserIterator<BudgetPerformanceReport> rows =
+          new ModifiedCsvToBean<BudgetPerformanceReport>().lazyParse(mapper, csvReader);
+
+      BudgetPerformanceReport report = rows.next();
+      assertEquals(Long.valueOf(1L), report.getCustomerId());
+      assertEquals(Long.valueOf(2L), report.getBudgetId());
+      assertEquals(Long.valueOf(4L), rows.next().getBudgetId());
+      assertFalse(rows.hasNext());
+      assertEquals(ImmutableMap.of("Unknown", 2L), mapper.getSkippedColumnCounts());
+    }
+
+    // Without a generated decoder for the header, the column binders skip the column.
+    ReportEntityMappingStrategy<BudgetPerformanceReport> mapper =
+        new ReportEntityMappingStrategy<BudgetPerformanceReport>(
+            BudgetPerformanceReport.class, true);
+    mapper.processHeader(new String[] {"Customer ID", "Unknown"});
+    assertNull(mapper.findBinder(1));
+  }
+
+  /**
+   * Tests that the values of the low cardinality columns are shared through the dictionary.
+   */
+  @Test
+  public void testLowCardinalityValuesAreShared() throws IOException, CsvReportParsingException {
+    StringDictionary dictionary = new StringDictionary();
+    AwReportCsvReader csvReader =
+        new AwReportCsvReader(
+            new StringReader("Customer ID,Device\n1,Computers\n2,Computers\n"), false, false);
+    CsvParserIterator<AccountPerformanceReport> rows =
+        new ModifiedCsvToBean<AccountPerformanceReport>(dictionary)
+            .lazyParse(
+                new ReportEntityMappingStrategy<AccountPerformanceReport>(
+                    AccountPerformanceReport.class),
+                csvReader);
+
+    AccountPerformanceReport first = rows.next();
+    AccountPerformanceReport second = rows.next();
+    assertEquals("Computers", first.getDevice());
+    assertSame(first.getDevice(), second.getDevice());
+    assertEquals(1, dictionary.size());
+    assertEquals(2, dictionary.getLookupCount());
+    assertEquals(1, dictionary.getHitCount());
+  }
+
+  private static CsvParserIterator<BudgetPerformanceReport> parse(String csv)
+      throws IOException, CsvReportParsingException {
+    AwReportCsvReader csvReader = new AwReportCsvReader(new StringReader(csv), false, false);
+    return new ModifiedCsvToBean<BudgetPerformanceReport>()
+        .lazyParse(
+            new ReportEntityMappingStrategy<BudgetPerformanceReport>(BudgetPerformanceReport.class),
+            csvReader);
+  }
+}
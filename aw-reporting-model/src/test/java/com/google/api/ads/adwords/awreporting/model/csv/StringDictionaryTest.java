@@ -0,0 +1,51 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test for the {@link StringDictionary} class.
+ */
+@RunWith(JUnit4.class)
+public class StringDictionaryTest {
+
+  /**
+   * Tests that equal values share the first instance, up to the maximum size.
+   */
+  @Test
+  public void testIntern() {
+    StringDictionary dictionary = new StringDictionary(1);
+    String mobile = new String("Mobile devices");
+    String tablet = new String("Tablets");
+
+    assertSame(mobile, dictionary.intern(mobile));
+    assertSame(mobile, dictionary.intern(new String("Mobile devices")));
+    assertSame(tablet, dictionary.intern(tablet));
+    assertNotSame(tablet, dictionary.intern(new String("Tablets")));
+    assertNull(dictionary.intern(null));
+
+    assertEquals(1, dictionary.size());
+    assertEquals(4, dictionary.getLookupCount());
+    assertEquals(1, dictionary.getHitCount());
+  }
+}
@@ -0,0 +1,79 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.entities;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.api.ads.adwords.awreporting.model.persistence.RowIdStorage;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test for the {@link RowIdBuilder} class.
+ */
+@RunWith(JUnit4.class)
+public class RowIdBuilderTest {
+
+  @After
+  public void tearDown() {
+    RowIdStorage.setBinary(false);
+  }
+
+  /**
+   * Tests that the binary row ids are the digests of the string row ids.
+   */
+  @Test
+  public void testBinaryRowIdMatchesStringRowId() {
+    String stringRowId = newBuilder().build();
+    assertEquals("1234567890-111-0--42-null-2018-01-01-Móviles-null", stringRowId);
+
+    RowIdStorage.setBinary(true);
+    String binaryRowId = newBuilder().build();
+    assertEquals(RowIdStorage.hashRowId(stringRowId), binaryRowId);
+    assertEquals(2 * RowIdStorage.BINARY_LENGTH, binaryRowId.length());
+    assertEquals(binaryRowId, RowIdStorage.fromBytes(RowIdStorage.toBytes(binaryRowId)));
+  }
+
+  /**
+   * Tests the row ids of an entity in both storages.
+   */
+  @Test
+  public void testReportRowId() {
+    AdPerformanceReport report = new AdPerformanceReport(1L, 1234567890L);
+    report.setCampaignId(111L);
+    report.setAdGroupId(222L);
+    report.setDate("2018-01-01");
+    report.setDevice("Tablets");
+    report.setRowId();
+    String stringRowId = report.getRowId();
+
+    RowIdStorage.setBinary(true);
+    report.setRowId();
+    assertEquals(RowIdStorage.hashRowId(stringRowId), report.getRowId());
+  }
+
+  private static RowIdBuilder newBuilder() {
+    return new RowIdBuilder(1234567890L)
+        .append(111L)
+        .append(0L)
+        .append(-42L)
+        .append((Long) null)
+        .append("2018-01-01")
+        .append("Móviles")
+        .append((String) null);
+  }
+}
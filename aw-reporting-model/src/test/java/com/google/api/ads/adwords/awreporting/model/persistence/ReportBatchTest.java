@@ -0,0 +1,194 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence;
+
+import static com.google.api.ads.adwords.awreporting.model.persistence.ReportBatchTestUtil.newReport;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AdPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.persistence.ReportBatch.ColumnType;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test for the {@link ReportBatch} class.
+ */
+@RunWith(JUnit4.class)
+public class ReportBatchTest {
+
+  /**
+   * Tests that the entities recreated from a batch have the values of the original entities.
+   */
+  @Test
+  public void testRoundTrip() {
+    ReportBatch<AdPerformanceReport> batch = new ReportBatch<AdPerformanceReport>(
+        AdPerformanceReport.class, 1);
+    AdPerformanceReport first = newReport(1L, "Mobile devices", new BigDecimal("12.34"));
+    first.setImageCreativeImageHeight(250);
+    AdPerformanceReport second = newReport(2L, "Mobile devices", null);
+    second.setCost(new BigDecimal("123456789012345678901234567890.5"));
+    batch.add(first);
+    batch.add(second);
+    batch.add(newReport(3L, "Tablets", BigDecimal.ZERO));
+
+    assertEquals(3, batch.size());
+    List<AdPerformanceReport> reports = batch.toReports();
+    assertReportsEqual(first, reports.get(0));
+    assertReportsEqual(second, reports.get(1));
+    assertEquals(Integer.valueOf(250), reports.get(0).getImageCreativeImageHeight());
+    assertNull(reports.get(1).getImageCreativeImageHeight());
+    assertEquals(new BigDecimal("123456789012345678901234567890.5"), reports.get(1).getCost());
+    assertEquals(BigDecimal.ZERO, reports.get(2).getCost());
+  }
+
+  /**
+   * Tests the typed columns, the null bitmaps and the shared string dictionary.
+   */
+  @Test
+  public void testColumns() {
+    ReportBatch<AdPerformanceReport> batch = new ReportBatch<AdPerformanceReport>(
+        AdPerformanceReport.class);
+    batch.add(newReport(1L, "Mobile devices", new BigDecimal("12.34")));
+    batch.add(newReport(2L, "Mobile devices", null));
+
+    ReportBatch<?>.ReportColumn clicks = getColumn(batch, "clicks");
+    assertEquals("Clicks", clicks.getColumnName());
+    assertEquals(ColumnType.LONG, clicks.getType());
+    assertEquals(1L, clicks.getLong(0));
+    assertEquals(2L, clicks.getLong(1));
+
+    ReportBatch<?>.ReportColumn cost = getColumn(batch, "cost");
+    assertEquals(ColumnType.DECIMAL, cost.getType());
+    assertTrue(cost.isMoney());
+    assertEquals(new BigDecimal("12.34"), cost.getDecimal(0));
+    assertFalse(cost.isNull(0));
+    assertTrue(cost.isNull(1));
+
+    ReportBatch<?>.ReportColumn device = getColumn(batch, "device");
+    assertEquals(ColumnType.STRING, device.getType());
+    assertEquals(device.getStringCode(0), device.getStringCode(1));
+    assertEquals("Mobile devices", batch.getDictionaryString(device.getStringCode(1)));
+
+    assertEquals(ColumnType.TIMESTAMP, getColumn(batch, "timestamp").getType());
+    assertTrue(batch.getEstimatedSizeInBytes() > 0);
+
+    batch.clear();
+    assertEquals(0, batch.size());
+    assertEquals(0, batch.getDictionarySize());
+    assertEquals(0, batch.getEstimatedSizeInBytes());
+    batch.add(newReport(3L, null, null));
+    assertTrue(getColumn(batch, "device").isNull(0));
+    assertFalse(getColumn(batch, "clicks").isNull(0));
+  }
+
+  /**
+   * Tests that only the columns that get values are allocated, and that the rows before the first
+   * value of a column are null.
+   */
+  @Test
+  public void testSparseColumns() {
+    ReportBatch<AdPerformanceReport> batch = new ReportBatch<AdPerformanceReport>(
+        AdPerformanceReport.class, 2);
+    batch.add(newReport(1L, null, null));
+    assertFalse(getColumn(batch, "cost").isAllocated());
+    assertFalse(getColumn(batch, "headline").isAllocated());
+    assertTrue(getColumn(batch, "clicks").isAllocated());
+
+    batch.add(newReport(2L, null, null));
+    batch.add(newReport(3L, null, new BigDecimal("1.5")));
+    ReportBatch<?>.ReportColumn cost = getColumn(batch, "cost");
+    assertTrue(cost.isAllocated());
+    assertTrue(cost.isNull(0));
+    assertTrue(cost.isNull(1));
+    assertEquals(new BigDecimal("1.5"), cost.getDecimal(2));
+    assertFalse(getColumn(batch, "headline").isAllocated());
+
+    List<AdPerformanceReport> reports = batch.toReports();
+    assertNull(reports.get(0).getCost());
+    assertEquals(new BigDecimal("1.5"), reports.get(2).getCost());
+    assertEquals(Long.valueOf(3L), reports.get(2).getClicks());
+  }
+
+  /**
+   * Tests that the rows copied from another batch keep their values, with the strings re-encoded
+   * into the dictionary of the batch, and the columns that are not allocated in the other batch
+   * null.
+   */
+  @Test
+  public void testAddRows() {
+    ReportBatch<AdPerformanceReport> source = new ReportBatch<AdPerformanceReport>(
+        AdPerformanceReport.class, 1);
+    AdPerformanceReport first = newReport(1L, "Tablets", null);
+    AdPerformanceReport second = newReport(2L, "Mobile devices", new BigDecimal("12.34"));
+    AdPerformanceReport third = newReport(3L, null, null);
+    third.setCost(new BigDecimal("123456789012345678901234567890.5"));
+    source.add(first);
+    source.add(second);
+    source.add(third);
+    ReportBatch<AdPerformanceReport> sparseSource = new ReportBatch<AdPerformanceReport>(
+        AdPerformanceReport.class, 1);
+    AdPerformanceReport fourth = newReport(4L, null, null);
+    sparseSource.add(fourth);
+
+    AdPerformanceReport zeroth = newReport(0L, "Mobile devices", BigDecimal.ONE);
+    ReportBatch<AdPerformanceReport> batch = new ReportBatch<AdPerformanceReport>(
+        AdPerformanceReport.class, 1);
+    batch.add(zeroth);
+    batch.addRows(source, 1, 3);
+    batch.addRows(sparseSource, 0, 1);
+
+    // The strings of the copied rows are shared as if the rows had been added one by one.
+    ReportBatch<AdPerformanceReport> expected = new ReportBatch<AdPerformanceReport>(
+        AdPerformanceReport.class, 1);
+    for (AdPerformanceReport report : Arrays.asList(zeroth, second, third, fourth)) {
+      expected.add(report);
+    }
+    assertEquals(4, batch.size());
+    assertEquals(expected.getDictionarySize(), batch.getDictionarySize());
+    List<AdPerformanceReport> reports = batch.toReports();
+    assertReportsEqual(second, reports.get(1));
+    assertReportsEqual(third, reports.get(2));
+    assertEquals(Long.valueOf(4L), reports.get(3).getClicks());
+    assertNull(reports.get(3).getCost());
+    assertNull(reports.get(3).getDevice());
+  }
+
+
+  private static ReportBatch<?>.ReportColumn getColumn(ReportBatch<?> batch, String name) {
+    for (ReportBatch<?>.ReportColumn column : batch.getColumns()) {
+      if (column.getName().equals(name)) {
+        return column;
+      }
+    }
+    throw new AssertionError("No column " + name);
+  }
+
+  private static void assertReportsEqual(AdPerformanceReport expected, AdPerformanceReport actual) {
+    assertEquals(expected, actual);
+    assertEquals(expected.getRowId(), actual.getRowId());
+    assertEquals(expected.getTimestamp(), actual.getTimestamp());
+    assertEquals(expected.getClicks(), actual.getClicks());
+    assertEquals(expected.getCost(), actual.getCost());
+    assertEquals(expected.getDevice(), actual.getDevice());
+    assertEquals(expected.getDate(), actual.getDate());
+  }
+}
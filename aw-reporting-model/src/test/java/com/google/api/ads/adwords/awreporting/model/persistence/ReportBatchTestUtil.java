@@ -0,0 +1,42 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AdPerformanceReport;
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Creates the report rows of the {@link ReportBatch} tests.
+ */
+public final class ReportBatchTestUtil {
+
+  private ReportBatchTestUtil() {}
+
+  /**
+   * Creates a daily ad report row, with a row id of its own for each number of clicks.
+   */
+  public static AdPerformanceReport newReport(long clicks, String device, BigDecimal cost) {
+    AdPerformanceReport report = new AdPerformanceReport(1234L, 5678L);
+    report.setClicks(clicks);
+    report.setDevice(device);
+    report.setCost(cost);
+    report.setAdGroupId(91011L + clicks);
+    report.setDate("2018-01-01");
+    report.setTimestamp(new Date());
+    report.setRowId();
+    return report;
+  }
+}
@@ -0,0 +1,104 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import com.google.common.collect.Lists;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import org.hibernate.SessionFactory;
+import org.junit.rules.ExternalResource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.hibernate5.LocalSessionFactoryBuilder;
+
+/**
+ * An in-memory H2 database for the tests of the SQL persistence. The session factories built on it
+ * are closed, and all its objects dropped, after each test.
+ */
+final class H2TestDatabase extends ExternalResource {
+
+  private final String name;
+  private final List<SessionFactory> sessionFactories = Lists.newArrayList();
+  private DriverManagerDataSource dataSource;
+
+  /**
+   * @param name the name of the database, distinct for each test class.
+   */
+  H2TestDatabase(String name) {
+    this.name = name;
+  }
+
+  @Override
+  protected void before() {
+    dataSource =
+        new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+  }
+
+  @Override
+  protected void after() {
+    for (SessionFactory sessionFactory : sessionFactories) {
+      sessionFactory.close();
+    }
+    sessionFactories.clear();
+    try {
+      execute("DROP ALL OBJECTS");
+    } catch (SQLException e) {
+      throw new IllegalStateException("Failed to drop the objects of " + name, e);
+    }
+  }
+
+  DriverManagerDataSource getDataSource() {
+    return dataSource;
+  }
+
+  /**
+   * Builds a session factory that creates the tables of the given entities.
+   */
+  SessionFactory buildSessionFactory(Class<?>... annotatedClasses) {
+    LocalSessionFactoryBuilder builder = new LocalSessionFactoryBuilder(dataSource);
+    builder.addAnnotatedClasses(annotatedClasses);
+    builder.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+    builder.setProperty("hibernate.hbm2ddl.auto", "create");
+    SessionFactory sessionFactory = builder.buildSessionFactory();
+    sessionFactories.add(sessionFactory);
+    return sessionFactory;
+  }
+
+  void execute(String sql) throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute(sql);
+    }
+  }
+
+  long queryLong(String sql) throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery(sql)) {
+      resultSet.next();
+      return resultSet.getLong(1);
+    }
+  }
+
+  boolean tableExists(String tableName) throws SQLException {
+    try (Connection connection = dataSource.getConnection();
+        ResultSet tables =
+            connection.getMetaData().getTables(null, null, tableName.toUpperCase(), null)) {
+      return tables.next();
+    }
+  }
+}
@@ -0,0 +1,142 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.google.api.ads.adwords.awreporting.model.persistence.RowIdStorage;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test for the {@link RowIdMigration} class, on an H2 database.
+ *
+ * <p>H2 does not support the statements replacing the primary key of MySQL and MS SQL Server, so
+ * only the filling of the binary row ids is run against it.
+ */
+@RunWith(JUnit4.class)
+public class RowIdMigrationTest {
+
+  private static final String TABLE_NAME = "AW_TestReport";
+  private static final int ROWS = 7;
+
+  @Rule
+  public final H2TestDatabase database = new H2TestDatabase("rowIdMigration");
+
+  private DataSource dataSource;
+  private Connection connection;
+
+  @Before
+  public void setUp() throws Exception {
+    dataSource = database.getDataSource();
+    connection = dataSource.getConnection();
+    database.execute("CREATE TABLE " + TABLE_NAME
+        + " (ROW_ID VARCHAR(255) NOT NULL PRIMARY KEY, ROW_ID_BINARY BINARY(16))");
+    try (PreparedStatement insert =
+        connection.prepareStatement("INSERT INTO " + TABLE_NAME + " (ROW_ID) VALUES (?)")) {
+      for (int i = 0; i < ROWS; i++) {
+        insert.setString(1, getRowId(i));
+        insert.executeUpdate();
+      }
+    }
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    connection.close();
+  }
+
+  /**
+   * Tests that the binary row ids of all the rows are filled in pages, each row once.
+   */
+  @Test
+  public void testFillBinaryRowIds() throws Exception {
+    RowIdMigration migration = new RowIdMigration(dataSource, RowIdMigration.Dialect.MYSQL, 3);
+
+    assertEquals(ROWS, migration.fillBinaryRowIds(connection, TABLE_NAME));
+
+    assertBinaryRowIds();
+  }
+
+  /**
+   * Tests that an interrupted migration resumes with the rows that were not migrated yet.
+   */
+  @Test
+  public void testFillBinaryRowIds_resumes() throws Exception {
+    try (PreparedStatement update = connection.prepareStatement(
+        "UPDATE " + TABLE_NAME + " SET ROW_ID_BINARY = ? WHERE ROW_ID = ?")) {
+      for (int i = 0; i < 4; i++) {
+        update.setBytes(1, RowIdStorage.toBytes(RowIdStorage.hashRowId(getRowId(i))));
+        update.setString(2, getRowId(i));
+        update.executeUpdate();
+      }
+    }
+    RowIdMigration migration = new RowIdMigration(dataSource, RowIdMigration.Dialect.MYSQL, 2);
+
+    assertEquals(ROWS - 4, migration.fillBinaryRowIds(connection, TABLE_NAME));
+
+    assertBinaryRowIds();
+  }
+
+  /**
+   * Tests that the tables without row ids, such as missing tables, are skipped.
+   */
+  @Test
+  public void testMigrateTable_skipsMissingTable() throws Exception {
+    RowIdMigration migration = new RowIdMigration(dataSource, RowIdMigration.Dialect.MYSQL);
+
+    assertEquals(0, migration.migrateTable("AW_MissingReport"));
+  }
+
+  /**
+   * Tests that the tables whose row ids are already binary are skipped.
+   */
+  @Test
+  public void testMigrateTable_skipsBinaryRowIds() throws Exception {
+    database.execute("CREATE TABLE AW_BinaryReport (ROW_ID BINARY(16) NOT NULL PRIMARY KEY)");
+    RowIdMigration migration = new RowIdMigration(dataSource, RowIdMigration.Dialect.MYSQL);
+
+    assertEquals(0, migration.migrateTable("AW_BinaryReport".toUpperCase()));
+  }
+
+  private void assertBinaryRowIds() throws Exception {
+    try (Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery(
+            "SELECT ROW_ID, ROW_ID_BINARY FROM " + TABLE_NAME + " ORDER BY ROW_ID")) {
+      int rows = 0;
+      while (resultSet.next()) {
+        assertArrayEquals(
+            RowIdStorage.toBytes(RowIdStorage.hashRowId(resultSet.getString(1))),
+            resultSet.getBytes(2));
+        rows++;
+      }
+      assertEquals(ROWS, rows);
+    }
+  }
+
+  private static String getRowId(int i) {
+    return "123-45678-2018-01-0" + i;
+  }
+}
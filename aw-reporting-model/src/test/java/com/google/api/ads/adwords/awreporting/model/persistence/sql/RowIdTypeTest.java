@@ -0,0 +1,177 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.persistence.RowIdStorage;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQL5Dialect;
+import org.hibernate.dialect.SQLServerDialect;
+import org.hibernate.mapping.Table;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test for the {@link RowIdType} mapping of the row ids, on an H2 database.
+ */
+@RunWith(JUnit4.class)
+public class RowIdTypeTest {
+
+  private static final String TABLE_NAME = "AW_AccountPerformanceReport";
+
+  @Rule
+  public final H2TestDatabase database = new H2TestDatabase("rowIdType");
+
+  private SessionFactory sessionFactory;
+
+  @After
+  public void tearDown() {
+    RowIdStorage.setBinary(false);
+  }
+
+  /**
+   * Tests that the string row ids are stored as they are, in a VARCHAR column.
+   */
+  @Test
+  public void testStringRowIds() throws Exception {
+    sessionFactory = database.buildSessionFactory(AccountPerformanceReport.class);
+    AccountPerformanceReport report = saveReport();
+
+    try (Connection connection = database.getDataSource().getConnection()) {
+      assertEquals(Types.VARCHAR, getRowIdType(connection));
+      try (Statement statement = connection.createStatement();
+          ResultSet resultSet = statement.executeQuery("SELECT ROW_ID FROM " + TABLE_NAME)) {
+        resultSet.next();
+        assertEquals(report.getRowId(), resultSet.getString(1));
+      }
+    }
+    assertEquals(report.getRowId(), loadReport(report.getRowId()).getRowId());
+  }
+
+  /**
+   * Tests that the binary row ids are stored as the bytes of their digests, in a VARBINARY column,
+   * and read back as hexadecimal characters.
+   */
+  @Test
+  public void testBinaryRowIds() throws Exception {
+    RowIdStorage.setBinary(true);
+    sessionFactory = database.buildSessionFactory(AccountPerformanceReport.class);
+    AccountPerformanceReport report = saveReport();
+    assertEquals(RowIdStorage.BINARY_LENGTH * 2, report.getRowId().length());
+
+    try (Connection connection = database.getDataSource().getConnection()) {
+      assertEquals(Types.VARBINARY, getRowIdType(connection));
+      try (Statement statement = connection.createStatement();
+          ResultSet resultSet = statement.executeQuery("SELECT ROW_ID FROM " + TABLE_NAME)) {
+        resultSet.next();
+        assertArrayEquals(RowIdStorage.toBytes(report.getRowId()), resultSet.getBytes(1));
+      }
+    }
+    assertEquals(report.getRowId(), loadReport(report.getRowId()).getRowId());
+  }
+
+  /**
+   * Tests that the binary row id columns are created as BINARY(16) on the supported databases,
+   * instead of the type of the default length.
+   */
+  @Test
+  public void testBinaryColumns_ddl() {
+    RowIdStorage.setBinary(true);
+
+    assertEquals("binary(16) not null", getRowIdDdl(MySQL5Dialect.class, true));
+    assertEquals("binary(16) not null", getRowIdDdl(SQLServerDialect.class, true));
+    // The default length maps to a BLOB type on MySQL, which cannot be a primary key.
+    assertEquals("tinyblob not null", getRowIdDdl(MySQL5Dialect.class, false));
+  }
+
+  /**
+   * Gets the definition of the row id column in the statement creating the report table.
+   */
+  private static String getRowIdDdl(Class<? extends Dialect> dialectClass, boolean applyBinary) {
+    StandardServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
+        .applySetting(AvailableSettings.DIALECT, dialectClass.getName())
+        .applySetting("hibernate.temp.use_jdbc_metadata_defaults", "false")
+        .build();
+    try {
+      Metadata metadata = new MetadataSources(serviceRegistry)
+          .addAnnotatedClass(AccountPerformanceReport.class)
+          .buildMetadata();
+      if (applyBinary) {
+        RowIdType.applyBinaryColumns(metadata);
+      }
+      Dialect dialect = metadata.getDatabase().getDialect();
+      for (Table table : metadata.collectTableMappings()) {
+        for (String sql : dialect.getTableExporter().getSqlCreateStrings(table, metadata)) {
+          Matcher matcher = Pattern.compile("ROW_ID ([^,]+),").matcher(sql);
+          if (matcher.find()) {
+            return matcher.group(1);
+          }
+        }
+      }
+      throw new AssertionError("No row id column was created");
+    } finally {
+      StandardServiceRegistryBuilder.destroy(serviceRegistry);
+    }
+  }
+
+
+  private AccountPerformanceReport saveReport() {
+    AccountPerformanceReport report = new AccountPerformanceReport(123L, 456L);
+    report.setAccountDescriptiveName("testAccount");
+    report.setDateRangeType("CUSTOM_DATE");
+    report.setStartDate("20180101");
+    report.setEndDate("20180131");
+    report.setRowId();
+    try (Session session = sessionFactory.openSession()) {
+      session.beginTransaction();
+      session.save(report);
+      session.getTransaction().commit();
+    }
+    return report;
+  }
+
+  private AccountPerformanceReport loadReport(String rowId) {
+    try (Session session = sessionFactory.openSession()) {
+      return session.get(AccountPerformanceReport.class, rowId);
+    }
+  }
+
+  private static int getRowIdType(Connection connection) throws Exception {
+    try (ResultSet columns =
+        connection.getMetaData().getColumns(null, null, TABLE_NAME.toUpperCase(), "ROW_ID")) {
+      columns.next();
+      return columns.getInt("DATA_TYPE");
+    }
+  }
+}
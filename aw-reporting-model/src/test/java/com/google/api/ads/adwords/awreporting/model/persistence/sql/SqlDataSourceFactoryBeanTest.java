@@ -0,0 +1,131 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.sql.Connection;
+import javax.sql.DataSource;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Test for the {@link SqlDataSourceFactoryBean} class.
+ */
+@RunWith(JUnit4.class)
+public class SqlDataSourceFactoryBeanTest {
+
+  /**
+   * Tests that the pool size follows the processor threads unless it is set.
+   */
+  @Test
+  public void testPoolSize() {
+    SqlDataSourceFactoryBean factoryBean = new SqlDataSourceFactoryBean();
+    factoryBean.setProcessorThreads(20);
+    assertEquals(22, factoryBean.getPoolSize());
+    factoryBean.setMaximumPoolSize(5);
+    assertEquals(5, factoryBean.getPoolSize());
+  }
+
+  /**
+   * Tests that the pool size also covers the chunk, writer and coalescer threads.
+   */
+  @Test
+  public void testPoolSize_coversAllWritingThreads() {
+    SqlDataSourceFactoryBean factoryBean = new SqlDataSourceFactoryBean();
+    factoryBean.setProcessorThreads(20);
+    factoryBean.setChunkThreads(8);
+    factoryBean.setWriterThreads(4);
+    factoryBean.setCoalescedRows(true);
+    assertEquals(20 + 8 + 4 + 1 + 2, factoryBean.getPoolSize());
+  }
+
+  /**
+   * Tests that only the connections of the processor threads are kept open when idle, at most the
+   * size of the pool.
+   */
+  @Test
+  public void testMinimumIdle() {
+    SqlDataSourceFactoryBean factoryBean = new SqlDataSourceFactoryBean();
+    factoryBean.setProcessorThreads(20);
+    factoryBean.setChunkThreads(8);
+    factoryBean.setWriterThreads(4);
+    assertEquals(22, factoryBean.getMinimumIdle());
+    factoryBean.setMaximumPoolSize(5);
+    assertEquals(5, factoryBean.getMinimumIdle());
+  }
+
+  /**
+   * Tests that pooling is disabled by default.
+   */
+  @Test
+  public void testNotPooledByDefault() throws Exception {
+    SqlDataSourceFactoryBean factoryBean = newFactoryBean("default");
+    assertTrue(factoryBean.getObject() instanceof DriverManagerDataSource);
+    factoryBean.destroy();
+  }
+
+  /**
+   * Tests that the pool hands out connections, and records how long they took.
+   */
+  @Test
+  public void testPooledDataSource() throws Exception {
+    SqlDataSourceFactoryBean factoryBean = newFactoryBean("pooled");
+    factoryBean.setPooled(true);
+    try {
+      DataSource dataSource = factoryBean.getObject();
+      assertTrue(dataSource instanceof HikariDataSource);
+      assertSame(dataSource, factoryBean.getObject());
+      assertEquals(3, ((HikariDataSource) dataSource).getMaximumPoolSize());
+
+      try (Connection connection = dataSource.getConnection()) {
+        assertTrue(connection.isValid(1));
+      }
+      assertEquals(1, factoryBean.getPoolMetrics().getAcquisitions());
+    } finally {
+      factoryBean.destroy();
+    }
+  }
+
+  /**
+   * Tests that pooling can be disabled.
+   */
+  @Test
+  public void testDriverManagerDataSource() throws Exception {
+    SqlDataSourceFactoryBean factoryBean = newFactoryBean("unpooled");
+    factoryBean.setPooled(false);
+    DataSource dataSource = factoryBean.getObject();
+    assertTrue(dataSource instanceof DriverManagerDataSource);
+    try (Connection connection = dataSource.getConnection()) {
+      assertTrue(connection.isValid(1));
+    }
+    factoryBean.destroy();
+  }
+
+  private static SqlDataSourceFactoryBean newFactoryBean(String databaseName) {
+    SqlDataSourceFactoryBean factoryBean = new SqlDataSourceFactoryBean();
+    factoryBean.setDriverClassName("org.h2.Driver");
+    factoryBean.setUrl("jdbc:h2:mem:" + databaseName);
+    factoryBean.setUsername("sa");
+    factoryBean.setPassword("");
+    factoryBean.setProcessorThreads(1);
+    return factoryBean;
+  }
+}
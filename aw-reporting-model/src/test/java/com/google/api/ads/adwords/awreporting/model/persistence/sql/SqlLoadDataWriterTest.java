@@ -0,0 +1,176 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static com.google.api.ads.adwords.awreporting.model.persistence.ReportBatchTestUtil.newReport;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AdPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.persistence.ReportBatch;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
+import com.mysql.cj.jdbc.JdbcStatement;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Test for the {@link SqlLoadDataWriter} class.
+ */
+@RunWith(JUnit4.class)
+public class SqlLoadDataWriterTest {
+
+  /**
+   * Tests that the statement lists the columns of the batch, and unhexes binary row ids.
+   */
+  @Test
+  public void testBuildLoadData() {
+    ReportBatch<AdPerformanceReport> batch = newBatch();
+    String sql = SqlLoadDataWriter.buildLoadData("AW_AdPerformance", batch.getColumns(), false);
+    assertTrue(sql, sql.startsWith("LOAD DATA LOCAL INFILE 'rows.tsv' REPLACE INTO TABLE "
+        + "AW_AdPerformance CHARACTER SET utf8mb4 ("));
+    assertTrue(sql, sql.contains(" ROW_ID"));
+    assertTrue(sql, sql.endsWith(") SET TIMESTAMP = FROM_UNIXTIME(@TIMESTAMP / 1000)"));
+
+    sql = SqlLoadDataWriter.buildLoadData("AW_AdPerformance", batch.getColumns(), true);
+    assertTrue(sql, sql.contains("@ROW_ID"));
+    assertTrue(sql, sql.contains("ROW_ID = UNHEX(@ROW_ID)"));
+    assertTrue(sql, sql.contains("TIMESTAMP = FROM_UNIXTIME(@TIMESTAMP / 1000)"));
+  }
+
+  /**
+   * Tests the encoding of the rows: escaped strings, nulls and plain decimals.
+   */
+  @Test
+  public void testBatchInputStream() throws Exception {
+    ReportBatch<AdPerformanceReport> batch = newBatch();
+    byte[] bytes = ByteStreams.toByteArray(
+        new SqlLoadDataWriter.BatchInputStream(batch, false, false));
+    String[] lines = new String(bytes, StandardCharsets.UTF_8).split("\n", -1);
+    assertEquals(3, lines.length);
+    assertEquals("", lines[2]);
+
+    List<? extends ReportBatch<?>.ReportColumn> columns = batch.getColumns();
+    String[] first = lines[0].split("\t", -1);
+    String[] second = lines[1].split("\t", -1);
+    assertEquals(columns.size(), first.length);
+    assertEquals(columns.size(), second.length);
+    for (int i = 0; i < columns.size(); i++) {
+      String name = columns.get(i).getName();
+      if (name.equals("device")) {
+        assertEquals("Mobile\\tdevices \\\\ é", first[i]);
+      } else if (name.equals("cost")) {
+        assertEquals("0.00000012", first[i]);
+        assertEquals("\\N", second[i]);
+      } else if (name.equals("clicks")) {
+        assertEquals("1", first[i]);
+      } else if (name.equals("timestamp")) {
+        assertEquals(String.valueOf(batch.getReport(0).getTimestamp().getTime()), first[i]);
+      }
+    }
+  }
+
+  /**
+   * Tests that the rows of consecutive batches are loaded by a single statement, the batches being
+   * read while the statement reads the rows.
+   */
+  @Test
+  public void testWrite_loadsAllBatchesWithOneStatement() throws Exception {
+    Connection connection = mock(Connection.class);
+    DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+    Statement statement = mock(Statement.class);
+    JdbcStatement mysqlStatement = mock(JdbcStatement.class);
+    when(connection.getMetaData()).thenReturn(metaData);
+    when(metaData.getDatabaseProductName()).thenReturn("MySQL");
+    when(connection.createStatement()).thenReturn(statement);
+    when(statement.unwrap(JdbcStatement.class)).thenReturn(mysqlStatement);
+    final List<String> lines = Lists.newArrayList();
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        InputStream rows = (InputStream) invocation.getArguments()[0];
+        lines.addAll(CharStreams.readLines(new InputStreamReader(rows, StandardCharsets.UTF_8)));
+        return null;
+      }
+    }).when(mysqlStatement).setLocalInfileInputStream(any(InputStream.class));
+
+    ReportBatch<AdPerformanceReport> batch = newBatch();
+    assertEquals(4, new SqlLoadDataWriter().write(
+        connection, "AW_AdPerformance", batch.getColumns(), Iterators.forArray(batch, newBatch())));
+
+    assertEquals(4, lines.size());
+    verify(statement).executeUpdate(anyString());
+  }
+
+  /**
+   * Tests that the stream ends when reading the next batch fails, and that the error is kept.
+   */
+  @Test
+  public void testBatchInputStream_endsWhenBatchesFail() throws Exception {
+    final RuntimeException error = new IllegalStateException("Bad row");
+    Iterator<ReportBatch<AdPerformanceReport>> batches =
+        new AbstractIterator<ReportBatch<AdPerformanceReport>>() {
+          private boolean first = true;
+
+          @Override
+          protected ReportBatch<AdPerformanceReport> computeNext() {
+            if (first) {
+              first = false;
+              return newBatch();
+            }
+            throw error;
+          }
+        };
+    SqlLoadDataWriter.BatchInputStream rows =
+        new SqlLoadDataWriter.BatchInputStream(batches, false, false);
+
+    String[] lines =
+        new String(ByteStreams.toByteArray(rows), StandardCharsets.UTF_8).split("\n", -1);
+
+    assertEquals(3, lines.length);
+    assertEquals(2, rows.getRows());
+    assertSame(error, rows.getFailure());
+  }
+
+  private static ReportBatch<AdPerformanceReport> newBatch() {
+    ReportBatch<AdPerformanceReport> batch =
+        new ReportBatch<AdPerformanceReport>(AdPerformanceReport.class);
+    batch.add(newReport(1L, "Mobile\tdevices \\ é", new BigDecimal("1.2E-7")));
+    batch.add(newReport(2L, "Tablets", null));
+    return batch;
+  }
+}
@@ -0,0 +1,250 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.awreporting.model.entities.LabelReport;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.util.Collection;
+import java.util.List;
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.orm.hibernate5.HibernateTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Test for the reload mode of the {@link SqlReportEntitiesPersister} class, on an H2 database.
+ */
+@RunWith(JUnit4.class)
+public class SqlReportEntitiesPersisterReloadTest {
+
+  private static final String TABLE_NAME = "AW_AccountPerformanceReport";
+
+  private static final DateRangeAndType DATE_RANGE =
+      DateRangeAndType.fromString("20180101,20180131");
+
+  @Rule
+  public final H2TestDatabase database = new H2TestDatabase("reload");
+
+  private SessionFactory sessionFactory;
+  private TransactionTemplate transactionTemplate;
+  private SqlReportEntitiesPersister.Config config;
+
+  @Before
+  public void setUp() {
+    sessionFactory = database.buildSessionFactory(AccountPerformanceReport.class);
+    transactionTemplate =
+        new TransactionTemplate(new HibernateTransactionManager(sessionFactory));
+    config = new SqlReportEntitiesPersister.Config();
+  }
+
+  /**
+   * Tests the HQL deletes of the rows of a report, which include the rows of the days of the range
+   * for the date reports.
+   */
+  @Test
+  public void testBuildReloadDelete() {
+    assertEquals("delete from " + AccountPerformanceReport.class.getName()
+        + " where customerId in (:customerIds) and ((startDate = :startDate"
+        + " and endDate = :endDate and dateRangeType = :dateRangeType)"
+        + " or date between :firstDay and :lastDay)",
+        SqlReportEntitiesPersister.buildReloadDelete(AccountPerformanceReport.class));
+    assertEquals("delete from " + LabelReport.class.getName()
+        + " where customerId in (:customerIds) and ((startDate = :startDate"
+        + " and endDate = :endDate and dateRangeType = :dateRangeType))",
+        SqlReportEntitiesPersister.buildReloadDelete(LabelReport.class));
+  }
+
+  /**
+   * Tests that the rows of the accounts and date range are replaced by the rows loaded, and that
+   * the rows of other accounts and date ranges are kept.
+   */
+  @Test
+  public void testReload_replacesRowsOfAccountsAndDateRange() throws Exception {
+    SqlReportEntitiesPersister persister = newReloadPersister();
+    persist(persister, newReport(1L, 5L, DATE_RANGE, null));
+    persist(persister, newReport(3L, 7L, DATE_RANGE, null));
+    DateRangeAndType otherRange = DateRangeAndType.fromString("20171201,20171231");
+    persist(persister, newReport(1L, 11L, otherRange, null));
+
+    startReportLoad(persister, ImmutableList.of(1L, 2L), DATE_RANGE);
+    persist(persister, newReport(2L, 20L, DATE_RANGE, null));
+    // The old rows are kept until the load is finished.
+    assertEquals(23, sumClicks());
+    persister.finishReportLoad(AccountPerformanceReport.class, true);
+
+    assertEquals(3, countRows());
+    assertEquals(38, sumClicks());
+  }
+
+  /**
+   * Tests that the accounts are deleted in chunks.
+   */
+  @Test
+  public void testReload_deletesInChunks() throws Exception {
+    SqlReportEntitiesPersister persister = newReloadPersister();
+    long lastCustomerId = SqlReportEntitiesPersister.RELOAD_DELETE_CHUNK_SIZE * 2;
+    persist(persister, newReport(0L, 5L, DATE_RANGE, null));
+    persist(persister, newReport(lastCustomerId, 7L, DATE_RANGE, null));
+    List<Long> customerIds = Lists.newArrayList();
+    for (long id = 0; id <= lastCustomerId; id++) {
+      customerIds.add(id);
+    }
+
+    startReportLoad(persister, customerIds, DATE_RANGE);
+    persister.finishReportLoad(AccountPerformanceReport.class, true);
+
+    assertEquals(0, countRows());
+  }
+
+  /**
+   * Tests that the daily rows loaded with an overlapping date range, such as the
+   * {@code LAST_7_DAYS} of the day before, are replaced too.
+   */
+  @Test
+  public void testReload_replacesDaysOfOverlappingDateRanges() throws Exception {
+    SqlReportEntitiesPersister persister = newReloadPersister();
+    DateRangeAndType dayBefore = DateRangeAndType.fromString("20180101,20180107");
+    persist(persister, newReport(1L, 1L, dayBefore, "2018-01-01"));
+    persist(persister, newReport(1L, 2L, dayBefore, "2018-01-02"));
+    persist(persister, newReport(1L, 3L, dayBefore, "2018-01-07"));
+
+    DateRangeAndType today = DateRangeAndType.fromString("20180102,20180108");
+    startReportLoad(persister, ImmutableList.of(1L), today);
+    persist(persister, newReport(1L, 20L, today, "2018-01-02"));
+    persist(persister, newReport(1L, 80L, today, "2018-01-08"));
+    persister.finishReportLoad(AccountPerformanceReport.class, true);
+
+    // The row of 2018-01-07 was not in the new report, and the row of 2018-01-01 is out of range.
+    assertEquals(3, countRows());
+    assertEquals(101, sumClicks());
+  }
+
+  /**
+   * Tests that the rows are published with a plain insert, and not upserted again: a row left in
+   * the table with a row id loaded, outside the accounts deleted, makes the publish fail instead
+   * of being overwritten.
+   */
+  @Test
+  public void testReload_insertsWithoutUpsert() throws Exception {
+    SqlReportEntitiesPersister persister = newReloadPersister();
+    persist(persister, newReport(1L, 5L, DATE_RANGE, null));
+    database.execute("UPDATE " + TABLE_NAME + " SET ExternalCustomerId = 9");
+
+    startReportLoad(persister, ImmutableList.of(1L), DATE_RANGE);
+    persist(persister, newReport(1L, 20L, DATE_RANGE, null));
+    try {
+      persister.finishReportLoad(AccountPerformanceReport.class, true);
+      fail("The row id left in the table should make the insert fail");
+    } catch (RuntimeException e) {
+      // Expected.
+    }
+
+    assertEquals(1, countRows());
+    assertEquals(5, sumClicks());
+  }
+
+  /**
+   * Tests that nothing is deleted when the load is not completed.
+   */
+  @Test
+  public void testReload_keepsRowsOfFailedLoads() throws Exception {
+    SqlReportEntitiesPersister persister = newReloadPersister();
+    persist(persister, newReport(1L, 5L, DATE_RANGE, null));
+
+    startReportLoad(persister, ImmutableList.of(1L), DATE_RANGE);
+    persist(persister, newReport(1L, 20L, DATE_RANGE, "2018-01-02"));
+    persister.finishReportLoad(AccountPerformanceReport.class, false);
+
+    assertEquals(1, countRows());
+    assertEquals(5, sumClicks());
+  }
+
+  /**
+   * Tests that the rows are written directly to the report table, and nothing is deleted, unless
+   * the reload mode is enabled.
+   */
+  @Test
+  public void testStartReportLoad_notReload() throws Exception {
+    SqlReportEntitiesPersister persister = new SqlReportEntitiesPersister(sessionFactory, config);
+    persist(persister, newReport(1L, 5L, DATE_RANGE, null));
+
+    startReportLoad(persister, ImmutableList.of(1L), DATE_RANGE);
+    persist(persister, newReport(2L, 20L, DATE_RANGE, null));
+    persister.finishReportLoad(AccountPerformanceReport.class, true);
+
+    assertEquals(2, countRows());
+  }
+
+  private SqlReportEntitiesPersister newReloadPersister() {
+    config.setReload(true);
+    return new SqlReportEntitiesPersister(sessionFactory, config);
+  }
+
+  private void startReportLoad(
+      final SqlReportEntitiesPersister persister,
+      final Collection<Long> customerIds,
+      final DateRangeAndType dateRangeAndType) {
+    transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+      @Override
+      protected void doInTransactionWithoutResult(TransactionStatus status) {
+        persister.startReportLoad(AccountPerformanceReport.class, customerIds, dateRangeAndType);
+      }
+    });
+  }
+
+  private void persist(
+      final SqlReportEntitiesPersister persister, final AccountPerformanceReport report) {
+    transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+      @Override
+      protected void doInTransactionWithoutResult(TransactionStatus status) {
+        persister.persistReportEntities(ImmutableList.of(report));
+      }
+    });
+  }
+
+  private static AccountPerformanceReport newReport(
+      long customerId, long clicks, DateRangeAndType dateRangeAndType, String date) {
+    AccountPerformanceReport report = new AccountPerformanceReport(123L, customerId);
+    report.setAccountDescriptiveName("testAccount");
+    report.setDateRangeType(dateRangeAndType.getTypeStr());
+    report.setStartDate(dateRangeAndType.getStartDateStr());
+    report.setEndDate(dateRangeAndType.getEndDateStr());
+    report.setDate(date);
+    report.setClicks(clicks);
+    return report;
+  }
+
+  private int countRows() throws Exception {
+    return (int) database.queryLong("SELECT COUNT(*) FROM " + TABLE_NAME);
+  }
+
+  private long sumClicks() throws Exception {
+    return database.queryLong("SELECT SUM(Clicks) FROM " + TABLE_NAME);
+  }
+
+
+}
@@ -0,0 +1,237 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.orm.hibernate5.HibernateTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Test for the staging mode of the {@link SqlReportEntitiesPersister} class, on an H2 database.
+ */
+@RunWith(JUnit4.class)
+public class SqlReportEntitiesPersisterStagingTest {
+
+  private static final String TABLE_NAME = "AW_AccountPerformanceReport";
+
+  private static final DateRangeAndType DATE_RANGE =
+      DateRangeAndType.fromString("20180101,20180131");
+
+  @Rule
+  public final H2TestDatabase database = new H2TestDatabase("staging");
+
+  private TransactionTemplate transactionTemplate;
+  private SqlReportEntitiesPersister persister;
+
+  @Before
+  public void setUp() {
+    SessionFactory sessionFactory = database.buildSessionFactory(AccountPerformanceReport.class);
+    transactionTemplate =
+        new TransactionTemplate(new HibernateTransactionManager(sessionFactory));
+
+    SqlReportEntitiesPersister.Config config = new SqlReportEntitiesPersister.Config();
+    config.setStaging(true);
+    persister = new SqlReportEntitiesPersister(sessionFactory, config);
+  }
+
+  /**
+   * Tests that the rows of a report are written to its staging table until the load is finished.
+   */
+  @Test
+  public void testStartStagedLoad() throws Exception {
+    startReportLoad();
+    persist(newReport(1L, 10L), newReport(2L, 20L));
+
+    List<String> stagingTableNames = getStagingTableNames();
+    assertEquals(1, stagingTableNames.size());
+    assertEquals(0, countRows(TABLE_NAME));
+    assertEquals(2, countRows(stagingTableNames.get(0)));
+  }
+
+  /**
+   * Tests that the staged rows of a completed load are upserted into the report table, and that
+   * the staging table is dropped.
+   */
+  @Test
+  public void testFinishReportLoad_publishes() throws Exception {
+    persist(newReport(1L, 5L));
+
+    startReportLoad();
+    persist(newReport(1L, 10L), newReport(2L, 20L));
+    persister.finishReportLoad(AccountPerformanceReport.class, true);
+
+    assertEquals(0, getStagingTableNames().size());
+    assertEquals(2, countRows(TABLE_NAME));
+    assertEquals(30, sumClicks());
+  }
+
+  /**
+   * Tests that the staged rows of a load that was not completed are discarded.
+   */
+  @Test
+  public void testFinishReportLoad_discards() throws Exception {
+    persist(newReport(1L, 5L));
+
+    startReportLoad();
+    persist(newReport(1L, 10L), newReport(2L, 20L));
+    persister.finishReportLoad(AccountPerformanceReport.class, false);
+
+    assertEquals(0, getStagingTableNames().size());
+    assertEquals(1, countRows(TABLE_NAME));
+    assertEquals(5, sumClicks());
+  }
+
+  /**
+   * Tests that an error dropping the staging table does not hide the error of the publish.
+   */
+  @Test
+  public void testFinishReportLoad_keepsPublishFailure() throws Exception {
+    startReportLoad();
+    database.execute("DROP TABLE " + getStagingTableNames().get(0));
+
+    try {
+      persister.finishReportLoad(AccountPerformanceReport.class, true);
+      fail("The publish of a missing staging table should fail");
+    } catch (RuntimeException e) {
+      // Both the publish and the drop of the missing staging table failed.
+      assertEquals(1, e.getSuppressed().length);
+    }
+  }
+
+  /**
+   * Tests that the staging tables left by crashed runs are dropped, but not those of the runs that
+   * may still be in progress.
+   */
+  @Test
+  public void testStartStagedLoad_dropsStaleStagingTables() throws Exception {
+    long now = System.currentTimeMillis();
+    String staleTableName =
+        SqlReportEntitiesPersister.getStagingTableName(
+            TABLE_NAME,
+            SqlReportEntitiesPersister.newRunId(
+                now - TimeUnit.HOURS.toMillis(SqlReportEntitiesPersister.STALE_STAGING_TABLE_HOURS)
+                    - 1000,
+                new Random()));
+    String recentTableName =
+        SqlReportEntitiesPersister.getStagingTableName(
+            TABLE_NAME,
+            SqlReportEntitiesPersister.newRunId(now - TimeUnit.HOURS.toMillis(1), new Random()));
+    database.execute("CREATE TABLE " + staleTableName + " AS SELECT * FROM " + TABLE_NAME);
+    database.execute("CREATE TABLE " + recentTableName + " AS SELECT * FROM " + TABLE_NAME);
+
+    startReportLoad();
+
+    List<String> stagingTableNames = getStagingTableNames();
+    assertEquals(2, stagingTableNames.size());
+    assertTrue(stagingTableNames.contains(recentTableName.toUpperCase()));
+  }
+
+  /**
+   * Tests that the start time of a run is read back from the names of its staging tables.
+   */
+  @Test
+  public void testGetStagingStartMillis() {
+    long startMillis = TimeUnit.SECONDS.toMillis(1530000000L);
+    String stagingTableName =
+        SqlReportEntitiesPersister.getStagingTableName(
+            TABLE_NAME, SqlReportEntitiesPersister.newRunId(startMillis + 999, new Random()));
+
+    assertEquals(
+        startMillis,
+        SqlReportEntitiesPersister.getStagingStartMillis(TABLE_NAME, stagingTableName));
+    assertEquals(
+        startMillis,
+        SqlReportEntitiesPersister.getStagingStartMillis(
+            TABLE_NAME, stagingTableName.toUpperCase()));
+    assertEquals(
+        -1,
+        SqlReportEntitiesPersister.getStagingStartMillis(TABLE_NAME, TABLE_NAME + "_stage_backup"));
+    assertEquals(
+        -1,
+        SqlReportEntitiesPersister.getStagingStartMillis(TABLE_NAME, "AW_Other_stage_0tkq3h2a7x"));
+  }
+
+  private void startReportLoad() {
+    transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+      @Override
+      protected void doInTransactionWithoutResult(TransactionStatus status) {
+        persister.startReportLoad(
+            AccountPerformanceReport.class, ImmutableList.of(1L, 2L), DATE_RANGE);
+      }
+    });
+  }
+
+  private void persist(final AccountPerformanceReport... reports) {
+    transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+      @Override
+      protected void doInTransactionWithoutResult(TransactionStatus status) {
+        persister.persistReportEntities(ImmutableList.copyOf(reports));
+      }
+    });
+  }
+
+  private static AccountPerformanceReport newReport(long customerId, long clicks) {
+    AccountPerformanceReport report = new AccountPerformanceReport(123L, customerId);
+    report.setAccountDescriptiveName("testAccount");
+    report.setDateRangeType(DATE_RANGE.getTypeStr());
+    report.setStartDate(DATE_RANGE.getStartDateStr());
+    report.setEndDate(DATE_RANGE.getEndDateStr());
+    report.setClicks(clicks);
+    return report;
+  }
+
+  private List<String> getStagingTableNames() throws Exception {
+    List<String> tableNames = Lists.newArrayList();
+    try (Connection connection = database.getDataSource().getConnection();
+        ResultSet tables =
+            connection.getMetaData().getTables(
+                null, null, TABLE_NAME.toUpperCase() + "\\_STAGE\\_%", null)) {
+      while (tables.next()) {
+        tableNames.add(tables.getString("TABLE_NAME"));
+      }
+    }
+    return tableNames;
+  }
+
+  private int countRows(String tableName) throws Exception {
+    return (int) database.queryLong("SELECT COUNT(*) FROM " + tableName);
+  }
+
+  private long sumClicks() throws Exception {
+    return database.queryLong("SELECT SUM(Clicks) FROM " + TABLE_NAME);
+  }
+
+
+}
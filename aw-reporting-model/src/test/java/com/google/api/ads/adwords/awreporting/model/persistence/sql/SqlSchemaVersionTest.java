@@ -0,0 +1,74 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableMap;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test for the {@link SqlSchemaVersion} class.
+ */
+@RunWith(JUnit4.class)
+public class SqlSchemaVersionTest {
+
+  @Rule
+  public final H2TestDatabase database = new H2TestDatabase("schemaVersion");
+
+  /**
+   * Tests that the fingerprints are stored in a row per table of the version table, which is
+   * created by the first write, and that a write keeps the fingerprints of the other tables.
+   */
+  @Test
+  public void testReadWrite() throws Exception {
+    DataSource dataSource = database.getDataSource();
+    assertTrue(SqlSchemaVersion.read(dataSource).isEmpty());
+
+    SqlSchemaVersion.write(dataSource, ImmutableMap.of("AW_First", "first", "AW_Second", "second"));
+    assertEquals(
+        ImmutableMap.of("AW_First", "first", "AW_Second", "second"),
+        SqlSchemaVersion.read(dataSource));
+
+    SqlSchemaVersion.write(dataSource, ImmutableMap.of("AW_Second", "updated"));
+    assertEquals(
+        ImmutableMap.of("AW_First", "first", "AW_Second", "updated"),
+        SqlSchemaVersion.read(dataSource));
+    assertEquals(2, database.queryLong("SELECT COUNT(*) FROM " + SqlSchemaVersion.TABLE_NAME));
+  }
+
+  /**
+   * Tests that the errors reading the version table are thrown, as only a missing table means
+   * that no fingerprint was stored.
+   */
+  @Test
+  public void testRead_throwsOtherErrors() throws Exception {
+    database.execute("CREATE TABLE " + SqlSchemaVersion.TABLE_NAME + " (VERSION INT)");
+
+    try {
+      SqlSchemaVersion.read(database.getDataSource());
+      fail("The missing fingerprint column should fail the read");
+    } catch (SQLException e) {
+      // Expected.
+    }
+  }
+}
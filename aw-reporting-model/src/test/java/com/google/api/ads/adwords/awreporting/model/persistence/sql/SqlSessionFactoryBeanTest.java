@@ -0,0 +1,118 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.LabelReport;
+import com.google.common.collect.ImmutableSet;
+import java.util.Map;
+import java.util.Properties;
+import org.hibernate.SessionFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test for the schema updates of the {@link SqlSessionFactoryBean} class, on an H2 database.
+ */
+@RunWith(JUnit4.class)
+public class SqlSessionFactoryBeanTest {
+
+  @Rule
+  public final H2TestDatabase database = new H2TestDatabase("sessionFactory");
+
+  /**
+   * Tests that the first update creates the tables and stores their fingerprints.
+   */
+  @Test
+  public void testBuildSessionFactory_storesFingerprint() throws Exception {
+    buildSessionFactory(AccountPerformanceReport.class);
+
+    assertEquals(
+        ImmutableSet.of("AW_AccountPerformanceReport"),
+        SqlSchemaVersion.read(database.getDataSource()).keySet());
+    assertTrue(database.tableExists("AW_AccountPerformanceReport"));
+  }
+
+  /**
+   * Tests that the schema is not updated when the mapping did not change.
+   */
+  @Test
+  public void testBuildSessionFactory_skipsUnchangedMapping() throws Exception {
+    buildSessionFactory(AccountPerformanceReport.class);
+    Map<String, String> fingerprints = SqlSchemaVersion.read(database.getDataSource());
+    database.execute("DROP TABLE AW_AccountPerformanceReport");
+
+    buildSessionFactory(AccountPerformanceReport.class);
+
+    // An update would have created the dropped table again.
+    assertFalse(database.tableExists("AW_AccountPerformanceReport"));
+    assertEquals(fingerprints, SqlSchemaVersion.read(database.getDataSource()));
+  }
+
+  /**
+   * Tests that the runs mapping different tables do not update the schema for each other, as
+   * only the fingerprints of the mapped tables are compared.
+   */
+  @Test
+  public void testBuildSessionFactory_skipsTablesOfOtherRuns() throws Exception {
+    buildSessionFactory(AccountPerformanceReport.class);
+    buildSessionFactory(LabelReport.class);
+    database.execute("DROP TABLE AW_LabelReport");
+
+    buildSessionFactory(AccountPerformanceReport.class);
+
+    // An update would have created the dropped table again.
+    assertFalse(database.tableExists("AW_LabelReport"));
+    assertEquals(
+        ImmutableSet.of("AW_AccountPerformanceReport", "AW_LabelReport"),
+        SqlSchemaVersion.read(database.getDataSource()).keySet());
+  }
+
+  /**
+   * Tests that the schema is updated, and the new fingerprint stored, when the mapping changed.
+   */
+  @Test
+  public void testBuildSessionFactory_updatesChangedMapping() throws Exception {
+    buildSessionFactory(AccountPerformanceReport.class);
+    Map<String, String> fingerprints = SqlSchemaVersion.read(database.getDataSource());
+
+    buildSessionFactory(AccountPerformanceReport.class, LabelReport.class);
+
+    assertTrue(database.tableExists("AW_LabelReport"));
+    assertNotEquals(fingerprints, SqlSchemaVersion.read(database.getDataSource()));
+  }
+
+  private void buildSessionFactory(Class<?>... annotatedClasses) throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+    properties.setProperty("hibernate.hbm2ddl.auto", "update");
+    SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+    factoryBean.setDataSource(database.getDataSource());
+    factoryBean.setAnnotatedClasses(annotatedClasses);
+    factoryBean.setHibernateProperties(properties);
+    factoryBean.afterPropertiesSet();
+    SessionFactory sessionFactory = factoryBean.getObject();
+    sessionFactory.close();
+  }
+
+
+}
@@ -0,0 +1,100 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AdPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.persistence.ReportBatch;
+import com.google.common.collect.ImmutableList;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InOrder;
+
+/**
+ * Test for the {@link SqlStagedMergeWriter} class.
+ */
+@RunWith(JUnit4.class)
+public class SqlStagedMergeWriterTest {
+
+  /**
+   * Tests the statements that create and fill the staging table.
+   */
+  @Test
+  public void testStagingStatements() {
+    assertEquals("#AW_Test_Staging", SqlStagedMergeWriter.getStagingTableName("AW_Test"));
+    assertEquals("IF OBJECT_ID('tempdb..#AW_Test_Staging') IS NOT NULL DROP TABLE "
+        + "#AW_Test_Staging; SELECT TOP 0 * INTO #AW_Test_Staging FROM AW_Test",
+        SqlStagedMergeWriter.buildCreateStagingTable("AW_Test", "#AW_Test_Staging"));
+    assertEquals("INSERT INTO #AW_Test_Staging (ROW_ID, Clicks) VALUES (?, ?), (?, ?)",
+        SqlStagedMergeWriter.buildInsert(
+            "#AW_Test_Staging", ImmutableList.of("ROW_ID", "Clicks"), 2));
+  }
+
+  /**
+   * Tests that the rows are staged in a single JDBC batch, and then merged into the table.
+   */
+  @Test
+  public void testWrite() throws Exception {
+    ReportBatch<AdPerformanceReport> batch =
+        new ReportBatch<AdPerformanceReport>(AdPerformanceReport.class);
+    for (long adGroupId = 1; adGroupId <= 5; adGroupId++) {
+      batch.add(newReport(adGroupId));
+    }
+
+    Connection connection = mock(Connection.class);
+    DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+    Statement statement = mock(Statement.class);
+    PreparedStatement insert = mock(PreparedStatement.class);
+    when(connection.getMetaData()).thenReturn(metaData);
+    when(metaData.getDatabaseProductName()).thenReturn("Microsoft SQL Server");
+    when(connection.createStatement()).thenReturn(statement);
+    when(connection.prepareStatement(anyString())).thenReturn(insert);
+
+    assertEquals(5, new SqlStagedMergeWriter(2).write(connection, batch));
+    InOrder inOrder = inOrder(statement, insert);
+    inOrder.verify(statement).execute(
+        SqlStagedMergeWriter.buildCreateStagingTable(
+            "AW_AdPerformanceReport", "#AW_AdPerformanceReport_Staging"));
+    // Two full inserts of 2 rows in a batch, and an insert of the last row.
+    inOrder.verify(insert, times(2)).addBatch();
+    inOrder.verify(insert).executeBatch();
+    inOrder.verify(insert).executeUpdate();
+    inOrder.verify(statement).executeUpdate(
+        SqlUpsertWriter.buildMerge("AW_AdPerformanceReport",
+            SqlUpsertWriter.getColumnNames(batch.getColumns()),
+            "#AW_AdPerformanceReport_Staging AS source"));
+    inOrder.verify(statement).execute("DROP TABLE #AW_AdPerformanceReport_Staging");
+  }
+
+  private static AdPerformanceReport newReport(long adGroupId) {
+    AdPerformanceReport report = new AdPerformanceReport(1234L, 5678L);
+    report.setAdGroupId(adGroupId);
+    report.setClicks(adGroupId * 10);
+    report.setDate("2018-01-01");
+    report.setRowId();
+    return report;
+  }
+}
@@ -0,0 +1,204 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.persistence.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AdPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.persistence.ReportBatch;
+import com.google.api.ads.adwords.awreporting.model.persistence.sql.SqlUpsertWriter.Dialect;
+import com.google.common.collect.ImmutableList;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.util.List;
+import org.hibernate.NonUniqueObjectException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test for the {@link SqlUpsertWriter} class.
+ */
+@RunWith(JUnit4.class)
+public class SqlUpsertWriterTest {
+
+  private static final List<String> COLUMNS = ImmutableList.of("ROW_ID", "Clicks", "Cost");
+
+  /**
+   * Tests the MySQL statement, which updates every column but the row id.
+   */
+  @Test
+  public void testMySqlUpsert() {
+    assertEquals("INSERT INTO AW_Test (ROW_ID, Clicks, Cost) VALUES (?, ?, ?), (?, ?, ?)"
+        + " ON DUPLICATE KEY UPDATE Clicks = VALUES(Clicks), Cost = VALUES(Cost)",
+        Dialect.MYSQL.buildUpsert("AW_Test", COLUMNS, 2));
+  }
+
+  /**
+   * Tests the MSSQL statement, which merges the rows on the row id.
+   */
+  @Test
+  public void testMsSqlUpsert() {
+    assertEquals("MERGE INTO AW_Test WITH (HOLDLOCK) AS target USING (VALUES (?, ?, ?), (?, ?, ?))"
+        + " AS source (ROW_ID, Clicks, Cost) ON target.ROW_ID = source.ROW_ID"
+        + " WHEN MATCHED THEN UPDATE SET Clicks = source.Clicks, Cost = source.Cost"
+        + " WHEN NOT MATCHED THEN INSERT (ROW_ID, Clicks, Cost)"
+        + " VALUES (source.ROW_ID, source.Clicks, source.Cost);",
+        Dialect.MSSQL.buildUpsert("AW_Test", COLUMNS, 2));
+  }
+
+  /**
+   * Tests the statements that publish the rows of a staging table.
+   */
+  @Test
+  public void testUpsertFrom() {
+    assertEquals("INSERT INTO AW_Test (ROW_ID, Clicks, Cost) SELECT ROW_ID, Clicks, Cost"
+        + " FROM AW_Test_stage_1 ON DUPLICATE KEY UPDATE Clicks = VALUES(Clicks),"
+        + " Cost = VALUES(Cost)",
+        Dialect.MYSQL.buildUpsertFrom("AW_Test", COLUMNS, "AW_Test_stage_1"));
+    assertEquals("MERGE INTO AW_Test WITH (HOLDLOCK) AS target USING AW_Test_stage_1 AS source"
+        + " ON target.ROW_ID = source.ROW_ID"
+        + " WHEN MATCHED THEN UPDATE SET Clicks = source.Clicks, Cost = source.Cost"
+        + " WHEN NOT MATCHED THEN INSERT (ROW_ID, Clicks, Cost)"
+        + " VALUES (source.ROW_ID, source.Clicks, source.Cost);",
+        Dialect.MSSQL.buildUpsertFrom("AW_Test", COLUMNS, "AW_Test_stage_1"));
+    assertEquals("MERGE INTO AW_Test (ROW_ID, Clicks, Cost) KEY (ROW_ID)"
+        + " SELECT ROW_ID, Clicks, Cost FROM AW_Test_stage_1",
+        Dialect.H2.buildUpsertFrom("AW_Test", COLUMNS, "AW_Test_stage_1"));
+  }
+
+  /**
+   * Tests the statements that publish the rows of a staging table in reload mode, without
+   * upserting them.
+   */
+  @Test
+  public void testInsertFrom() {
+    String insert = "INSERT INTO AW_Test (ROW_ID, Clicks, Cost)"
+        + " SELECT ROW_ID, Clicks, Cost FROM AW_Test_stage_1";
+    for (Dialect dialect : Dialect.values()) {
+      assertEquals(insert, dialect.buildInsertFrom("AW_Test", COLUMNS, "AW_Test_stage_1"));
+    }
+  }
+
+  /**
+   * Tests the statements that create the staging tables, without the keys of the table.
+   */
+  @Test
+  public void testCreateEmptyCopy() {
+    assertEquals("CREATE TABLE AW_Test_stage_1 AS SELECT * FROM AW_Test WHERE 1 = 0",
+        Dialect.MYSQL.buildCreateEmptyCopy("AW_Test", "AW_Test_stage_1"));
+    assertEquals("SELECT TOP 0 * INTO AW_Test_stage_1 FROM AW_Test",
+        Dialect.MSSQL.buildCreateEmptyCopy("AW_Test", "AW_Test_stage_1"));
+  }
+
+  /**
+   * Tests the dialects of the JDBC product names.
+   */
+  @Test
+  public void testForDatabase() {
+    assertEquals(Dialect.MYSQL, Dialect.forDatabase("MySQL"));
+    assertEquals(Dialect.MSSQL, Dialect.forDatabase("Microsoft SQL Server"));
+    assertEquals(Dialect.H2, Dialect.forDatabase("H2"));
+    assertNull(Dialect.forDatabase("PostgreSQL"));
+  }
+
+  /**
+   * Tests that the rows per statement stay within the parameter limit of the dialect.
+   */
+  @Test
+  public void testRowsPerStatement() {
+    assertEquals(1000, SqlUpsertWriter.getRowsPerStatement(Dialect.MYSQL, 50, 1000));
+    assertEquals(40, SqlUpsertWriter.getRowsPerStatement(Dialect.MSSQL, 50, 1000));
+    assertEquals(1, SqlUpsertWriter.getRowsPerStatement(Dialect.MSSQL, 3000, 1000));
+  }
+
+  /**
+   * Tests that the rows are split into statements, and that repeated rows are written once.
+   */
+  @Test
+  public void testWrite() throws Exception {
+    ReportBatch<AdPerformanceReport> batch =
+        new ReportBatch<AdPerformanceReport>(AdPerformanceReport.class);
+    batch.add(newReport(91011L, 1L));
+    batch.add(newReport(91012L, 2L));
+    batch.add(newReport(91011L, 1L));
+    batch.add(newReport(91013L, 4L));
+
+    Connection connection = mock(Connection.class);
+    DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+    PreparedStatement statement = mock(PreparedStatement.class);
+    when(connection.getMetaData()).thenReturn(metaData);
+    when(metaData.getDatabaseProductName()).thenReturn("MySQL");
+    when(connection.prepareStatement(anyString())).thenReturn(statement);
+
+    assertEquals(3, new SqlUpsertWriter(2).write(connection, batch));
+    // A full statement of 2 rows, and a statement for the last row.
+    verify(connection, times(2)).prepareStatement(anyString());
+    verify(statement, times(2)).executeUpdate();
+    verify(statement).setLong(batch.getColumns().size() + getClicksIndex(batch), 2L);
+    verify(statement).setLong(getClicksIndex(batch), 1L);
+  }
+
+  /**
+   * Tests that rows with the same row id but different values fail the batch, as they do with
+   * Hibernate, instead of losing all of them but one.
+   */
+  @Test
+  public void testWrite_failsOnDuplicateRowIds() throws Exception {
+    ReportBatch<AdPerformanceReport> batch =
+        new ReportBatch<AdPerformanceReport>(AdPerformanceReport.class);
+    batch.add(newReport(91011L, 1L));
+    batch.add(newReport(91011L, 3L));
+    Connection connection = mock(Connection.class);
+    DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+    when(connection.getMetaData()).thenReturn(metaData);
+    when(metaData.getDatabaseProductName()).thenReturn("MySQL");
+
+    try {
+      new SqlUpsertWriter(2).write(connection, batch);
+      fail("The duplicate row ids were not detected");
+    } catch (NonUniqueObjectException e) {
+      assertEquals(AdPerformanceReport.class.getName(), e.getEntityName());
+    }
+    verify(connection, never()).prepareStatement(anyString());
+  }
+
+  private static int getClicksIndex(ReportBatch<?> batch) {
+    for (int i = 0; i < batch.getColumns().size(); i++) {
+      if (batch.getColumns().get(i).getName().equals("clicks")) {
+        return i + 1;
+      }
+    }
+    throw new AssertionError("No clicks column");
+  }
+
+  private static AdPerformanceReport newReport(long adGroupId, long clicks) {
+    AdPerformanceReport report = new AdPerformanceReport(1234L, 5678L);
+    report.setAdGroupId(adGroupId);
+    report.setClicks(clicks);
+    report.setDate("2018-01-01");
+    report.setRowId();
+    return report;
+  }
+}
@@ -0,0 +1,136 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.model.util;
+
+import com.google.common.base.Strings;
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH comparison of the {@link BigDecimalUtil} number parsers against the previous
+ * {@code DecimalFormat} and regular expression based implementations, over the inputs of
+ * {@link BigDecimalUtilTest}.
+ *
+ * <p>Not run by the unit tests. To run it after {@code mvn test-compile}:
+ *
+ * <pre>
+ * mvn -pl aw-reporting-model dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/test-classes:target/classes:$(cat cp.txt) org.openjdk.jmh.Main BigDecimalUtil
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BigDecimalUtilBenchmark {
+
+  static final String[] NUMBER_INPUTS = {
+    "1 200 300.10", "1,200,300.10", "1 200 300,10", "1.200.300,10", "0,39", "33,33", "0.39",
+    "33.33", "0,39%", "33,33%", "1,234", "12.5", "0.05%", "100"
+  };
+
+  static final String[] PERCENTAGE_INPUTS = {
+    "< 10%", "> 90%", "10.39%", "0.05", " 99.99% ", "100%"
+  };
+
+  @Benchmark
+  public void parseFromNumberString(Blackhole blackhole) {
+    for (String input : NUMBER_INPUTS) {
+      blackhole.consume(BigDecimalUtil.parseFromNumberString(input));
+    }
+  }
+
+  @Benchmark
+  public void legacyParseFromNumberString(Blackhole blackhole) {
+    for (String input : NUMBER_INPUTS) {
+      blackhole.consume(legacyParseFromNumberString(input));
+    }
+  }
+
+  @Benchmark
+  public void parseFromNumberStringPercentage(Blackhole blackhole) {
+    for (String input : PERCENTAGE_INPUTS) {
+      blackhole.consume(BigDecimalUtil.parseFromNumberStringPercentage(input));
+    }
+  }
+
+  @Benchmark
+  public void legacyParseFromNumberStringPercentage(Blackhole blackhole) {
+    for (String input : PERCENTAGE_INPUTS) {
+      blackhole.consume(legacyParseFromNumberStringPercentage(input));
+    }
+  }
+
+  /**
+   * The previous implementation of {@link BigDecimalUtil#parseFromNumberString(String)}.
+   */
+  static BigDecimal legacyParseFromNumberString(String numberString) {
+    BigDecimal result = null;
+
+    if (numberString != null) {
+      String nonSpacedString = numberString.replaceAll("[ \\t\\n\\x0B\\f\\r%]", "");
+
+      if (!Strings.isNullOrEmpty(nonSpacedString)) {
+        int indexOfComma = nonSpacedString.indexOf(',');
+        int indexOfDot = nonSpacedString.indexOf('.');
+
+        DecimalFormat decimalFormat = (DecimalFormat) NumberFormat.getInstance();
+        DecimalFormatSymbols otherSymbols = new DecimalFormatSymbols();
+
+        if (indexOfComma < indexOfDot) {
+          otherSymbols.setDecimalSeparator('.');
+          otherSymbols.setGroupingSeparator(',');
+        } else {
+          otherSymbols.setDecimalSeparator(',');
+          otherSymbols.setGroupingSeparator('.');
+        }
+
+        decimalFormat.setParseBigDecimal(true);
+        decimalFormat.setDecimalFormatSymbols(otherSymbols);
+
+        try {
+          result = (BigDecimal) decimalFormat.parse(nonSpacedString);
+        } catch (ParseException e) {
+          throw new RuntimeException("Error parsing '" + nonSpacedString + "' as BigDecimal", e);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * The previous implementation of {@link BigDecimalUtil#parseFromNumberStringPercentage(String)}.
+   */
+  static BigDecimal legacyParseFromNumberStringPercentage(String numberString) {
+    return StringsUtil.isEmptyValue(numberString) ? null
+        : new BigDecimal(numberString.replaceAll("\\s|%|>|<", ""));
+  }
+}
@@ -170,4 +170,71 @@ public class BigDecimalUtilTest {
     BigDecimal parsed = BigDecimalUtil.parseFromNumberStringPercentage(numString);
     assertNull("The parsed value is not null.", parsed);
   }
+
+  /**
+   * Tests that money strings are parsed as the division of the micros amount by a million.
+   */
+  @Test
+  public void testParseFromMoneyString() {
+    String[] moneyStrings = {
+      "0", "1", "1000000", "12500000", "10000000", "123456789", "1,234,567", "-2500000",
+      "9223372036854775807", "92233720368547758070", "1500000.50", " 3000000 "
+    };
+    BigDecimal micro = new BigDecimal(1000000);
+    for (String moneyString : moneyStrings) {
+      BigDecimal expected = new BigDecimal(moneyString.replaceAll("[^\\d.]", "")).divide(micro);
+      BigDecimal parsed = BigDecimalUtil.parseFromMoneyString(moneyString);
+      assertEquals("Wrong value for " + moneyString, expected, parsed);
+      assertEquals("Wrong scale for " + moneyString, expected.scale(), parsed.scale());
+    }
+    assertNull(BigDecimalUtil.parseFromMoneyString("--"));
+    assertNull(BigDecimalUtil.parseFromMoneyString(null));
+  }
+
+  /**
+   * Tests the conversions from and to micros.
+   */
+  @Test
+  public void testMicrosConversions() {
+    assertEquals(new BigDecimal("12.5"), BigDecimalUtil.fromMicros(12500000L));
+    assertEquals(new BigDecimal("10"), BigDecimalUtil.fromMicros(10000000L));
+    assertEquals(new BigDecimal("-0.000001"), BigDecimalUtil.fromMicros(-1L));
+    assertEquals(12500000L, BigDecimalUtil.toMicros(new BigDecimal("12.50")));
+    assertEquals(1L, BigDecimalUtil.toMicros(new BigDecimal("0.0000005")));
+  }
+
+  /**
+   * Tests that numbers are parsed as the previous DecimalFormat based implementation did.
+   */
+  @Test
+  public void testParseFromNumberStringMatchesLegacy() {
+    String[] numberStrings = {
+      "1 200 300.10", "1,200,300.10", "1.200.300,10", "1.200.300", "1,200,300", "0,39%", "-0.00",
+      "-12,5", "0.000", "000123", "0.0012", ".5", "5.", "100", "1.5.6", "1,5,6.7", "1.5,6",
+      "12abc", "1E5", "92233720368547758070.123", "1,234", "1.234", "%"
+    };
+    for (String numberString : numberStrings) {
+      BigDecimal expected = BigDecimalUtilBenchmark.legacyParseFromNumberString(numberString);
+      BigDecimal parsed = BigDecimalUtil.parseFromNumberString(numberString);
+      assertEquals("Wrong value for " + numberString, expected, parsed);
+    }
+
+    String[] percentageStrings = {
+      "< 10%", "> 90%", "10.39%", "-0.50", "+3", "007.10", " 99.99% ", ".5", "5.", "1E2"
+    };
+    for (String percentageString : percentageStrings) {
+      BigDecimal expected =
+          BigDecimalUtilBenchmark.legacyParseFromNumberStringPercentage(percentageString);
+      BigDecimal parsed = BigDecimalUtil.parseFromNumberStringPercentage(percentageString);
+      assertEquals("Wrong value for " + percentageString, expected, parsed);
+    }
+  }
+
+  /**
+   * Tests that a sign without digits is not a number.
+   */
+  @Test(expected = RuntimeException.class)
+  public void testSignOnly() {
+    BigDecimalUtil.parseFromNumberString("-");
+  }
 }
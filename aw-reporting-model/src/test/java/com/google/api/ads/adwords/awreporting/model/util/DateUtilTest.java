@@ -19,6 +19,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
 import org.joda.time.LocalDate;
+import org.joda.time.format.DateTimeFormat;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -220,4 +221,41 @@ public class DateUtilTest {
     toParse = "20001032";
     assertNull("Error parsing yyyyMMdd", DateUtil.parseLocalDate(toParse));
   }
+
+  /**
+   * Tests that the parsing matches trying each of the Joda formatters in turn.
+   */
+  @Test
+  public void testParseLocalDateMatchesFormatters() {
+    String[] timestamps = {
+      "2016-02-29", "2015-02-29", "2000-02-29", "1900-02-29", "2016-04-31", "2016-00-10",
+      "2016-1-5", "2016-01", "2016-13", "20160229", "20150229", "201612", "201600", "2016",
+      "--", "", " 2016-01-01", "2016/01/01", "99999-01-01"
+    };
+    String[] patterns = {"yyyy-MM-dd", "yyyy-MM", "yyyyMMdd", "yyyyMM"};
+    for (String timestamp : timestamps) {
+      LocalDate expected = null;
+      for (String pattern : patterns) {
+        try {
+          expected = DateTimeFormat.forPattern(pattern).parseLocalDate(timestamp);
+          break;
+        } catch (IllegalArgumentException e) {
+          // Tries the next pattern.
+        }
+      }
+      assertEquals("Wrong date for " + timestamp, expected, DateUtil.parseLocalDate(timestamp));
+    }
+  }
+
+  /**
+   * Tests the normalization of dates to the format yyyy-MM-dd.
+   */
+  @Test
+  public void testNormalizeYearMonthDay() {
+    assertEquals("2016-02-29", DateUtil.normalizeYearMonthDay("20160229"));
+    assertEquals("2016-02-01", DateUtil.normalizeYearMonthDay("2016-02"));
+    assertEquals("2016-02-01", DateUtil.normalizeYearMonthDay("2016-02"));
+    assertNull(DateUtil.normalizeYearMonthDay("invalid date"));
+    assertNull(DateUtil.normalizeYearMonthDay(null));
+  }
 }
@@ -14,7 +14,11 @@
 
 package com.google.api.ads.adwords.awreporting;
 
+import com.google.api.ads.adwords.awreporting.model.csv.CsvReportEntitiesMapping;
 import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.awreporting.model.persistence.MoneyStorage;
+import com.google.api.ads.adwords.awreporting.model.persistence.RowIdStorage;
+import com.google.api.ads.adwords.awreporting.model.persistence.sql.RowIdMigration;
 import com.google.api.ads.adwords.awreporting.model.util.DateUtil;
 import com.google.api.ads.adwords.awreporting.processors.ReportProcessor;
 import com.google.api.ads.adwords.awreporting.processors.file.FileReportProcessor;
@@ -22,7 +26,9 @@ import com.google.api.ads.adwords.awreporting.proxy.JaxWsProxySelector;
 import com.google.api.ads.adwords.awreporting.util.DatabaseType;
 import com.google.api.ads.adwords.awreporting.util.ProcessorType;
 import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinitionDateRangeType;
+import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinitionReportType;
 import com.google.api.client.util.Lists;
+import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.Sets;
 import com.google.common.io.Files;
@@ -30,10 +36,12 @@ import java.io.File;
 import java.io.IOException;
 import java.net.ProxySelector;
 import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import javax.sql.DataSource;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -68,8 +76,22 @@ public class AwReporting {
   /** The DB type key specified in the properties file. */
   private static final String AW_REPORT_MODEL_DB_TYPE = "aw.report.model.db.type";
 
+  /** The key specified in the properties file to store the money amounts in micros. */
+  private static final String AW_REPORT_MODEL_MONEY_MICROS = "aw.report.model.money.micros";
+
+  /** The key specified in the properties file to store the row ids as binary digests. */
+  private static final String AW_REPORT_MODEL_ROWID_BINARY = "aw.report.model.rowid.binary";
+
+  /**
+   * The key of the report types whose entities are mapped, which defaults to the report types of
+   * the run.
+   */
+  private static final String AW_REPORT_MODEL_REPORTS = "aw.report.model.reports";
+
   /** The Processor type key specified in the properties file. */
   private static final String AW_REPORT_PROCESSOR_TYPE = "aw.report.processor.type";
+  private static final String AW_REPORT_PROCESSOR_CHUNK_THREADS =
+      "aw.report.processor.chunk.threads";
 
   /** The Spring application context used to get all the beans. */
   private static ClassPathXmlApplicationContext appCtx;
@@ -134,7 +156,14 @@ public class AwReporting {
       String csvReportFile = AwReportingOption.CSV_FILE_INPUT.getOptionValue(cmdLine);
 
       boolean forceFileProcessor = !Strings.isNullOrEmpty(reportFileTypeName);
-      Properties properties = init(propertiesPath, forceFileProcessor);
+      boolean migrateRowIds = cmdLine.hasOption(AwReportingOption.MIGRATE_ROW_IDS.getArgName());
+      // The row ids of all the report tables are migrated.
+      Properties properties = init(propertiesPath, reportFileTypeName, migrateRowIds);
+
+      if (migrateRowIds) {
+        migrateRowIds(properties);
+        System.exit(0);
+      }
 
       logger.debug("Creating ReportProcessor bean...");
       ReportProcessor processor = createReportProcessor();
@@ -266,6 +295,62 @@ public class AwReporting {
     return appCtx.getBean(ReportProcessor.class);
   }
 
+  /**
+   * Converts the string row ids of the existing report tables to binary row ids.
+   *
+   * @param properties the properties of the run, which must enable binary row ids on SQL.
+   * @throws ReportProcessingException error migrating the tables.
+   */
+  private static void migrateRowIds(Properties properties) throws ReportProcessingException {
+    String dbType = properties.getProperty(AW_REPORT_MODEL_DB_TYPE);
+    if (!RowIdStorage.isBinary() || DatabaseType.MONGODB.name().equals(dbType)) {
+      throw new ReportProcessingException(
+          "Migrating row ids requires a SQL database and " + AW_REPORT_MODEL_ROWID_BINARY + "=true",
+          null);
+    }
+    RowIdMigration.Dialect dialect =
+        DatabaseType.MSSQL.name().equals(dbType)
+            ? RowIdMigration.Dialect.MSSQL
+            : RowIdMigration.Dialect.MYSQL;
+    CsvReportEntitiesMapping csvReportEntitiesMapping =
+        appCtx.getBean(CsvReportEntitiesMapping.class);
+    try {
+      long rows =
+          new RowIdMigration(appCtx.getBean(DataSource.class), dialect)
+              .migrate(csvReportEntitiesMapping.getReportBeanClasses());
+      logger.info("Migrated " + rows + " row ids.");
+    } catch (SQLException e) {
+      throw new ReportProcessingException("Failed to migrate row ids.", e);
+    }
+  }
+
+  /**
+   * Gets the names of the report types of the run: the type of the report file, or the report
+   * types defined in the properties, such as {@code ACCOUNT_PERFORMANCE_REPORT} and
+   * {@code ACCOUNT_PERFORMANCE_REPORT$Daily}.
+   *
+   * @param properties the properties of the run.
+   * @param reportFileTypeName the type of the report file, or {@code null}.
+   * @return the report types, in alphabetical order.
+   */
+  private static Set<String> getReportTypes(Properties properties, String reportFileTypeName) {
+    Set<String> reportTypes = Sets.newTreeSet();
+    if (!Strings.isNullOrEmpty(reportFileTypeName)) {
+      reportTypes.add(reportFileTypeName);
+      return reportTypes;
+    }
+    for (String key : properties.stringPropertyNames()) {
+      String reportType = key.split("\\$", 2)[0];
+      try {
+        ReportDefinitionReportType.valueOf(reportType);
+        reportTypes.add(reportType);
+      } catch (IllegalArgumentException e) {
+        // Not a report definition.
+      }
+    }
+    return reportTypes;
+  }
+
   /**
    * Prints the help message.
    *
@@ -305,12 +390,17 @@ public class AwReporting {
    * specified path.
    *
    * @param propertiesPath the path to the file.
-   * @param forceFileProcessor true if the processor will be created to run "on file"
+   * @param reportFileTypeName the report type of the report file, if the processor will be created
+   *     to run "on file"
+   * @param allReports whether the entities of all the reports are mapped, instead of the ones of
+   *     the reports of the run.
    * @return the properties instance loaded from the properties file.
    * @throws ReportConfigLoadException error opening the properties file.
    */
-  private static Properties init(String propertiesPath, boolean forceFileProcessor)
+  private static Properties init(
+      String propertiesPath, String reportFileTypeName, boolean allReports)
       throws ReportConfigLoadException {
+    boolean forceFileProcessor = !Strings.isNullOrEmpty(reportFileTypeName);
     logger.trace("Initializing Spring application context.");
 
     Resource resource = new ClassPathResource(propertiesPath);
@@ -327,6 +417,16 @@ public class AwReporting {
       throw new ReportConfigLoadException("Failed to load properties file.", e);
     }
 
+    // Only the entities of the reports of the run are mapped, unless the properties file says
+    // otherwise.
+    Properties runProperties = new Properties();
+    if (!allReports) {
+      Set<String> reportTypes = getReportTypes(properties, reportFileTypeName);
+      logger.info("Mapping the reports: " + reportTypes);
+      runProperties.setProperty(AW_REPORT_MODEL_REPORTS, Joiner.on(',').join(reportTypes));
+    }
+    configurer.setProperties(runProperties);
+
     // Selecting the XMLs to choose the Spring Beans to load.
     List<String> listOfClassPathXml = Lists.newArrayList();
 
@@ -348,6 +448,21 @@ public class AwReporting {
       throw new ReportConfigLoadException("Unknown database type: " + dbType);
     }
 
+    // The money storage must be chosen before the persistence beans are created.
+    boolean moneyAsMicros =
+        Boolean.parseBoolean(properties.getProperty(AW_REPORT_MODEL_MONEY_MICROS, "false"));
+    if (moneyAsMicros) {
+      logger.info("Storing money amounts in micros.");
+    }
+    MoneyStorage.setMicros(moneyAsMicros);
+
+    boolean rowIdsAsBinary =
+        Boolean.parseBoolean(properties.getProperty(AW_REPORT_MODEL_ROWID_BINARY, "false"));
+    if (rowIdsAsBinary) {
+      logger.info("Storing row ids as binary digests.");
+    }
+    RowIdStorage.setBinary(rowIdsAsBinary);
+
     // Choose the Processor type to use based properties file
     String processorType = (String) properties.get(AW_REPORT_PROCESSOR_TYPE);
     if (forceFileProcessor) {
@@ -360,6 +475,13 @@ public class AwReporting {
     } else if (ProcessorType.FILE.name().equals(processorType)) {
       logger.info("Using FILE Processor.");
       listOfClassPathXml.add("classpath:" + FILE_PROCESSING_BEANS_FILE);
+      // Unless it is set, the large files are parsed by one thread per core. The processor and the
+      // connection pool read the same value, as the properties file wins over the run properties.
+      if (!properties.containsKey(AW_REPORT_PROCESSOR_CHUNK_THREADS)) {
+        runProperties.setProperty(
+            AW_REPORT_PROCESSOR_CHUNK_THREADS,
+            String.valueOf(Runtime.getRuntime().availableProcessors()));
+      }
     } else {
       throw new ReportConfigLoadException("Unknown processor type: " + processorType);
     }
@@ -371,9 +493,11 @@ public class AwReporting {
 
     appCtx.setConfigLocations(listOfClassPathXml.toArray(new String[listOfClassPathXml.size()]));
     appCtx.addBeanFactoryPostProcessor(configurer);
-    logger.warn("Updating database schema, this could take a few minutes ...");
+    logger.info("Checking database schema ...");
     appCtx.refresh();
-    logger.warn("Done.");
+    logger.info("Done.");
+    // Closes the beans on exit, such as the connection pool.
+    appCtx.registerShutdownHook();
 
     return properties;
   }
@@ -26,17 +26,30 @@ public enum AwReportingOption {
       "csvReportFile",
       "This is the path to the CSV report file that will be used to import data directly into "
           + "AwReporting.",
+      false),
+  MIGRATE_ROW_IDS(
+      "migrateRowIds",
+      "Converts the string row ids of the existing SQL report tables to binary row ids, for the "
+          + "'aw.report.model.rowid.binary' property, and exits.",
+      false,
       false);
 
   private final String argName;
   private final String description;
   private final boolean required;
-  
+  private final boolean hasArg;
+
   private AwReportingOption(
       String argName, String description, boolean required) {
+    this(argName, description, required, true);
+  }
+
+  private AwReportingOption(
+      String argName, String description, boolean required, boolean hasArg) {
     this.argName = argName;
     this.description = description;
     this.required = required;
+    this.hasArg = hasArg;
   }
 
   public String getArgName() {
@@ -66,7 +79,7 @@ public enum AwReportingOption {
           Option.builder(option.argName)
               .argName(option.argName)
               .desc(option.description)
-              .hasArg(true)
+              .hasArg(option.hasArg)
               .required(option.required)
               .build());
     }
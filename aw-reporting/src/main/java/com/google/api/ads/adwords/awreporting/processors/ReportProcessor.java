@@ -17,7 +17,10 @@ package com.google.api.ads.adwords.awreporting.processors;
 import com.google.api.ads.adwords.awreporting.ReportProcessingException;
 import com.google.api.ads.adwords.awreporting.authentication.Authenticator;
 import com.google.api.ads.adwords.awreporting.model.csv.CsvReportEntitiesMapping;
+import com.google.api.ads.adwords.awreporting.model.csv.ReportEntityMappingStrategy;
+import com.google.api.ads.adwords.awreporting.model.csv.StringDictionary;
 import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
 import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
 import com.google.api.ads.adwords.awreporting.util.AdWordsSessionUtil;
 import com.google.api.ads.adwords.awreporting.util.ManagedCustomerDelegate;
@@ -37,12 +40,14 @@ import com.google.common.base.Splitter;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -52,6 +57,7 @@ import org.joda.time.format.DateTimeFormatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
 /**
  * Reporting processor, responsible for downloading and saving the files to the file system. The
@@ -82,11 +88,24 @@ public abstract class ReportProcessor {
   protected final int reportRowsSetSize;
   protected final int numberOfReportProcessors;
 
+  protected boolean lenientCsvParsing;
+
+  protected boolean compactReportRows;
+
+  protected int reportWriterThreads;
+  protected int reportWriterQueueSize;
+
+  protected boolean coalesceReportRows;
+  protected long coalesceMaxDelayMillis;
+
   private static final DateTimeFormatter TIMESTAMPFORMAT =
       DateTimeFormat.forPattern("yyyy-MM-dd-HH_mm");
 
   protected final AdWordsSession.Builder sessionBuilder;
 
+  /** The low cardinality values shared by all the reports of the current run, if any. */
+  private StringDictionary runDictionary;
+
   /**
    * Constructor.
    *
@@ -148,26 +167,33 @@ public abstract class ReportProcessor {
     logger.info("*** Generating Reports for " + accountIdsSet.size() + " accounts ***");
     Stopwatch stopwatch = Stopwatch.createStarted();
     Set<ReportDefinitionReportType> reports = csvReportEntitiesMapping.getDefinedReports();
+    runDictionary = new StringDictionary();
 
-    // reports
-    Set<Object> propertiesKeys = properties.keySet();
-    for (Object key : propertiesKeys) {
-
-      String reportDefinitionKey = key.toString();
-      ReportDefinitionReportType reportType = extractReportTypeFromKey(reportDefinitionKey);
-      if (reportType != null && reports.contains(reportType)) {
-        try {
-          downloadAndProcess(
-              topCustomerId,
-              reportType,
-              dateRangeAndType,
-              accountIdsSet,
-              reportDefinitionKey,
-              properties);
-        } catch (ReportProcessingException e) {
-          logger.error("Unable to download and process " + reportType + " for " + topCustomerId, e);
+    try {
+      // reports
+      Set<Object> propertiesKeys = properties.keySet();
+      for (Object key : propertiesKeys) {
+
+        String reportDefinitionKey = key.toString();
+        ReportDefinitionReportType reportType = extractReportTypeFromKey(reportDefinitionKey);
+        if (reportType != null && reports.contains(reportType)) {
+          try {
+            downloadAndProcess(
+                topCustomerId,
+                reportType,
+                dateRangeAndType,
+                accountIdsSet,
+                reportDefinitionKey,
+                properties);
+          } catch (ReportProcessingException e) {
+            logger.error(
+                "Unable to download and process " + reportType + " for " + topCustomerId, e);
+          }
         }
       }
+      logger.debug("Low cardinality values of the run: " + runDictionary);
+    } finally {
+      runDictionary = null;
     }
 
     stopwatch.stop();
@@ -410,4 +436,171 @@ public abstract class ReportProcessor {
   public void setPersister(EntityPersister persister) {
     this.persister = persister;
   }
+
+  /**
+   * Sets whether the CSV columns that are not mapped to the report entities are skipped, instead of
+   * failing the parsing of the report.
+   */
+  @Autowired
+  public void setLenientCsvParsing(
+      @Value(value = "${aw.report.processor.csv.lenient:false}") boolean lenientCsvParsing) {
+    this.lenientCsvParsing = lenientCsvParsing;
+  }
+
+  /**
+   * Sets whether the parsed rows are buffered in compact columnar batches, which only hold the
+   * fields selected for each report, instead of lists of report entities.
+   */
+  @Autowired
+  public void setCompactReportRows(
+      @Value(value = "${aw.report.processor.rows.compact:false}") boolean compactReportRows) {
+    this.compactReportRows = compactReportRows;
+  }
+
+  /**
+   * Sets the number of threads that persist the parsed rows in the background, or 0 to persist
+   * them in the parsing threads.
+   */
+  @Autowired
+  public void setReportWriterThreads(
+      @Value(value = "${aw.report.processor.writer.threads:0}") int reportWriterThreads) {
+    this.reportWriterThreads = reportWriterThreads;
+  }
+
+  /**
+   * Sets the number of parsed sets of rows that can wait for a writer thread before the parsing
+   * threads block.
+   */
+  @Autowired
+  public void setReportWriterQueueSize(
+      @Value(value = "${aw.report.processor.writer.queue:0}") int reportWriterQueueSize) {
+    this.reportWriterQueueSize = reportWriterQueueSize;
+  }
+
+  /**
+   * Sets whether the leftover rows of the accounts (or files) of a report are merged into full sets
+   * before they are persisted, instead of persisting them in a small transaction per account.
+   */
+  @Autowired
+  public void setCoalesceReportRows(
+      @Value(value = "${aw.report.processor.rows.coalesce:false}") boolean coalesceReportRows) {
+    this.coalesceReportRows = coalesceReportRows;
+  }
+
+  /**
+   * Sets the longest time, in milliseconds, the merged rows wait for a full set before they are
+   * persisted, or 0 to wait until the report is done.
+   */
+  @Autowired
+  public void setCoalesceMaxDelayMillis(
+      @Value(value = "${aw.report.processor.rows.coalesce.delay:10000}")
+          long coalesceMaxDelayMillis) {
+    this.coalesceMaxDelayMillis = coalesceMaxDelayMillis;
+  }
+
+  /**
+   * Gets the dictionary of the low cardinality values, shared by all the reports of the current
+   * run, or a new dictionary for the reports processed outside of a run.
+   */
+  protected StringDictionary getRunDictionary() {
+    return runDictionary != null ? runDictionary : new StringDictionary();
+  }
+
+  /**
+   * Whether the parsed rows are buffered in compact columnar batches. The batches are only used
+   * when the persister writes their columns directly, as a persister that recreates their entities
+   * would hold each row as a parsed entity, in a batch and as a recreated entity.
+   */
+  protected boolean isCompactReportRows() {
+    if (compactReportRows && !persister.isReportBatchSupported()) {
+      logger.warn(
+          "Ignoring aw.report.processor.rows.compact, as the persister would recreate the "
+              + "entities of the compact rows instead of writing their columns.");
+      return false;
+    }
+    return compactReportRows;
+  }
+
+  /**
+   * Creates the coalescer that merges the leftover rows of the tasks of a report, if enabled.
+   *
+   * @param reportBeanClass the class of the report entities.
+   * @param compact whether the rows are buffered in compact columnar batches.
+   * @param writeStage the write-behind stage of the report, or {@code null}.
+   * @return the coalescer, or {@code null} if the leftover rows of each task are persisted on their
+   *     own.
+   */
+  protected <R extends Report> ReportRowsCoalescer<R> createRowsCoalescer(
+      Class<R> reportBeanClass, boolean compact, ReportWriteStage writeStage) {
+    if (!coalesceReportRows) {
+      return null;
+    }
+    return new ReportRowsCoalescer<R>(persister, reportBeanClass, reportRowsSetSize,
+        compact, writeStage, coalesceMaxDelayMillis);
+  }
+
+  /**
+   * Persists the rows left in the coalescer of a report, once all its tasks are done.
+   *
+   * @param rowsCoalescer the coalescer, or {@code null}.
+   * @throws ReportProcessingException if some of the merged rows failed to be persisted.
+   */
+  protected void drainRowsCoalescer(ReportRowsCoalescer<?> rowsCoalescer)
+      throws ReportProcessingException {
+    if (rowsCoalescer != null) {
+      try {
+        rowsCoalescer.drain();
+      } catch (RuntimeException e) {
+        throw new ReportProcessingException("Failed to persist the merged rows of the report.", e);
+      }
+    }
+  }
+
+  /**
+   * Creates the write-behind stage of a report, if writer threads are configured. The queue
+   * defaults to one set of rows per processor thread.
+   *
+   * @return the stage, or {@code null} if the rows are persisted in the parsing threads.
+   */
+  protected ReportWriteStage createWriteStage() {
+    if (reportWriterThreads <= 0) {
+      return null;
+    }
+    int queueSize = reportWriterQueueSize > 0 ? reportWriterQueueSize : numberOfReportProcessors;
+    return new ReportWriteStage(reportWriterThreads, queueSize);
+  }
+
+  /**
+   * Waits for the writes of the write-behind stage of a report, if any.
+   *
+   * @param writeStage the stage, or {@code null}.
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  protected void shutdownWriteStage(ReportWriteStage writeStage) throws InterruptedException {
+    if (writeStage != null) {
+      writeStage.shutdown();
+    }
+  }
+
+  /**
+   * Logs the number of values skipped for each CSV column that is not mapped to the report entity,
+   * adding up the counts of all the given mapping strategies.
+   *
+   * @param mappingStrategies the mapping strategies used to parse the reports.
+   */
+  protected void logSkippedColumns(
+      List<? extends ReportEntityMappingStrategy<?>> mappingStrategies) {
+    Map<String, Long> skippedColumnCounts = Maps.newTreeMap();
+    for (ReportEntityMappingStrategy<?> mappingStrategy : mappingStrategies) {
+      for (Map.Entry<String, Long> entry : mappingStrategy.getSkippedColumnCounts().entrySet()) {
+        Long count = skippedColumnCounts.get(entry.getKey());
+        skippedColumnCounts.put(entry.getKey(), (count == null ? 0L : count) + entry.getValue());
+      }
+    }
+
+    for (Map.Entry<String, Long> entry : skippedColumnCounts.entrySet()) {
+      logger.info(
+          "Skipped " + entry.getValue() + " values of unmapped column: " + entry.getKey());
+    }
+  }
 }
@@ -0,0 +1,135 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors;
+
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.util.StringsUtil;
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.util.Date;
+import javax.annotation.Nullable;
+
+/**
+ * The values stamped on every parsed row of a report, which are not in the CSV content: the
+ * account ids, the date range and the processing timestamp.
+ *
+ * <p>A context is created once per report file or stream, so the ids are parsed, and the dates are
+ * formatted, only once instead of for each row. All the rows share the same timestamp instance,
+ * which must not be modified. A context is immutable and can be shared by threads.
+ */
+public final class ReportRowContext {
+
+  private final Long topCustomerId;
+  @Nullable private final Long customerId;
+  private final boolean replaceCustomerId;
+  private final String source;
+  private final String dateRangeType;
+  private final String startDate;
+  private final String endDate;
+  private final Date timestamp;
+
+  private ReportRowContext(
+      Long topCustomerId,
+      @Nullable Long customerId,
+      boolean replaceCustomerId,
+      String source,
+      DateRangeAndType dateRangeAndType) {
+    this.topCustomerId = topCustomerId;
+    this.customerId = customerId;
+    this.replaceCustomerId = replaceCustomerId;
+    this.source = source;
+    this.dateRangeType = dateRangeAndType.getTypeStr();
+    this.startDate = dateRangeAndType.getStartDateStr();
+    this.endDate = dateRangeAndType.getEndDateStr();
+    this.timestamp = new Date();
+  }
+
+  /**
+   * Creates the context of a report file. The rows without a customer id get the account id found
+   * in the file name, such as {@code ACCOUNT_PERFORMANCE_REPORT-1234567890-...}.
+   *
+   * @param topCustomerId the top customer account id, with or without dashes.
+   * @param file the CSV file.
+   * @param dateRangeAndType the date range and type.
+   */
+  public static ReportRowContext forFile(
+      String topCustomerId, File file, DateRangeAndType dateRangeAndType) {
+    String[] nameParts = file.getName().split("-");
+    Long fileCustomerId = null;
+    if (nameParts.length >= 2 && nameParts[1].matches("\\d+")) {
+      fileCustomerId = Long.parseLong(nameParts[1]);
+    }
+    return new ReportRowContext(
+        StringsUtil.parseCustomerId(topCustomerId),
+        fileCustomerId,
+        false,
+        "file " + file.getName(),
+        dateRangeAndType);
+  }
+
+  /**
+   * Creates the context of a report downloaded for an account. All the rows get the account id.
+   *
+   * @param topCustomerId the top customer account id, with or without dashes.
+   * @param clientCustomerId the account id, with or without dashes.
+   * @param dateRangeAndType the date range and type.
+   */
+  public static ReportRowContext forAccount(
+      String topCustomerId, String clientCustomerId, DateRangeAndType dateRangeAndType) {
+    return new ReportRowContext(
+        StringsUtil.parseCustomerId(topCustomerId),
+        StringsUtil.parseCustomerId(clientCustomerId),
+        true,
+        "account " + clientCustomerId,
+        dateRangeAndType);
+  }
+
+  /**
+   * Completes a parsed row with the values of the context, and sets its row id.
+   *
+   * @param report the parsed row.
+   * @throws IllegalArgumentException if the row has no customer id and the context has none.
+   */
+  public void enrich(Report report) {
+    if (replaceCustomerId || report.getCustomerId() == null) {
+      Preconditions.checkArgument(
+          customerId != null,
+          "Unknown customer id for report %s %s",
+          report.getClass().getSimpleName(),
+          source);
+      report.setCustomerId(customerId);
+    }
+    report.setTopCustomerId(topCustomerId);
+    report.setDateRangeType(dateRangeType);
+    report.setStartDate(startDate);
+    report.setEndDate(endDate);
+    report.setTimestamp(timestamp);
+    report.setRowId();
+  }
+
+  public Long getTopCustomerId() {
+    return topCustomerId;
+  }
+
+  @Nullable
+  public Long getCustomerId() {
+    return customerId;
+  }
+
+  public Date getTimestamp() {
+    return timestamp;
+  }
+}
@@ -0,0 +1,276 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors;
+
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.api.ads.adwords.awreporting.model.persistence.ReportBatch;
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Buffers the parsed report rows of a report, and persists them in sets of
+ * {@code reportRowsSetSize} rows.
+ *
+ * <p>In compact mode the rows are kept in a columnar {@link ReportBatch} instead of a list of
+ * entities, so that only the fields selected for the report take up memory while the set is built,
+ * and each entity can be discarded as soon as it is parsed. A buffer is not thread safe.
+ *
+ * <p>With a {@link ReportWriteStage}, full sets are handed over to its writer threads, and the
+ * buffer starts a new set right away. {@link #flush()} then waits for all the writes of the buffer,
+ * even if some of them fail, and rethrows the first error with the others suppressed, so errors
+ * surface in the task that parsed the rows.
+ *
+ * <p>With a {@link ReportRowsCoalescer}, the last set, which is smaller than a full set, is handed
+ * over to the coalescer on {@link #flush()}, to be merged with the leftover rows of other tasks.
+ *
+ * <p>With a persister that supports report streams, such as the LOAD DATA writer of MySQL,
+ * {@link #addAll(Iterator, ReportRowContext)} hands all the rows of a report over to the persister
+ * instead, and nothing is buffered.
+ *
+ * @param <R> type of sub Report.
+ */
+public class ReportRowsBuffer<R extends Report> {
+
+  private final EntityPersister entityPersister;
+  private final Class<R> reportClass;
+  private final int reportRowsSetSize;
+  private final ReportWriteStage writeStage;
+  private final ReportRowsCoalescer<R> coalescer;
+  private final List<Future<?>> pendingWrites = Lists.newArrayList();
+  private List<R> reportList;
+  private ReportBatch<R> reportBatch;
+
+  /**
+   * @param entityPersister the bean to persist report to database.
+   * @param reportClass the class of the report entities.
+   * @param reportRowsSetSize the size of the set parsed that will be persisted to the database.
+   * @param compact whether to keep the rows in a columnar batch instead of a list of entities.
+   * @param writeStage the stage that persists the sets of rows, or {@code null} to persist them
+   *     in the calling thread.
+   */
+  public ReportRowsBuffer(
+      EntityPersister entityPersister,
+      Class<R> reportClass,
+      int reportRowsSetSize,
+      boolean compact,
+      ReportWriteStage writeStage) {
+    this(entityPersister, reportClass, reportRowsSetSize, compact, writeStage, null);
+  }
+
+  /**
+   * @param entityPersister the bean to persist report to database.
+   * @param reportClass the class of the report entities.
+   * @param reportRowsSetSize the size of the set parsed that will be persisted to the database.
+   * @param compact whether to keep the rows in a columnar batch instead of a list of entities.
+   * @param writeStage the stage that persists the sets of rows, or {@code null} to persist them
+   *     in the calling thread.
+   * @param coalescer the coalescer that merges the last set with the rows of other tasks, or
+   *     {@code null} to persist it on its own.
+   */
+  public ReportRowsBuffer(
+      EntityPersister entityPersister,
+      Class<R> reportClass,
+      int reportRowsSetSize,
+      boolean compact,
+      ReportWriteStage writeStage,
+      ReportRowsCoalescer<R> coalescer) {
+    Preconditions.checkArgument(reportRowsSetSize > 0, "reportRowsSetSize must be > 0");
+    this.entityPersister =
+        Preconditions.checkNotNull(entityPersister, "entityPersister cannot be null");
+    this.reportClass = reportClass;
+    this.reportRowsSetSize = reportRowsSetSize;
+    this.writeStage = writeStage;
+    this.coalescer = coalescer;
+    if (compact) {
+      reportList = null;
+      reportBatch = new ReportBatch<R>(reportClass, reportRowsSetSize);
+    } else {
+      reportList = Lists.newArrayListWithCapacity(reportRowsSetSize);
+      reportBatch = null;
+    }
+  }
+
+  /**
+   * Adds a parsed row, persisting the buffered rows once the set is full.
+   */
+  public void add(R report) {
+    if (reportBatch != null) {
+      reportBatch.add(report);
+    } else {
+      reportList.add(report);
+    }
+    if (size() >= reportRowsSetSize) {
+      write();
+    }
+  }
+
+  /**
+   * Adds the rows of a batch, persisting the buffered rows each time the set is full. In compact
+   * mode the rows are copied column by column, without recreating their entities.
+   */
+  public void addBatch(ReportBatch<R> batch) {
+    int row = 0;
+    while (row < batch.size()) {
+      int rows = Math.min(batch.size() - row, reportRowsSetSize - size());
+      if (reportBatch != null) {
+        reportBatch.addRows(batch, row, row + rows);
+      } else {
+        for (int i = row; i < row + rows; i++) {
+          reportList.add(batch.getReport(i));
+        }
+      }
+      row += rows;
+      if (size() >= reportRowsSetSize) {
+        write();
+      }
+    }
+  }
+
+  /**
+   * Completes the parsed rows of a report with the data that is not in the report, and adds them.
+   *
+   * <p>If the persister supports report streams, and no row was added before, the rows are handed
+   * over to the persister as they are parsed instead, so that all the rows of the report are
+   * persisted by a single write in the calling thread, without being buffered here.
+   *
+   * @param reports the parsed rows.
+   * @param rowContext the values stamped on every row of the report.
+   */
+  public void addAll(Iterator<R> reports, final ReportRowContext rowContext) {
+    if (size() == 0 && entityPersister.isReportStreamSupported()) {
+      entityPersister.persistReportStream(
+          reportClass,
+          Iterators.transform(reports, new Function<R, R>() {
+            @Override
+            public R apply(R report) {
+              rowContext.enrich(report);
+              return report;
+            }
+          }));
+      return;
+    }
+    while (reports.hasNext()) {
+      R report = reports.next();
+      rowContext.enrich(report);
+      add(report);
+    }
+  }
+
+  /**
+   * Persists the buffered rows, if any, or hands them over to the coalescer, and waits for the sets
+   * handed over to the write stage.
+   *
+   * @throws RuntimeException the error of the first failed write, with the errors of the other
+   *     failed writes suppressed, once all the writes are done.
+   */
+  public void flush() {
+    if (coalescer != null && size() > 0) {
+      if (reportBatch != null) {
+        coalescer.addBatch(reportBatch);
+        reportBatch.clear();
+      } else {
+        coalescer.addAll(reportList);
+        reportList.clear();
+      }
+    }
+    write();
+    RuntimeException failure = null;
+    try {
+      for (Future<?> pendingWrite : pendingWrites) {
+        try {
+          Futures.getUnchecked(pendingWrite);
+        } catch (RuntimeException e) {
+          if (failure == null) {
+            failure = e;
+          } else {
+            failure.addSuppressed(e);
+          }
+        }
+      }
+    } finally {
+      pendingWrites.clear();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Persists the buffered rows, or hands them over to the write stage.
+   */
+  private void write() {
+    if (size() == 0) {
+      return;
+    }
+    if (writeStage == null) {
+      if (reportBatch != null) {
+        entityPersister.persistReportBatch(reportBatch);
+        reportBatch.clear();
+      } else {
+        entityPersister.persistReportEntities(reportList);
+        reportList.clear();
+      }
+      return;
+    }
+
+    checkCompletedWrites();
+    final ReportBatch<R> batch = reportBatch;
+    final List<R> list = reportList;
+    if (batch != null) {
+      reportBatch = new ReportBatch<R>(reportClass, reportRowsSetSize);
+    } else {
+      reportList = Lists.newArrayListWithCapacity(reportRowsSetSize);
+    }
+    pendingWrites.add(writeStage.submit(new Runnable() {
+      @Override
+      public void run() {
+        if (batch != null) {
+          entityPersister.persistReportBatch(batch);
+        } else {
+          entityPersister.persistReportEntities(list);
+        }
+      }
+    }));
+  }
+
+  /**
+   * Forgets the writes that are done, rethrowing the error of a failed one, so that a task stops
+   * parsing as soon as one of its writes fails.
+   */
+  private void checkCompletedWrites() {
+    Iterator<Future<?>> iterator = pendingWrites.iterator();
+    while (iterator.hasNext()) {
+      Future<?> pendingWrite = iterator.next();
+      if (pendingWrite.isDone()) {
+        iterator.remove();
+        Futures.getUnchecked(pendingWrite);
+      }
+    }
+  }
+
+  /**
+   * Gets the number of buffered rows.
+   */
+  public int size() {
+    return reportBatch != null ? reportBatch.size() : reportList.size();
+  }
+}
@@ -0,0 +1,328 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors;
+
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.api.ads.adwords.awreporting.model.persistence.ReportBatch;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Merges the leftover rows of the tasks of a report, the last set of each account or file that is
+ * smaller than {@code reportRowsSetSize}, into full sets before persisting them.
+ *
+ * <p>Most accounts only have a few rows for each report, so persisting the leftover rows of each
+ * task on its own would mean one small transaction per account. The merged rows are persisted as
+ * soon as they fill a set, by the task that filled it, when they have waited longer than the
+ * maximum delay, by a background thread, and when the report is done, by {@link #drain()}. The
+ * rows that the background thread failed to persist fail the report: {@link #drain()} rethrows the
+ * error.
+ *
+ * <p>In compact mode the merged rows are kept in a columnar {@link ReportBatch}, and the batches of
+ * the tasks are merged column by column, without recreating their entities.
+ *
+ * <p>A coalescer is shared by all the tasks of a report, and is thread safe.
+ *
+ * @param <R> type of sub Report.
+ */
+public class ReportRowsCoalescer<R extends Report> {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReportRowsCoalescer.class);
+
+  private final EntityPersister entityPersister;
+  private final Class<R> reportClass;
+  private final int reportRowsSetSize;
+  private final boolean compact;
+  private final ReportWriteStage writeStage;
+  private final long maxDelayNanos;
+  private final ScheduledExecutorService scheduler;
+
+  /** The merged rows, in list mode. */
+  private List<R> pendingRows;
+  /** The merged rows, in compact mode. */
+  private ReportBatch<R> pendingBatch;
+  private long pendingSinceNanos;
+  private RuntimeException backgroundFailure;
+
+  /**
+   * @param entityPersister the bean to persist report to database.
+   * @param reportClass the class of the report entities.
+   * @param reportRowsSetSize the size of the set parsed that will be persisted to the database.
+   * @param compact whether to keep the rows in a columnar batch while they are persisted.
+   * @param writeStage the stage that persists the sets of rows, or {@code null} to persist them
+   *     in the calling thread.
+   * @param maxDelayMillis the longest time rows wait for a full set before they are persisted, or
+   *     0 to wait until the report is done.
+   */
+  public ReportRowsCoalescer(
+      EntityPersister entityPersister,
+      Class<R> reportClass,
+      int reportRowsSetSize,
+      boolean compact,
+      ReportWriteStage writeStage,
+      long maxDelayMillis) {
+    Preconditions.checkArgument(reportRowsSetSize > 0, "reportRowsSetSize must be > 0");
+    Preconditions.checkArgument(maxDelayMillis >= 0, "maxDelayMillis must be >= 0");
+    this.entityPersister =
+        Preconditions.checkNotNull(entityPersister, "entityPersister cannot be null");
+    this.reportClass = reportClass;
+    this.reportRowsSetSize = reportRowsSetSize;
+    this.compact = compact;
+    this.writeStage = writeStage;
+    this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+    if (compact) {
+      this.pendingBatch = new ReportBatch<R>(reportClass, reportRowsSetSize);
+    } else {
+      this.pendingRows = Lists.newArrayListWithCapacity(reportRowsSetSize);
+    }
+
+    if (maxDelayMillis > 0) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("report-rows-coalescer").setDaemon(true).build());
+      long period = Math.max(1, maxDelayMillis / 2);
+      scheduler.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          persistIfStale();
+        }
+      }, period, period, TimeUnit.MILLISECONDS);
+    } else {
+      scheduler = null;
+    }
+  }
+
+  /**
+   * Adds the leftover rows of a task, persisting the merged rows in the calling thread once they
+   * fill a set.
+   */
+  public void addAll(List<? extends R> reports) {
+    if (reports.isEmpty()) {
+      return;
+    }
+    List<R> fullRows = null;
+    ReportBatch<R> fullBatch = null;
+    synchronized (this) {
+      startPending();
+      if (compact) {
+        pendingBatch.addAll(reports);
+        fullBatch = takeFullBatch();
+      } else {
+        pendingRows.addAll(reports);
+        fullRows = takeFullSets();
+      }
+    }
+    persist(fullRows);
+    persist(fullBatch);
+  }
+
+  /**
+   * Adds the leftover rows of a task, as a batch, persisting the merged rows in the calling thread
+   * once they fill a set. The rows are copied, so the batch can be reused once this returns.
+   */
+  public void addBatch(ReportBatch<R> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    if (!compact) {
+      addAll(batch.toReports());
+      return;
+    }
+    ReportBatch<R> fullBatch;
+    synchronized (this) {
+      startPending();
+      pendingBatch.addRows(batch, 0, batch.size());
+      fullBatch = takeFullBatch();
+    }
+    persist(fullBatch);
+  }
+
+  /**
+   * Persists all the merged rows, once all the tasks of the report are done, and stops the
+   * background thread.
+   *
+   * @throws RuntimeException the error of the background thread, if it failed to persist merged
+   *     rows, or else the error persisting the rows left.
+   */
+  public void drain() {
+    if (scheduler != null) {
+      // Waits for a background persist in progress, if any.
+      scheduler.shutdown();
+      try {
+        scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    List<R> rows;
+    ReportBatch<R> batch;
+    RuntimeException failure;
+    synchronized (this) {
+      rows = takePendingRows();
+      batch = takePendingBatch();
+      failure = backgroundFailure;
+    }
+    try {
+      persist(rows);
+      persist(batch);
+    } catch (RuntimeException e) {
+      if (failure == null) {
+        throw e;
+      }
+      failure.addSuppressed(e);
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Gets the number of merged rows waiting to be persisted.
+   */
+  public synchronized int getPendingRows() {
+    return compact ? pendingBatch.size() : pendingRows.size();
+  }
+
+  private void persistIfStale() {
+    List<R> staleRows = null;
+    ReportBatch<R> staleBatch = null;
+    synchronized (this) {
+      if (getPendingRows() > 0 && System.nanoTime() - pendingSinceNanos >= maxDelayNanos) {
+        staleRows = takePendingRows();
+        staleBatch = takePendingBatch();
+      }
+    }
+    try {
+      persist(staleRows);
+      persist(staleBatch);
+    } catch (RuntimeException e) {
+      logger.error("Error persisting the merged rows of " + reportClass.getSimpleName(), e);
+      synchronized (this) {
+        if (backgroundFailure == null) {
+          backgroundFailure = e;
+        } else {
+          backgroundFailure.addSuppressed(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Records when the merged rows started waiting, if there were none.
+   */
+  private void startPending() {
+    if (getPendingRows() == 0) {
+      pendingSinceNanos = System.nanoTime();
+    }
+  }
+
+  /**
+   * Takes the merged rows that fill whole sets, keeping the rest pending.
+   *
+   * @return the rows of the full sets, or {@code null} if they do not fill a set yet.
+   */
+  private List<R> takeFullSets() {
+    if (pendingRows.size() < reportRowsSetSize) {
+      return null;
+    }
+    int fullSize = pendingRows.size() / reportRowsSetSize * reportRowsSetSize;
+    List<R> rows = Lists.newArrayList(pendingRows.subList(0, fullSize));
+    List<R> remainingRows = Lists.newArrayListWithCapacity(reportRowsSetSize);
+    remainingRows.addAll(pendingRows.subList(fullSize, pendingRows.size()));
+    pendingRows = remainingRows;
+    return rows;
+  }
+
+  /**
+   * Takes the merged rows of the batch that fill whole sets, keeping the rest pending.
+   *
+   * @return the batch of the full sets, or {@code null} if they do not fill a set yet.
+   */
+  private ReportBatch<R> takeFullBatch() {
+    if (pendingBatch.size() < reportRowsSetSize) {
+      return null;
+    }
+    int fullSize = pendingBatch.size() / reportRowsSetSize * reportRowsSetSize;
+    ReportBatch<R> remainingBatch = new ReportBatch<R>(reportClass, reportRowsSetSize);
+    remainingBatch.addRows(pendingBatch, fullSize, pendingBatch.size());
+    ReportBatch<R> batch = pendingBatch;
+    if (fullSize < batch.size()) {
+      ReportBatch<R> fullBatch = new ReportBatch<R>(reportClass, fullSize);
+      fullBatch.addRows(batch, 0, fullSize);
+      batch = fullBatch;
+    }
+    pendingBatch = remainingBatch;
+    return batch;
+  }
+
+  /**
+   * Takes all the merged rows, in list mode.
+   */
+  private List<R> takePendingRows() {
+    if (compact) {
+      return null;
+    }
+    List<R> rows = pendingRows;
+    pendingRows = Lists.newArrayListWithCapacity(reportRowsSetSize);
+    return rows;
+  }
+
+  /**
+   * Takes all the merged rows, in compact mode.
+   */
+  private ReportBatch<R> takePendingBatch() {
+    if (!compact) {
+      return null;
+    }
+    ReportBatch<R> batch = pendingBatch;
+    pendingBatch = new ReportBatch<R>(reportClass, reportRowsSetSize);
+    return batch;
+  }
+
+  /**
+   * Persists the rows in sets, waiting until they are written.
+   */
+  private void persist(List<R> rows) {
+    if (rows == null || rows.isEmpty()) {
+      return;
+    }
+    ReportRowsBuffer<R> buffer = new ReportRowsBuffer<R>(
+        entityPersister, reportClass, reportRowsSetSize, compact, writeStage);
+    for (R report : rows) {
+      buffer.add(report);
+    }
+    buffer.flush();
+  }
+
+  /**
+   * Persists the rows of the batch in sets, waiting until they are written.
+   */
+  private void persist(ReportBatch<R> batch) {
+    if (batch == null || batch.isEmpty()) {
+      return;
+    }
+    ReportRowsBuffer<R> buffer = new ReportRowsBuffer<R>(
+        entityPersister, reportClass, reportRowsSetSize, compact, writeStage);
+    buffer.addBatch(batch);
+    buffer.flush();
+  }
+}
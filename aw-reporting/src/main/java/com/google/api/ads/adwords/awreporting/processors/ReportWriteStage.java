@@ -0,0 +1,147 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A write-behind stage, where a pool of writer threads persists the sets of report rows handed over
+ * by the parsing threads, so that parsing and database writes overlap.
+ *
+ * <p>The stage holds at most {@code queueCapacity} sets waiting for a writer. When the queue is
+ * full, the parsing threads block until a writer is done, so that the parsed rows never pile up in
+ * memory. The time spent blocked is reported as the stall time, along with the queue depth.
+ *
+ * <p>A stage is shared by all the tasks of a report, and must be shut down once they are done.
+ */
+public class ReportWriteStage {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReportWriteStage.class);
+
+  private final ExecutorService executorService;
+  private final Semaphore slots;
+
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final AtomicInteger maxQueueDepth = new AtomicInteger();
+  private final AtomicLong writes = new AtomicLong();
+  private final AtomicLong stalls = new AtomicLong();
+  private final AtomicLong stallNanos = new AtomicLong();
+
+  /**
+   * @param writerThreads the number of threads that persist the rows.
+   * @param queueCapacity the number of sets of rows that can wait for a writer.
+   */
+  public ReportWriteStage(int writerThreads, int queueCapacity) {
+    Preconditions.checkArgument(writerThreads > 0, "writerThreads must be > 0");
+    Preconditions.checkArgument(queueCapacity >= 0, "queueCapacity must be >= 0");
+    this.executorService = Executors.newFixedThreadPool(writerThreads,
+        new ThreadFactoryBuilder().setNameFormat("report-writer-%d").setDaemon(true).build());
+    this.slots = new Semaphore(writerThreads + queueCapacity);
+  }
+
+  /**
+   * Hands over a write to the writer threads, blocking while the queue is full.
+   *
+   * @param write the write of a set of rows.
+   * @return the future of the write, which holds its error if it fails.
+   * @throws IllegalStateException if the thread is interrupted while blocked, or the stage was
+   *     shut down.
+   */
+  public Future<?> submit(final Runnable write) {
+    if (!slots.tryAcquire()) {
+      long start = System.nanoTime();
+      try {
+        slots.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for the report writers.", e);
+      } finally {
+        stalls.incrementAndGet();
+        stallNanos.addAndGet(System.nanoTime() - start);
+      }
+    }
+
+    int depth = queueDepth.incrementAndGet();
+    maxQueueDepth.accumulateAndGet(depth, Math::max);
+    try {
+      return executorService.submit(new Runnable() {
+        @Override
+        public void run() {
+          queueDepth.decrementAndGet();
+          try {
+            write.run();
+            writes.incrementAndGet();
+          } finally {
+            slots.release();
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      queueDepth.decrementAndGet();
+      slots.release();
+      throw new IllegalStateException("The report write stage was shut down.", e);
+    }
+  }
+
+  /** Gets the number of sets of rows waiting for a writer. */
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  /** Gets the highest number of sets of rows that waited for a writer. */
+  public int getMaxQueueDepth() {
+    return maxQueueDepth.get();
+  }
+
+  /** Gets the number of sets of rows that were persisted. */
+  public long getWrites() {
+    return writes.get();
+  }
+
+  /** Gets the number of times a parsing thread blocked on a full queue. */
+  public long getStalls() {
+    return stalls.get();
+  }
+
+  /** Gets the total time the parsing threads blocked on a full queue, in milliseconds. */
+  public long getStallMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(stallNanos.get());
+  }
+
+  /**
+   * Waits for the writes that were handed over, and stops the writer threads.
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  public void shutdown() throws InterruptedException {
+    executorService.shutdown();
+    executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    logger.info(
+        "Persisted {} sets of rows in the background (max queue depth {}, stalled {} times "
+            + "for {} ms).",
+        getWrites(), getMaxQueueDepth(), getStalls(), getStallMillis());
+  }
+}
@@ -20,9 +20,12 @@ import com.google.api.ads.adwords.awreporting.downloader.DownloadSetting;
 import com.google.api.ads.adwords.awreporting.downloader.MultipleClientReportDownloader;
 import com.google.api.ads.adwords.awreporting.model.csv.ModifiedCsvToBean;
 import com.google.api.ads.adwords.awreporting.model.csv.ReportEntityMappingStrategy;
+import com.google.api.ads.adwords.awreporting.model.csv.StringDictionary;
 import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
 import com.google.api.ads.adwords.awreporting.processors.ReportProcessor;
+import com.google.api.ads.adwords.awreporting.processors.ReportRowsCoalescer;
+import com.google.api.ads.adwords.awreporting.processors.ReportWriteStage;
 import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinition;
 import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinitionReportType;
 import com.google.common.base.Stopwatch;
@@ -35,6 +38,7 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,6 +59,8 @@ public class FileReportProcessor extends ReportProcessor {
 
   private DownloadSetting downloadSetting;
 
+  private int chunkThreads;
+
   /**
    * Constructor.
    *
@@ -103,7 +109,18 @@ public class FileReportProcessor extends ReportProcessor {
     localFiles =
         multipleClientReportDownloader.downloadReports(
             sessionBuilder, reportDefinition, accountIdList);
-    processLocalFiles(topCustomerId, reportType, localFiles, dateRangeAndType);
+    Class<? extends Report> reportBeanClass =
+        csvReportEntitiesMapping.getReportBeanClass(reportType);
+    persister.startReportLoad(reportBeanClass, accountIdList, dateRangeAndType);
+    boolean completed = false;
+    try {
+      // The report is only complete if the file of every account was downloaded and processed.
+      completed =
+          processLocalFiles(topCustomerId, reportType, localFiles, dateRangeAndType)
+              && localFiles.size() == accountIdList.size();
+    } finally {
+      persister.finishReportLoad(reportBeanClass, completed);
+    }
     deleteTemporaryFiles(localFiles, reportType);
   }
 
@@ -117,8 +134,9 @@ public class FileReportProcessor extends ReportProcessor {
    * @param filesDownloadedByAPI whether the report files are downloaded by AWAPI (no
    *     header/summary) or provided by user (via csvReportFile option).
    * @param dateRangeAndType the date range and type.
+   * @return whether all the files were processed without errors.
    */
-  private <R extends Report> void processFiles(
+  private <R extends Report> boolean processFiles(
       String topCustomerId,
       Class<R> reportBeanClass,
       Collection<File> localFiles,
@@ -129,14 +147,25 @@ public class FileReportProcessor extends ReportProcessor {
     Stopwatch stopwatch = Stopwatch.createStarted();
 
     ExecutorService executorService = Executors.newFixedThreadPool(numberOfReportProcessors);
+    // The large files of the report are split into ranges of records parsed on this pool.
+    ForkJoinPool chunkPool = chunkThreads > 1 ? new ForkJoinPool(chunkThreads) : null;
+    ReportWriteStage writeStage = createWriteStage();
+    boolean compactRows = isCompactReportRows();
+    ReportRowsCoalescer<R> rowsCoalescer =
+        createRowsCoalescer(reportBeanClass, compactRows, writeStage);
     List<Callable<Object>> taskJobs = Lists.newArrayList();
+    // The low cardinality values are shared by all the reports of this run
+    StringDictionary dictionary = getRunDictionary();
+    List<ReportEntityMappingStrategy<R>> mappingStrategies = Lists.newArrayList();
+    List<FileRunnableProcessor<R>> runnableProcessors = Lists.newArrayList();
     
     for (File file : localFiles) {
       logger.trace(".");
       // We need to create a csvToBean and mappingStrategy for each thread
-      ModifiedCsvToBean<R> csvToBean = new ModifiedCsvToBean<R>();
+      ModifiedCsvToBean<R> csvToBean = new ModifiedCsvToBean<R>(dictionary);
         ReportEntityMappingStrategy<R> mappingStrategy =
-            new ReportEntityMappingStrategy<R>(reportBeanClass);
+            new ReportEntityMappingStrategy<R>(reportBeanClass, lenientCsvParsing);
+        mappingStrategies.add(mappingStrategy);
 
         logger.debug("Parsing file: " + file.getAbsolutePath());
         FileRunnableProcessor<R> runnableProcessor =
@@ -148,23 +177,49 @@ public class FileReportProcessor extends ReportProcessor {
                 mappingStrategy,
                 dateRangeAndType,
                 persister,
-                reportRowsSetSize);
+                reportRowsSetSize,
+                compactRows,
+                writeStage,
+                rowsCoalescer,
+                chunkPool);
+      runnableProcessors.add(runnableProcessor);
       taskJobs.add(Executors.callable(runnableProcessor));
     }
     
     try {
-      executorService.invokeAll(taskJobs);
+      // The threads are stopped even if the report fails, so that they cannot keep the JVM alive.
+      try {
+        executorService.invokeAll(taskJobs);
+        drainRowsCoalescer(rowsCoalescer);
+      } finally {
+        executorService.shutdown();
+        if (chunkPool != null) {
+          chunkPool.shutdown();
+        }
+        shutdownWriteStage(writeStage);
+      }
     } catch (InterruptedException e) {
       throw new ReportProcessingException(
           "FileReportProcessor encounters InterruptedException.", e);
     }
 
-    executorService.shutdown();
+    logSkippedColumns(mappingStrategies);
     stopwatch.stop();
     logger.info(
         "*** Finished processing all reports in "
             + stopwatch.elapsed(TimeUnit.SECONDS)
             + " seconds ***\n");
+
+    int failedFiles = 0;
+    for (FileRunnableProcessor<R> runnableProcessor : runnableProcessors) {
+      if (runnableProcessor.isFailed()) {
+        failedFiles++;
+      }
+    }
+    if (failedFiles > 0) {
+      logger.error(failedFiles + " of " + localFiles.size() + " report files failed to process.");
+    }
+    return failedFiles == 0;
   }
 
   /**
@@ -174,9 +229,10 @@ public class FileReportProcessor extends ReportProcessor {
    * @param reportType the report type.
    * @param localFiles the local files.
    * @param dateRangeAndType the date range and type.
+   * @return whether all the files were processed without errors.
    * @throws ReportProcessingException
    */
-  private void processLocalFiles(
+  private boolean processLocalFiles(
       String topCustomerId,
       ReportDefinitionReportType reportType,
       Collection<File> localFiles,
@@ -184,7 +240,7 @@ public class FileReportProcessor extends ReportProcessor {
       throws ReportProcessingException {
     Class<? extends Report> reportBeanClass =
         csvReportEntitiesMapping.getReportBeanClass(reportType);
-    processFiles(topCustomerId, reportBeanClass, localFiles, true, dateRangeAndType);
+    return processFiles(topCustomerId, reportBeanClass, localFiles, true, dateRangeAndType);
   }
 
   /**
@@ -235,6 +291,16 @@ public class FileReportProcessor extends ReportProcessor {
     logger.info("\n ** Finished: " + reportType.name() + " **");
   }
   
+  /**
+   * Sets the number of threads parsing the ranges of records of the large files of a report
+   * concurrently, or less than 2 to parse each file in a single thread.
+   */
+  @Autowired
+  public void setChunkThreads(
+      @Value(value = "${aw.report.processor.chunk.threads:0}") int chunkThreads) {
+    this.chunkThreads = chunkThreads;
+  }
+
   @Autowired
   public void setDownloaderSetting(DownloadSetting downloadSetting) {
     this.downloadSetting = downloadSetting;
@@ -15,6 +15,7 @@
 package com.google.api.ads.adwords.awreporting.processors.file;
 
 import com.google.api.ads.adwords.awreporting.model.csv.AwReportCsvReader;
+import com.google.api.ads.adwords.awreporting.model.csv.CsvFileSplitter;
 import com.google.api.ads.adwords.awreporting.model.csv.CsvParserIterator;
 import com.google.api.ads.adwords.awreporting.model.csv.CsvReportParsingException;
 import com.google.api.ads.adwords.awreporting.model.csv.ModifiedCsvToBean;
@@ -22,14 +23,22 @@ import com.google.api.ads.adwords.awreporting.model.csv.ReportEntityMappingStrat
 import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
 import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.api.ads.adwords.awreporting.processors.ReportRowContext;
+import com.google.api.ads.adwords.awreporting.processors.ReportRowsBuffer;
+import com.google.api.ads.adwords.awreporting.processors.ReportRowsCoalescer;
+import com.google.api.ads.adwords.awreporting.processors.ReportWriteStage;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,11 +46,17 @@ import org.slf4j.LoggerFactory;
  * This {@link Runnable} implements the core logic to parse the rows in the CSV file for the
  * report type, and persists the beans into the database.
  *
+ * <p>Large files are split into ranges of records that are parsed and persisted concurrently on the
+ * fork/join pool of the report, each range in sets of {@code reportRowsSetSize} beans.
+ *
  * @param <R> type of sub Report.
  */
 public class FileRunnableProcessor<R extends Report> implements Runnable {
   private static final Logger logger = LoggerFactory.getLogger(FileRunnableProcessor.class);
 
+  /** Files of at least twice this size are split into ranges of records parsed concurrently. */
+  private static final long MIN_CHUNK_SIZE = 64L * 1024 * 1024;
+
   private final String topCustomerId;
   private final File file;
   private final boolean fileDownloadedByAPI;
@@ -50,6 +65,13 @@ public class FileRunnableProcessor<R extends Report> implements Runnable {
   private final DateRangeAndType dateRangeAndType;
   private final EntityPersister entityPersister;
   private final int reportRowsSetSize;
+  private final boolean compactReportRows;
+  private final ReportWriteStage writeStage;
+  private final ReportRowsCoalescer<R> rowsCoalescer;
+  private final ForkJoinPool chunkPool;
+
+  /** Whether the file failed to be processed, so that its report is not published. */
+  private volatile boolean failed;
 
   /**
    * @param topCustomerId the top customer account id.
@@ -62,6 +84,13 @@ public class FileRunnableProcessor<R extends Report> implements Runnable {
    * @param dateRangeAndType the date range and type.
    * @param entityPersister the bean to persist report to database.
    * @param reportRowsSetSize the size of the set parsed that will be persisted to the database.
+   * @param compactReportRows whether to buffer the parsed rows in compact columnar batches.
+   * @param writeStage the stage that persists the parsed rows, or {@code null} to persist them in
+   *     this thread.
+   * @param rowsCoalescer the coalescer that merges the last rows with those of other tasks, or
+   *     {@code null} to persist them on their own.
+   * @param chunkPool the pool parsing the ranges of the large files, shared by all the files of the
+   *     report, or {@code null} to parse every file in this thread.
    */
   public FileRunnableProcessor(
       String topCustomerId,
@@ -71,8 +100,12 @@ public class FileRunnableProcessor<R extends Report> implements Runnable {
       ReportEntityMappingStrategy<R> mappingStrategy,
       DateRangeAndType dateRangeAndType,
       EntityPersister entityPersister,
-      int reportRowsSetSize) {
-    
+      int reportRowsSetSize,
+      boolean compactReportRows,
+      ReportWriteStage writeStage,
+      ReportRowsCoalescer<R> rowsCoalescer,
+      ForkJoinPool chunkPool) {
+
     this.topCustomerId = Preconditions.checkNotNull(topCustomerId, "topCustomerId cannot be null");
     this.file = Preconditions.checkNotNull(file, "file cannot be null");
     this.fileDownloadedByAPI = fileDownloadedByAPI;
@@ -85,6 +118,18 @@ public class FileRunnableProcessor<R extends Report> implements Runnable {
         Preconditions.checkNotNull(entityPersister, "entityPersister cannot be null");
     this.reportRowsSetSize = reportRowsSetSize;
     Preconditions.checkArgument(reportRowsSetSize > 0, "reportRowsSetSize must be > 0");
+    this.compactReportRows = compactReportRows;
+    this.writeStage = writeStage;
+    this.rowsCoalescer = rowsCoalescer;
+    this.chunkPool = chunkPool;
+  }
+
+  /**
+   * Whether the file failed to be read, parsed or persisted, once this task has run. The errors are
+   * logged, and the rows persisted before the error are not rolled back.
+   */
+  public boolean isFailed() {
+    return failed;
   }
 
   /**
@@ -101,55 +146,173 @@ public class FileRunnableProcessor<R extends Report> implements Runnable {
   @Override
   public void run() {
     try {
-      logger.debug("Starting parse of report rows...");
-      AwReportCsvReader csvReader = createCsvReader();
-      CsvParserIterator<R> reportRowsList = csvToBean.lazyParse(mappingStrategy, csvReader);
-      logger.debug("... success.");
-
-      logger.debug("Starting report persistence...");
-      List<R> reportBuffer = Lists.newArrayListWithCapacity(reportRowsSetSize);
-      while (reportRowsList.hasNext()) {
-        R report = reportRowsList.next();
-
-        // Getting Account Id from File Name for reports that do not have Client Customer Id
-        if (report.getCustomerId() == null) {
-          String filename = file.getName();
-          if (filename.contains("-") && filename.split("-") != null
-              && filename.split("-").length >= 2 && filename.split("-")[1].matches("\\d*")) {
-            report.setCustomerId(Long.parseLong(file.getName().split("-")[1]));
-          } else {
-            throw new IllegalArgumentException(
-                "Unknown customer id for report "
-                    + report.getClass().getSimpleName()
-                    + " file "
-                    + file.getName());
-          }
-        }
-
-        report.setTopCustomerId(Long.parseLong(topCustomerId.replaceAll("-", "")));
-        report.setDateRangeType(dateRangeAndType.getTypeStr());
-        report.setStartDate(dateRangeAndType.getStartDateStr());
-        report.setEndDate(dateRangeAndType.getEndDateStr());
-        report.setRowId();
-
-        reportBuffer.add(report);
+      ReportRowContext rowContext = ReportRowContext.forFile(topCustomerId, file, dateRangeAndType);
+      long[] boundaries = splitFile();
+      if (boundaries == null) {
+        try (AwReportCsvReader csvReader = createCsvReader()) {
+          logger.debug("Starting parse of report rows...");
+          CsvParserIterator<R> reportRowsList = csvToBean.lazyParse(mappingStrategy, csvReader);
+          logger.debug("... success.");
 
-        if (reportBuffer.size() >= reportRowsSetSize) {
-          entityPersister.persistReportEntities(reportBuffer);
-          reportBuffer.clear();
+          logger.debug("Starting report persistence...");
+          persistReports(reportRowsList, rowContext);
+          logger.debug("... success.");
         }
+      } else {
+        processChunks(boundaries, rowContext);
       }
-      if (reportBuffer.size() > 0) {
-        entityPersister.persistReportEntities(reportBuffer);
-      }
-      logger.debug("... success.");
     } catch (IOException | CsvReportParsingException e) {
+      failed = true;
       logger.error("Error processing file: " + file.getAbsolutePath(), e);
     } catch (RuntimeException e) {
+      failed = true;
       logger.error("Runtime error processing file: " + file.getAbsolutePath(), e);
     }
   }
 
+  /**
+   * Splits large files into ranges of records to parse concurrently.
+   *
+   * @return the boundaries of the ranges, or {@code null} if the file is parsed by this thread only
+   * @throws IOException in case the file is failed to read.
+   */
+  private long[] splitFile() throws IOException {
+    if (chunkPool == null
+        || file.length() < 2 * MIN_CHUNK_SIZE
+        || chunkPool.getParallelism() < 2) {
+      return null;
+    }
+    // The user provided files have a report title line before the header.
+    int skippedLines = fileDownloadedByAPI ? 1 : 2;
+    long[] boundaries =
+        CsvFileSplitter.split(file, skippedLines, MIN_CHUNK_SIZE, chunkPool.getParallelism());
+    return boundaries.length > 2 ? boundaries : null;
+  }
+
+  /**
+   * Parses and persists the ranges of records of the file concurrently. Each range is parsed with
+   * its own mapping strategy, as mapping strategies are not thread safe.
+   *
+   * @param boundaries the boundaries of the ranges, as found by {@link CsvFileSplitter}.
+   * @param rowContext the values stamped on every row of the file.
+   */
+  private void processChunks(long[] boundaries, final ReportRowContext rowContext)
+      throws IOException, CsvReportParsingException {
+    String[] columnNames;
+    try (AwReportCsvReader csvReader = createCsvReader()) {
+      columnNames = csvReader.getColumnNames();
+    }
+    logger.debug(
+        "Parsing file " + file.getAbsolutePath() + " in " + (boundaries.length - 1) + " chunks.");
+
+    List<ReportEntityMappingStrategy<R>> chunkStrategies = Lists.newArrayList();
+    List<ForkJoinTask<Void>> chunkTasks = Lists.newArrayList();
+    for (int i = 0; i + 1 < boundaries.length; i++) {
+      final long start = boundaries[i];
+      final long end = boundaries[i + 1];
+      final String[] chunkColumnNames = columnNames;
+      final ReportEntityMappingStrategy<R> chunkStrategy = mappingStrategy.newInstance();
+      chunkStrategies.add(chunkStrategy);
+      chunkTasks.add(
+          chunkPool.submit(
+              new Callable<Void>() {
+                @Override
+                public Void call() throws IOException, CsvReportParsingException {
+                  processChunk(start, end, chunkColumnNames, chunkStrategy, rowContext);
+                  return null;
+                }
+              }));
+    }
+
+    try {
+      awaitChunks(chunkTasks);
+    } finally {
+      for (ReportEntityMappingStrategy<R> chunkStrategy : chunkStrategies) {
+        mappingStrategy.addSkippedColumnCounts(chunkStrategy);
+      }
+    }
+  }
+
+  /**
+   * Waits for all the chunk tasks of a file, even if some of them fail, so that no chunk is still
+   * persisting rows once the file is done.
+   *
+   * @param chunkTasks the tasks parsing and persisting the chunks.
+   * @throws IOException if a chunk failed to be read, and no chunk failed before it.
+   * @throws CsvReportParsingException if a chunk failed to be parsed, and no chunk failed before
+   *     it.
+   */
+  static void awaitChunks(List<? extends Future<?>> chunkTasks)
+      throws IOException, CsvReportParsingException {
+    Throwable failure = null;
+    for (Future<?> chunkTask : chunkTasks) {
+      try {
+        Uninterruptibles.getUninterruptibly(chunkTask);
+      } catch (ExecutionException e) {
+        Throwable cause = getChunkFailure(e);
+        if (failure == null) {
+          failure = cause;
+        } else if (failure != cause) {
+          failure.addSuppressed(cause);
+        }
+      }
+    }
+    if (failure != null) {
+      Throwables.throwIfInstanceOf(failure, IOException.class);
+      Throwables.throwIfInstanceOf(failure, CsvReportParsingException.class);
+      Throwables.throwIfUnchecked(failure);
+      throw new CsvReportParsingException("Error parsing a chunk of the file.", failure);
+    }
+  }
+
+  /**
+   * Gets the exception thrown by a chunk task. The fork/join pool wraps the checked exceptions of
+   * a {@link Callable} in a {@link RuntimeException}, and wraps the exceptions of other threads
+   * again in a copy of their class, so all the plain {@code RuntimeException} wrappers are removed.
+   */
+  private static Throwable getChunkFailure(ExecutionException e) {
+    Throwable cause = e.getCause();
+    while (cause != null
+        && cause.getClass() == RuntimeException.class
+        && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    return cause != null ? cause : e;
+  }
+
+  private void processChunk(
+      long start,
+      long end,
+      String[] columnNames,
+      ReportEntityMappingStrategy<R> chunkStrategy,
+      ReportRowContext rowContext)
+      throws IOException, CsvReportParsingException {
+    try (AwReportCsvReader csvReader =
+        new AwReportCsvReader(file, start, end, columnNames, !fileDownloadedByAPI)) {
+      persistReports(csvToBean.lazyParse(chunkStrategy, csvReader), rowContext);
+    }
+  }
+
+  /**
+   * Completes the parsed reports with the data that is not in the CSV file, and persists them in
+   * sets of {@code reportRowsSetSize}, or all at once if the persister supports report streams.
+   *
+   * @param reportRowsList the parsed reports.
+   * @param rowContext the values stamped on every row of the file.
+   */
+  private void persistReports(CsvParserIterator<R> reportRowsList, ReportRowContext rowContext) {
+    ReportRowsBuffer<R> reportBuffer =
+        new ReportRowsBuffer<R>(
+            entityPersister,
+            mappingStrategy.getReportEntityClass(),
+            reportRowsSetSize,
+            compactReportRows,
+            writeStage,
+            rowsCoalescer);
+    reportBuffer.addAll(reportRowsList, rowContext);
+    reportBuffer.flush();
+  }
+
   /**
    * Creates the proper {@link AwReportCsvReader} to parse the AW reports.
    *
@@ -159,11 +322,9 @@ public class FileRunnableProcessor<R extends Report> implements Runnable {
   private AwReportCsvReader createCsvReader() throws IOException {
     logger.debug("Creating CSVReader for file: " + file.getAbsolutePath());
 
-    InputStreamReader reader =
-        new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
-
     // File downloaded by API means no header / summary lines.
     boolean hasHeaderSummary = !fileDownloadedByAPI;
-    return new AwReportCsvReader(reader, hasHeaderSummary, hasHeaderSummary);
+    // The file is memory-mapped and parsed without copying it to the heap.
+    return new AwReportCsvReader(file, hasHeaderSummary, hasHeaderSummary);
   }
 }
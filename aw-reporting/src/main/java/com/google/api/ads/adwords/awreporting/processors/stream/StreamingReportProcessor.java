@@ -19,9 +19,12 @@ import com.google.api.ads.adwords.awreporting.authentication.Authenticator;
 import com.google.api.ads.adwords.awreporting.downloader.DownloadSetting;
 import com.google.api.ads.adwords.awreporting.model.csv.ModifiedCsvToBean;
 import com.google.api.ads.adwords.awreporting.model.csv.ReportEntityMappingStrategy;
+import com.google.api.ads.adwords.awreporting.model.csv.StringDictionary;
 import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
 import com.google.api.ads.adwords.awreporting.processors.ReportProcessor;
+import com.google.api.ads.adwords.awreporting.processors.ReportRowsCoalescer;
+import com.google.api.ads.adwords.awreporting.processors.ReportWriteStage;
 import com.google.api.ads.adwords.awreporting.util.AdWordsSessionUtil;
 import com.google.api.ads.adwords.lib.client.AdWordsSession.ImmutableAdWordsSession;
 import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinition;
@@ -101,8 +104,15 @@ public class StreamingReportProcessor extends ReportProcessor {
     Class<? extends Report> reportBeanClass =
         this.csvReportEntitiesMapping.getReportBeanClass(reportType);
 
-    downloadAndProcessReports(
-        topCustomerId, reportBeanClass, accountIdList, reportDefinition, dateRangeAndType);
+    persister.startReportLoad(reportBeanClass, accountIdList, dateRangeAndType);
+    boolean completed = false;
+    try {
+      completed =
+          downloadAndProcessReports(
+              topCustomerId, reportBeanClass, accountIdList, reportDefinition, dateRangeAndType);
+    } finally {
+      persister.finishReportLoad(reportBeanClass, completed);
+    }
   }
 
   /**
@@ -114,9 +124,10 @@ public class StreamingReportProcessor extends ReportProcessor {
    * @param accountIdList the account IDs.
    * @param reportDefinition the report definition.
    * @param dateRangeAndType the date range and type.
+   * @return whether the reports of all the accounts were processed without errors.
    * @throws ReportProcessingException
    */
-  private <R extends Report> void downloadAndProcessReports(
+  private <R extends Report> boolean downloadAndProcessReports(
       String topCustomerId,
       Class<R> reportBeanClass,
       Set<Long> accountIdList,
@@ -127,16 +138,26 @@ public class StreamingReportProcessor extends ReportProcessor {
     Stopwatch stopwatch = Stopwatch.createStarted();
     
     ExecutorService executorService = Executors.newFixedThreadPool(numberOfReportProcessors);
+    ReportWriteStage writeStage = createWriteStage();
+    boolean compactRows = isCompactReportRows();
+    ReportRowsCoalescer<R> rowsCoalescer =
+        createRowsCoalescer(reportBeanClass, compactRows, writeStage);
     List<Callable<Object>> taskJobs = Lists.newArrayList();
+    // The low cardinality values are shared by all the reports of this run
+    StringDictionary dictionary = getRunDictionary();
+    List<ReportEntityMappingStrategy<R>> mappingStrategies = Lists.newArrayList();
+    List<StreamingRunnableProcessor<R>> runnableProcessors = Lists.newArrayList();
+    int failedAccounts = 0;
 
     for (Long accountId : accountIdList) {
       try {
         logger.debug("Processing account: " + accountId);
 
         // We need to create a csvToBean and mappingStrategy for each thread
-        ModifiedCsvToBean<R> csvToBean = new ModifiedCsvToBean<R>();
+        ModifiedCsvToBean<R> csvToBean = new ModifiedCsvToBean<R>(dictionary);
         ReportEntityMappingStrategy<R> mappingStrategy =
-            new ReportEntityMappingStrategy<R>(reportBeanClass);
+            new ReportEntityMappingStrategy<R>(reportBeanClass, lenientCsvParsing);
+        mappingStrategies.add(mappingStrategy);
 
         ImmutableAdWordsSession accountSession =
             AdWordsSessionUtil.buildImmutableSessionForCid(sessionBuilder, accountId);
@@ -150,26 +171,49 @@ public class StreamingReportProcessor extends ReportProcessor {
                 csvToBean,
                 mappingStrategy,
                 persister,
-                reportRowsSetSize);
+                reportRowsSetSize,
+                compactRows,
+                writeStage,
+                rowsCoalescer);
+        runnableProcessors.add(runnableProcessor);
         taskJobs.add(Executors.callable(runnableProcessor));
       } catch (ValidationException e) {
+        failedAccounts++;
         logger.warn("Ignoring account (Error when processing): " + accountId, e);
       }
     }
 
     try {
-      executorService.invokeAll(taskJobs);
+      // The threads are stopped even if the report fails, so that they cannot keep the JVM alive.
+      try {
+        executorService.invokeAll(taskJobs);
+        drainRowsCoalescer(rowsCoalescer);
+      } finally {
+        executorService.shutdown();
+        shutdownWriteStage(writeStage);
+      }
     } catch (InterruptedException e) {
       throw new ReportProcessingException(
           "StreamingReportProcessor encounters InterruptedException.", e);
     }
-    
-    executorService.shutdown();
+
+    logSkippedColumns(mappingStrategies);
     stopwatch.stop();
     logger.info(
         "*** Finished processing all reports in "
             + stopwatch.elapsed(TimeUnit.SECONDS)
             + " seconds ***\n");
+
+    for (StreamingRunnableProcessor<R> runnableProcessor : runnableProcessors) {
+      if (runnableProcessor.isFailed()) {
+        failedAccounts++;
+      }
+    }
+    if (failedAccounts > 0) {
+      logger.error(
+          failedAccounts + " of " + accountIdList.size() + " account reports failed to process.");
+    }
+    return failedAccounts == 0;
   }
 
   @Autowired
@@ -22,7 +22,10 @@ import com.google.api.ads.adwords.awreporting.model.csv.ReportEntityMappingStrat
 import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
 import com.google.api.ads.adwords.awreporting.model.entities.Report;
 import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
-import com.google.api.ads.adwords.awreporting.model.util.StringsUtil;
+import com.google.api.ads.adwords.awreporting.processors.ReportRowContext;
+import com.google.api.ads.adwords.awreporting.processors.ReportRowsBuffer;
+import com.google.api.ads.adwords.awreporting.processors.ReportRowsCoalescer;
+import com.google.api.ads.adwords.awreporting.processors.ReportWriteStage;
 import com.google.api.ads.adwords.awreporting.util.AdWordsServicesUtil;
 import com.google.api.ads.adwords.lib.client.AdWordsSession.ImmutableAdWordsSession;
 import com.google.api.ads.adwords.lib.jaxb.v201809.ReportDefinition;
@@ -31,12 +34,8 @@ import com.google.api.ads.adwords.lib.utils.ReportDownloadResponseException;
 import com.google.api.ads.adwords.lib.utils.ReportException;
 import com.google.api.ads.adwords.lib.utils.v201809.ReportDownloaderInterface;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
 import java.util.zip.GZIPInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,6 +58,12 @@ public class StreamingRunnableProcessor<R extends Report> implements Runnable {
   private final ReportEntityMappingStrategy<R> mappingStrategy;
   private final EntityPersister entityPersister;
   private final int reportRowsSetSize;
+  private final boolean compactReportRows;
+  private final ReportWriteStage writeStage;
+  private final ReportRowsCoalescer<R> rowsCoalescer;
+
+  /** Whether the report failed to be processed, so that it is not published. */
+  private volatile boolean failed;
 
   /**
    * Constructor for {@code Runnable} to download reports from AdWords API.
@@ -71,6 +76,11 @@ public class StreamingRunnableProcessor<R extends Report> implements Runnable {
    * @param dateRangeAndType the date range and type.
    * @param entityPersister the bean to persist report to database.
    * @param reportRowsSetSize the size of the set parsed that will be persisted to the database.
+   * @param compactReportRows whether to buffer the parsed rows in compact columnar batches.
+   * @param writeStage the stage that persists the parsed rows, or {@code null} to persist them in
+   *     this thread.
+   * @param rowsCoalescer the coalescer that merges the last rows with those of other tasks, or
+   *     {@code null} to persist them on their own.
    */
   public StreamingRunnableProcessor(
       String topCustomerId,
@@ -80,7 +90,10 @@ public class StreamingRunnableProcessor<R extends Report> implements Runnable {
       ModifiedCsvToBean<R> csvToBean,
       ReportEntityMappingStrategy<R> mappingStrategy,
       EntityPersister entityPersister,
-      int reportRowsSetSize) {
+      int reportRowsSetSize,
+      boolean compactReportRows,
+      ReportWriteStage writeStage,
+      ReportRowsCoalescer<R> rowsCoalescer) {
     this.topCustomerId = Preconditions.checkNotNull(topCustomerId, "topCustomerId cannot be null");
     
     this.session = Preconditions.checkNotNull(session, "session cannot be null.");
@@ -96,6 +109,17 @@ public class StreamingRunnableProcessor<R extends Report> implements Runnable {
         Preconditions.checkNotNull(entityPersister, "entityPersister cannot be null");
     this.reportRowsSetSize = reportRowsSetSize;
     Preconditions.checkArgument(reportRowsSetSize > 0, "reportRowsSetSize must be > 0");
+    this.compactReportRows = compactReportRows;
+    this.writeStage = writeStage;
+    this.rowsCoalescer = rowsCoalescer;
+  }
+
+  /**
+   * Whether the report failed to be downloaded, parsed or persisted, once this task has run. The
+   * errors are logged, and the rows persisted before the error are not rolled back.
+   */
+  public boolean isFailed() {
+    return failed;
   }
 
   /**
@@ -113,12 +137,14 @@ public class StreamingRunnableProcessor<R extends Report> implements Runnable {
   @Override
   public void run() {
     // Report Input Streams comes GZipped
-    try (GZIPInputStream gZIPInputStream = new GZIPInputStream(getReportInputStream())) {
-      AwReportCsvReader csvReader = createCsvReader(gZIPInputStream);
+    try (GZIPInputStream gZIPInputStream = new GZIPInputStream(getReportInputStream());
+        AwReportCsvReader csvReader = createCsvReader(gZIPInputStream)) {
       parseCsv(csvReader);
     } catch (IOException | CsvReportParsingException e) {
+      failed = true;
       logger.error("Error processing report for account: " + session.getClientCustomerId(), e);
     } catch (RuntimeException e) {
+      failed = true;
       logger.error(
           "Runtime error processing report for account: " + session.getClientCustomerId(), e);
     }
@@ -132,8 +158,7 @@ public class StreamingRunnableProcessor<R extends Report> implements Runnable {
    * @throws IOException in case the file is failed to parse as CSV.
    */
   private AwReportCsvReader createCsvReader(InputStream inputStream) throws IOException {
-    InputStreamReader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
-    return new AwReportCsvReader(reader, false, false);
+    return new AwReportCsvReader(inputStream, false, false);
   }
 
   /**
@@ -173,25 +198,19 @@ public class StreamingRunnableProcessor<R extends Report> implements Runnable {
     logger.debug("Successfully finished parse of report rows.");
 
     logger.debug("Starting report persistence...");
-    List<R> reportBuffer = Lists.newArrayList();
-    while (reportRowsList.hasNext()) {
-      R report = reportRowsList.next();
-      report.setCustomerId(StringsUtil.parseCustomerId(session.getClientCustomerId()));
-      report.setTopCustomerId(StringsUtil.parseCustomerId(topCustomerId));
-      report.setDateRangeType(dateRangeAndType.getTypeStr());
-      report.setStartDate(dateRangeAndType.getStartDateStr());
-      report.setEndDate(dateRangeAndType.getEndDateStr());
-      report.setRowId();
-      reportBuffer.add(report);
-
-      if (reportBuffer.size() >= reportRowsSetSize) {
-        entityPersister.persistReportEntities(reportBuffer);
-        reportBuffer.clear();
-      }
-    }
-    if (reportBuffer.size() > 0) {
-      entityPersister.persistReportEntities(reportBuffer);
-    }
+    ReportRowContext rowContext =
+        ReportRowContext.forAccount(
+            topCustomerId, session.getClientCustomerId(), dateRangeAndType);
+    ReportRowsBuffer<R> reportBuffer =
+        new ReportRowsBuffer<R>(
+            entityPersister,
+            mappingStrategy.getReportEntityClass(),
+            reportRowsSetSize,
+            compactReportRows,
+            writeStage,
+            rowsCoalescer);
+    reportBuffer.addAll(reportRowsList, rowContext);
+    reportBuffer.flush();
     logger.debug("Successfully finished report persistence.");
   }
 }
@@ -0,0 +1,84 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import java.io.File;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link ReportRowContext} class.
+ */
+@RunWith(JUnit4.class)
+public class ReportRowContextTest {
+
+  private static final DateRangeAndType DATE_RANGE =
+      DateRangeAndType.fromString("20180101,20180131");
+
+  /**
+   * Tests that the rows of a file get the customer id of the file name when they have none.
+   */
+  @Test
+  public void testEnrichFromFile() {
+    ReportRowContext context =
+        ReportRowContext.forFile(
+            "123-456-7890",
+            new File("AccountPerformanceReport-9876543210-20180101.csv"),
+            DATE_RANGE);
+
+    AccountPerformanceReport withoutCustomerId = new AccountPerformanceReport();
+    context.enrich(withoutCustomerId);
+    assertEquals(Long.valueOf(9876543210L), withoutCustomerId.getCustomerId());
+    assertEquals(Long.valueOf(1234567890L), withoutCustomerId.getTopCustomerId());
+    assertEquals("20180101", withoutCustomerId.getStartDate());
+    assertEquals("20180131", withoutCustomerId.getEndDate());
+    assertEquals("CUSTOM_DATE", withoutCustomerId.getDateRangeType());
+    assertSame(context.getTimestamp(), withoutCustomerId.getTimestamp());
+
+    AccountPerformanceReport withCustomerId = new AccountPerformanceReport(null, 555L);
+    context.enrich(withCustomerId);
+    assertEquals(Long.valueOf(555L), withCustomerId.getCustomerId());
+    assertSame(context.getTimestamp(), withCustomerId.getTimestamp());
+  }
+
+  /**
+   * Tests that a row without a customer id fails when the file name has none.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testEnrichUnknownCustomerId() {
+    ReportRowContext context =
+        ReportRowContext.forFile("1234567890", new File("report.csv"), DATE_RANGE);
+    context.enrich(new AccountPerformanceReport());
+  }
+
+  /**
+   * Tests that the rows of an account always get the account id.
+   */
+  @Test
+  public void testEnrichFromAccount() {
+    ReportRowContext context =
+        ReportRowContext.forAccount("1234567890", "987-654-3210", DATE_RANGE);
+    AccountPerformanceReport report = new AccountPerformanceReport(null, 555L);
+    context.enrich(report);
+    assertEquals(Long.valueOf(9876543210L), report.getCustomerId());
+    assertEquals(Long.valueOf(1234567890L), report.getTopCustomerId());
+  }
+}
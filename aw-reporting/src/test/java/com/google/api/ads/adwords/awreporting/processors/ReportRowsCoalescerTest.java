@@ -0,0 +1,153 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors;
+
+import static com.google.api.ads.adwords.awreporting.processors.ReportRowsTestUtil.newReport;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.ReportBatch;
+import com.google.api.ads.adwords.awreporting.processors.ReportRowsTestUtil.RecordingPersister;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link ReportRowsCoalescer} class.
+ */
+@RunWith(JUnit4.class)
+public class ReportRowsCoalescerTest {
+
+  /**
+   * Tests that the leftover rows of several buffers are persisted in full sets, and that the rest
+   * is persisted on drain.
+   */
+  @Test
+  public void testCoalesce() {
+    RecordingPersister persister = new RecordingPersister();
+    ReportRowsCoalescer<AccountPerformanceReport> coalescer =
+        new ReportRowsCoalescer<AccountPerformanceReport>(
+            persister, AccountPerformanceReport.class, 5, false, null, 0);
+
+    long customerId = 0;
+    for (int account = 0; account < 4; account++) {
+      ReportRowsBuffer<AccountPerformanceReport> buffer =
+          new ReportRowsBuffer<AccountPerformanceReport>(
+              persister, AccountPerformanceReport.class, 5, true, null, coalescer);
+      for (int i = 0; i < 3; i++) {
+        buffer.add(newReport(customerId++));
+      }
+      buffer.flush();
+    }
+
+    // 12 rows: two full sets while the buffers are flushed, and 2 rows left.
+    assertEquals(ImmutableList.of(5, 5), persister.sets);
+    assertEquals(2, coalescer.getPendingRows());
+    coalescer.drain();
+    assertEquals(ImmutableList.of(5, 5, 2), persister.sets);
+    assertEquals(12, persister.rows.size());
+  }
+
+  /**
+   * Tests that in compact mode the leftover batches of the buffers are merged and persisted as
+   * batches, without recreating their entities.
+   */
+  @Test
+  public void testCoalesce_compact() {
+    RecordingPersister persister = new RecordingPersister() {
+      @Override
+      public boolean isReportBatchSupported() {
+        return true;
+      }
+
+      @Override
+      public void persistReportBatch(ReportBatch<? extends Report> batch) {
+        batchSets.add(batch.size());
+      }
+    };
+    ReportRowsCoalescer<AccountPerformanceReport> coalescer =
+        new ReportRowsCoalescer<AccountPerformanceReport>(
+            persister, AccountPerformanceReport.class, 5, true, null, 0);
+
+    long customerId = 0;
+    for (int account = 0; account < 4; account++) {
+      ReportRowsBuffer<AccountPerformanceReport> buffer =
+          new ReportRowsBuffer<AccountPerformanceReport>(
+              persister, AccountPerformanceReport.class, 5, true, null, coalescer);
+      for (int i = 0; i < 3; i++) {
+        buffer.add(newReport(customerId++));
+      }
+      buffer.flush();
+    }
+    coalescer.drain();
+
+    assertEquals(ImmutableList.of(5, 5, 2), persister.batchSets);
+    assertEquals(0, persister.rows.size());
+  }
+
+  /**
+   * Tests that the rows that waited longer than the maximum delay are persisted in the background.
+   */
+  @Test
+  public void testMaxDelay() throws Exception {
+    RecordingPersister persister = new RecordingPersister();
+    ReportRowsCoalescer<AccountPerformanceReport> coalescer =
+        new ReportRowsCoalescer<AccountPerformanceReport>(
+            persister, AccountPerformanceReport.class, 5, false, null, 20);
+    coalescer.addAll(ImmutableList.of(newReport(1L)));
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (coalescer.getPendingRows() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    coalescer.drain();
+    assertEquals(ImmutableList.of(1), persister.sets);
+  }
+
+  /**
+   * Tests that the error of a background persist is rethrown on drain, instead of losing the rows
+   * silently.
+   */
+  @Test
+  public void testDrain_rethrowsBackgroundFailure() throws Exception {
+    final RuntimeException error = new IllegalStateException("Lost connection");
+    RecordingPersister persister = new RecordingPersister() {
+      @Override
+      public void persistReportEntities(List<? extends Report> reportEntities) {
+        throw error;
+      }
+    };
+    ReportRowsCoalescer<AccountPerformanceReport> coalescer =
+        new ReportRowsCoalescer<AccountPerformanceReport>(
+            persister, AccountPerformanceReport.class, 5, false, null, 20);
+    coalescer.addAll(ImmutableList.of(newReport(1L)));
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (coalescer.getPendingRows() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    try {
+      coalescer.drain();
+      fail("The background failure was not rethrown");
+    } catch (IllegalStateException e) {
+      assertSame(error, e);
+    }
+  }
+}
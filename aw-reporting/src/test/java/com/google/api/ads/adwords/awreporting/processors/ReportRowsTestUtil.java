@@ -0,0 +1,98 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.Report;
+import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the report rows of the {@link ReportRowsBuffer}, {@link ReportRowsCoalescer} and
+ * {@link ReportWriteStage} tests, and records what they persist.
+ */
+final class ReportRowsTestUtil {
+
+  private ReportRowsTestUtil() {}
+
+  static AccountPerformanceReport newReport(long customerId) {
+    AccountPerformanceReport report = new AccountPerformanceReport(1234L, customerId);
+    report.setDate("2018-01-01");
+    report.setRowId();
+    return report;
+  }
+
+  /**
+   * Records the persisted rows, or fails every write with the given error.
+   */
+  static class RecordingPersister implements EntityPersister {
+    private final RuntimeException error;
+    private final CountDownLatch release;
+    private final long slowFailureMillis;
+    final List<Report> rows = Collections.synchronizedList(Lists.<Report>newArrayList());
+    final List<Integer> sets = Collections.synchronizedList(Lists.<Integer>newArrayList());
+    final List<Integer> batchSets = Collections.synchronizedList(Lists.<Integer>newArrayList());
+    final AtomicInteger failures = new AtomicInteger();
+
+    RecordingPersister() {
+      this(null);
+    }
+
+    RecordingPersister(RuntimeException error) {
+      this(error, new CountDownLatch(0), 0);
+    }
+
+    /**
+     * @param release the latch every failing write waits for.
+     * @param slowFailureMillis how long the failing writes of other accounts than 1 wait before
+     *     failing, once released.
+     */
+    RecordingPersister(RuntimeException error, CountDownLatch release, long slowFailureMillis) {
+      this.error = error;
+      this.release = release;
+      this.slowFailureMillis = slowFailureMillis;
+    }
+
+    @Override
+    public void persistReportEntities(List<? extends Report> reportEntities) {
+      if (error != null) {
+        Uninterruptibles.awaitUninterruptibly(release);
+        if (reportEntities.get(0).getCustomerId() != 1L) {
+          Uninterruptibles.sleepUninterruptibly(slowFailureMillis, TimeUnit.MILLISECONDS);
+        }
+        failures.incrementAndGet();
+        throw error;
+      }
+      rows.addAll(reportEntities);
+      sets.add(reportEntities.size());
+    }
+
+    @Override
+    public <T> T save(T entity) {
+      return entity;
+    }
+
+    @Override
+    public <T, V> List<T> get(Class<T> classT, String key, V value) {
+      return Collections.emptyList();
+    }
+  }
+}
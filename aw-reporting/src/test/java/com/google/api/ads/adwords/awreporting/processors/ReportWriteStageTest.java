@@ -0,0 +1,154 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors;
+
+import static com.google.api.ads.adwords.awreporting.processors.ReportRowsTestUtil.newReport;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.processors.ReportRowsTestUtil.RecordingPersister;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link ReportWriteStage} class, and the write-behind of
+ * {@link ReportRowsBuffer}.
+ */
+@RunWith(JUnit4.class)
+public class ReportWriteStageTest {
+
+  /**
+   * Tests that all the rows handed over to the stage are persisted, in full sets, once the buffer
+   * is flushed.
+   */
+  @Test
+  public void testWriteBehind() throws Exception {
+    RecordingPersister persister = new RecordingPersister(null);
+    ReportWriteStage writeStage = new ReportWriteStage(2, 1);
+    ReportRowsBuffer<AccountPerformanceReport> buffer =
+        new ReportRowsBuffer<AccountPerformanceReport>(
+            persister, AccountPerformanceReport.class, 10, false, writeStage);
+    for (long i = 0; i < 95; i++) {
+      buffer.add(newReport(i));
+    }
+    buffer.flush();
+
+    assertEquals(95, persister.rows.size());
+    assertEquals(10, persister.sets.size());
+    writeStage.shutdown();
+    assertEquals(10, writeStage.getWrites());
+    assertEquals(0, writeStage.getQueueDepth());
+  }
+
+  /**
+   * Tests that the error of a write is rethrown by the buffer that handed over the rows.
+   */
+  @Test
+  public void testWriteError() throws Exception {
+    RuntimeException error = new IllegalStateException("Lock wait timeout");
+    ReportWriteStage writeStage = new ReportWriteStage(1, 1);
+    ReportRowsBuffer<AccountPerformanceReport> buffer =
+        new ReportRowsBuffer<AccountPerformanceReport>(
+            new RecordingPersister(error), AccountPerformanceReport.class, 10, true, writeStage);
+    buffer.add(newReport(1L));
+    try {
+      buffer.flush();
+      fail("The error of the write was not rethrown");
+    } catch (UncheckedExecutionException e) {
+      assertSame(error, e.getCause());
+    }
+    writeStage.shutdown();
+  }
+
+  /**
+   * Tests that the buffer waits for all its writes even if one fails, and rethrows the first error
+   * with the errors of the other writes suppressed.
+   */
+  @Test
+  public void testWriteErrors_waitsForAllWrites() throws Exception {
+    RuntimeException error = new IllegalStateException("Lock wait timeout");
+    CountDownLatch release = new CountDownLatch(1);
+    RecordingPersister persister = new RecordingPersister(error, release, 200);
+    ReportWriteStage writeStage = new ReportWriteStage(2, 0);
+    ReportRowsBuffer<AccountPerformanceReport> buffer =
+        new ReportRowsBuffer<AccountPerformanceReport>(
+            persister, AccountPerformanceReport.class, 1, false, writeStage);
+    buffer.add(newReport(1L));
+    buffer.add(newReport(2L));
+    release.countDown();
+    try {
+      buffer.flush();
+      fail("The error of the writes was not rethrown");
+    } catch (UncheckedExecutionException e) {
+      assertSame(error, e.getCause());
+      assertEquals(1, e.getSuppressed().length);
+      assertSame(error, e.getSuppressed()[0].getCause());
+    }
+    // Both writes were done before flush() returned, including the slow one.
+    assertEquals(2, persister.failures.get());
+    writeStage.shutdown();
+  }
+
+  /**
+   * Tests that the submitting thread blocks while the queue is full, and that the stall is
+   * recorded.
+   */
+  @Test
+  public void testBackpressure() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    Runnable blockedWrite = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    final ReportWriteStage writeStage = new ReportWriteStage(1, 1);
+    writeStage.submit(blockedWrite);
+    writeStage.submit(blockedWrite);
+
+    final List<Future<?>> lastWrite = Collections.synchronizedList(Lists.<Future<?>>newArrayList());
+    Thread producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        lastWrite.add(writeStage.submit(blockedWrite));
+      }
+    });
+    producer.start();
+    producer.join(200);
+    assertEquals("The producer did not block on the full queue", 0, lastWrite.size());
+
+    release.countDown();
+    producer.join();
+    lastWrite.get(0).get();
+    writeStage.shutdown();
+    assertEquals(3, writeStage.getWrites());
+    assertEquals(1, writeStage.getStalls());
+    assertTrue(writeStage.getMaxQueueDepth() >= 1);
+  }
+}
@@ -0,0 +1,162 @@
+// Copyright 2018 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.awreporting.processors.file;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import com.google.api.ads.adwords.awreporting.model.csv.CsvReportParsingException;
+import com.google.api.ads.adwords.awreporting.model.csv.ModifiedCsvToBean;
+import com.google.api.ads.adwords.awreporting.model.csv.ReportEntityMappingStrategy;
+import com.google.api.ads.adwords.awreporting.model.entities.AccountPerformanceReport;
+import com.google.api.ads.adwords.awreporting.model.entities.DateRangeAndType;
+import com.google.api.ads.adwords.awreporting.model.persistence.EntityPersister;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the chunk and error handling of the {@link FileRunnableProcessor} class.
+ */
+@RunWith(JUnit4.class)
+public class FileRunnableProcessorTest {
+
+  private ForkJoinPool pool;
+
+  @Before
+  public void setUp() {
+    pool = new ForkJoinPool(2);
+  }
+
+  @After
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  /**
+   * Tests that a failed chunk is rethrown with its own exception, once the other chunks are done.
+   */
+  @Test
+  public void testAwaitChunks_waitsForAllChunksWhenOneFails() throws Exception {
+    final IOException error = new IOException("Truncated file");
+    final CountDownLatch failed = new CountDownLatch(1);
+    final AtomicBoolean persisted = new AtomicBoolean();
+    ForkJoinTask<Void> failingChunk = pool.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        failed.countDown();
+        throw error;
+      }
+    });
+    ForkJoinTask<Void> slowChunk = pool.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws InterruptedException {
+        failed.await();
+        TimeUnit.MILLISECONDS.sleep(200);
+        persisted.set(true);
+        return null;
+      }
+    });
+
+    try {
+      FileRunnableProcessor.awaitChunks(ImmutableList.of(failingChunk, slowChunk));
+      fail("The error of the chunk was not rethrown");
+    } catch (IOException e) {
+      assertSame(error, e);
+    }
+    assertTrue("The other chunk was still running", persisted.get());
+  }
+
+  /**
+   * Tests that the parsing error of a chunk is rethrown as it is.
+   */
+  @Test
+  public void testAwaitChunks_rethrowsParsingException() throws Exception {
+    final CsvReportParsingException error = new CsvReportParsingException("Bad value");
+    ForkJoinTask<Void> failingChunk = pool.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws CsvReportParsingException {
+        throw error;
+      }
+    });
+
+    try {
+      FileRunnableProcessor.awaitChunks(ImmutableList.of(failingChunk));
+      fail("The error of the chunk was not rethrown");
+    } catch (CsvReportParsingException e) {
+      assertSame(error, e);
+    }
+  }
+
+  /**
+   * Tests that a file that is processed without errors does not fail its report.
+   */
+  @Test
+  public void testRun_succeeds() throws Exception {
+    File file = File.createTempFile("report", ".csv");
+    file.deleteOnExit();
+    Files.asCharSink(file, StandardCharsets.UTF_8).write("Customer ID,Clicks\n123,4\n");
+
+    FileRunnableProcessor<AccountPerformanceReport> runnableProcessor = newRunnableProcessor(file);
+    runnableProcessor.run();
+
+    assertFalse(runnableProcessor.isFailed());
+  }
+
+  /**
+   * Tests that a file that fails to be processed is recorded as failed, as the error is only
+   * logged.
+   */
+  @Test
+  public void testRun_recordsFailure() {
+    FileRunnableProcessor<AccountPerformanceReport> runnableProcessor =
+        newRunnableProcessor(new File("does-not-exist.csv"));
+    runnableProcessor.run();
+
+    assertTrue(runnableProcessor.isFailed());
+  }
+
+  private static FileRunnableProcessor<AccountPerformanceReport> newRunnableProcessor(File file) {
+    return new FileRunnableProcessor<AccountPerformanceReport>(
+        "123",
+        file,
+        true,
+        new ModifiedCsvToBean<AccountPerformanceReport>(),
+        new ReportEntityMappingStrategy<AccountPerformanceReport>(AccountPerformanceReport.class),
+        DateRangeAndType.fromString("20180101,20180131"),
+        mock(EntityPersister.class),
+        10,
+        false,
+        null,
+        null,
+        null);
+  }
+}